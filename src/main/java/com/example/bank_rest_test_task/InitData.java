@@ -8,11 +8,11 @@ import com.example.bank_rest_test_task.repository.UserRepository;
 import com.example.bank_rest_test_task.service.CardService;
 import com.example.bank_rest_test_task.service.UserService;
 import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.money.Money;
 import jakarta.annotation.PostConstruct;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -52,7 +52,7 @@ public class InitData {
                 .encryptNumber(cryptoService.encrypt(cardNumber))
                 .validityPeriod(LocalDate.now().plusYears(5))
                 .statusCard(StatusCard.ACTIVE)
-                .balance(BigDecimal.valueOf(600))
+                .balance(Money.of(600))
                 .searchHash(cryptoService.calculationCardHash(cardNumber))
                 .user(user)
                 .last4("5599")
@@ -0,0 +1,29 @@
+package com.example.bank_rest_test_task.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Поток контрольных точек движка балансов.
+ *
+ * Отдельный поток не зависит от общего планировщика {@code @Scheduled}, поэтому отставание балансов в базе данных
+ * от движка не растет во время долгих задач обслуживания.
+ */
+@Configuration
+public class BalanceEngineConfig {
+
+    /**
+     * @return однопоточный планировщик; останавливается вместе с контекстом
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService balanceEngineCheckpointer() {
+        return Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "balance-engine-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.bank_rest_test_task.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Поток отправки изменений карт подписчикам потока событий ({@code GET /cards/stream}).
+ *
+ * Запись в соединение медленного клиента может блокироваться, поэтому она выполняется не в потоке доставки
+ * outbox, который держит блокировки строк событий, и не в потоках запросов.
+ */
+@Configuration
+public class CardStreamConfig {
+
+    /**
+     * @return однопоточный планировщик; останавливается вместе с контекстом
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService cardStreamExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "card-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
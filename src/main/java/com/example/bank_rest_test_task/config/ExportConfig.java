@@ -0,0 +1,33 @@
+package com.example.bank_rest_test_task.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул потоков для расшифровки номеров карт при выгрузке.
+ *
+ * Размер пула ограничивает нагрузку на CPU от всех одновременных выгрузок; очередь задач каждой выгрузки
+ * ограничена самой выгрузкой ({@link com.example.bank_rest_test_task.util.OrderedParallelPipeline}).
+ */
+@Configuration
+public class ExportConfig {
+
+    /**
+     * @param threads количество потоков расшифровки (из property)
+     * @return пул потоков; останавливается вместе с контекстом
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService cardExportExecutor(@Value("${payment.export.decrypt-threads:4}") int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "card-export-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.bank_rest_test_task.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Поток, выполняющий группы переводов в общей транзакции.
+ *
+ * Один поток собирает очередную группу, пока предыдущая фиксируется, поэтому под нагрузкой размер группы растет
+ * сам собой, а одновременно выполняется не больше одной группы.
+ */
+@Configuration
+public class GroupCommitConfig {
+
+    /**
+     * @return однопоточный исполнитель; останавливается вместе с контекстом
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService transferGroupCommitWorker() {
+        return Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "transfer-group-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.bank_rest_test_task.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Поток переноса записей журнала истории переводов в базу данных.
+ *
+ * Отдельный поток не зависит от общего планировщика {@code @Scheduled}, на котором выполняются долгие задачи
+ * (обслуживание партиций), поэтому задержка появления истории в базе не растет во время их работы.
+ */
+@Configuration
+public class HistoryJournalConfig {
+
+    /**
+     * @return однопоточный планировщик; останавливается вместе с контекстом
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService historyJournalDrainer() {
+        return Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "history-journal-drainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
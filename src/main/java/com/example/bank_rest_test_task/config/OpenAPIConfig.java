@@ -1,5 +1,6 @@
 package com.example.bank_rest_test_task.config;
 
+import com.example.bank_rest_test_task.util.money.Money;
 import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Info;
@@ -8,14 +9,22 @@ import io.swagger.v3.oas.models.media.StringSchema;
 import io.swagger.v3.oas.models.parameters.Parameter;
 import io.swagger.v3.oas.models.security.SecurityRequirement;
 import io.swagger.v3.oas.models.security.SecurityScheme;
+import org.springdoc.core.utils.SpringDocUtils;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.math.BigDecimal;
+
 /**
  * Конфигурация openApi
  */
 @Configuration
 public class OpenAPIConfig {
+    static {
+        // Money в JSON записывается числом, поэтому в схеме описывается как BigDecimal
+        SpringDocUtils.getConfig().replaceWithClass(Money.class, BigDecimal.class);
+    }
+
     /**
      * Добавление версии и авторизации в openApi документацию
      *
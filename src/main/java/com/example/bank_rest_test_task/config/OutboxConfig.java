@@ -0,0 +1,29 @@
+package com.example.bank_rest_test_task.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Поток доставки доменных событий из outbox получателям внутри приложения.
+ *
+ * Отдельный поток не зависит от общего планировщика {@code @Scheduled} и от потоков запросов:
+ * рассылка событий не задерживает ни ответы, ни фоновое обслуживание.
+ */
+@Configuration
+public class OutboxConfig {
+
+    /**
+     * @return однопоточный планировщик; останавливается вместе с контекстом
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService outboxRelayExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
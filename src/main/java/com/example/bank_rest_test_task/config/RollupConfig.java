@@ -0,0 +1,33 @@
+package com.example.bank_rest_test_task.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул потоков для перестроения агрегатов расходов из истории переводов.
+ *
+ * Каждый поток обрабатывает свой диапазон id пользователей в отдельной транзакции, поэтому размер пула
+ * ограничивает и количество соединений, занятых перестроением.
+ */
+@Configuration
+public class RollupConfig {
+
+    /**
+     * @param threads количество потоков перестроения (из property)
+     * @return пул потоков; останавливается вместе с контекстом
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService rollupBackfillExecutor(@Value("${payment.rollup.backfill.threads:4}") int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "rollup-backfill-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
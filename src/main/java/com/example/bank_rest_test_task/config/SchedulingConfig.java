@@ -0,0 +1,12 @@
+package com.example.bank_rest_test_task.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Включает выполнение фоновых задач по расписанию ({@link org.springframework.scheduling.annotation.Scheduled})
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,39 @@
+package com.example.bank_rest_test_task.config;
+
+import com.example.bank_rest_test_task.repository.search.DatabaseUsernameSearch;
+import com.example.bank_rest_test_task.repository.search.NgramUsernameSearch;
+import com.example.bank_rest_test_task.repository.search.UsernameSearch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * Выбор реализации поиска по подстроке имени пользователя в зависимости от базы:
+ * - PostgreSQL - поиск выполняет база по GIN-индексу pg_trgm;
+ * - остальные базы - индекс триграмм в памяти приложения.
+ */
+@Configuration
+public class UsernameSearchConfig {
+    private static final String POSTGRESQL = "PostgreSQL";
+
+    /**
+     * @param dataSource источник данных, по метаданным которого определяется база
+     * @param maxCandidates максимальное количество id из индекса в памяти, передаваемых в запрос (из property)
+     * @return реализация поиска
+     */
+    @Bean
+    public UsernameSearch usernameSearch(DataSource dataSource,
+                                         @Value("${payment.search.username.max-candidates:1000}") int maxCandidates)
+            throws MetaDataAccessException {
+        String databaseName = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        if (POSTGRESQL.equalsIgnoreCase(databaseName)) {
+            return new DatabaseUsernameSearch();
+        }
+        return new NgramUsernameSearch(maxCandidates);
+    }
+}
@@ -2,8 +2,12 @@ package com.example.bank_rest_test_task.controller;
 
 import com.example.bank_rest_test_task.controller.documentation.AdminCardControllerDocs;
 import com.example.bank_rest_test_task.dto.*;
+import com.example.bank_rest_test_task.entity.Card;
 import com.example.bank_rest_test_task.service.CardService;
+import com.example.bank_rest_test_task.service.ExportService;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
 import com.example.bank_rest_test_task.util.factory.CardDtoFactory;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
@@ -11,7 +15,11 @@ import jakarta.validation.constraints.Size;
 import org.hibernate.validator.constraints.CreditCardNumber;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -19,16 +27,28 @@ import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
 @Validated
 @RestController
 @RequestMapping("/admin/cards")
 public class AdminCardController implements AdminCardControllerDocs {
+    // Атрибуты без null-значений: значения ключа сортировки записываются в курсор
+    private static final Set<String> SCROLL_SORT = Set.of("id", "validityPeriod", "balance", "statusCard");
+
     private final CardService cardService;
     private final CardDtoFactory cardDtoFactory;
+    private final KeysetCursorCodec keysetCursorCodec;
+    private final ExportService exportService;
 
-    public AdminCardController(CardService cardService, CardDtoFactory cardDtoFactory) {
+    public AdminCardController(CardService cardService, CardDtoFactory cardDtoFactory, KeysetCursorCodec keysetCursorCodec,
+                               ExportService exportService) {
         this.cardService = cardService;
         this.cardDtoFactory = cardDtoFactory;
+        this.keysetCursorCodec = keysetCursorCodec;
+        this.exportService = exportService;
     }
 
     @PostMapping
@@ -103,12 +123,61 @@ public class AdminCardController implements AdminCardControllerDocs {
         return ResponseEntity.ok(PageResponse.from(cardService.searchCard(searchFilter, pageable)
                 .map(cardDtoFactory::createCardDtoForAdmin)));
     }
-}
-
-
-
-
 
+    /**
+     * Получение всех карт в режиме курсора: без общего количества и без OFFSET
+     *
+     * @param after курсор из поля {@code next} предыдущей страницы; без него возвращается первая страница
+     * @param pageable размер страницы и сортировка; номер страницы не используется
+     * @return страница карт с курсором следующей страницы
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageResponse<CardDto>> scrollAllCards(@RequestParam(value = "after", required = false) String after,
+                                                                      @PageableDefault(size = 6, sort = "validityPeriod") Pageable pageable) {
+        Sort sort = KeysetCursorCodec.requireSortable(pageable.getSort(), SCROLL_SORT);
+        Window<Card> window = cardService.scrollAllCards(keysetCursorCodec.decode(after, Card.class, sort),
+                sort, pageable.getPageSize());
+        return ResponseEntity.ok(CursorPageResponse.from(window.map(cardDtoFactory::createCardDtoForAdmin),
+                keysetCursorCodec.nextCursor(window)));
+    }
 
+    /**
+     * Получение карт по фильтрам в режиме курсора: без общего количества и без OFFSET
+     *
+     * @param searchFilter объект содержащий критерии для фильтров {@link CardSearchFilter}
+     * @param after курсор из поля {@code next} предыдущей страницы; без него возвращается первая страница
+     * @param pageable размер страницы и сортировка; номер страницы не используется
+     * @return страница карт с курсором следующей страницы
+     */
+    @PostMapping("/search/scroll")
+    public ResponseEntity<CursorPageResponse<CardDto>> scrollSearchCard(@Valid @RequestBody CardSearchFilter searchFilter,
+                                                                        @RequestParam(value = "after", required = false) String after,
+                                                                        @PageableDefault(size = 6, sort = "validityPeriod") Pageable pageable) {
+        Sort sort = KeysetCursorCodec.requireSortable(pageable.getSort(), SCROLL_SORT);
+        Window<Card> window = cardService.scrollSearchCard(searchFilter,
+                keysetCursorCodec.decode(after, Card.class, sort), sort, pageable.getPageSize());
+        return ResponseEntity.ok(CursorPageResponse.from(window.map(cardDtoFactory::createCardDtoForAdmin),
+                keysetCursorCodec.nextCursor(window)));
+    }
 
+    /**
+     * Выгрузка всех карт с полными номерами потоком в тело ответа
+     *
+     * @param format формат выгрузки: NDJSON (по умолчанию) или CSV
+     * @param response ответ, в поток которого пишутся строки
+     */
+    @GetMapping("/export")
+    public void exportCards(@RequestParam(value = "format", defaultValue = "NDJSON") ExportFormat format,
+                            @AuthenticationPrincipal Jwt jwt,
+                            HttpServletResponse response) throws IOException {
+        prepareExport(response, format, "cards");
+        exportService.exportCards(format, response.getOutputStream(), Long.valueOf(jwt.getSubject()));
+    }
 
+    private static void prepareExport(HttpServletResponse response, ExportFormat format, String name) {
+        response.setContentType(format.getMediaType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(name + "." + format.getExtension()).build().toString());
+    }
+}
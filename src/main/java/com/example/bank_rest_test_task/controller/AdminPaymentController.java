@@ -0,0 +1,169 @@
+package com.example.bank_rest_test_task.controller;
+
+import com.example.bank_rest_test_task.controller.documentation.AdminPaymentControllerDocs;
+import com.example.bank_rest_test_task.dto.CursorPageResponse;
+import com.example.bank_rest_test_task.dto.ExportFormat;
+import com.example.bank_rest_test_task.dto.RollupBackfillResultDto;
+import com.example.bank_rest_test_task.dto.SpendingAnalyticsFilter;
+import com.example.bank_rest_test_task.dto.SpendingRollupDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryFilter;
+import com.example.bank_rest_test_task.dto.TransferLaneMetricsDto;
+import com.example.bank_rest_test_task.dto.TransferRetryMetricsDto;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.service.ExportService;
+import com.example.bank_rest_test_task.service.SpendingRollupService;
+import com.example.bank_rest_test_task.service.TransferHistoryService;
+import com.example.bank_rest_test_task.service.TransferLaneExecutor;
+import com.example.bank_rest_test_task.service.TransferRetryExecutor;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Positive;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+@Validated
+@RestController
+@RequestMapping("/admin/payments")
+public class AdminPaymentController implements AdminPaymentControllerDocs {
+    private final TransferHistoryService transferHistoryService;
+    private final KeysetCursorCodec keysetCursorCodec;
+    private final ExportService exportService;
+    private final SpendingRollupService spendingRollupService;
+    private final TransferRetryExecutor transferRetryExecutor;
+    private final TransferLaneExecutor transferLaneExecutor;
+
+    public AdminPaymentController(TransferHistoryService transferHistoryService, KeysetCursorCodec keysetCursorCodec,
+                                  ExportService exportService, SpendingRollupService spendingRollupService,
+                                  TransferRetryExecutor transferRetryExecutor, TransferLaneExecutor transferLaneExecutor) {
+        this.transferHistoryService = transferHistoryService;
+        this.keysetCursorCodec = keysetCursorCodec;
+        this.exportService = exportService;
+        this.spendingRollupService = spendingRollupService;
+        this.transferRetryExecutor = transferRetryExecutor;
+        this.transferLaneExecutor = transferLaneExecutor;
+    }
+
+    /**
+     * Получение истории переводов пользователя в режиме курсора, от новых к старым
+     *
+     * @param userId id пользователя, выполнявшего переводы
+     * @param filter фильтры по карте, сумме и времени {@link TransferHistoryFilter}
+     * @param after курсор из поля {@code next} предыдущей страницы; без него возвращается первая страница
+     * @param pageable размер страницы; номер страницы и сортировка не используются
+     * @return страница истории с курсором следующей страницы
+     */
+    @GetMapping("/history")
+    public ResponseEntity<CursorPageResponse<TransferHistoryDto>> getTransferHistory(@Positive(message = "Id must not be less than zero")
+                                                                                     @RequestParam Long userId,
+                                                                                     @Valid TransferHistoryFilter filter,
+                                                                                     @RequestParam(value = "after", required = false) String after,
+                                                                                     @PageableDefault(size = 6) Pageable pageable) {
+        Window<TransferHistoryDto> window = transferHistoryService.scrollTransferHistory(userId, filter,
+                keysetCursorCodec.decode(after, TransferHistory.class, TransferHistoryService.HISTORY_SORT), pageable.getPageSize());
+        return ResponseEntity.ok(CursorPageResponse.from(window, keysetCursorCodec.nextCursor(window)));
+    }
+
+    /**
+     * Выгрузка всей истории переводов потоком в тело ответа
+     *
+     * @param format формат выгрузки: NDJSON (по умолчанию) или CSV
+     * @param response ответ, в поток которого пишутся строки
+     */
+    @GetMapping("/export")
+    public void exportTransfers(@RequestParam(value = "format", defaultValue = "NDJSON") ExportFormat format,
+                                @AuthenticationPrincipal Jwt jwt,
+                                HttpServletResponse response) throws IOException {
+        prepareExport(response, format, "transfers");
+        exportService.exportTransfers(format, response.getOutputStream(), Long.valueOf(jwt.getSubject()));
+    }
+
+    /**
+     * Получение расходов пользователя по всем его картам за дни или месяцы
+     *
+     * @param userId id пользователя
+     * @param filter период агрегатов и диапазон дат {@link SpendingAnalyticsFilter}
+     * @return агрегаты по возрастанию периода
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<List<SpendingRollupDto>> getUserSpending(@Positive(message = "Id must not be less than zero")
+                                                                   @RequestParam Long userId,
+                                                                   @Valid SpendingAnalyticsFilter filter) {
+        return ResponseEntity.ok(spendingRollupService.getUserSpending(userId, filter));
+    }
+
+    /**
+     * Получение расходов с карты за дни или месяцы
+     *
+     * @param cardId id карты списания
+     * @param filter период агрегатов и диапазон дат {@link SpendingAnalyticsFilter}
+     * @return агрегаты по возрастанию периода
+     */
+    @GetMapping("/analytics/cards/{cardId}")
+    public ResponseEntity<List<SpendingRollupDto>> getCardSpending(@Positive(message = "Id must not be less than zero")
+                                                                   @PathVariable Long cardId,
+                                                                   @Valid SpendingAnalyticsFilter filter) {
+        return ResponseEntity.ok(spendingRollupService.getCardSpending(cardId, filter));
+    }
+
+    /**
+     * Перестраивает агрегаты расходов за прошедшие дни из истории переводов
+     *
+     * @param from первый перестраиваемый день
+     * @param to день, с которого агрегаты не перестраиваются; не позже текущего дня
+     * @return количество обработанных переводов и время перестроения
+     */
+    @PostMapping("/analytics/backfill")
+    public ResponseEntity<RollupBackfillResultDto> backfillSpending(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                    @AuthenticationPrincipal Jwt jwt) {
+        return ResponseEntity.ok(spendingRollupService.backfill(from, to, Long.valueOf(jwt.getSubject())));
+    }
+
+    /**
+     * Получение счетчиков попыток, конфликтов и повторов переводов
+     *
+     * @return счетчики с момента старта приложения
+     */
+    @GetMapping("/metrics/transfer-retries")
+    public ResponseEntity<TransferRetryMetricsDto> getTransferRetryMetrics() {
+        return ResponseEntity.ok(transferRetryExecutor.getMetrics());
+    }
+
+    /**
+     * Получение глубины очереди, отказов и задержек каждой полосы переводов
+     *
+     * @return счетчики полос с момента старта приложения; пустой список, если полосы выключены
+     */
+    @GetMapping("/metrics/transfer-lanes")
+    public ResponseEntity<List<TransferLaneMetricsDto>> getTransferLaneMetrics() {
+        return ResponseEntity.ok(transferLaneExecutor.getMetrics());
+    }
+
+    private static void prepareExport(HttpServletResponse response, ExportFormat format, String name) {
+        response.setContentType(format.getMediaType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(name + "." + format.getExtension()).build().toString());
+    }
+}
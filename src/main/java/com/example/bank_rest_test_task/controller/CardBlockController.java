@@ -3,7 +3,9 @@ package com.example.bank_rest_test_task.controller;
 import com.example.bank_rest_test_task.controller.documentation.CardBlockControllerDocs;
 import com.example.bank_rest_test_task.dto.*;
 import com.example.bank_rest_test_task.entity.BlockRequestStatus;
+import com.example.bank_rest_test_task.entity.CardBlockRequest;
 import com.example.bank_rest_test_task.service.CardBlockRequestService;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
 import com.example.bank_rest_test_task.util.factory.CardBlockRequestDtoFactory;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Positive;
@@ -11,6 +13,7 @@ import org.hibernate.validator.constraints.CreditCardNumber;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
@@ -21,17 +24,24 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.OffsetDateTime;
+import java.util.Set;
 
 @Validated
 @RestController
 @RequestMapping("/blocks")
 public class CardBlockController implements CardBlockControllerDocs {
+    // Атрибуты без null-значений: значения ключа сортировки записываются в курсор
+    private static final Set<String> SCROLL_SORT = Set.of("id", "createAt");
+
     private final CardBlockRequestService blockService;
     private final CardBlockRequestDtoFactory cardBlockRequestDtoFactory;
+    private final KeysetCursorCodec keysetCursorCodec;
 
-    public CardBlockController(CardBlockRequestService blockService, CardBlockRequestDtoFactory cardBlockRequestDtoFactory) {
+    public CardBlockController(CardBlockRequestService blockService, CardBlockRequestDtoFactory cardBlockRequestDtoFactory,
+                               KeysetCursorCodec keysetCursorCodec) {
         this.blockService = blockService;
         this.cardBlockRequestDtoFactory = cardBlockRequestDtoFactory;
+        this.keysetCursorCodec = keysetCursorCodec;
     }
 
     @PostMapping
@@ -73,6 +83,26 @@ public class CardBlockController implements CardBlockControllerDocs {
         return ResponseEntity.ok(PageResponse.from(request));
     }
 
+    /**
+     * Поиск заявок по фильтрам в режиме курсора: без общего количества и без OFFSET
+     *
+     * @param filter данные для фильтрации; {@link CardBlockRequestFilter}
+     * @param after курсор из поля {@code next} предыдущей страницы; без него возвращается первая страница
+     * @param pageable размер страницы и сортировка; номер страницы не используется
+     * @return страница заявок с курсором следующей страницы
+     */
+    @PostMapping("/search/scroll")
+    public ResponseEntity<CursorPageResponse<CardBlockRequestDto>> scrollCardBlockRequest(
+            @Valid @RequestBody CardBlockRequestFilter filter,
+            @RequestParam(value = "after", required = false) String after,
+            @PageableDefault(size = 6, sort = "createAt") Pageable pageable) {
+        Sort sort = KeysetCursorCodec.requireSortable(pageable.getSort(), SCROLL_SORT);
+        Window<CardBlockRequest> window = blockService.scrollCardBlockRequest(filter,
+                keysetCursorCodec.decode(after, CardBlockRequest.class, sort), sort, pageable.getPageSize());
+        return ResponseEntity.ok(CursorPageResponse.from(window.map(cardBlockRequestDtoFactory::creatCardBlockRequestDto),
+                keysetCursorCodec.nextCursor(window)));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<CardBlockRequestDto> findCardBlockRequestById(@Positive(message = "Id must be greater than zero")
                                                                          @PathVariable Long id) {
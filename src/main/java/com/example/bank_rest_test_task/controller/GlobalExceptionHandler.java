@@ -136,6 +136,15 @@ public class GlobalExceptionHandler {
                 .build(), HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyConflict(IdempotencyKeyConflictException ex) {
+        return new ResponseEntity<>(ErrorResponse.builder()
+                .timestamp(OffsetDateTime.now())
+                .message(ex.getMessage())
+                .code(HttpStatus.CONFLICT.value())
+                .build(), HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(InvalidAmountException.class)
     public ResponseEntity<ErrorResponse> handleInvalidAmount(InvalidAmountException ex) {
         return new ResponseEntity<>(ErrorResponse.builder()
@@ -145,6 +154,60 @@ public class GlobalExceptionHandler {
                 .build(), HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidCursor(InvalidCursorException ex) {
+        return new ResponseEntity<>(ErrorResponse.builder()
+                .timestamp(OffsetDateTime.now())
+                .message(ex.getMessage())
+                .code(HttpStatus.BAD_REQUEST.value())
+                .build(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidRollupRangeException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidRollupRange(InvalidRollupRangeException ex) {
+        return new ResponseEntity<>(ErrorResponse.builder()
+                .timestamp(OffsetDateTime.now())
+                .message(ex.getMessage())
+                .code(HttpStatus.BAD_REQUEST.value())
+                .build(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(RollupBackfillInProgressException.class)
+    public ResponseEntity<ErrorResponse> handleRollupBackfillInProgress(RollupBackfillInProgressException ex) {
+        return new ResponseEntity<>(ErrorResponse.builder()
+                .timestamp(OffsetDateTime.now())
+                .message(ex.getMessage())
+                .code(HttpStatus.CONFLICT.value())
+                .build(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(TransferConflictException.class)
+    public ResponseEntity<ErrorResponse> handleTransferConflict(TransferConflictException ex) {
+        return new ResponseEntity<>(ErrorResponse.builder()
+                .timestamp(OffsetDateTime.now())
+                .message(ex.getMessage())
+                .code(HttpStatus.CONFLICT.value())
+                .build(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(TransferLaneBusyException.class)
+    public ResponseEntity<ErrorResponse> handleTransferLaneBusy(TransferLaneBusyException ex) {
+        return new ResponseEntity<>(ErrorResponse.builder()
+                .timestamp(OffsetDateTime.now())
+                .message(ex.getMessage())
+                .code(HttpStatus.TOO_MANY_REQUESTS.value())
+                .build(), HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @ExceptionHandler(TransferOutcomeUnknownException.class)
+    public ResponseEntity<ErrorResponse> handleTransferOutcomeUnknown(TransferOutcomeUnknownException ex) {
+        return new ResponseEntity<>(ErrorResponse.builder()
+                .timestamp(OffsetDateTime.now())
+                .message(ex.getMessage())
+                .code(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                .build(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
     private String extractFieldName(ConstraintViolation<?> violation) {
         String path = violation.getPropertyPath().toString();
         return path.substring(path.lastIndexOf('.') + 1);
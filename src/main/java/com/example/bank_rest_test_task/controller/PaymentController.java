@@ -1,40 +1,174 @@
 package com.example.bank_rest_test_task.controller;
 
 import com.example.bank_rest_test_task.controller.documentation.PaymentControllerDocs;
+import com.example.bank_rest_test_task.dto.BatchPaymentDto;
+import com.example.bank_rest_test_task.dto.BatchPaymentResultDto;
 import com.example.bank_rest_test_task.dto.CardDto;
+import com.example.bank_rest_test_task.dto.CursorPageResponse;
 import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.dto.SpendingAnalyticsFilter;
+import com.example.bank_rest_test_task.dto.SpendingRollupDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryFilter;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.service.GroupCommitTransferExecutor;
+import com.example.bank_rest_test_task.service.PaymentIdempotencyService;
 import com.example.bank_rest_test_task.service.PaymentService;
+import com.example.bank_rest_test_task.service.SpendingRollupService;
+import com.example.bank_rest_test_task.service.TransferHistoryService;
+import com.example.bank_rest_test_task.service.TransferLaneExecutor;
+import com.example.bank_rest_test_task.service.TransferRetryExecutor;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
 import com.example.bank_rest_test_task.util.factory.CardDtoFactory;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import com.example.bank_rest_test_task.security.CustomUserDetails;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
 
+@Validated
 @RestController
 @RequestMapping("/payments")
 public class PaymentController implements PaymentControllerDocs {
     private final PaymentService paymentService;
+    private final PaymentIdempotencyService paymentIdempotencyService;
     private final CardDtoFactory cardDtoFactory;
+    private final TransferHistoryService transferHistoryService;
+    private final KeysetCursorCodec keysetCursorCodec;
+    private final SpendingRollupService spendingRollupService;
+    private final TransferRetryExecutor transferRetryExecutor;
+    private final GroupCommitTransferExecutor groupCommitTransferExecutor;
+    private final TransferLaneExecutor transferLaneExecutor;
 
-    public PaymentController(PaymentService paymentService, CardDtoFactory cardDtoFactory) {
+    public PaymentController(PaymentService paymentService, PaymentIdempotencyService paymentIdempotencyService,
+                             CardDtoFactory cardDtoFactory, TransferHistoryService transferHistoryService,
+                             KeysetCursorCodec keysetCursorCodec, SpendingRollupService spendingRollupService,
+                             TransferRetryExecutor transferRetryExecutor,
+                             GroupCommitTransferExecutor groupCommitTransferExecutor,
+                             TransferLaneExecutor transferLaneExecutor) {
         this.paymentService = paymentService;
+        this.paymentIdempotencyService = paymentIdempotencyService;
         this.cardDtoFactory = cardDtoFactory;
+        this.transferHistoryService = transferHistoryService;
+        this.keysetCursorCodec = keysetCursorCodec;
+        this.spendingRollupService = spendingRollupService;
+        this.transferRetryExecutor = transferRetryExecutor;
+        this.groupCommitTransferExecutor = groupCommitTransferExecutor;
+        this.transferLaneExecutor = transferLaneExecutor;
     }
 
+    /**
+     * Выполняет перевод; при наличии {@code Idempotency-Key} повтор запроса возвращает ответ первого выполнения.
+     * Перевод, конфликтующий с конкурентными изменениями карт, повторяется вместе с сохранением ключа идемпотентности.
+     * Перевод без ключа может быть зафиксирован в группе с другими ({@link GroupCommitTransferExecutor}).
+     * Переводы по одной карте выполняются по очереди на ее полосе ({@link TransferLaneExecutor})
+     *
+     * @param idempotencyKey ключ идемпотентности (необязательный)
+     * @param paymentDto перевод
+     * @return карты после перевода; {@code 409} если конфликт не разрешился за отведенные попытки;
+     *         {@code 429} если очередь полосы карты заполнена
+     */
     @PostMapping
     public ResponseEntity<List<CardDto>> transferMoney(@AuthenticationPrincipal Jwt jwt,
+                                                       @Size(min = 1, max = 100, message = "Idempotency key must be between 1 and 100 characters")
+                                                       @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
                                                        @Valid @RequestBody PaymentDto paymentDto) {
         Long userId = Long.valueOf(jwt.getSubject());
 
-        return ResponseEntity.ok(paymentService.transferMoney(paymentDto, userId).stream()
-                .map(cardDtoFactory::createCardDtoForUser).toList());
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(transferLaneExecutor.execute(paymentDto, () -> transferRetryExecutor.execute(() ->
+                    toCardDtos(groupCommitTransferExecutor.transferMoney(paymentDto, userId)))));
+        }
+        return ResponseEntity.ok(transferLaneExecutor.execute(paymentDto, () -> transferRetryExecutor.execute(() ->
+                paymentIdempotencyService.executeOnce(userId, idempotencyKey, paymentDto,
+                        () -> toCardDtos(paymentService.transferMoney(paymentDto, userId))))));
+    }
+
+    /**
+     * Выполняет пакет переводов в одной транзакции
+     *
+     * @param batchPaymentDto переводы и режим пакета
+     * @return результат по каждому переводу; {@code 422} если ни одно изменение не было применено
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchPaymentResultDto> transferMoneyBatch(@AuthenticationPrincipal Jwt jwt,
+                                                                    @Valid @RequestBody BatchPaymentDto batchPaymentDto) {
+        Long userId = Long.valueOf(jwt.getSubject());
+
+        BatchPaymentResultDto result = paymentService.transferMoneyBatch(batchPaymentDto.payments(), batchPaymentDto.mode(), userId);
+        return ResponseEntity.status(result.isCommitted() ? HttpStatus.OK : HttpStatus.UNPROCESSABLE_ENTITY).body(result);
+    }
+
+    /**
+     * Получение истории переводов текущего пользователя в режиме курсора, от новых к старым
+     *
+     * @param filter фильтры по карте, сумме и времени {@link TransferHistoryFilter}
+     * @param after курсор из поля {@code next} предыдущей страницы; без него возвращается первая страница
+     * @param pageable размер страницы; номер страницы и сортировка не используются
+     * @return страница истории с курсором следующей страницы
+     */
+    @GetMapping("/history")
+    public ResponseEntity<CursorPageResponse<TransferHistoryDto>> getTransferHistory(@AuthenticationPrincipal Jwt jwt,
+                                                                                     @Valid TransferHistoryFilter filter,
+                                                                                     @RequestParam(value = "after", required = false) String after,
+                                                                                     @PageableDefault(size = 6) Pageable pageable) {
+        Long userId = Long.valueOf(jwt.getSubject());
+
+        Window<TransferHistoryDto> window = transferHistoryService.scrollTransferHistory(userId, filter,
+                keysetCursorCodec.decode(after, TransferHistory.class, TransferHistoryService.HISTORY_SORT), pageable.getPageSize());
+        return ResponseEntity.ok(CursorPageResponse.from(window, keysetCursorCodec.nextCursor(window)));
+    }
+
+    /**
+     * Получение расходов текущего пользователя по всем его картам за дни или месяцы
+     *
+     * @param filter период агрегатов и диапазон дат {@link SpendingAnalyticsFilter}
+     * @return агрегаты по возрастанию периода
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<List<SpendingRollupDto>> getSpending(@AuthenticationPrincipal Jwt jwt,
+                                                               @Valid SpendingAnalyticsFilter filter) {
+        Long userId = Long.valueOf(jwt.getSubject());
+
+        return ResponseEntity.ok(spendingRollupService.getUserSpending(userId, filter));
+    }
+
+    /**
+     * Получение расходов с карты текущего пользователя за дни или месяцы
+     *
+     * @param cardId id карты списания
+     * @param filter период агрегатов и диапазон дат {@link SpendingAnalyticsFilter}
+     * @return агрегаты по возрастанию периода; для чужой карты - пустой список
+     */
+    @GetMapping("/analytics/cards/{cardId}")
+    public ResponseEntity<List<SpendingRollupDto>> getCardSpending(@AuthenticationPrincipal Jwt jwt,
+                                                                   @Positive(message = "Id must not be less than zero") @PathVariable Long cardId,
+                                                                   @Valid SpendingAnalyticsFilter filter) {
+        Long userId = Long.valueOf(jwt.getSubject());
+
+        return ResponseEntity.ok(spendingRollupService.getUserCardSpending(userId, cardId, filter));
+    }
+
+    private List<CardDto> toCardDtos(List<Card> cards) {
+        return cards.stream().map(cardDtoFactory::createCardDtoForUser).toList();
     }
 }
@@ -5,16 +5,19 @@ import com.example.bank_rest_test_task.dto.CardDto;
 import com.example.bank_rest_test_task.dto.PageResponse;
 import com.example.bank_rest_test_task.security.CustomUserDetails;
 import com.example.bank_rest_test_task.service.CardService;
+import com.example.bank_rest_test_task.service.CardStreamService;
 import com.example.bank_rest_test_task.util.factory.CardDtoFactory;
 import org.hibernate.validator.constraints.CreditCardNumber;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Validated
 @RestController
@@ -22,17 +25,26 @@ import org.springframework.web.bind.annotation.*;
 public class UserCardController implements UserCardControllerDocs {
     private final CardService cardService;
     private final CardDtoFactory cardDtoFactory;
+    private final CardStreamService cardStreamService;
 
-    public UserCardController(CardService cardService, CardDtoFactory cardDtoFactory) {
+    public UserCardController(CardService cardService, CardDtoFactory cardDtoFactory, CardStreamService cardStreamService) {
         this.cardService = cardService;
         this.cardDtoFactory = cardDtoFactory;
+        this.cardStreamService = cardStreamService;
+    }
+
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCardChanges(@AuthenticationPrincipal Jwt jwt,
+                                        @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        Long userId = Long.valueOf(jwt.getSubject());
+        return cardStreamService.subscribe(userId, lastEventId);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<CardDto> getCardById(@PathVariable Long id, @AuthenticationPrincipal Jwt jwt) {
         Long userId = Long.valueOf(jwt.getSubject());
         return ResponseEntity.ok(cardDtoFactory
-                .createCardDtoForUser(cardService.findCardByUserIdAndCardId(id, userId)));
+                .createCardDtoForUser(cardService.findCardSummaryByUserIdAndCardId(id, userId)));
     }
 
     @GetMapping()
@@ -40,7 +52,7 @@ public class UserCardController implements UserCardControllerDocs {
                                                               @PageableDefault(size = 6, sort = "balance") Pageable pageable) {
         Long userId = Long.valueOf(jwt.getSubject());
         return ResponseEntity.ok(
-                PageResponse.from(cardService.getUserCardsPaginated(userId, pageable).map(cardDtoFactory::createCardDtoForUser)));
+                PageResponse.from(cardService.getUserCardSummariesPaginated(userId, pageable).map(cardDtoFactory::createCardDtoForUser)));
     }
 }
 
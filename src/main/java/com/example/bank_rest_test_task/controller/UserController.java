@@ -4,12 +4,15 @@ import com.example.bank_rest_test_task.controller.documentation.UserControllerDo
 import com.example.bank_rest_test_task.dto.*;
 import com.example.bank_rest_test_task.entity.User;
 import com.example.bank_rest_test_task.service.UserService;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
 import com.example.bank_rest_test_task.util.factory.UserDtoFactory;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -18,16 +21,23 @@ import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Set;
+
 @Validated
 @RestController
 @RequestMapping("/users")
 public class UserController implements UserControllerDocs {
+    // Атрибуты без null-значений: значения ключа сортировки записываются в курсор
+    private static final Set<String> SCROLL_SORT = Set.of("id", "username", "role");
+
     private final UserService userService;
     private final UserDtoFactory userDtoFactory;
+    private final KeysetCursorCodec keysetCursorCodec;
 
-    public UserController(UserService userService, UserDtoFactory userDtoFactory) {
+    public UserController(UserService userService, UserDtoFactory userDtoFactory, KeysetCursorCodec keysetCursorCodec) {
         this.userService = userService;
         this.userDtoFactory = userDtoFactory;
+        this.keysetCursorCodec = keysetCursorCodec;
     }
 
     @PostMapping("/register")
@@ -61,6 +71,33 @@ public class UserController implements UserControllerDocs {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Получение всех пользователей в режиме курсора: без общего количества и без OFFSET
+     *
+     * @param after курсор из поля {@code next} предыдущей страницы; без него возвращается первая страница
+     * @param includeCards флаг для указания загрузить с картами или без
+     * @param pageable размер страницы и сортировка; номер страницы не используется
+     * @return страница пользователей с курсором следующей страницы
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageResponse<UserDto>> scrollAllUser(@RequestParam(value = "after", required = false) String after,
+                                                                     @RequestParam(value = "includeCards", defaultValue = "false") Boolean includeCards,
+                                                                     @PageableDefault(size = 6, sort = "id") Pageable pageable) {
+        Sort sort = KeysetCursorCodec.requireSortable(pageable.getSort(), SCROLL_SORT);
+        Window<User> window = userService.scrollUsers(keysetCursorCodec.decode(after, User.class, sort),
+                sort, pageable.getPageSize(), includeCards);
+
+        CursorPageResponse<UserDto> result = CursorPageResponse.from(window.map(u -> {
+            if (includeCards) {
+                return userDtoFactory.createUserDtoAndCardDtoForAdminWithCards(u);
+            } else {
+                return userDtoFactory.createUserDtoWithoutCards(u);
+            }
+        }), keysetCursorCodec.nextCursor(window));
+
+        return ResponseEntity.ok(result);
+    }
+
     //TODO написать swagger документацию и тест
     /**
      * Поиск пользователя по фильтрам
@@ -94,7 +131,7 @@ public class UserController implements UserControllerDocs {
     @GetMapping("/by-username/{username}")
     public ResponseEntity<UserDto> getUserByUsername(@Size(min = 3, max = 50,
             message = "Username must be between 3 and 100 characters long") @PathVariable String username) {
-        return ResponseEntity.ok(userDtoFactory.createUserDtoAndCardDtoForAdminWithCards(userService.findUserByUsername(username)));
+        return ResponseEntity.ok(userDtoFactory.createUserDtoAndCardDtoForAdminWithCards(userService.findUserWithCardsByUsername(username)));
     }
 
     @DeleteMapping("/by-username/{username}")
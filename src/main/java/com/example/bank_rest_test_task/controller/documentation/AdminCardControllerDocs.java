@@ -8,6 +8,8 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import io.swagger.v3.oas.annotations.Parameter;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
@@ -24,6 +26,8 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.io.IOException;
+
 @Tag(name = "Admin Card Management", description = "Endpoints for administrators to manage bank cards")
 public interface AdminCardControllerDocs {
 
@@ -182,4 +186,52 @@ public interface AdminCardControllerDocs {
     })
     ResponseEntity<PageResponse<CardDto>> searchCard(@Valid @RequestBody CardSearchFilter searchFilter,
                                                      @ParameterObject @PageableDefault(size = 6, sort = "validityPeriod") Pageable pageable);
+
+    @Operation(summary = "Get cards by cursor",
+            description = "Get all cards using keyset pagination without totals; pass 'next' from the response as 'after'; sort by id, validityPeriod, balance, statusCard")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Card found",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or unsupported sort",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                        "timestamp": "2024-07-30T12:34:56.789Z",
+                                        "message": "Cursor does not match the requested sort",
+                                        "code": 400
+                                    }""")))
+    })
+    ResponseEntity<CursorPageResponse<CardDto>> scrollAllCards(@RequestParam(value = "after", required = false) String after,
+                                                               @ParameterObject @PageableDefault(size = 6, sort = "validityPeriod") Pageable pageable);
+
+    @Operation(summary = "Get cards by filter and cursor",
+            description = "Get cards by filter using keyset pagination without totals; pass 'next' from the response as 'after'; sort by id, validityPeriod, balance, statusCard")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Card found",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or unsupported sort",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                        "timestamp": "2024-07-30T12:34:56.789Z",
+                                        "message": "Cursor is malformed",
+                                        "code": 400
+                                    }""")))
+    })
+    ResponseEntity<CursorPageResponse<CardDto>> scrollSearchCard(@Valid @RequestBody CardSearchFilter searchFilter,
+                                                                 @RequestParam(value = "after", required = false) String after,
+                                                                 @ParameterObject @PageableDefault(size = 6, sort = "validityPeriod") Pageable pageable);
+
+    @Operation(summary = "Export cards",
+            description = "Streams all cards with full card numbers in id order as NDJSON or CSV; memory use does not depend on the number of cards")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export is streamed",
+                    content = {@Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = CardExportDto.class)),
+                            @Content(mediaType = "text/csv")})
+    })
+    void exportCards(@RequestParam(value = "format", defaultValue = "NDJSON") ExportFormat format,
+            @Parameter(hidden = true) Jwt jwt,
+            @Parameter(hidden = true) HttpServletResponse response) throws IOException;
 }
@@ -0,0 +1,147 @@
+package com.example.bank_rest_test_task.controller.documentation;
+
+import com.example.bank_rest_test_task.dto.CursorPageResponse;
+import com.example.bank_rest_test_task.dto.ErrorResponse;
+import com.example.bank_rest_test_task.dto.ExportFormat;
+import com.example.bank_rest_test_task.dto.RollupBackfillResultDto;
+import com.example.bank_rest_test_task.dto.SpendingAnalyticsFilter;
+import com.example.bank_rest_test_task.dto.SpendingRollupDto;
+import com.example.bank_rest_test_task.dto.TransferExportDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryFilter;
+import com.example.bank_rest_test_task.dto.TransferLaneMetricsDto;
+import com.example.bank_rest_test_task.dto.TransferRetryMetricsDto;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Positive;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+@Tag(name = "Admin Payment Management", description = "Endpoints for administrators to review users' money transfers")
+public interface AdminPaymentControllerDocs {
+
+    @Operation(summary = "Get user's transfer history by cursor",
+            description = "Get the user's transfers from newest to oldest using keyset pagination without totals; " +
+                    "filters by card, amount range and time window are optional; pass 'next' from the response as 'after'")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Transfer history found",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CursorPageResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid filter or cursor",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                        "timestamp": "2024-07-30T12:34:56.789Z",
+                                        "message": "Cursor does not match the requested sort",
+                                        "code": 400
+                                    }""")))
+    })
+    ResponseEntity<CursorPageResponse<TransferHistoryDto>> getTransferHistory(@Positive(message = "Id must not be less than zero")
+                                                                              @RequestParam Long userId,
+                                                                              @Valid @ParameterObject TransferHistoryFilter filter,
+                                                                              @RequestParam(value = "after", required = false) String after,
+                                                                              @ParameterObject @PageableDefault(size = 6) Pageable pageable);
+
+    @Operation(summary = "Export transfer history",
+            description = "Streams the whole transfer history in id order as NDJSON or CSV; memory use does not depend on the number of transfers")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Export is streamed",
+                    content = {@Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = TransferExportDto.class)),
+                            @Content(mediaType = "text/csv")})
+    })
+    void exportTransfers(@RequestParam(value = "format", defaultValue = "NDJSON") ExportFormat format,
+            @Parameter(hidden = true) Jwt jwt,
+            @Parameter(hidden = true) HttpServletResponse response) throws IOException;
+
+    @Operation(summary = "Get user's spending",
+            description = "Get count, total, smallest and largest transfer from all user's cards per day or month; " +
+                    "reads precomputed rollups only, periods without transfers are omitted")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Spending found",
+                    content = @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = SpendingRollupDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Invalid user id or period range",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    ResponseEntity<List<SpendingRollupDto>> getUserSpending(@Positive(message = "Id must not be less than zero")
+                                                            @RequestParam Long userId,
+                                                            @Valid @ParameterObject SpendingAnalyticsFilter filter);
+
+    @Operation(summary = "Get card spending",
+            description = "Get count, total, smallest and largest transfer from the card per day or month; " +
+                    "reads precomputed rollups only, periods without transfers are omitted")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Spending found",
+                    content = @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = SpendingRollupDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Invalid card id or period range",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    ResponseEntity<List<SpendingRollupDto>> getCardSpending(@Positive(message = "Id must not be less than zero")
+                                                            @PathVariable Long cardId,
+                                                            @Valid @ParameterObject SpendingAnalyticsFilter filter);
+
+    @Operation(summary = "Rebuild spending rollups",
+            description = "Rebuilds daily rollups of past days [from, to) from transfer history in parallel chunks of user ids " +
+                    "and corrects monthly rollups accordingly; the current day is maintained by transfers and cannot be rebuilt")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rollups rebuilt",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = RollupBackfillResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid range",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                        "timestamp": "2024-07-30T12:34:56.789Z",
+                                        "message": "Backfill range must be non-empty and must not include the current day",
+                                        "code": 400
+                                    }"""))),
+            @ApiResponse(responseCode = "409", description = "Rebuild is already running",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    ResponseEntity<RollupBackfillResultDto> backfillSpending(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                             @Parameter(hidden = true) Jwt jwt);
+
+    @Operation(summary = "Get transfer retry metrics", description = "Returns attempt, conflict and retry counters of transfers " +
+            "since application start; conflicts come from concurrent updates of the same cards")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Metrics returned",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = TransferRetryMetricsDto.class)))
+    })
+    ResponseEntity<TransferRetryMetricsDto> getTransferRetryMetrics();
+
+    @Operation(summary = "Get transfer lane metrics", description = "Returns queue depth, rejected transfers and latency " +
+            "of each per-card transfer lane since application start; empty when lanes are disabled")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Metrics returned",
+                    content = @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = TransferLaneMetricsDto.class))))
+    })
+    ResponseEntity<List<TransferLaneMetricsDto>> getTransferLaneMetrics();
+}
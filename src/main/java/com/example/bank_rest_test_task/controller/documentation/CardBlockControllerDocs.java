@@ -137,4 +137,24 @@ public interface CardBlockControllerDocs {
     ResponseEntity<PageResponse<CardBlockRequestDto>> searchCardBlockRequest(
             @Valid @RequestBody CardBlockRequestFilter filter,
             @ParameterObject @PageableDefault(size = 6, sort = "createAr") Pageable pageable);
+
+    @Operation(summary = "Filter card block requests by cursor",
+            description = "Filter block requests using keyset pagination without totals; pass 'next' from the response as 'after'; sort by id, createAt")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found block requests",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or unsupported sort",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                        "timestamp": "2024-07-30T12:34:56.789Z",
+                                        "message": "Cursor does not match the requested sort",
+                                        "code": 400
+                                    }""")))
+    })
+    ResponseEntity<CursorPageResponse<CardBlockRequestDto>> scrollCardBlockRequest(
+            @Valid @RequestBody CardBlockRequestFilter filter,
+            @RequestParam(value = "after", required = false) String after,
+            @ParameterObject @PageableDefault(size = 6, sort = "createAt") Pageable pageable);
 }
@@ -1,11 +1,20 @@
 package com.example.bank_rest_test_task.controller.documentation;
 
+import com.example.bank_rest_test_task.dto.BatchPaymentDto;
+import com.example.bank_rest_test_task.dto.BatchPaymentResultDto;
 import com.example.bank_rest_test_task.dto.CardDto;
+import com.example.bank_rest_test_task.dto.CursorPageResponse;
 import com.example.bank_rest_test_task.dto.ErrorResponse;
 import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.dto.SpendingAnalyticsFilter;
+import com.example.bank_rest_test_task.dto.SpendingRollupDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryFilter;
 import org.springframework.security.oauth2.jwt.Jwt;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -13,16 +22,25 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 
 @Tag(name = "Payment Management", description = "Endpoints for money transfers between user's cards")
 public interface PaymentControllerDocs {
 
-    @Operation(summary = "Transfer money between cards", description = "Allows a user to transfer money between their own cards")
+    @Operation(summary = "Transfer money between cards", description = "Allows a user to transfer money between their own cards. " +
+            "When the Idempotency-Key header is set, a repeated request with the same key returns the stored response " +
+            "of the first successful transfer without transferring again")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Transfer successful",
                     content = @Content(mediaType = "application/json",
@@ -67,7 +85,131 @@ public interface PaymentControllerDocs {
                                         "timestamp": "2024-07-30T12:34:56.789Z",
                                         "message": "Card by id: 1 not found for user 1",
                                         "code": 404
+                                    }"""))),
+            @ApiResponse(responseCode = "409", description = "Idempotency key was already used with a different request, " +
+                    "or the transfer kept conflicting with concurrent updates of the cards after all retries",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = {
+                                    @ExampleObject(name = "Idempotency key reused", value = """
+                                            {
+                                                "timestamp": "2024-07-30T12:34:56.789Z",
+                                                "message": "Idempotency key: 7f1c2a was already used with a different request",
+                                                "code": 409
+                                            }"""),
+                                    @ExampleObject(name = "Concurrent update", value = """
+                                            {
+                                                "timestamp": "2024-07-30T12:34:56.789Z",
+                                                "message": "Transfer conflicted with concurrent updates, try again later",
+                                                "code": 409
+                                            }""")
+                            })),
+            @ApiResponse(responseCode = "429", description = "Too many transfers are queued for one of the cards",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                        "timestamp": "2024-07-30T12:34:56.789Z",
+                                        "message": "Too many transfers for card 1, try again later",
+                                        "code": 429
                                     }""")))
     })
-    ResponseEntity<List<CardDto>> transferMoney(@Parameter(hidden = true) Jwt jwt, @Valid @RequestBody PaymentDto paymentDto);
+    ResponseEntity<List<CardDto>> transferMoney(@Parameter(hidden = true) Jwt jwt,
+                                                @Parameter(in = ParameterIn.HEADER, name = "Idempotency-Key",
+                                                        description = "Unique key of the payment attempt; repeated requests with the same key are not executed twice",
+                                                        example = "7f1c2a64-4d1e-4b8a-9a43-0d7e5f1b2c3d")
+                                                @Size(min = 1, max = 100, message = "Idempotency key must be between 1 and 100 characters")
+                                                String idempotencyKey,
+                                                @Valid @RequestBody PaymentDto paymentDto);
+
+    @Operation(summary = "Transfer money in a batch",
+            description = "Executes a list of transfers between the user's own cards in one transaction. " +
+                    "ALL_OR_NOTHING applies the batch only if every transfer passes the checks, " +
+                    "BEST_EFFORT applies the valid transfers and skips the failed ones")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch applied; per-transfer results are returned",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BatchPaymentResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input data",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "422", description = "No transfer was applied; per-transfer results are returned",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BatchPaymentResultDto.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                        "mode": "ALL_OR_NOTHING",
+                                        "committed": false,
+                                        "succeeded": 0,
+                                        "failed": 1,
+                                        "items": [
+                                            {"index": 0, "fromCardId": 1, "toCardId": 2, "amount": 100.00, "status": "ROLLED_BACK", "message": null},
+                                            {"index": 1, "fromCardId": 2, "toCardId": 3, "amount": 900.00, "status": "FAILED", "message": "There are not enough funds on the card"}
+                                        ]
+                                    }""")))
+    })
+    ResponseEntity<BatchPaymentResultDto> transferMoneyBatch(@Parameter(hidden = true) Jwt jwt, @Valid @RequestBody BatchPaymentDto batchPaymentDto);
+
+    @Operation(summary = "Get transfer history by cursor",
+            description = "Get the current user's transfers from newest to oldest using keyset pagination without totals; " +
+                    "filters by card, amount range and time window are optional; pass 'next' from the response as 'after'")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Transfer history found",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CursorPageResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid filter or cursor",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                        "timestamp": "2024-07-30T12:34:56.789Z",
+                                        "message": "Cursor does not match the requested sort",
+                                        "code": 400
+                                    }""")))
+    })
+    ResponseEntity<CursorPageResponse<TransferHistoryDto>> getTransferHistory(@Parameter(hidden = true) Jwt jwt,
+                                                                              @Valid @ParameterObject TransferHistoryFilter filter,
+                                                                              @RequestParam(value = "after", required = false) String after,
+                                                                              @ParameterObject @PageableDefault(size = 6) Pageable pageable);
+
+    @Operation(summary = "Get own spending",
+            description = "Get count, total, smallest and largest transfer from all own cards per day or month; " +
+                    "reads precomputed rollups only, periods without transfers are omitted")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Spending found",
+                    content = @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = SpendingRollupDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Invalid period range",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                        "timestamp": "2024-07-30T12:34:56.789Z",
+                                        "message": "Validation failed",
+                                        "code": 400,
+                                        "validationErrors": [
+                                            {
+                                                "field": "rangeValid",
+                                                "message": "from must be before to"
+                                            }
+                                        ]
+                                    }""")))
+    })
+    ResponseEntity<List<SpendingRollupDto>> getSpending(@Parameter(hidden = true) Jwt jwt,
+                                                        @Valid @ParameterObject SpendingAnalyticsFilter filter);
+
+    @Operation(summary = "Get own card spending",
+            description = "Get count, total, smallest and largest transfer from the card per day or month; " +
+                    "reads precomputed rollups only, an empty list is returned for a card of another user")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Spending found",
+                    content = @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = SpendingRollupDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Invalid card id or period range",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    ResponseEntity<List<SpendingRollupDto>> getCardSpending(@Parameter(hidden = true) Jwt jwt,
+                                                            @Positive(message = "Id must not be less than zero") @PathVariable Long cardId,
+                                                            @Valid @ParameterObject SpendingAnalyticsFilter filter);
 }
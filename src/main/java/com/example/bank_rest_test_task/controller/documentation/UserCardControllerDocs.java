@@ -1,5 +1,6 @@
 package com.example.bank_rest_test_task.controller.documentation;
 
+import com.example.bank_rest_test_task.dto.CardChangeDto;
 import com.example.bank_rest_test_task.dto.CardDto;
 import com.example.bank_rest_test_task.dto.ErrorResponse;
 import com.example.bank_rest_test_task.dto.PageResponse;
@@ -20,6 +21,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Tag(name = "User Card Management", description = "Endpoints for users to view their own cards")
 public interface UserCardControllerDocs {
@@ -47,4 +49,25 @@ public interface UserCardControllerDocs {
                     content = @Content(mediaType = "application/json"))
     })
     ResponseEntity<PageResponse<CardDto>> getUserCards(@Parameter(hidden = true) Jwt jwt, @ParameterObject @PageableDefault(size = 6, sort = "balance") Pageable pageable);
+
+    @Operation(summary = "Stream changes of user cards",
+            description = """
+                    Server-Sent Events stream of the authenticated user's cards, replacing polling of GET /cards.
+                    After a transfer or a status change commits, a `card-changes` event is sent with an increasing
+                    event ID and a JSON array of changes: signed `balanceChange` of both transfer cards or the new `status`.
+                    A comment is sent periodically to keep the connection open. On reconnect the client sends
+                    the `Last-Event-ID` header and receives missed events; if they are no longer available,
+                    a `reset` event is sent and the client should reload its cards once.""")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream opened",
+                    content = @Content(mediaType = "text/event-stream",
+                            schema = @Schema(implementation = CardChangeDto.class),
+                            examples = @ExampleObject(value = """
+                                    id:1760779530123
+                                    event:card-changes
+                                    data:[{"cardId":1,"balanceChange":-100.5000,"status":null},{"cardId":2,"balanceChange":100.5000,"status":null}]
+                                    """)))
+    })
+    SseEmitter streamCardChanges(@Parameter(hidden = true) Jwt jwt,
+                                 @Parameter(description = "ID of the last received event, sent by the client on reconnect") Long lastEventId);
 }
@@ -201,4 +201,23 @@ public interface UserControllerDocs {
             @RequestParam(value = "roleName", required = false) String roleName,
             @RequestParam(value = "includeCards", defaultValue = "false") Boolean includeCards,
             @ParameterObject @PageableDefault(size = 6, sort = "id") Pageable d);
+
+    @Operation(summary = "Get users by cursor",
+            description = "Get all users using keyset pagination without totals; pass 'next' from the response as 'after'; sort by id, username, role")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Users found",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or unsupported sort",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                        "timestamp": "2024-07-30T12:34:56.789Z",
+                                        "message": "Cursor does not match the requested sort",
+                                        "code": 400
+                                    }""")))
+    })
+    ResponseEntity<CursorPageResponse<UserDto>> scrollAllUser(@RequestParam(value = "after", required = false) String after,
+                                                              @RequestParam(value = "includeCards", defaultValue = "false") Boolean includeCards,
+                                                              @ParameterObject @PageableDefault(size = 6, sort = "id") Pageable pageable);
 }
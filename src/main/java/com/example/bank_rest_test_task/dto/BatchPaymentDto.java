@@ -0,0 +1,19 @@
+package com.example.bank_rest_test_task.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "Request for a batch of payment transfers")
+public record BatchPaymentDto(
+        @Schema(description = "Transfers to execute in the given order")
+        @NotEmpty(message = "Batch must contain at least one transfer")
+        @Size(max = 500, message = "Batch must contain no more than 500 transfers")
+        List<@Valid PaymentDto> payments,
+        @Schema(description = "Batch mode; ALL_OR_NOTHING by default", example = "ALL_OR_NOTHING")
+        BatchPaymentMode mode
+) {
+}
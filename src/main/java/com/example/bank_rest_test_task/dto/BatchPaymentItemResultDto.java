@@ -0,0 +1,28 @@
+package com.example.bank_rest_test_task.dto;
+
+import com.example.bank_rest_test_task.util.money.Money;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of a single transfer in a batch")
+public class BatchPaymentItemResultDto {
+    @Schema(description = "Position of the transfer in the request", example = "0")
+    private int index;
+    @Schema(description = "ID of the card to transfer from", example = "1")
+    private Long fromCardId;
+    @Schema(description = "ID of the card to transfer to", example = "2")
+    private Long toCardId;
+    @Schema(description = "Amount to transfer", example = "100.50")
+    private Money amount;
+    @Schema(description = "Result status of the transfer")
+    private BatchPaymentItemStatus status;
+    @Schema(description = "Failure reason", example = "There are not enough funds on the card")
+    private String message;
+}
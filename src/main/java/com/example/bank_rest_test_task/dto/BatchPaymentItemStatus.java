@@ -0,0 +1,8 @@
+package com.example.bank_rest_test_task.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Result status of a single transfer in a batch")
+public enum BatchPaymentItemStatus {
+    SUCCESS, FAILED, ROLLED_BACK
+}
@@ -0,0 +1,16 @@
+package com.example.bank_rest_test_task.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Batch payment mode")
+public enum BatchPaymentMode {
+    /**
+     * Пакет применяется, только если все переводы прошли проверки; при первой ошибке не применяется ни один перевод
+     */
+    ALL_OR_NOTHING,
+
+    /**
+     * Применяются все переводы, прошедшие проверки; ошибочные переводы пропускаются
+     */
+    BEST_EFFORT
+}
@@ -0,0 +1,27 @@
+package com.example.bank_rest_test_task.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of a batch of payment transfers")
+public class BatchPaymentResultDto {
+    @Schema(description = "Batch mode that was applied")
+    private BatchPaymentMode mode;
+    @Schema(description = "Whether any balance changes were committed", example = "true")
+    private boolean committed;
+    @Schema(description = "Number of applied transfers", example = "9")
+    private int succeeded;
+    @Schema(description = "Number of failed transfers", example = "1")
+    private int failed;
+    @Schema(description = "Per-transfer results in request order")
+    private List<BatchPaymentItemResultDto> items;
+}
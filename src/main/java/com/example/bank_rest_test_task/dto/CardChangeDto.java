@@ -0,0 +1,19 @@
+package com.example.bank_rest_test_task.dto;
+
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.util.money.Money;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Изменение карты пользователя, отправляемое в поток событий
+ */
+@Schema(description = "Change of one card: balance change after a transfer or new status")
+public record CardChangeDto(
+        @Schema(description = "ID of the card", example = "2")
+        long cardId,
+        @Schema(description = "Signed balance change; null if the balance did not change", example = "-100.50")
+        Money balanceChange,
+        @Schema(description = "New status of the card; null if the status did not change", example = "BLOCKED")
+        StatusCard status
+) {
+}
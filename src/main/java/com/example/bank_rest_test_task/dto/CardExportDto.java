@@ -0,0 +1,24 @@
+package com.example.bank_rest_test_task.dto;
+
+import com.example.bank_rest_test_task.entity.StatusCard;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Schema(description = "Card row of the export")
+public record CardExportDto(
+        @Schema(description = "Card ID", example = "1")
+        Long cardId,
+        @Schema(description = "Full card number", example = "5555555555555599")
+        String cardNumber,
+        @Schema(description = "ID of the card owner", example = "1")
+        Long userId,
+        @Schema(description = "Expiration date of the card", example = "2028-12-31")
+        LocalDate validityPeriod,
+        @Schema(description = "Current status of the card")
+        StatusCard statusCard,
+        @Schema(description = "Current balance of the card", example = "1000.00")
+        BigDecimal balance
+) {
+}
@@ -0,0 +1,54 @@
+package com.example.bank_rest_test_task.dto;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Window;
+
+import java.util.List;
+
+/**
+ * Страница результата в режиме курсора (keyset).
+ *
+ * В отличие от {@link PageResponse} не содержит общего количества элементов и страниц,
+ * поэтому выборка выполняется без {@code COUNT(*)} и без OFFSET.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Cursor page response without totals")
+public class CursorPageResponse<T> {
+    @ArraySchema(
+            schema = @Schema(
+                    oneOf = {CardDto.class, CardBlockRequestDto.class, UserDto.class, TransferHistoryDto.class},
+                    description = "The items can be users cards, card blocking requests and transfer history entries"
+            )
+    )
+    private List<T> content;
+    @Schema(description = "How many elements are on the page", example = "6")
+    private int size;
+    @Schema(description = "There are more elements after this page", example = "true")
+    private boolean hasNext;
+    @Schema(description = "Opaque cursor for the next page; pass it as the 'after' parameter",
+            example = "dmFsaWRpdHlQZXJpb2Q9MjAzMC0wMS0wMSZpZD00Mg")
+    private String next;
+
+    /**
+     * Превращает {@link Window} в {@link CursorPageResponse}
+     *
+     * @param window окно результата
+     * @param next курсор следующей страницы; {@code null} если страница последняя
+     * @return превращенный результат
+     * @param <T> объекты, которые лежат в результате
+     */
+    public static <T> CursorPageResponse<T> from(Window<T> window, String next) {
+        return new CursorPageResponse<>(
+                window.getContent(),
+                window.size(),
+                window.hasNext(),
+                next
+        );
+    }
+}
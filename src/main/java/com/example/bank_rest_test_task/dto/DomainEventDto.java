@@ -0,0 +1,26 @@
+package com.example.bank_rest_test_task.dto;
+
+import com.example.bank_rest_test_task.entity.DomainEventType;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Доменное событие, доставленное из outbox
+ */
+@Schema(description = "Domain event")
+public record DomainEventDto(
+        @Schema(description = "Event ID; events are delivered in ascending order", example = "1050")
+        long id,
+        @Schema(description = "Type of the event")
+        DomainEventType type,
+        @Schema(description = "ID of the transfer, card or block request the event is about", example = "42")
+        long aggregateId,
+        @Schema(description = "ID of the user the event belongs to", example = "1")
+        Long userId,
+        @Schema(description = "Event data in JSON", example = "{\"cardId\":2,\"status\":\"BLOCKED\"}")
+        String payload,
+        @Schema(description = "Moment of the change", example = "2025-01-15T10:15:30Z")
+        OffsetDateTime createdAt
+) {
+}
@@ -0,0 +1,31 @@
+package com.example.bank_rest_test_task.dto;
+
+/**
+ * Формат выгрузки: одна строка на запись
+ */
+public enum ExportFormat {
+    /**
+     * JSON-объект на строку (newline-delimited JSON)
+     */
+    NDJSON("application/x-ndjson", "ndjson"),
+    /**
+     * CSV с заголовком, значения экранируются по RFC 4180
+     */
+    CSV("text/csv", "csv");
+
+    private final String mediaType;
+    private final String extension;
+
+    ExportFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
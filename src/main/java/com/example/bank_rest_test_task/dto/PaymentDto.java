@@ -1,12 +1,11 @@
 package com.example.bank_rest_test_task.dto;
 
-
+import com.example.bank_rest_test_task.util.money.Money;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
-
-import java.math.BigDecimal;
+import jakarta.validation.constraints.Size;
 
 @Schema(description = "Request for a payment transfer")
 public record PaymentDto(
@@ -19,8 +18,9 @@ public record PaymentDto(
         @Schema(description = "Amount to transfer", example = "100.50")
         @Digits(integer = 15, fraction = 4)
         @Positive(message = "Amount must not be less than zero")
-        BigDecimal amount,
+        Money amount,
         @Schema(description = "Comment for the payment", example = "Payment for goods")
+        @Size(max = 255, message = "Comment must be no longer than 255 characters")
         String comment
 ) {
 }
\ No newline at end of file
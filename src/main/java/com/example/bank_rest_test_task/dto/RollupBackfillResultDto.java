@@ -0,0 +1,27 @@
+package com.example.bank_rest_test_task.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of rebuilding spending rollups from transfer history")
+public class RollupBackfillResultDto {
+    @Schema(description = "First rebuilt day", example = "2025-01-01")
+    private LocalDate from;
+    @Schema(description = "Day after the last rebuilt day", example = "2025-02-01")
+    private LocalDate to;
+    @Schema(description = "Number of user id chunks processed in parallel", example = "4")
+    private int chunks;
+    @Schema(description = "Number of transfers aggregated", example = "125000")
+    private long transfers;
+    @Schema(description = "Duration of the rebuild in milliseconds", example = "1520")
+    private long durationMillis;
+}
@@ -0,0 +1,56 @@
+package com.example.bank_rest_test_task.dto;
+
+import com.example.bank_rest_test_task.entity.RollupPeriod;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Period range for spending analytics")
+public class SpendingAnalyticsFilter {
+    public static final int MAX_DAYS = 366;
+    public static final int MAX_MONTHS = 120;
+
+    @NotNull(message = "period must not be null")
+    @Builder.Default
+    @Schema(description = "Rollup period", example = "DAY", defaultValue = "DAY")
+    private RollupPeriod period = RollupPeriod.DAY;
+
+    @NotNull(message = "from must not be null")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    @Schema(description = "First day of the range. Format: ISO-8601", example = "2025-01-01")
+    private LocalDate from;
+
+    @NotNull(message = "to must not be null")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    @Schema(description = "Day after the range. Format: ISO-8601", example = "2025-02-01")
+    private LocalDate to;
+
+    // from < to (если обе заданы)
+    @AssertTrue(message = "from must be before to")
+    public boolean isRangeValid() {
+        if (from == null || to == null) return true;
+        return from.isBefore(to);
+    }
+
+    // Не больше MAX_DAYS дневных или MAX_MONTHS месячных агрегатов за запрос
+    @AssertTrue(message = "Range must not exceed 366 days or 120 months")
+    public boolean isRangeLimited() {
+        if (from == null || to == null || period == null) return true;
+        return period == RollupPeriod.DAY
+                ? ChronoUnit.DAYS.between(from, to) <= MAX_DAYS
+                : ChronoUnit.MONTHS.between(from, to) <= MAX_MONTHS;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.bank_rest_test_task.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Расходы за один день или месяц.
+ *
+ * Заполняется напрямую из таблицы агрегатов {@code spending_rollups}, история переводов не читается.
+ */
+@Schema(description = "Spending for one day or month")
+public record SpendingRollupDto(
+        @Schema(description = "First day of the period", example = "2025-01-01")
+        LocalDate periodStart,
+        @Schema(description = "Number of transfers", example = "12")
+        long count,
+        @Schema(description = "Total transferred amount", example = "1250.00")
+        BigDecimal total,
+        @Schema(description = "Smallest transfer", example = "5.00")
+        BigDecimal min,
+        @Schema(description = "Largest transfer", example = "500.00")
+        BigDecimal max
+) {
+}
@@ -0,0 +1,29 @@
+package com.example.bank_rest_test_task.dto;
+
+import com.example.bank_rest_test_task.util.money.Money;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Запись истории переводов.
+ *
+ * Заполняется напрямую из выборки колонок {@code transfers_history} (constructor expression):
+ * карты и пользователь не загружаются, вместо них возвращаются id.
+ */
+@Schema(description = "Transfer history entry")
+public record TransferHistoryDto(
+        @Schema(description = "Transfer ID", example = "42")
+        Long id,
+        @Schema(description = "ID of the card the money was transferred from", example = "1")
+        Long fromCardId,
+        @Schema(description = "ID of the card the money was transferred to", example = "2")
+        Long toCardId,
+        @Schema(description = "Transferred amount", example = "100.50")
+        Money amount,
+        @Schema(description = "Moment of the transfer", example = "2025-01-15T10:15:30Z")
+        OffsetDateTime timestamp,
+        @Schema(description = "Comment for the payment", example = "Payment for goods")
+        String comment
+) {
+}
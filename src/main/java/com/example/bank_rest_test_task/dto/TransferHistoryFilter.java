@@ -0,0 +1,59 @@
+package com.example.bank_rest_test_task.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Data for transfer history filter")
+public class TransferHistoryFilter {
+    @Schema(description = "Id of the card the money was transferred from or to", example = "1")
+    private Long cardId;
+
+    // Сумма положительная; до 4 знаков после запятой, как в переводе
+    @DecimalMin(value = "0.00", inclusive = true, message = "amountMin must be >= 0.00")
+    @Digits(integer = 15, fraction = 4, message = "amountMin must have up to 4 decimal places")
+    @Schema(description = "Minimum amount", example = "10.00")
+    private BigDecimal amountMin;
+
+    // Сумма положительная; до 4 знаков после запятой, как в переводе
+    @DecimalMin(value = "0.00", inclusive = true, message = "amountMax must be >= 0.00")
+    @Digits(integer = 15, fraction = 4, message = "amountMax must have up to 4 decimal places")
+    @Schema(description = "Maximum amount", example = "1000.00")
+    private BigDecimal amountMax;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    @Schema(description = "Transfers made at or after this moment. Format: ISO-8601", example = "2025-01-01T00:00:00Z")
+    private OffsetDateTime from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    @Schema(description = "Transfers made before this moment. Format: ISO-8601", example = "2025-02-01T00:00:00Z")
+    private OffsetDateTime to;
+
+    // amountMin <= amountMax (если обе заданы)
+    @AssertTrue(message = "amountMin must be less than or equal to amountMax")
+    public boolean isAmountRangeValid() {
+        if (amountMin == null || amountMax == null) return true;
+        return amountMin.compareTo(amountMax) <= 0;
+    }
+
+    // from < to (если обе заданы)
+    @AssertTrue(message = "from must be before to")
+    public boolean isTimeWindowValid() {
+        if (from == null || to == null) return true;
+        return from.isBefore(to);
+    }
+}
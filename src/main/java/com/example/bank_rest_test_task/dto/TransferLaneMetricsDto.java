@@ -0,0 +1,31 @@
+package com.example.bank_rest_test_task.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Counters of one transfer lane since application start")
+public class TransferLaneMetricsDto {
+    @Schema(description = "Lane number", example = "3")
+    private int lane;
+    @Schema(description = "Transfers waiting in the lane queue", example = "12")
+    private int queueDepth;
+    @Schema(description = "Maximum number of transfers waiting in the lane queue", example = "256")
+    private int queueCapacity;
+    @Schema(description = "Number of executed transfers, successful or not", example = "10000")
+    private long completed;
+    @Schema(description = "Number of transfers rejected because the queue was full", example = "5")
+    private long rejected;
+    @Schema(description = "Average time a transfer waited in the queue, ms", example = "0.8")
+    private double averageWaitMillis;
+    @Schema(description = "Average time from submission to completion, ms", example = "4.2")
+    private double averageLatencyMillis;
+    @Schema(description = "Maximum time from submission to completion, ms", example = "35.0")
+    private double maxLatencyMillis;
+}
@@ -0,0 +1,29 @@
+package com.example.bank_rest_test_task.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Transfer retry counters since application start")
+public class TransferRetryMetricsDto {
+    @Schema(description = "Transfer mode in use", example = "OPTIMISTIC_LOCK")
+    private String transferMode;
+    @Schema(description = "Number of transfer requests", example = "10000")
+    private long transfers;
+    @Schema(description = "Number of transfer attempts including retries", example = "10150")
+    private long attempts;
+    @Schema(description = "Number of attempts that failed on a concurrent update", example = "152")
+    private long conflicts;
+    @Schema(description = "Number of retries after a conflict", example = "150")
+    private long retries;
+    @Schema(description = "Number of transfers rejected after the retry budget was spent", example = "2")
+    private long exhausted;
+    @Schema(description = "Share of attempts that failed on a concurrent update", example = "0.015")
+    private double conflictRate;
+}
@@ -0,0 +1,50 @@
+package com.example.bank_rest_test_task.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * JPA-entity, представляет контрольную точку движка балансов ({@code payment.transfer.mode=BALANCE_ENGINE}).
+ *
+ * - {@link #journalSegment}, {@link #journalOffset} - позиция в журнале движка: балансы карт в базе данных
+ *   учитывают все записи журнала до этой позиции
+ *
+ * Особенности:
+ * - Строка одна ({@link #id} = 1); обновляется в одной транзакции с балансами карт.
+ * - Читается и пишется движком через JDBC; entity описывает таблицу для схемы.
+ */
+@Getter
+@Setter
+@Entity
+@Builder
+@Table(name = "balance_engine_checkpoints")
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceEngineCheckpoint {
+
+    /**
+     * Уникальный идентификатор (PK), всегда 1
+     */
+    @Id
+    private Long id;
+
+    /**
+     * Номер сегмента журнала
+     */
+    @Column(name = "journal_segment", nullable = false)
+    private Long journalSegment;
+
+    /**
+     * Смещение в сегменте журнала
+     */
+    @Column(name = "journal_offset", nullable = false)
+    private Integer journalOffset;
+
+    /**
+     * Время записи контрольной точки
+     */
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+}
@@ -1,9 +1,11 @@
 package com.example.bank_rest_test_task.entity;
 
+import com.example.bank_rest_test_task.util.money.Money;
+import com.example.bank_rest_test_task.util.money.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
 
@@ -13,26 +15,39 @@ import java.time.LocalDate;
  * - {@link #encryptNumber} - зашифрованный номер карты; шифруется во время создания
  * - {@link #searchHash} - hash код вычисляемый во время создания карты на основе полного номера карты
  * - {@link #user} - пользователь, которому принадлежит карта
+ * - {@link #last4Reversed} - последние 4 цифры в обратном порядке; заполняется перед сохранением из {@link #last4}
+ * - {@link #version} - версия строки для оптимистической блокировки; увеличивается при каждом изменении карты
  *
  * Особенности:
  * - Связь @ManyToOne без каскадов: связанный {@link User} должны существовать в бд.
+ * - Связь @ManyToOne ленивая (LAZY): нужные связи загружаются через @EntityGraph конкретного метода репозитория.
  */
 @Getter
 @Setter
 @Entity
-@Builder
+@Builder(toBuilder = true)
 @Table(name = "cards")
 @NoArgsConstructor
 @AllArgsConstructor
 public class Card {
 
     /**
-     * Уникальный идентификатор (PK), генерируется БД (IDENTITY)
+     * Уникальный идентификатор (PK), выделяется блоками из последовательности {@code cards_id_seq} (pooled-lo)
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_id_seq")
+    @SequenceGenerator(name = "cards_id_seq", sequenceName = "cards_id_seq", allocationSize = 50)
     private Long id;
 
+    /**
+     * Версия строки: Hibernate проверяет ее в {@code UPDATE} и увеличивает на 1; условные {@code UPDATE}
+     * репозитория увеличивают ее сами
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     /**
      * Зашифрованный номер карты
      */
@@ -57,8 +72,9 @@ public class Card {
      * При создании 0
      */
     @Builder.Default
-    @Column(name = "balance", nullable = false)
-    private BigDecimal balance = BigDecimal.ZERO;
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "balance", nullable = false, precision = 19, scale = Money.SCALE)
+    private Money balance = Money.ZERO;
 
     /**
      * Hash код для поиска карты
@@ -69,7 +85,7 @@ public class Card {
     /**
      * Пользователь, которому принадлежит карта
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
@@ -84,4 +100,19 @@ public class Card {
      */
     @Column(name = "last4", length = 4, nullable = false)
     private String last4;
+
+    /**
+     * Последние 4 цифры в обратном порядке.
+     * Поиск по концовке номера ({@code last4 LIKE '%suffix'}) превращается в поиск по началу
+     * ({@code last4_reversed LIKE 'xiffus%'}), который обслуживается индексом
+     */
+    @Setter(AccessLevel.NONE)
+    @Column(name = "last4_reversed", length = 4, nullable = false)
+    private String last4Reversed;
+
+    @PrePersist
+    @PreUpdate
+    void reverseLast4() {
+        last4Reversed = last4 == null ? null : new StringBuilder(last4).reverse().toString();
+    }
 }
@@ -16,6 +16,7 @@ import java.time.OffsetDateTime;
  *
  * Особенности:
  * - Связь @ManyToOne без каскадов: связанные {@link Card} и {@link User} должны существовать в бд.
+ * - Связь @ManyToOne ленивая (LAZY): нужные связи загружаются через @EntityGraph конкретного метода репозитория.
  */
 @Getter
 @Setter
@@ -27,24 +28,25 @@ import java.time.OffsetDateTime;
 public class CardBlockRequest {
 
     /**
-     * Уникальный идентификатор (PK), генерируется БД (IDENTITY)
+     * Уникальный идентификатор (PK), выделяется блоками из последовательности {@code card_block_requests_id_seq} (pooled-lo)
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_block_requests_id_seq")
+    @SequenceGenerator(name = "card_block_requests_id_seq", sequenceName = "card_block_requests_id_seq", allocationSize = 50)
     private Long id;
 
     /**
      * Карта, для которой создается заявка на блокировку.
      * Обязательное поле (NOT NULL)
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "card_id", nullable = false)
     private Card card;
 
     /**
      * Пользователь, инициировавший заявку
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User requester;
 
@@ -57,7 +59,7 @@ public class CardBlockRequest {
     /**
      * Сотрудник, обработавший заявку; null до обработки.
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "processed_by")
     private User processedBy;
 
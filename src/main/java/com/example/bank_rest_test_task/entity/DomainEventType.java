@@ -0,0 +1,8 @@
+package com.example.bank_rest_test_task.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Type of a domain event")
+public enum DomainEventType {
+    TRANSFER_COMPLETED, CARD_STATUS_CHANGED, CARD_BLOCK_REQUEST_PROCESSED
+}
@@ -0,0 +1,65 @@
+package com.example.bank_rest_test_task.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * JPA-entity, представляет доменное событие в таблице outbox.
+ *
+ * Событие вставляется в той же транзакции, что и изменение, о котором оно сообщает, поэтому оно появляется
+ * тогда и только тогда, когда изменение зафиксировано. Доставляет и удаляет события {@link com.example.bank_rest_test_task.service.OutboxRelay}.
+ *
+ * Особенности:
+ * - Id выделяются из последовательности блоками (pooled-lo), поэтому события пакета вставляются пачкой.
+ * - Пользователь и объект события хранятся как id без связей: событие не загружает их и переживает их удаление.
+ */
+@Getter
+@Setter
+@Entity
+@Builder
+@Table(name = "outbox_events")
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    /**
+     * Уникальный идентификатор (PK); задает порядок доставки событий
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_events_id_seq")
+    @SequenceGenerator(name = "outbox_events_id_seq", sequenceName = "outbox_events_id_seq", allocationSize = 50)
+    private Long id;
+
+    /**
+     * Тип события
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 50)
+    private DomainEventType eventType;
+
+    /**
+     * Id объекта события: записи истории перевода, карты или заявки на блокировку
+     */
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    /**
+     * Пользователь, к которому относится событие (владелец карты)
+     */
+    @Column(name = "user_id")
+    private Long userId;
+
+    /**
+     * Данные события в JSON
+     */
+    @Column(name = "payload", nullable = false, length = 2000)
+    private String payload;
+
+    /**
+     * Время изменения
+     */
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+}
@@ -0,0 +1,71 @@
+package com.example.bank_rest_test_task.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+/**
+ * JPA-entity, представляет ключ идемпотентности платежа ({@code Idempotency-Key}).
+ *
+ * - {@link #requestHash} - hash тела запроса; повтор ключа с другим телом отклоняется
+ * - {@link #responseBody} - сохраненный JSON ответа; возвращается при повторе запроса без повторного перевода
+ * - {@link #expiresAt} - после этого момента ключ считается недействительным и удаляется фоновой очисткой
+ *
+ * Особенности:
+ * - Пользователь хранится как id без связи @ManyToOne: при повторе запроса пользователь не загружается.
+ * - Пара (user_id, idempotency_key) уникальна; конкурентная вставка того же ключа ждет фиксации первой транзакции.
+ */
+@Getter
+@Setter
+@Entity
+@Builder
+@Table(name = "payment_idempotency_keys",
+        uniqueConstraints = @UniqueConstraint(name = "uq_payment_idempotency_user_key", columnNames = {"user_id", "idempotency_key"}))
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentIdempotencyKey {
+
+    /**
+     * Уникальный идентификатор (PK), генерируется БД (IDENTITY)
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Пользователь, совершивший платеж
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * Значение заголовка {@code Idempotency-Key}
+     */
+    @Column(name = "idempotency_key", nullable = false, length = 100)
+    private String idempotencyKey;
+
+    /**
+     * SHA-256 тела запроса в hex
+     */
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    /**
+     * JSON ответа на первый запрос
+     */
+    @Column(name = "response_body")
+    private String responseBody;
+
+    /**
+     * Время создания ключа
+     */
+    @Column(name = "create_at", nullable = false)
+    private OffsetDateTime createAt;
+
+    /**
+     * Время истечения ключа
+     */
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+}
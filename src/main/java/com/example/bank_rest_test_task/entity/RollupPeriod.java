@@ -0,0 +1,21 @@
+package com.example.bank_rest_test_task.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDate;
+
+/**
+ * Период агрегата расходов
+ */
+@Schema(description = "Period of spending rollup")
+public enum RollupPeriod {
+    DAY, MONTH;
+
+    /**
+     * @param date дата перевода
+     * @return первый день периода, в который попадает дата
+     */
+    public LocalDate periodStart(LocalDate date) {
+        return this == DAY ? date : date.withDayOfMonth(1);
+    }
+}
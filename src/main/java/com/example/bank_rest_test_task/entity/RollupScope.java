@@ -0,0 +1,11 @@
+package com.example.bank_rest_test_task.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Владелец агрегата расходов: карта списания или пользователь, выполнявший переводы
+ */
+@Schema(description = "Owner of spending rollup")
+public enum RollupScope {
+    CARD, USER
+}
@@ -0,0 +1,88 @@
+package com.example.bank_rest_test_task.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * JPA-entity, представляет агрегат расходов (переводов с карты) за день или месяц.
+ *
+ * - {@link #id} - владелец (карта списания или пользователь), период и первый день периода
+ * - {@link #userId} - пользователь, которому принадлежит агрегат; для агрегата карты - владелец карты
+ * - {@link #txCount}, {@link #totalAmount}, {@link #minAmount}, {@link #maxAmount} - количество, сумма,
+ *   минимальный и максимальный перевод за период
+ *
+ * Особенности:
+ * - Строки изменяются только прибавлением значений запросом {@code upsert}
+ *   ({@link com.example.bank_rest_test_task.repository.SpendingRollupRepositoryCustom#addAll}) в транзакции перевода,
+ *   поэтому сущность используется только для чтения и как набор прибавляемых значений.
+ * - Пользователь и карта хранятся как id без связей: аналитика читает только таблицу агрегатов.
+ */
+@Getter
+@Setter
+@Entity
+@Builder
+@Table(name = "spending_rollups")
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpendingRollup {
+
+    @EmbeddedId
+    private SpendingRollupId id;
+
+    /**
+     * Пользователь, которому принадлежит агрегат
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * Количество переводов за период
+     */
+    @Column(name = "tx_count", nullable = false)
+    private long txCount;
+
+    /**
+     * Сумма переводов за период
+     */
+    @Column(name = "total_amount", nullable = false, precision = 19, scale = 4)
+    private BigDecimal totalAmount;
+
+    /**
+     * Минимальный перевод за период
+     */
+    @Column(name = "min_amount", nullable = false, precision = 19, scale = 4)
+    private BigDecimal minAmount;
+
+    /**
+     * Максимальный перевод за период
+     */
+    @Column(name = "max_amount", nullable = false, precision = 19, scale = 4)
+    private BigDecimal maxAmount;
+
+    /**
+     * Добавляет перевод в агрегат
+     *
+     * @param amount сумма перевода
+     */
+    public void add(BigDecimal amount) {
+        add(1, amount, amount, amount);
+    }
+
+    /**
+     * Добавляет значения другого агрегата того же периода
+     *
+     * @param other прибавляемый агрегат
+     */
+    public void add(SpendingRollup other) {
+        add(other.txCount, other.totalAmount, other.minAmount, other.maxAmount);
+    }
+
+    private void add(long count, BigDecimal total, BigDecimal min, BigDecimal max) {
+        txCount += count;
+        totalAmount = totalAmount == null ? total : totalAmount.add(total);
+        minAmount = minAmount == null ? min : minAmount.min(min);
+        maxAmount = maxAmount == null ? max : maxAmount.max(max);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.bank_rest_test_task.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * Составной ключ агрегата расходов: владелец, период и первый день периода.
+ *
+ * Порядок {@link #ORDER} задает порядок обновления строк агрегатов, чтобы параллельные транзакции
+ * блокировали их в одной последовательности.
+ */
+@Getter
+@Embeddable
+@EqualsAndHashCode
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpendingRollupId implements Serializable {
+    public static final Comparator<SpendingRollupId> ORDER = Comparator.comparing(SpendingRollupId::getScope)
+            .thenComparing(SpendingRollupId::getOwnerId)
+            .thenComparing(SpendingRollupId::getPeriod)
+            .thenComparing(SpendingRollupId::getPeriodStart);
+
+    /**
+     * Владелец агрегата: карта или пользователь
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "scope", nullable = false, length = 10)
+    private RollupScope scope;
+
+    /**
+     * Id карты списания или пользователя, в зависимости от {@link #scope}
+     */
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    /**
+     * Период агрегата
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "period", nullable = false, length = 10)
+    private RollupPeriod period;
+
+    /**
+     * Первый день периода
+     */
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+}
@@ -1,12 +1,13 @@
 package com.example.bank_rest_test_task.entity;
 
+import com.example.bank_rest_test_task.util.money.Money;
+import com.example.bank_rest_test_task.util.money.MoneyConverter;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 
 @Data
@@ -18,23 +19,25 @@ import java.time.OffsetDateTime;
 public class TransferHistory {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfers_history_id_seq")
+    @SequenceGenerator(name = "transfers_history_id_seq", sequenceName = "transfers_history_id_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "from_card_id")
     private Card fromCard;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "to_card_id")
     private Card toCard;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
-    @Column(name = "amount")
-    private BigDecimal amount;
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "amount", precision = 19, scale = Money.SCALE)
+    private Money amount;
 
     @Column(name = "timestamp")
     private OffsetDateTime timestamp = OffsetDateTime.now();
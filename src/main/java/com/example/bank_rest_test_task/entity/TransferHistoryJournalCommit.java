@@ -0,0 +1,33 @@
+package com.example.bank_rest_test_task.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * JPA-entity, представляет отметку фиксации транзакции, записи истории которой добавлены в журнал
+ * ({@code payment.history.write-mode=JOURNAL}).
+ *
+ * - {@link #historyId} - id первой записи истории транзакции (id выделяются из последовательности до записи в журнал)
+ *
+ * Особенности:
+ * - Вставляется в транзакции перевода, поэтому существует, только если перевод зафиксирован: при восстановлении
+ *   после сбоя переносятся только записи журнала с отметкой.
+ * - Удаляется после переноса записей в {@code transfers_history}.
+ * - Читается и пишется журналом через JDBC; entity описывает таблицу для схемы.
+ */
+@Getter
+@Setter
+@Entity
+@Builder
+@Table(name = "transfer_history_journal_commits")
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferHistoryJournalCommit {
+
+    /**
+     * Id первой записи истории транзакции (PK)
+     */
+    @Id
+    @Column(name = "history_id")
+    private Long historyId;
+}
@@ -29,10 +29,11 @@ import java.util.List;
 public class User {
 
     /**
-     * Уникальный идентификатор (PK), генерируется БД (IDENTITY)
+     * Уникальный идентификатор (PK), выделяется блоками из последовательности {@code users_id_seq} (pooled-lo)
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50)
     private Long id;
 
     /**
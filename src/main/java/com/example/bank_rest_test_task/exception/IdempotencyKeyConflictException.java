@@ -0,0 +1,7 @@
+package com.example.bank_rest_test_task.exception;
+
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bank_rest_test_task.exception;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
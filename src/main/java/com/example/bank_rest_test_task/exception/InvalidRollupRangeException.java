@@ -0,0 +1,7 @@
+package com.example.bank_rest_test_task.exception;
+
+public class InvalidRollupRangeException extends RuntimeException {
+    public InvalidRollupRangeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bank_rest_test_task.exception;
+
+public class RollupBackfillInProgressException extends RuntimeException {
+    public RollupBackfillInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bank_rest_test_task.exception;
+
+public class TransferConflictException extends RuntimeException {
+    public TransferConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bank_rest_test_task.exception;
+
+public class TransferLaneBusyException extends RuntimeException {
+    public TransferLaneBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bank_rest_test_task.exception;
+
+public class TransferOutcomeUnknownException extends RuntimeException {
+    public TransferOutcomeUnknownException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
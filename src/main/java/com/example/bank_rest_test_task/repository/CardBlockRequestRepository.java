@@ -9,6 +9,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface CardBlockRequestRepository extends JpaRepository<CardBlockRequest, Long>, JpaSpecificationExecutor<CardBlockRequest> {
 
@@ -24,7 +26,23 @@ public interface CardBlockRequestRepository extends JpaRepository<CardBlockReque
     @EntityGraph(attributePaths = {"card", "requester", "processedBy"})
     Page<CardBlockRequest> findAll(Specification<CardBlockRequest> spec, Pageable pageable);
 
-
+    /**
+     * Получает заявки, обработанные указанным пользователем, вместе с картой, инициатором и обработчиком
+     *
+     * @param processedById id пользователя, обработавшего заявки
+     * @param pageable объект пагинации
+     * @return результат выборки
+     */
+    @EntityGraph(attributePaths = {"card", "requester", "processedBy"})
     Page<CardBlockRequest> findAllByProcessedBy_Id(Long processedById, Pageable pageable);
+
+    /**
+     * Получает заявку вместе с картой, инициатором и обработчиком одним запросом
+     *
+     * @param id заявки
+     * @return заявка со всеми связями для отображения
+     */
+    @EntityGraph(attributePaths = {"card", "requester", "processedBy"})
+    Optional<CardBlockRequest> findDetailedById(Long id);
 }
 
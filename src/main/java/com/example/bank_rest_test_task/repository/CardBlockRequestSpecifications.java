@@ -3,6 +3,7 @@ package com.example.bank_rest_test_task.repository;
 import com.example.bank_rest_test_task.dto.CardBlockRequestFilter;
 import com.example.bank_rest_test_task.entity.BlockRequestStatus;
 import com.example.bank_rest_test_task.entity.CardBlockRequest;
+import com.example.bank_rest_test_task.repository.search.UsernameSearch;
 import jakarta.persistence.criteria.JoinType;
 import org.springframework.data.jpa.domain.Specification;
 
@@ -31,13 +32,14 @@ public final class CardBlockRequestSpecifications {
                 requesterId == null ? null : cb.equal(root.get("requester").get("id"), requesterId);
     }
 
-    // По инициатору — username contains
-    public static Specification<CardBlockRequest> requesterUsernameContains(String usernameFragment) {
+    // По инициатору — username contains (pg_trgm на PostgreSQL, индекс триграмм в памяти на других базах)
+    public static Specification<CardBlockRequest> requesterUsernameContains(String usernameFragment,
+                                                                            UsernameSearch usernameSearch) {
         return (root, query, cb) -> {
             if (usernameFragment == null || usernameFragment.isBlank()) return null;
             var requester = root.join("requester", JoinType.INNER);
-            String term = "%" + usernameFragment.trim().toLowerCase() + "%";
-            return cb.like(cb.lower(requester.get("username")), term);
+            return UserSpecification.usernameContains(requester.get("id"), requester.get("username"),
+                    usernameFragment, usernameSearch, cb);
         };
     }
 
@@ -48,7 +50,7 @@ public final class CardBlockRequestSpecifications {
     }
 
 
-    // По фрагменту причины (reason contains, case-insensitive)
+    // По фрагменту причины (reason contains, case-insensitive); на PostgreSQL обслуживается GIN-индексом pg_trgm
     public static Specification<CardBlockRequest> reasonContains(String fragment) {
         return (root, query, cb) -> {
             if (fragment == null || fragment.isBlank()) return null;
@@ -77,15 +79,27 @@ public final class CardBlockRequestSpecifications {
         };
     }
 
+    // Загрузка карты, инициатора и обработчика тем же запросом; для запроса количества не применяется
+    public static Specification<CardBlockRequest> fetchDetails() {
+        return (root, query, cb) -> {
+            if (query != null && !Long.class.equals(query.getResultType())) {
+                root.fetch("card", JoinType.LEFT);
+                root.fetch("requester", JoinType.LEFT);
+                root.fetch("processedBy", JoinType.LEFT);
+            }
+            return null;
+        };
+    }
+
     // Агрегатор: собрать спецификацию из фильтра
-    public static Specification<CardBlockRequest> withFilter(CardBlockRequestFilter f) {
+    public static Specification<CardBlockRequest> withFilter(CardBlockRequestFilter f, UsernameSearch usernameSearch) {
         if (f == null) return Specification.unrestricted();
 
         return Specification.allOf(
                 hasStatus(f.getStatus()),
                 processed(f.getProcessed()),
                 requesterId(f.getRequesterId()),
-                requesterUsernameContains(f.getRequesterUsername()),
+                requesterUsernameContains(f.getRequesterUsername(), usernameSearch),
                 processedById(f.getProcessedById()),
                 reasonContains(f.getReasonContains()),
                 createdBetween(f.getCreatedFrom(), f.getCreatedTo()),
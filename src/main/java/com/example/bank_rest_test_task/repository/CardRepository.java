@@ -1,25 +1,127 @@
 package com.example.bank_rest_test_task.repository;
 
 import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.repository.projection.CardExportRow;
+import com.example.bank_rest_test_task.repository.projection.CardSummary;
+import com.example.bank_rest_test_task.util.money.Money;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card> {
-    @EntityGraph(attributePaths = {"user"})
+    /**
+     * Количество строк, получаемых из базы за одно обращение курсора при выгрузке
+     */
+    String EXPORT_FETCH_SIZE = "1000";
+
     Page<Card> findByUser_Id(Long userId, Pageable pageable);
     Optional<Card> findByEncryptNumberAndUser_Id(String encryptNumber, Long userId);
     Optional<Card> findByEncryptNumber(String encryptNumber);
     Optional<Card> findByIdAndUser_id(Long id, Long userId);
     Optional<Card> findBySearchHash(String searchHash);
-    @EntityGraph(attributePaths = {"user"})
     Page<Card> findByUser_Username(String userUsername, Pageable pageable);
     Boolean existsBySearchHash(String searchHash);
+    Page<CardSummary> findSummariesByUser_Id(Long userId, Pageable pageable);
+    Optional<CardSummary> findSummaryByIdAndUser_Id(Long id, Long userId);
+
+    /**
+     * Получает карты пользователя с блокировкой строк ({@code SELECT ... FOR UPDATE}).
+     *
+     * Строки блокируются в порядке возрастания id, поэтому встречные переводы A→B и B→A
+     * захватывают блокировки в одном и том же порядке и не приводят к взаимоблокировке.
+     *
+     * @param ids id блокируемых карт
+     * @param userId пользователь, которому должны принадлежать карты
+     * @return найденные карты, отсортированные по id
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids and c.user.id = :userId order by c.id")
+    List<Card> findAllByIdInAndUserIdForUpdate(@Param("ids") Collection<Long> ids, @Param("userId") Long userId);
+
+    /**
+     * Получает карты разных пользователей с блокировкой строк ({@code SELECT ... FOR UPDATE}) в порядке возрастания id
+     *
+     * @param ids id блокируемых карт
+     * @return найденные карты, отсортированные по id
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids order by c.id")
+    List<Card> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Получает карты пользователя без блокировки строк; изменения проверяются по версии при фиксации
+     *
+     * @param ids id карт
+     * @param userId пользователь, которому должны принадлежать карты
+     * @return найденные карты, отсортированные по id
+     */
+    @Query("select c from Card c where c.id in :ids and c.user.id = :userId order by c.id")
+    List<Card> findAllByIdInAndUserId(@Param("ids") Collection<Long> ids, @Param("userId") Long userId);
+
+    /**
+     * Списывает сумму с карты одним условным {@code UPDATE}.
+     *
+     * Строка изменяется, только если карта принадлежит пользователю, находится в одном из допустимых статусов
+     * и на ней достаточно средств.
+     *
+     * @return количество измененных строк: 1 - списание выполнено, 0 - условие не выполнено
+     */
+    @Modifying
+    @Query("""
+            update Card c set c.balance = c.balance - :amount, c.version = c.version + 1
+            where c.id = :id and c.user.id = :userId and c.statusCard in :statuses and c.balance >= :amount
+            """)
+    int debitIfAvailable(@Param("id") Long id, @Param("userId") Long userId,
+                         @Param("amount") Money amount, @Param("statuses") Collection<StatusCard> statuses);
+
+    /**
+     * Зачисляет сумму на карту одним условным {@code UPDATE}.
+     *
+     * Строка изменяется, только если карта принадлежит пользователю и находится в одном из допустимых статусов.
+     *
+     * @return количество измененных строк: 1 - зачисление выполнено, 0 - условие не выполнено
+     */
+    @Modifying
+    @Query("""
+            update Card c set c.balance = c.balance + :amount, c.version = c.version + 1
+            where c.id = :id and c.user.id = :userId and c.statusCard in :statuses
+            """)
+    int creditIfAvailable(@Param("id") Long id, @Param("userId") Long userId,
+                          @Param("amount") Money amount, @Param("statuses") Collection<StatusCard> statuses);
 
+    /**
+     * Все карты для выгрузки в порядке id, потоком через курсор JDBC.
+     *
+     * Строки читаются порциями по {@code fetchSize}; на PostgreSQL курсор работает только внутри транзакции,
+     * поэтому метод вызывается в read-only транзакции, а поток обязательно закрывается.
+     *
+     * @return поток строк карт с зашифрованными номерами
+     */
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.example.bank_rest_test_task.repository.projection.CardExportRow(
+                c.id, c.encryptNumber, c.user.id, c.validityPeriod, c.statusCard, c.balance)
+            from Card c order by c.id
+            """)
+    Stream<CardExportRow> streamExportRows();
 }
@@ -3,12 +3,16 @@ package com.example.bank_rest_test_task.repository;
 import com.example.bank_rest_test_task.dto.CardSearchFilter;
 import com.example.bank_rest_test_task.entity.Card;
 import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.money.Money;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.util.ArrayList;
 
 public final class CardSpecification {
+    private static final int FIRST8_LENGTH = 8;
+    private static final int LAST4_LENGTH = 4;
+
     private CardSpecification() {}
 
     public static Specification<Card> withFilter(CardSearchFilter f, CryptoService crypto) {
@@ -33,10 +37,10 @@ public final class CardSpecification {
             }
 
             if (f.getBalanceMin() != null) {
-                p.add(cb.greaterThanOrEqualTo(root.get("balance"), f.getBalanceMin()));
+                p.add(cb.greaterThanOrEqualTo(root.get("balance"), Money.ofClamped(f.getBalanceMin())));
             }
             if (f.getBalanceMax() != null) {
-                p.add(cb.lessThanOrEqualTo(root.get("balance"), f.getBalanceMax()));
+                p.add(cb.lessThanOrEqualTo(root.get("balance"), Money.ofClamped(f.getBalanceMax())));
             }
 
             // Точный поиск по searchHash
@@ -48,23 +52,24 @@ public final class CardSpecification {
                 }
             }
 
-            // По началу номера
+            // По началу номера (BIN): полный префикс - равенство, частичный - LIKE 'prefix%' по индексу varchar_pattern_ops
             if (notBlank(f.getFirst8Number())) {
                 String prefix = onlyDigits(f.getFirst8Number());
-                if (!prefix.isEmpty()) {
+                if (prefix.length() == FIRST8_LENGTH) {
+                    p.add(cb.equal(root.get("first8"), prefix));
+                } else if (!prefix.isEmpty()) {
                     p.add(cb.like(root.get("first8"), prefix + "%"));
                 }
             }
 
-            // По концовке номера
+            // По концовке номера: LIKE '%suffix' не использует индекс, поэтому ищем по началу перевернутых цифр
             if (notBlank(f.getLast4Number())) {
                 String suffix = onlyDigits(f.getLast4Number());
-                if (!suffix.isEmpty()) {
-                    if (suffix.length() == 4) {
-                        p.add(cb.equal(root.get("last4"), suffix));
-                    } else {
-                        p.add(cb.like(root.get("last4"), "%" + suffix));
-                    }
+                String reversed = new StringBuilder(suffix).reverse().toString();
+                if (suffix.length() == LAST4_LENGTH) {
+                    p.add(cb.equal(root.get("last4Reversed"), reversed));
+                } else if (!suffix.isEmpty()) {
+                    p.add(cb.like(root.get("last4Reversed"), reversed + "%"));
                 }
             }
 
@@ -0,0 +1,9 @@
+package com.example.bank_rest_test_task.repository;
+
+import com.example.bank_rest_test_task.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+}
@@ -0,0 +1,41 @@
+package com.example.bank_rest_test_task.repository;
+
+import com.example.bank_rest_test_task.entity.PaymentIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+@Repository
+public interface PaymentIdempotencyKeyRepository extends JpaRepository<PaymentIdempotencyKey, Long> {
+    Optional<PaymentIdempotencyKey> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    /**
+     * Удаляет истекшие ключи одним запросом, без загрузки сущностей
+     *
+     * @param moment граница истечения
+     * @return количество удаленных ключей
+     */
+    @Modifying
+    @Query("delete from PaymentIdempotencyKey k where k.expiresAt < :moment")
+    int deleteExpired(@Param("moment") OffsetDateTime moment);
+
+    /**
+     * Удаляет истекший, но еще не удаленный очисткой ключ пользователя, чтобы ключ можно было использовать снова
+     *
+     * @param userId id пользователя
+     * @param idempotencyKey значение ключа
+     * @param moment граница истечения
+     * @return количество удаленных ключей (0 или 1)
+     */
+    @Modifying
+    @Query("""
+            delete from PaymentIdempotencyKey k
+            where k.userId = :userId and k.idempotencyKey = :idempotencyKey and k.expiresAt <= :moment""")
+    int deleteExpiredKey(@Param("userId") Long userId, @Param("idempotencyKey") String idempotencyKey,
+                         @Param("moment") OffsetDateTime moment);
+}
@@ -0,0 +1,98 @@
+package com.example.bank_rest_test_task.repository;
+
+import com.example.bank_rest_test_task.dto.SpendingRollupDto;
+import com.example.bank_rest_test_task.entity.RollupPeriod;
+import com.example.bank_rest_test_task.entity.RollupScope;
+import com.example.bank_rest_test_task.entity.SpendingRollup;
+import com.example.bank_rest_test_task.entity.SpendingRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SpendingRollupRepository extends JpaRepository<SpendingRollup, SpendingRollupId>, SpendingRollupRepositoryCustom {
+
+    /**
+     * Агрегаты владельца за периоды {@code [from, to)} по первичному ключу
+     *
+     * @param scope владелец: карта или пользователь
+     * @param ownerId id карты или пользователя
+     * @param period день или месяц
+     * @param from первый день первого периода
+     * @param to день, с которого периоды не выбираются
+     * @return агрегаты по возрастанию периода
+     */
+    @Query("""
+            select new com.example.bank_rest_test_task.dto.SpendingRollupDto(
+                r.id.periodStart, r.txCount, r.totalAmount, r.minAmount, r.maxAmount)
+            from SpendingRollup r
+            where r.id.scope = :scope and r.id.ownerId = :ownerId and r.id.period = :period
+                and r.id.periodStart >= :from and r.id.periodStart < :to
+            order by r.id.periodStart
+            """)
+    List<SpendingRollupDto> findRollups(@Param("scope") RollupScope scope, @Param("ownerId") Long ownerId,
+                                        @Param("period") RollupPeriod period,
+                                        @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Агрегаты карты, принадлежащей пользователю, за периоды {@code [from, to)}
+     *
+     * @param cardId id карты
+     * @param userId id владельца карты; агрегаты чужой карты не возвращаются
+     * @param period день или месяц
+     * @param from первый день первого периода
+     * @param to день, с которого периоды не выбираются
+     * @return агрегаты по возрастанию периода
+     */
+    @Query("""
+            select new com.example.bank_rest_test_task.dto.SpendingRollupDto(
+                r.id.periodStart, r.txCount, r.totalAmount, r.minAmount, r.maxAmount)
+            from SpendingRollup r
+            where r.id.scope = com.example.bank_rest_test_task.entity.RollupScope.CARD and r.id.ownerId = :cardId
+                and r.id.period = :period and r.id.periodStart >= :from and r.id.periodStart < :to
+                and r.userId = :userId
+            order by r.id.periodStart
+            """)
+    List<SpendingRollupDto> findUserCardRollups(@Param("cardId") Long cardId, @Param("userId") Long userId,
+                                                @Param("period") RollupPeriod period,
+                                                @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Дневные агрегаты карт и пользователей из диапазона id пользователей за дни {@code [from, to)}
+     *
+     * @param userIdFrom первый id пользователя диапазона
+     * @param userIdTo последний id пользователя диапазона (включительно)
+     * @param from первый день
+     * @param to день, с которого агрегаты не выбираются
+     * @return дневные агрегаты
+     */
+    @Query("""
+            select r from SpendingRollup r
+            where r.userId between :userIdFrom and :userIdTo
+                and r.id.period = com.example.bank_rest_test_task.entity.RollupPeriod.DAY
+                and r.id.periodStart >= :from and r.id.periodStart < :to
+            """)
+    List<SpendingRollup> findDailyRollups(@Param("userIdFrom") Long userIdFrom, @Param("userIdTo") Long userIdTo,
+                                          @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Удаляет дневные агрегаты карт и пользователей из диапазона id пользователей за дни {@code [from, to)}
+     * одним запросом, без загрузки сущностей
+     *
+     * @return количество удаленных агрегатов
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            delete from SpendingRollup r
+            where r.userId between :userIdFrom and :userIdTo
+                and r.id.period = com.example.bank_rest_test_task.entity.RollupPeriod.DAY
+                and r.id.periodStart >= :from and r.id.periodStart < :to
+            """)
+    int deleteDailyRollups(@Param("userIdFrom") Long userIdFrom, @Param("userIdTo") Long userIdTo,
+                           @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,21 @@
+package com.example.bank_rest_test_task.repository;
+
+import com.example.bank_rest_test_task.entity.SpendingRollup;
+
+import java.util.Collection;
+
+/**
+ * Изменение агрегатов расходов прибавлением значений
+ */
+public interface SpendingRollupRepositoryCustom {
+
+    /**
+     * Прибавляет значения к сохраненным агрегатам; отсутствующие агрегаты создаются.
+     *
+     * Количество и сумма складываются, минимум и максимум выбираются из сохраненного и переданного значения.
+     * Строки изменяются в порядке {@link com.example.bank_rest_test_task.entity.SpendingRollupId#ORDER}.
+     *
+     * @param deltas прибавляемые значения; ключи не повторяются
+     */
+    void addAll(Collection<SpendingRollup> deltas);
+}
@@ -0,0 +1,102 @@
+package com.example.bank_rest_test_task.repository;
+
+import com.example.bank_rest_test_task.entity.SpendingRollup;
+import com.example.bank_rest_test_task.entity.SpendingRollupId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Реализация {@link SpendingRollupRepositoryCustom} через JDBC.
+ *
+ * - PostgreSQL - пакет {@code INSERT ... ON CONFLICT DO UPDATE}: вставка и прибавление атомарны,
+ *   конкурентное создание одной строки не приводит к ошибке;
+ * - остальные базы - {@code UPDATE}, при отсутствии строки {@code INSERT}, при конкурентной вставке
+ *   той же строки повторный {@code UPDATE}.
+ *
+ * Запросы выполняются в текущей транзакции JPA.
+ */
+class SpendingRollupRepositoryImpl implements SpendingRollupRepositoryCustom {
+    private static final String POSTGRESQL = "PostgreSQL";
+
+    private static final String UPSERT = """
+            insert into spending_rollups (scope, owner_id, period, period_start, user_id, tx_count, total_amount, min_amount, max_amount)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            on conflict (scope, owner_id, period, period_start) do update set
+                tx_count = spending_rollups.tx_count + excluded.tx_count,
+                total_amount = spending_rollups.total_amount + excluded.total_amount,
+                min_amount = least(spending_rollups.min_amount, excluded.min_amount),
+                max_amount = greatest(spending_rollups.max_amount, excluded.max_amount)
+            """;
+
+    private static final String UPDATE = """
+            update spending_rollups set
+                tx_count = tx_count + ?,
+                total_amount = total_amount + ?,
+                min_amount = least(min_amount, ?),
+                max_amount = greatest(max_amount, ?)
+            where scope = ? and owner_id = ? and period = ? and period_start = ?
+            """;
+
+    private static final String INSERT = """
+            insert into spending_rollups (scope, owner_id, period, period_start, user_id, tx_count, total_amount, min_amount, max_amount)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean postgres;
+
+    SpendingRollupRepositoryImpl(JdbcTemplate jdbcTemplate, DataSource dataSource) throws MetaDataAccessException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.postgres = POSTGRESQL.equalsIgnoreCase(
+                JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName));
+    }
+
+    @Override
+    public void addAll(Collection<SpendingRollup> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<SpendingRollup> ordered = deltas.stream()
+                .sorted((a, b) -> SpendingRollupId.ORDER.compare(a.getId(), b.getId()))
+                .toList();
+
+        if (postgres) {
+            jdbcTemplate.batchUpdate(UPSERT, ordered.stream().map(SpendingRollupRepositoryImpl::insertArgs).toList());
+            return;
+        }
+        ordered.forEach(this::updateOrInsert);
+    }
+
+    private void updateOrInsert(SpendingRollup delta) {
+        if (update(delta)) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT, insertArgs(delta));
+        } catch (DuplicateKeyException e) {
+            // Строку успела создать конкурентная транзакция
+            if (!update(delta)) {
+                throw e;
+            }
+        }
+    }
+
+    private boolean update(SpendingRollup delta) {
+        SpendingRollupId id = delta.getId();
+        return jdbcTemplate.update(UPDATE, delta.getTxCount(), delta.getTotalAmount(), delta.getMinAmount(), delta.getMaxAmount(),
+                id.getScope().name(), id.getOwnerId(), id.getPeriod().name(), id.getPeriodStart()) > 0;
+    }
+
+    private static Object[] insertArgs(SpendingRollup delta) {
+        SpendingRollupId id = delta.getId();
+        return new Object[]{id.getScope().name(), id.getOwnerId(), id.getPeriod().name(), id.getPeriodStart(),
+                delta.getUserId(), delta.getTxCount(), delta.getTotalAmount(), delta.getMinAmount(), delta.getMaxAmount()};
+    }
+}
@@ -1,14 +1,75 @@
 package com.example.bank_rest_test_task.repository;
 
+import com.example.bank_rest_test_task.dto.TransferExportDto;
 import com.example.bank_rest_test_task.entity.TransferHistory;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.EntityGraph;
+import com.example.bank_rest_test_task.repository.projection.TransferRollupRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.stream.Stream;
+
 @Repository
-public interface TransferHistoryRepository extends JpaRepository<TransferHistory, Long> {
-    @EntityGraph(attributePaths = {"user", "fromCard", "toCard"})
-    Page<TransferHistory> findByUser_Username(String userUsername, Pageable pageable);
+public interface TransferHistoryRepository extends JpaRepository<TransferHistory, Long>, TransferHistoryRepositoryCustom {
+
+    /**
+     * Вся история переводов для выгрузки в порядке id, потоком через курсор JDBC.
+     *
+     * Вызывается в read-only транзакции; поток обязательно закрывается.
+     *
+     * @return поток строк истории
+     */
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = CardRepository.EXPORT_FETCH_SIZE),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.example.bank_rest_test_task.dto.TransferExportDto(
+                t.id, t.user.id, t.fromCard.id, t.toCard.id, t.amount, t.timestamp, t.comment)
+            from TransferHistory t order by t.id
+            """)
+    Stream<TransferExportDto> streamExportRows();
+
+    /**
+     * История переводов пользователей из диапазона id за период {@code [from, to)} для построения агрегатов расходов,
+     * потоком через курсор JDBC.
+     *
+     * Выборка идет по покрывающему индексу {@code (user_id, timestamp, id)}. Вызывается в транзакции;
+     * поток обязательно закрывается.
+     *
+     * @param userIdFrom первый id пользователя диапазона
+     * @param userIdTo последний id пользователя диапазона (включительно)
+     * @param from начало периода
+     * @param to конец периода (не включается)
+     * @return поток строк истории
+     */
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = CardRepository.EXPORT_FETCH_SIZE),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.example.bank_rest_test_task.repository.projection.TransferRollupRow(
+                t.user.id, t.fromCard.id, t.amount, t.timestamp)
+            from TransferHistory t
+            where t.user.id between :userIdFrom and :userIdTo and t.timestamp >= :from and t.timestamp < :to
+            """)
+    Stream<TransferRollupRow> streamRollupRows(@Param("userIdFrom") Long userIdFrom, @Param("userIdTo") Long userIdTo,
+                                               @Param("from") OffsetDateTime from, @Param("to") OffsetDateTime to);
+
+    /**
+     * @return наименьший id пользователя в истории переводов; {@code null} если история пуста
+     */
+    @Query("select min(t.user.id) from TransferHistory t")
+    Long findMinUserId();
+
+    /**
+     * @return наибольший id пользователя в истории переводов; {@code null} если история пуста
+     */
+    @Query("select max(t.user.id) from TransferHistory t")
+    Long findMaxUserId();
 }
@@ -0,0 +1,27 @@
+package com.example.bank_rest_test_task.repository;
+
+import com.example.bank_rest_test_task.dto.TransferHistoryDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryFilter;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Выборка истории переводов в плоские записи, не требующие загрузки сущностей
+ */
+public interface TransferHistoryRepositoryCustom {
+
+    /**
+     * Страница истории переводов пользователя от новых к старым ({@code timestamp DESC, id DESC})
+     * в режиме курсора по индексу {@code (user_id, timestamp, id)}
+     *
+     * @param userId id пользователя, выполнявшего переводы
+     * @param filter фильтры по карте, сумме и времени; {@code null} - без фильтров
+     * @param afterTimestamp время последней записи предыдущей страницы; {@code null} - первая страница
+     * @param afterId id последней записи предыдущей страницы
+     * @param limit максимальное количество записей
+     * @return записи истории
+     */
+    List<TransferHistoryDto> findHistoryPage(Long userId, TransferHistoryFilter filter,
+                                             OffsetDateTime afterTimestamp, Long afterId, int limit);
+}
@@ -0,0 +1,82 @@
+package com.example.bank_rest_test_task.repository;
+
+import com.example.bank_rest_test_task.dto.TransferHistoryDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryFilter;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.util.money.Money;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реализация {@link TransferHistoryRepositoryCustom} через Criteria API.
+ *
+ * Условия добавляются только для заданных фильтров, поэтому в SQL не попадают конструкции
+ * {@code :param is null or ...}, мешающие планировщику. Связи {@code fromCard}, {@code toCard}
+ * и {@code user} читаются как внешние ключи без соединения таблиц.
+ *
+ * На PostgreSQL таблица разбита на партиции по месяцам {@code timestamp}: фильтры {@code from}/{@code to}
+ * и граница курсора {@code timestamp <= afterTimestamp} отсекают лишние партиции, а сортировка по
+ * {@code timestamp desc} совпадает с ключом разбиения, поэтому первая страница читается упорядоченным
+ * {@code Append} с конца и останавливается на самой свежей партиции, где набралось {@code limit} строк.
+ */
+class TransferHistoryRepositoryImpl implements TransferHistoryRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TransferHistoryDto> findHistoryPage(Long userId, TransferHistoryFilter filter,
+                                                    OffsetDateTime afterTimestamp, Long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TransferHistoryDto> query = cb.createQuery(TransferHistoryDto.class);
+        Root<TransferHistory> root = query.from(TransferHistory.class);
+
+        Path<Long> id = root.get("id");
+        Path<Long> fromCardId = root.get("fromCard").get("id");
+        Path<Long> toCardId = root.get("toCard").get("id");
+        Path<Money> amount = root.get("amount");
+        Path<OffsetDateTime> timestamp = root.get("timestamp");
+
+        var p = new ArrayList<Predicate>();
+        p.add(cb.equal(root.get("user").get("id"), userId));
+
+        if (filter != null) {
+            if (filter.getCardId() != null) {
+                p.add(cb.or(cb.equal(fromCardId, filter.getCardId()), cb.equal(toCardId, filter.getCardId())));
+            }
+            if (filter.getAmountMin() != null) {
+                p.add(cb.greaterThanOrEqualTo(amount, Money.ofClamped(filter.getAmountMin())));
+            }
+            if (filter.getAmountMax() != null) {
+                p.add(cb.lessThanOrEqualTo(amount, Money.ofClamped(filter.getAmountMax())));
+            }
+            if (filter.getFrom() != null) {
+                p.add(cb.greaterThanOrEqualTo(timestamp, filter.getFrom()));
+            }
+            if (filter.getTo() != null) {
+                p.add(cb.lessThan(timestamp, filter.getTo()));
+            }
+        }
+
+        // (timestamp, id) < (afterTimestamp, afterId); отдельное timestamp <= afterTimestamp задает границу диапазона индекса
+        if (afterTimestamp != null && afterId != null) {
+            p.add(cb.lessThanOrEqualTo(timestamp, afterTimestamp));
+            p.add(cb.or(cb.lessThan(timestamp, afterTimestamp),
+                    cb.and(cb.equal(timestamp, afterTimestamp), cb.lessThan(id, afterId))));
+        }
+
+        query.select(cb.construct(TransferHistoryDto.class, id, fromCardId, toCardId, amount, timestamp, root.get("comment")))
+                .where(p.toArray(new Predicate[0]))
+                .orderBy(cb.desc(timestamp), cb.desc(id));
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
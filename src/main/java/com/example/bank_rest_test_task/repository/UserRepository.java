@@ -1,10 +1,13 @@
 package com.example.bank_rest_test_task.repository;
 
 import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.repository.projection.UsernameEntry;
+import com.example.bank_rest_test_task.repository.search.UsernameSearch;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
@@ -21,13 +24,29 @@ import java.util.stream.Collectors;
 public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
     Optional<User> findByUsername(String username);
 
+    /**
+     * Получает пользователя вместе с картами одним запросом
+     *
+     * @param username имя пользователя
+     * @return пользователь с загруженными картами
+     */
+    @EntityGraph(attributePaths = {"cards"})
+    Optional<User> findWithCardsByUsername(String username);
+
     Boolean existsByUsername(String username);
 
-    default Page<User> searchUser(String username, String roleName, Pageable pageable) {
+    /**
+     * Получает id и имена всех пользователей для построения индекса поиска по имени
+     *
+     * @return пары id - имя
+     */
+    List<UsernameEntry> findUsernamesBy();
+
+    default Page<User> searchUser(String username, String roleName, UsernameSearch usernameSearch, Pageable pageable) {
         Specification<User> specification = Specification.unrestricted();
 
         specification = specification
-                .and(UserSpecification.hasUsername(username))
+                .and(UserSpecification.hasUsername(username, usernameSearch))
                 .and(UserSpecification.hasRole(roleName));
 
         return findAll(specification, pageable);
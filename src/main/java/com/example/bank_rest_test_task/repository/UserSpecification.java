@@ -2,6 +2,11 @@ package com.example.bank_rest_test_task.repository;
 
 import com.example.bank_rest_test_task.entity.User;
 import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.repository.search.UsernameSearch;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
 
 public final class UserSpecification {
@@ -10,18 +15,40 @@ public final class UserSpecification {
      *
      * @param usernameFragment имя пользователя может быть как полным так и какой-то из его частей при выборке будут
      *                         получены как и полные совпадения так и куда входит это подстрока
+     * @param usernameSearch поиск кандидатов по подстроке имени; см. {@link #usernameContains}
      * @return объект спецификации
      */
-    public static Specification<User> hasUsername(String usernameFragment) {
+    public static Specification<User> hasUsername(String usernameFragment, UsernameSearch usernameSearch) {
         return (root, query, cb) -> {
             if (usernameFragment == null || usernameFragment.isBlank()) return null;
 
-            String term = usernameFragment.trim().toLowerCase();
-
-            return cb.like(cb.lower(root.get("username")), "%" + term + "%");
+            return usernameContains(root.get("id"), root.get("username"), usernameFragment, usernameSearch, cb);
         };
     }
 
+    /**
+     * Регистронезависимое условие вхождения подстроки в имя пользователя.
+     *
+     * Условие {@code lower(username) LIKE '%term%'} на PostgreSQL обслуживается GIN-индексом pg_trgm;
+     * если {@link UsernameSearch} вернул кандидатов из индекса в памяти, условие дополнительно ограничивается их id.
+     *
+     * @param id путь к id пользователя
+     * @param username путь к имени пользователя
+     * @param usernameFragment искомая подстрока
+     * @param usernameSearch поиск кандидатов по подстроке имени
+     * @param cb построитель условий
+     * @return условие
+     */
+    static Predicate usernameContains(Path<Long> id, Expression<String> username, String usernameFragment,
+                                      UsernameSearch usernameSearch, CriteriaBuilder cb) {
+        String term = usernameFragment.trim().toLowerCase();
+        Predicate like = cb.like(cb.lower(username), "%" + term + "%");
+
+        return usernameSearch.findCandidateIds(term)
+                .map(ids -> ids.isEmpty() ? cb.disjunction() : cb.and(id.in(ids), like))
+                .orElse(like);
+    }
+
     /**
      * Поиск пользователя по роли
      *
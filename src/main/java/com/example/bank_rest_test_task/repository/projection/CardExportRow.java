@@ -0,0 +1,16 @@
+package com.example.bank_rest_test_task.repository.projection;
+
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.util.money.Money;
+
+import java.time.LocalDate;
+
+/**
+ * Строка карты для выгрузки.
+ *
+ * Заполняется constructor expression: объект не попадает в контекст персистентности, поэтому при чтении
+ * потока память не растет. Номер карты остается зашифрованным до этапа выгрузки.
+ */
+public record CardExportRow(Long id, String encryptNumber, Long userId, LocalDate validityPeriod,
+                            StatusCard statusCard, Money balance) {
+}
@@ -0,0 +1,24 @@
+package com.example.bank_rest_test_task.repository.projection;
+
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.util.money.Money;
+
+import java.time.LocalDate;
+
+/**
+ * Проекция карты для пользовательских ответов.
+ *
+ * Выбирает только {@code id, last4, validity_period, balance, status_card}:
+ * зашифрованный номер и связанный пользователь не загружаются, расшифровка не требуется.
+ */
+public interface CardSummary {
+    Long getId();
+
+    String getLast4();
+
+    LocalDate getValidityPeriod();
+
+    Money getBalance();
+
+    StatusCard getStatusCard();
+}
@@ -0,0 +1,14 @@
+package com.example.bank_rest_test_task.repository.projection;
+
+import com.example.bank_rest_test_task.util.money.Money;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Строка истории переводов для построения агрегатов расходов.
+ *
+ * Все колонки входят в покрывающий индекс {@code (user_id, timestamp, id)}, поэтому выборка по диапазону
+ * пользователей и времени не обращается к таблице.
+ */
+public record TransferRollupRow(Long userId, Long fromCardId, Money amount, OffsetDateTime timestamp) {
+}
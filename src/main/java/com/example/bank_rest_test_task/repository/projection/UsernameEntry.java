@@ -0,0 +1,10 @@
+package com.example.bank_rest_test_task.repository.projection;
+
+/**
+ * Проекция пользователя для построения индекса поиска по имени: только {@code id} и {@code username}
+ */
+public interface UsernameEntry {
+    Long getId();
+
+    String getUsername();
+}
@@ -0,0 +1,17 @@
+package com.example.bank_rest_test_task.repository.search;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Поиск подстроки силами базы.
+ *
+ * Для PostgreSQL условие {@code lower(username) LIKE '%term%'} обслуживается GIN-индексом pg_trgm
+ * по выражению {@code lower(username)}, поэтому дополнительный индекс в памяти не нужен.
+ */
+public class DatabaseUsernameSearch implements UsernameSearch {
+    @Override
+    public Optional<Collection<Long>> findCandidateIds(String term) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.bank_rest_test_task.repository.search;
+
+import com.example.bank_rest_test_task.repository.projection.UsernameEntry;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Индекс триграмм имен пользователей в памяти приложения для баз без pg_trgm.
+ *
+ * Для каждой триграммы хранится список позиций имен, в которых она встречается. Поиск берет самый короткий
+ * список среди триграмм фрагмента и проверяет вхождение подстроки только у этих имен.
+ *
+ * Индекс только дополняется: после переименования или удаления старая запись остается, поэтому результат -
+ * надмножество совпадений, которое окончательно проверяется в базе условием {@code LIKE}.
+ * Фрагменты короче триграммы и слишком частые фрагменты (больше {@code maxCandidates} совпадений)
+ * отдаются базе.
+ */
+public class NgramUsernameSearch implements UsernameSearch {
+    static final int GRAM_LENGTH = 3;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int maxCandidates;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int size;
+    private volatile boolean loaded;
+
+    /**
+     * @param maxCandidates максимальное количество id, передаваемых в запрос; при превышении поиск выполняет база
+     */
+    public NgramUsernameSearch(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+    }
+
+    @Override
+    public Optional<Collection<Long>> findCandidateIds(String term) {
+        if (!loaded || term == null || term.length() < GRAM_LENGTH) {
+            return Optional.empty();
+        }
+        String normalized = term.toLowerCase(Locale.ROOT);
+
+        lock.readLock().lock();
+        try {
+            IntList shortest = null;
+            for (long gram : grams(normalized)) {
+                IntList positions = postings.get(gram);
+                if (positions == null) {
+                    return Optional.of(List.of());
+                }
+                if (shortest == null || positions.size < shortest.size) {
+                    shortest = positions;
+                }
+            }
+
+            Set<Long> candidates = new LinkedHashSet<>();
+            for (int i = 0; i < shortest.size; i++) {
+                int position = shortest.values[i];
+                if (names[position].contains(normalized) && candidates.add(ids[position])
+                        && candidates.size() > maxCandidates) {
+                    return Optional.empty();
+                }
+            }
+            return Optional.of(candidates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(Long userId, String username) {
+        if (userId == null || username == null) {
+            return;
+        }
+        String normalized = username.toLowerCase(Locale.ROOT);
+
+        lock.writeLock().lock();
+        try {
+            int position = append(userId, normalized);
+            for (long gram : grams(normalized)) {
+                postings.computeIfAbsent(gram, g -> new IntList()).add(position);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void load(Supplier<List<UsernameEntry>> entries) {
+        for (UsernameEntry entry : entries.get()) {
+            index(entry.getId(), entry.getUsername());
+        }
+        loaded = true;
+    }
+
+    private int append(long userId, String normalized) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        ids[size] = userId;
+        names[size] = normalized;
+        return size++;
+    }
+
+    /**
+     * Различные триграммы строки; три символа упаковываются в одно число
+     */
+    private static Set<Long> grams(String value) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            grams.add(((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    /**
+     * Растущий массив позиций без упаковки в {@link Integer}
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.bank_rest_test_task.repository.search;
+
+import com.example.bank_rest_test_task.repository.projection.UsernameEntry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Поиск пользователей по подстроке имени.
+ *
+ * Используется спецификациями: если реализация вернула кандидатов, запрос ограничивается их id
+ * (условие {@code lower(username) LIKE '%term%'} остается и проверяет кандидатов в базе),
+ * иначе подстроку ищет сама база.
+ */
+public interface UsernameSearch {
+    /**
+     * @param term фрагмент имени в нижнем регистре
+     * @return id пользователей, среди которых находятся все совпадения; пустой {@link Optional} если поиск выполняет база
+     */
+    Optional<Collection<Long>> findCandidateIds(String term);
+
+    /**
+     * Добавляет имя пользователя в индекс после создания или переименования
+     *
+     * @param userId id пользователя
+     * @param username новое имя
+     */
+    default void index(Long userId, String username) {
+    }
+
+    /**
+     * Строит индекс по всем пользователям
+     *
+     * @param entries поставщик всех пар id - имя; вызывается только реализациями, которым нужен индекс
+     */
+    default void load(Supplier<List<UsernameEntry>> entries) {
+    }
+}
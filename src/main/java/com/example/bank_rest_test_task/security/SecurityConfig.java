@@ -75,12 +75,14 @@ public class SecurityConfig {
                                 "/webjars/**",
                                 "/error").permitAll()
                         .requestMatchers("/admin/cards/**").hasRole("ADMIN")
+                        .requestMatchers("/admin/payments/**").hasRole("ADMIN")
                         .requestMatchers("/users/**").hasRole("ADMIN")
                         .requestMatchers("/blocks/process",
                                 "/blocks/filter",
                                 "/blocks/processed-by/**",
                                 "/blocks/{id}",
-                                "/blocks/search").hasRole("ADMIN")
+                                "/blocks/search",
+                                "/blocks/search/scroll").hasRole("ADMIN")
                         .requestMatchers("/cards/**").hasAnyRole("USER", "ADMIN")
                         .requestMatchers("/payments/**").hasAnyRole("USER", "ADMIN")
                         .requestMatchers("/blocks").hasAnyRole("USER", "ADMIN")
@@ -0,0 +1,614 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.exception.CardNotFoundException;
+import com.example.bank_rest_test_task.exception.InsufficientFundsException;
+import com.example.bank_rest_test_task.exception.InvalidAmountException;
+import com.example.bank_rest_test_task.util.LogMarker;
+import com.example.bank_rest_test_task.util.MappedJournal;
+import com.example.bank_rest_test_task.util.OffHeapLongMap;
+import com.example.bank_rest_test_task.util.money.Money;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Движок балансов карт в памяти ({@link TransferMode#BALANCE_ENGINE}).
+ *
+ * Балансы карт, участвующих в переводах, хранятся в памяти вне кучи ({@link OffHeapLongMap}: id карты →
+ * баланс в минимальных единицах, 1/10000 по масштабу столбца {@code cards.balance}) и являются главными:
+ * транзакция перевода не блокирует и не изменяет строки {@code cards}. Логика:
+ * 1. Перевод проверяет достаточность средств и сразу списывает сумму; списание и зачисление добавляются в журнал
+ *    ({@link MappedJournal}) одной записью и сбрасываются на диск до возврата из {@link #transfer(List)}
+ * 2. Зачисление применяется после фиксации транзакции перевода, поэтому деньги незафиксированного перевода
+ *    нельзя потратить с карты получателя; при откате списание возвращается, а в журнал добавляется отметка отмены
+ * 3. Фоновый поток (контрольная точка, {@link #checkpoint()}) записывает в {@code cards.balance} балансы на позицию
+ *    журнала перед первым незавершенным переводом и сохраняет эту позицию в той же транзакции
+ *    ({@code balance_engine_checkpoints}); обработанные сегменты журнала удаляются
+ * 4. При запуске балансы читаются из базы данных (последняя контрольная точка), а записи журнала после нее
+ *    применяются заново. Перевод, для которого нет строк истории, не был зафиксирован (сбой между записью
+ *    в журнал и фиксацией) и пропускается с записью в аудит
+ *
+ * Балансы активных карт загружаются при запуске, остальных карт - при первом переводе. Балансы в базе данных
+ * отстают от движка не больше чем на интервал контрольных точек; {@code UPDATE} контрольной точки увеличивает
+ * версию карты, поэтому параллельное изменение карты с устаревшим балансом завершится конфликтом версий.
+ */
+@Slf4j
+@Service
+public class BalanceEngine {
+    private static final byte TRANSFERS = 1;
+    private static final byte CANCEL = 2;
+    private static final int ENTRY_SIZE = 32;
+    private static final int READ_BATCH_SIZE = 1000;
+    private static final int QUERY_CHUNK_SIZE = 500;
+    private static final long CHECKPOINT_ID = 1;
+
+    private static final String UPDATE_BALANCE = "update cards set balance = ?, version = version + 1 where id = ?";
+
+    private final boolean enabled;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService balanceEngineCheckpointer;
+    private final Duration checkpointInterval;
+    private final MappedJournal journal;
+    private final OffHeapLongMap balances;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeMap<MappedJournal.Position, Map<Long, Long>> pending = new TreeMap<>();
+    private MappedJournal.Position checkpointPosition;
+    private ScheduledFuture<?> checkpointTask;
+
+    /**
+     * При включенном движке открывает журнал и восстанавливает балансы по последней контрольной точке и журналу
+     *
+     * @param transferMode способ изменения балансов (из property); движок включен в режиме {@link TransferMode#BALANCE_ENGINE}
+     * @param jdbcTemplate чтение и запись балансов карт
+     * @param transactionManager менеджер транзакций контрольных точек
+     * @param transferHistoryJournal журнал истории; переносится в базу до восстановления, чтобы найти зафиксированные переводы
+     * @param balanceEngineCheckpointer поток контрольных точек
+     * @param dir каталог сегментов журнала (из property)
+     * @param segmentSize размер сегмента журнала в байтах (из property)
+     * @param fsync сбрасывать ли записи на диск до возврата из перевода (из property)
+     * @param checkpointInterval пауза между контрольными точками (из property)
+     * @param initialCapacity ожидаемое количество карт в памяти (из property)
+     */
+    public BalanceEngine(@Value("${payment.transfer.mode:PESSIMISTIC_LOCK}") TransferMode transferMode,
+                         JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         TransferHistoryJournal transferHistoryJournal,
+                         @Qualifier("balanceEngineCheckpointer") ScheduledExecutorService balanceEngineCheckpointer,
+                         @Value("${payment.transfer.engine.dir:./journal/balance-engine}") Path dir,
+                         @Value("${payment.transfer.engine.segment-size:67108864}") int segmentSize,
+                         @Value("${payment.transfer.engine.fsync:true}") boolean fsync,
+                         @Value("${payment.transfer.engine.checkpoint-interval:PT1S}") Duration checkpointInterval,
+                         @Value("${payment.transfer.engine.initial-capacity:65536}") int initialCapacity) {
+        this.enabled = transferMode == TransferMode.BALANCE_ENGINE;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.balanceEngineCheckpointer = balanceEngineCheckpointer;
+        this.checkpointInterval = checkpointInterval;
+        if (!enabled) {
+            this.journal = null;
+            this.balances = null;
+            return;
+        }
+        this.journal = new MappedJournal(dir, segmentSize, fsync);
+        this.balances = new OffHeapLongMap(initialCapacity);
+        transferHistoryJournal.drain();
+        recover(dir);
+    }
+
+    /**
+     * @return включен ли движок
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Списывает и зачисляет суммы переводов в текущей транзакции.
+     *
+     * Переводы проверяются по порядку на рабочих копиях балансов (зачисление предыдущего перевода можно
+     * потратить в следующем); если средств не хватает хотя бы для одного, ничего не применяется.
+     *
+     * @param movements переводы с id их записей истории
+     * @return балансы карт переводов после фиксации транзакции
+     * @throws InsufficientFundsException если на карте недостаточно средств
+     * @throws CardNotFoundException если карты нет в базе данных
+     * @throws InvalidAmountException если сумма не помещается в баланс
+     * @throws IllegalStateException если движок выключен или нет активной транзакции
+     */
+    public Map<Long, Money> transfer(List<Movement> movements) {
+        if (!enabled || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Balance engine requires BALANCE_ENGINE mode and an active transaction");
+        }
+        List<JournalEntry> entries = movements.stream()
+                .map(movement -> new JournalEntry(movement.historyId(), movement.fromCardId(), movement.toCardId(),
+                        movement.amount().minorUnits()))
+                .toList();
+        Set<Long> cardIds = new LinkedHashSet<>();
+        entries.forEach(entry -> {
+            cardIds.add(entry.fromCardId());
+            cardIds.add(entry.toCardId());
+        });
+        load(cardIds);
+
+        Map<Long, Money> result = new LinkedHashMap<>();
+        MappedJournal.Position position;
+        lock.lock();
+        try {
+            Map<Long, Long> working = new HashMap<>();
+            for (Long cardId : cardIds) {
+                if (!balances.containsKey(cardId)) {
+                    throw new CardNotFoundException("Card by id: %s not found".formatted(cardId));
+                }
+                working.put(cardId, balances.get(cardId, 0));
+            }
+            for (JournalEntry entry : entries) {
+                long fromBalance = working.get(entry.fromCardId());
+                if (fromBalance < entry.amount()) {
+                    throw new InsufficientFundsException("There are not enough funds on the card");
+                }
+                working.put(entry.fromCardId(), fromBalance - entry.amount());
+                working.put(entry.toCardId(), addExact(working.get(entry.toCardId()), entry.amount()));
+            }
+
+            Map<Long, Long> deltas = netDeltas(entries);
+            applyDebits(deltas, 1);
+            try {
+                position = journal.append(List.of(encodeTransfers(entries)));
+            } catch (RuntimeException e) {
+                applyDebits(deltas, -1);
+                throw e;
+            }
+            pending.put(position, deltas);
+            working.forEach((cardId, balance) -> result.put(cardId, Money.ofMinor(balance)));
+        } finally {
+            lock.unlock();
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                complete(position, status);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Возвращает текущие балансы карт, загружая отсутствующие в памяти карты из базы данных.
+     *
+     * Зачисления незафиксированных переводов не учитываются.
+     *
+     * @param cardIds id карт
+     * @return балансы найденных карт
+     * @throws IllegalStateException если движок выключен
+     */
+    public Map<Long, Money> balances(Collection<Long> cardIds) {
+        if (!enabled) {
+            throw new IllegalStateException("Balance engine requires BALANCE_ENGINE mode");
+        }
+        load(cardIds);
+        Map<Long, Money> result = new HashMap<>();
+        lock.lock();
+        try {
+            for (Long cardId : cardIds) {
+                if (balances.containsKey(cardId)) {
+                    result.put(cardId, Money.ofMinor(balances.get(cardId, 0)));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Запускает контрольные точки после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startCheckpoints() {
+        if (enabled) {
+            checkpointTask = balanceEngineCheckpointer.scheduleWithFixedDelay(this::checkpointQuietly,
+                    checkpointInterval.toMillis(), checkpointInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Останавливает контрольные точки, записывает последнюю и закрывает журнал
+     */
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        if (checkpointTask != null) {
+            checkpointTask.cancel(false);
+        }
+        checkpointQuietly();
+        journal.close();
+    }
+
+    /**
+     * Записывает в базу данных балансы карт, измененных с прошлой контрольной точки.
+     *
+     * Балансы вычисляются на позицию журнала перед первым незавершенным переводом: из текущих балансов
+     * вычитаются изменения записей после нее. Позиция сохраняется в одной транзакции с балансами,
+     * поэтому после сбоя записи журнала не применяются к балансам дважды.
+     *
+     * @return количество записанных балансов карт
+     */
+    public synchronized int checkpoint() {
+        if (!enabled) {
+            return 0;
+        }
+        MappedJournal.Position from = checkpointPosition;
+        MappedJournal.Position limit = journal.writePosition();
+        List<MappedJournal.Record> records = readAll(from, limit);
+
+        Map<Long, Long> snapshot = new HashMap<>();
+        Set<MappedJournal.Position> pendingNow;
+        MappedJournal.Position position;
+        lock.lock();
+        try {
+            records.addAll(readAll(limit, journal.writePosition()));
+            position = pending.isEmpty() ? journal.writePosition() : pending.firstKey();
+            pendingNow = new HashSet<>(pending.keySet());
+            for (MappedJournal.Record record : records) {
+                if (record.payload()[0] == TRANSFERS) {
+                    decodeTransfers(record.payload()).forEach(entry -> {
+                        snapshot.put(entry.fromCardId(), balances.get(entry.fromCardId(), 0));
+                        snapshot.put(entry.toCardId(), balances.get(entry.toCardId(), 0));
+                    });
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (records.isEmpty()) {
+            return 0;
+        }
+
+        subtractAfter(snapshot, records, position, pendingNow);
+        write(snapshot, position);
+        checkpointPosition = position;
+        journal.markDrained(position);
+        return snapshot.size();
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            log.error("Failed to write balance engine checkpoint, retrying later", e);
+        }
+    }
+
+    /**
+     * Завершает перевод после фиксации или отката его транзакции
+     */
+    private void complete(MappedJournal.Position position, int status) {
+        boolean committed = status != TransactionSynchronization.STATUS_ROLLED_BACK;
+        if (status == TransactionSynchronization.STATUS_UNKNOWN) {
+            log.error("Balance engine transfer at {} completed with unknown status, applying it as committed", position);
+        }
+        lock.lock();
+        try {
+            Map<Long, Long> deltas = pending.remove(position);
+            if (committed) {
+                deltas.forEach((cardId, delta) -> {
+                    if (delta > 0) {
+                        balances.put(cardId, balances.get(cardId, 0) + delta);
+                    }
+                });
+                return;
+            }
+            applyDebits(deltas, -1);
+            try {
+                journal.append(List.of(encodeCancel(position)));
+            } catch (RuntimeException e) {
+                log.error("Failed to journal cancellation of balance engine transfer at {}", position, e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Применяет ({@code sign = 1}) или возвращает ({@code sign = -1}) списания перевода
+     */
+    private void applyDebits(Map<Long, Long> deltas, int sign) {
+        deltas.forEach((cardId, delta) -> {
+            if (delta < 0) {
+                balances.put(cardId, balances.get(cardId, 0) + sign * delta);
+            }
+        });
+    }
+
+    /**
+     * Вычитает из снимка изменения записей, лежащих после позиции контрольной точки: у незавершенных переводов
+     * только списания, у зафиксированных - списания и зачисления; отмененные переводы вместе с отметками
+     * отмены баланс не меняют
+     */
+    private void subtractAfter(Map<Long, Long> snapshot, List<MappedJournal.Record> records,
+                               MappedJournal.Position position, Set<MappedJournal.Position> pendingNow) {
+        Set<MappedJournal.Position> cancelled = new HashSet<>();
+        for (MappedJournal.Record record : records) {
+            if (record.payload()[0] == CANCEL) {
+                cancelled.add(decodeCancel(record.payload()));
+            }
+        }
+        for (MappedJournal.Record record : records) {
+            if (record.position().compareTo(position) < 0 || record.payload()[0] != TRANSFERS
+                    || cancelled.contains(record.position())) {
+                continue;
+            }
+            boolean debitsOnly = pendingNow.contains(record.position());
+            netDeltas(decodeTransfers(record.payload())).forEach((cardId, delta) -> {
+                if (delta < 0 || !debitsOnly) {
+                    snapshot.merge(cardId, -delta, Long::sum);
+                }
+            });
+        }
+    }
+
+    private void recover(Path dir) {
+        MappedJournal.Position stored = loadCheckpoint();
+        MappedJournal.Position from = journal.drainedPosition();
+        if (stored != null && stored.compareTo(journal.writePosition()) > 0) {
+            log.warn("Balance engine checkpoint {} is ahead of journal {}, the journal was recreated", stored, dir);
+        } else if (stored != null && stored.compareTo(from) > 0) {
+            from = stored;
+        }
+        jdbcTemplate.query("select id, balance from cards where status_card = 'ACTIVE'",
+                rs -> {
+                    balances.put(rs.getLong(1), toMinor(rs.getBigDecimal(2)));
+                });
+
+        List<MappedJournal.Record> records = readAll(from, journal.writePosition());
+        if (records.isEmpty()) {
+            checkpointPosition = from;
+            return;
+        }
+        Set<MappedJournal.Position> cancelled = new HashSet<>();
+        Map<MappedJournal.Position, List<JournalEntry>> transfers = new LinkedHashMap<>();
+        for (MappedJournal.Record record : records) {
+            if (record.payload()[0] == CANCEL) {
+                cancelled.add(decodeCancel(record.payload()));
+            } else {
+                transfers.put(record.position(), decodeTransfers(record.payload()));
+            }
+        }
+        Set<Long> cardIds = new HashSet<>();
+        List<Long> historyIds = new ArrayList<>();
+        transfers.values().forEach(entries -> entries.forEach(entry -> {
+            cardIds.add(entry.fromCardId());
+            cardIds.add(entry.toCardId());
+            historyIds.add(entry.historyId());
+        }));
+        load(cardIds);
+        Set<Long> committedIds = existingHistoryIds(historyIds);
+
+        int replayed = 0;
+        int skipped = 0;
+        for (Map.Entry<MappedJournal.Position, List<JournalEntry>> transfer : transfers.entrySet()) {
+            if (cancelled.contains(transfer.getKey())) {
+                continue;
+            }
+            String ids = transfer.getValue().stream().map(entry -> String.valueOf(entry.historyId()))
+                    .collect(Collectors.joining(","));
+            if (transfer.getValue().stream().noneMatch(entry -> committedIds.contains(entry.historyId()))) {
+                skipped++;
+                log.warn(LogMarker.AUDIT.getMarker(), "action=REPLAY_BALANCE_ENGINE | result=FAILURE | reason=NOT_COMMITTED | position={} | historyIds={}",
+                        transfer.getKey(), ids);
+                continue;
+            }
+            netDeltas(transfer.getValue()).forEach((cardId, delta) -> {
+                if (balances.containsKey(cardId)) {
+                    balances.put(cardId, balances.get(cardId, 0) + delta);
+                }
+            });
+            replayed++;
+            log.warn(LogMarker.AUDIT.getMarker(), "action=REPLAY_BALANCE_ENGINE | result=SUCCESSFULLY | reason=JOURNAL_RECOVERY | position={} | historyIds={}",
+                    transfer.getKey(), ids);
+        }
+
+        Map<Long, Long> snapshot = new HashMap<>();
+        cardIds.stream().filter(balances::containsKey).forEach(cardId -> snapshot.put(cardId, balances.get(cardId, 0)));
+        MappedJournal.Position position = journal.writePosition();
+        write(snapshot, position);
+        checkpointPosition = position;
+        journal.markDrained(position);
+        log.warn("Balance engine journal {} recovered: {} transfers replayed, {} uncommitted skipped", dir, replayed, skipped);
+    }
+
+    /**
+     * Загружает из базы данных балансы карт, которых еще нет в памяти; баланс, уже находящийся в памяти, не заменяется
+     */
+    private void load(Collection<Long> cardIds) {
+        List<Long> missing = new ArrayList<>();
+        lock.lock();
+        try {
+            cardIds.stream().filter(cardId -> !balances.containsKey(cardId)).forEach(missing::add);
+        } finally {
+            lock.unlock();
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> loaded = new HashMap<>();
+        for (List<Long> chunk : chunks(missing)) {
+            jdbcTemplate.query("select id, balance from cards where id in (" + placeholders(chunk) + ")",
+                    rs -> {
+                        loaded.put(rs.getLong(1), toMinor(rs.getBigDecimal(2)));
+                    }, chunk.toArray());
+        }
+        lock.lock();
+        try {
+            loaded.forEach(balances::putIfAbsent);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Set<Long> existingHistoryIds(List<Long> historyIds) {
+        Set<Long> existing = new HashSet<>();
+        for (List<Long> chunk : chunks(historyIds)) {
+            existing.addAll(jdbcTemplate.queryForList(
+                    "select id from transfers_history where id in (" + placeholders(chunk) + ")", Long.class, chunk.toArray()));
+        }
+        return existing;
+    }
+
+    private void write(Map<Long, Long> snapshot, MappedJournal.Position position) {
+        List<Map.Entry<Long, Long>> rows = new ArrayList<>(snapshot.entrySet());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(UPDATE_BALANCE, rows, QUERY_CHUNK_SIZE, (ps, row) -> {
+                ps.setBigDecimal(1, Money.ofMinor(row.getValue()).toBigDecimal());
+                ps.setLong(2, row.getKey());
+            });
+            int updated = jdbcTemplate.update("update balance_engine_checkpoints set journal_segment = ?, journal_offset = ?, updated_at = ? where id = ?",
+                    position.segment(), position.offset(), OffsetDateTime.now(), CHECKPOINT_ID);
+            if (updated == 0) {
+                jdbcTemplate.update("insert into balance_engine_checkpoints (id, journal_segment, journal_offset, updated_at) values (?, ?, ?, ?)",
+                        CHECKPOINT_ID, position.segment(), position.offset(), OffsetDateTime.now());
+            }
+        });
+    }
+
+    private MappedJournal.Position loadCheckpoint() {
+        List<MappedJournal.Position> positions = jdbcTemplate.query(
+                "select journal_segment, journal_offset from balance_engine_checkpoints where id = ?",
+                (rs, rowNum) -> new MappedJournal.Position(rs.getLong(1), rs.getInt(2)), CHECKPOINT_ID);
+        return positions.isEmpty() ? null : positions.get(0);
+    }
+
+    private List<MappedJournal.Record> readAll(MappedJournal.Position from, MappedJournal.Position limit) {
+        List<MappedJournal.Record> records = new ArrayList<>();
+        MappedJournal.Position position = from;
+        List<MappedJournal.Record> batch;
+        while (!(batch = journal.read(position, limit, READ_BATCH_SIZE)).isEmpty()) {
+            records.addAll(batch);
+            position = batch.get(batch.size() - 1).next();
+        }
+        return records;
+    }
+
+    private static Map<Long, Long> netDeltas(List<JournalEntry> entries) {
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        for (JournalEntry entry : entries) {
+            deltas.merge(entry.fromCardId(), -entry.amount(), Long::sum);
+            deltas.merge(entry.toCardId(), entry.amount(), Long::sum);
+        }
+        return deltas;
+    }
+
+    private static long toMinor(BigDecimal amount) {
+        try {
+            return Money.of(amount).minorUnits();
+        } catch (ArithmeticException e) {
+            throw new InvalidAmountException("Amount %s is out of the balance range".formatted(amount.toPlainString()));
+        }
+    }
+
+    private static long addExact(long balance, long amount) {
+        try {
+            return Math.addExact(balance, amount);
+        } catch (ArithmeticException e) {
+            throw new InvalidAmountException("Balance after the transfer is out of the balance range");
+        }
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += QUERY_CHUNK_SIZE) {
+            chunks.add(ids.subList(i, Math.min(ids.size(), i + QUERY_CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(List<Long> ids) {
+        return ids.stream().map(id -> "?").collect(Collectors.joining(", "));
+    }
+
+    private static byte[] encodeTransfers(List<JournalEntry> entries) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + ENTRY_SIZE * entries.size());
+        buffer.put(TRANSFERS);
+        buffer.putInt(entries.size());
+        for (JournalEntry entry : entries) {
+            buffer.putLong(entry.historyId());
+            buffer.putLong(entry.fromCardId());
+            buffer.putLong(entry.toCardId());
+            buffer.putLong(entry.amount());
+        }
+        return buffer.array();
+    }
+
+    private static List<JournalEntry> decodeTransfers(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 1, payload.length - 1);
+        int count = buffer.getInt();
+        List<JournalEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new JournalEntry(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong()));
+        }
+        return entries;
+    }
+
+    private static byte[] encodeCancel(MappedJournal.Position position) {
+        return ByteBuffer.allocate(1 + 8 + 4)
+                .put(CANCEL)
+                .putLong(position.segment())
+                .putInt(position.offset())
+                .array();
+    }
+
+    private static MappedJournal.Position decodeCancel(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 1, payload.length - 1);
+        return new MappedJournal.Position(buffer.getLong(), buffer.getInt());
+    }
+
+    /**
+     * Перевод для движка
+     *
+     * @param historyId id записи истории перевода; по ней при восстановлении проверяется, зафиксирован ли перевод
+     * @param fromCardId карта списания
+     * @param toCardId карта зачисления
+     * @param amount сумма перевода
+     */
+    public record Movement(long historyId, long fromCardId, long toCardId, Money amount) {
+    }
+
+    /**
+     * Перевод в записи журнала; сумма в минимальных единицах
+     */
+    private record JournalEntry(long historyId, long fromCardId, long toCardId, long amount) {
+    }
+}
@@ -8,10 +8,14 @@ import com.example.bank_rest_test_task.exception.CardBlockedException;
 import com.example.bank_rest_test_task.exception.CardNotFoundException;
 import com.example.bank_rest_test_task.repository.CardBlockRequestRepository;
 import com.example.bank_rest_test_task.repository.CardBlockRequestSpecifications;
+import com.example.bank_rest_test_task.repository.search.UsernameSearch;
 import com.example.bank_rest_test_task.util.LogMarker;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -34,12 +38,17 @@ public class CardBlockRequestService {
     private final CardBlockRequestRepository cardBlockRequestRepository;
     private final UserService userService;
     private final CardService cardService;
+    private final UsernameSearch usernameSearch;
+    private final OutboxService outboxService;
 
     public CardBlockRequestService(CardBlockRequestRepository cardBlockRequestRepository,
-                                   UserService userService, CardService cardService) {
+                                   UserService userService, CardService cardService, UsernameSearch usernameSearch,
+                                   OutboxService outboxService) {
         this.cardBlockRequestRepository = cardBlockRequestRepository;
         this.userService = userService;
         this.cardService = cardService;
+        this.usernameSearch = usernameSearch;
+        this.outboxService = outboxService;
     }
 
     /**
@@ -77,7 +86,7 @@ public class CardBlockRequestService {
     }
 
     /**
-     * Обработка заявки администратором
+     * Обработка заявки администратором; решение записывается событием в outbox
      *
      * @param requestId id созданной заявки
      * @param status статус, который задает администратор
@@ -103,6 +112,7 @@ public class CardBlockRequestService {
         request.setProcessedAt(OffsetDateTime.now());
 
         cardBlockRequestRepository.save(request);
+        outboxService.recordBlockRequestProcessed(request);
 
         log.info(LogMarker.AUDIT.getMarker(), "action=PROCESS_BLOCK | result=SUCCESSFULLY | reason=- | requestId={} | adminId={}",
                 requestId, adminId);
@@ -116,7 +126,7 @@ public class CardBlockRequestService {
      * @return данные заявки
      */
     public CardBlockRequest findCardBlockRequestById(Long id) {
-        return cardBlockRequestRepository.findById(id).orElseThrow(
+        return cardBlockRequestRepository.findDetailedById(id).orElseThrow(
                 () -> new BlockRequestNotFoundException("Request for blocking by id: %s not found".formatted(id)));
     }
 
@@ -139,6 +149,23 @@ public class CardBlockRequestService {
      * @return результат поиска по фильтрам
      */
     public Page<CardBlockRequest> searCardBlockRequest(CardBlockRequestFilter filter, Pageable pageable) {
-        return cardBlockRequestRepository.findAll(CardBlockRequestSpecifications.withFilter(filter), pageable);
+        return cardBlockRequestRepository.findAll(CardBlockRequestSpecifications.withFilter(filter, usernameSearch), pageable);
+    }
+
+    /**
+     * Получает заявки на блокировку по фильтрам в режиме курсора (keyset) без подсчета общего количества.
+     * Карта, инициатор и обработчик загружаются тем же запросом.
+     *
+     * @param filter данные для фильтрации; {@link CardBlockRequestFilter}
+     * @param position позиция, после которой начинается страница
+     * @param sort сортировка; id добавляется как последний ключ автоматически
+     * @param limit размер страницы
+     * @return окно заявок
+     */
+    public Window<CardBlockRequest> scrollCardBlockRequest(CardBlockRequestFilter filter, KeysetScrollPosition position,
+                                                          Sort sort, int limit) {
+        return cardBlockRequestRepository.findBy(
+                CardBlockRequestSpecifications.withFilter(filter, usernameSearch).and(CardBlockRequestSpecifications.fetchDetails()),
+                query -> query.sortBy(sort).limit(limit).scroll(position));
     }
 }
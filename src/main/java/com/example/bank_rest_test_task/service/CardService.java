@@ -10,15 +10,29 @@ import com.example.bank_rest_test_task.exception.CardNotFoundException;
 import com.example.bank_rest_test_task.exception.UserNotFoundException;
 import com.example.bank_rest_test_task.repository.CardRepository;
 import com.example.bank_rest_test_task.repository.CardSpecification;
+import com.example.bank_rest_test_task.repository.projection.CardSummary;
 import com.example.bank_rest_test_task.util.CardFormattedService;
 import com.example.bank_rest_test_task.util.CryptoService;
 import com.example.bank_rest_test_task.util.LogMarker;
+import com.example.bank_rest_test_task.util.money.Money;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
 /**
  * Сервис управления картами.
  *
@@ -33,20 +47,28 @@ import org.springframework.transaction.annotation.Transactional;
 @Slf4j
 @Service
 public class CardService {
+    /**
+     * Статусы карт, по которым разрешено списание и зачисление
+     */
+    private static final Set<StatusCard> OPERABLE_STATUSES = EnumSet.of(StatusCard.ACTIVE, StatusCard.PENDING_BLOCKED);
+
     private final CardRepository cardRepository;
     private final CryptoService cryptoService;
     private final UserService userService;
-
+    private final OutboxService outboxService;
 
     /**
      * @param cardRepository репозиторий для работы с картами
      * @param cryptoService сервис для хеширования
      * @param userService сервис для работы с пользователями
+     * @param outboxService сервис для записи доменных событий
      */
-    public CardService(CardRepository cardRepository, CryptoService cryptoService, UserService userService) {
+    public CardService(CardRepository cardRepository, CryptoService cryptoService, UserService userService,
+                       OutboxService outboxService) {
         this.cardRepository = cardRepository;
         this.cryptoService = cryptoService;
         this.userService = userService;
+        this.outboxService = outboxService;
     }
 
 
@@ -66,7 +88,8 @@ public class CardService {
     @Transactional
     public void createCard(CardCreateDto cardCreateDto, Long adminId) throws UserNotFoundException {
         User user = userService.findUserById(cardCreateDto.userId());
-        if (cardRepository.existsBySearchHash(cryptoService.calculationCardHash(cardCreateDto.cardNumber()))) {
+        String searchHash = cryptoService.calculationCardHash(cardCreateDto.cardNumber());
+        if (cardRepository.existsBySearchHash(searchHash)) {
             throw new CardDuplicateException("Card by number: %s already exists".formatted(cardCreateDto.cardNumber()));
         }
 
@@ -76,7 +99,7 @@ public class CardService {
                 .encryptNumber(cryptoService.encrypt(cardCreateDto.cardNumber()))
                 .user(user)
                 .validityPeriod(cardCreateDto.validityPeriod())
-                .searchHash(cryptoService.calculationCardHash(cardCreateDto.cardNumber()))
+                .searchHash(searchHash)
                 .statusCard(StatusCard.ACTIVE)
                 .first8(CardFormattedService.getFirst8Number(cardCreateDto.cardNumber()))
                 .last4(cardLast4Num)
@@ -114,6 +137,31 @@ public class CardService {
         return cardRepository.findByUser_Id(userId, pageable);
     }
 
+    /**
+     * Получение проекций всех карт пользователя с пагинацией, без зашифрованного номера и пользователя
+     *
+     * @param userId пользователя к картам которого выполняется поиск
+     * @param pageable объект постраничного запроса
+     * @return проекции карт разделенные на страницы
+     */
+    public Page<CardSummary> getUserCardSummariesPaginated(Long userId, Pageable pageable) {
+        return cardRepository.findSummariesByUser_Id(userId, pageable);
+    }
+
+    /**
+     * Получение проекции указанной карты по id у указанного пользователя, без зашифрованного номера и пользователя
+     *
+     * @param cardId искомая карта
+     * @param userId пользователя которому должна принадлежать карта
+     * @return проекция карты
+     * @throws CardNotFoundException если карты с таким id не существует
+     */
+    public CardSummary findCardSummaryByUserIdAndCardId(Long cardId, Long userId) {
+        return cardRepository.findSummaryByIdAndUser_Id(cardId, userId).orElseThrow(
+                () -> new CardNotFoundException("Card by id: %s not found for user %s".formatted(cardId, userId))
+        );
+    }
+
     /**
      * Получение указанной карты по id у указанного пользователя
      *
@@ -128,6 +176,93 @@ public class CardService {
         );
     }
 
+    /**
+     * Блокирует карты пользователя до конца текущей транзакции.
+     *
+     * Логика:
+     * 1. Убирает повторяющиеся id и сортирует их по возрастанию
+     * 2. Выполняет {@code SELECT ... FOR UPDATE} с помощью метода {@link CardRepository#findAllByIdInAndUserIdForUpdate(Collection, Long)};
+     *    строки захватываются в порядке возрастания id, что исключает взаимоблокировки между встречными переводами
+     *
+     * Должен вызываться внутри транзакции, иначе блокировка снимается сразу после выборки.
+     *
+     * @param userId пользователь, которому должны принадлежать карты
+     * @param cardIds id блокируемых карт
+     * @return найденные карты в порядке возрастания id; отсутствующие или чужие карты в результат не попадают
+     */
+    public Map<Long, Card> lockUserCards(Long userId, Collection<Long> cardIds) {
+        Map<Long, Card> result = new LinkedHashMap<>();
+        cardRepository.findAllByIdInAndUserIdForUpdate(new TreeSet<>(cardIds), userId)
+                .forEach(card -> result.put(card.getId(), card));
+        return result;
+    }
+
+    /**
+     * Блокирует карты любых пользователей до конца текущей транзакции одним {@code SELECT ... FOR UPDATE}
+     * в порядке возрастания id (для группы переводов {@link GroupCommitTransferExecutor}).
+     *
+     * Принадлежность карт не проверяется: ее проверяет каждый перевод группы.
+     *
+     * @param cardIds id блокируемых карт
+     */
+    public void lockCards(Collection<Long> cardIds) {
+        cardRepository.findAllByIdInForUpdate(new TreeSet<>(cardIds));
+    }
+
+    /**
+     * Получает карты пользователя без блокировки строк (для {@link TransferMode#OPTIMISTIC_LOCK}).
+     *
+     * Изменение карт проверяется по версии при фиксации транзакции: если карту успела изменить другая
+     * транзакция, фиксация завершается {@link org.springframework.orm.ObjectOptimisticLockingFailureException}.
+     *
+     * @param userId пользователь, которому должны принадлежать карты
+     * @param cardIds id карт
+     * @return найденные карты в порядке возрастания id; отсутствующие или чужие карты в результат не попадают
+     */
+    public Map<Long, Card> findUserCards(Long userId, Collection<Long> cardIds) {
+        Map<Long, Card> result = new LinkedHashMap<>();
+        cardRepository.findAllByIdInAndUserId(new TreeSet<>(cardIds), userId)
+                .forEach(card -> result.put(card.getId(), card));
+        return result;
+    }
+
+    /**
+     * Списывает сумму с карты пользователя одним условным запросом
+     * {@link CardRepository#debitIfAvailable(Long, Long, Money, Collection)}.
+     *
+     * @param cardId карта списания
+     * @param userId пользователь, которому должна принадлежать карта
+     * @param amount сумма списания
+     * @return {@code true} если списание выполнено; {@code false} если карта не найдена,
+     * не доступна для операций или на ней недостаточно средств
+     */
+    public boolean tryDebitCard(Long cardId, Long userId, Money amount) {
+        return cardRepository.debitIfAvailable(cardId, userId, amount, OPERABLE_STATUSES) == 1;
+    }
+
+    /**
+     * Зачисляет сумму на карту пользователя одним условным запросом
+     * {@link CardRepository#creditIfAvailable(Long, Long, Money, Collection)}.
+     *
+     * @param cardId карта зачисления
+     * @param userId пользователь, которому должна принадлежать карта
+     * @param amount сумма зачисления
+     * @return {@code true} если зачисление выполнено; {@code false} если карта не найдена или не доступна для операций
+     */
+    public boolean tryCreditCard(Long cardId, Long userId, Money amount) {
+        return cardRepository.creditIfAvailable(cardId, userId, amount, OPERABLE_STATUSES) == 1;
+    }
+
+    /**
+     * Получение карт по списку id
+     *
+     * @param cardIds id искомых карт
+     * @return найденные карты
+     */
+    public List<Card> findCardsByIds(Collection<Long> cardIds) {
+        return cardRepository.findAllById(cardIds);
+    }
+
     /**
      * Получение указанной карты по номеру у указанного пользователя
      *
@@ -166,9 +301,15 @@ public class CardService {
     /**
      * Сохраняет карту
      *
+     * Номер карты, зашифрованный старым шифратором, перешифровывается текущим ключом
+     * ({@link CryptoService#needsReEncryption(String)}).
+     *
      * @param card данные карты в роли объекта {@link Card}
      */
     public void saveCard(Card card) {
+        if (cryptoService.needsReEncryption(card.getEncryptNumber())) {
+            card.setEncryptNumber(cryptoService.reEncrypt(card.getEncryptNumber()));
+        }
         cardRepository.save(card);
     }
 
@@ -184,7 +325,7 @@ public class CardService {
     }
 
     /**
-     * Обновление статуса карты по id
+     * Обновление статуса карты по id; изменение статуса записывается событием в outbox
      *
      * @param cardId обновляемой карты
      * @param newStatusCard новый статус карты
@@ -195,8 +336,13 @@ public class CardService {
     public Card updateCardStatus(Long cardId, StatusCard newStatusCard) {
         Card card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new CardNotFoundException("Card by id: %s not found".formatted(cardId)));
+        if (card.getStatusCard() == newStatusCard) {
+            return card;
+        }
         card.setStatusCard(newStatusCard);
-        return cardRepository.save(card);
+        Card saved = cardRepository.save(card);
+        outboxService.recordCardStatusChange(saved);
+        return saved;
     }
 
     /**
@@ -261,6 +407,35 @@ public class CardService {
     public Page<Card> searchCard(CardSearchFilter filter, Pageable pageable) {
         return cardRepository.findAll(CardSpecification.withFilter(filter, cryptoService), pageable);
     }
+
+    /**
+     * Получение всех карт в режиме курсора (keyset) без подсчета общего количества
+     *
+     * @param position позиция, после которой начинается страница
+     * @param sort сортировка; id добавляется как последний ключ автоматически
+     * @param limit размер страницы
+     * @return окно карт
+     */
+    public Window<Card> scrollAllCards(KeysetScrollPosition position, Sort sort, int limit) {
+        return scroll(Specification.unrestricted(), position, sort, limit);
+    }
+
+    /**
+     * Поиск карт по фильтрам в режиме курсора (keyset) без подсчета общего количества
+     *
+     * @param filter данные для фильтрации в виде объекта {@link CardSearchFilter}
+     * @param position позиция, после которой начинается страница
+     * @param sort сортировка; id добавляется как последний ключ автоматически
+     * @param limit размер страницы
+     * @return окно карт
+     */
+    public Window<Card> scrollSearchCard(CardSearchFilter filter, KeysetScrollPosition position, Sort sort, int limit) {
+        return scroll(CardSpecification.withFilter(filter, cryptoService), position, sort, limit);
+    }
+
+    private Window<Card> scroll(Specification<Card> specification, KeysetScrollPosition position, Sort sort, int limit) {
+        return cardRepository.findBy(specification, query -> query.sortBy(sort).limit(limit).scroll(position));
+    }
 }
 
 
@@ -0,0 +1,231 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.CardChangeDto;
+import com.example.bank_rest_test_task.dto.DomainEventDto;
+import com.example.bank_rest_test_task.util.money.Money;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поток изменений карт пользователя (Server-Sent Events) вместо периодического опроса {@code GET /cards}.
+ *
+ * Логика:
+ * 1. Получает доменные события из outbox ({@link DomainEventSink}) после фиксации перевода или смены статуса карты
+ *    и превращает их в изменения карт ({@link CardChangeDto}): перевод - изменение баланса обеих карт,
+ *    смена статуса (в том числе по заявке на блокировку) - новый статус. Карты из базы данных не читаются.
+ * 2. Отправляет изменения подписчикам владельца карт событием {@value #CHANGES_EVENT} с порядковым номером,
+ *    присвоенным при публикации. Id событий outbox для этого не подходят: они выделяются при вставке, а не
+ *    при фиксации, и событие с меньшим id может прийти позже. Номера начинаются с времени запуска
+ *    в миллисекундах, чтобы номера прошлого запуска были меньше.
+ * 3. Хранит последние {@code replay-size} событий: подписчик, переподключившийся с заголовком {@code Last-Event-ID},
+ *    получает события с большим номером. Если пропущенные события уже вытеснены, были до запуска приложения
+ *    или номер неизвестен этому экземпляру, подписчик получает событие {@value #RESET_EVENT}
+ *    и должен один раз перечитать карты.
+ * 4. Каждые {@code heartbeat-interval} отправляет комментарий, чтобы прокси не закрывали простаивающие соединения.
+ *
+ * Соединение удерживается асинхронным запросом сервлета и не занимает поток. Подписки, буфер событий и запись
+ * в соединения изменяются только в потоке {@code cardStreamExecutor}, поэтому медленный клиент не задерживает
+ * доставку outbox, а порядок событий сохраняется.
+ *
+ * События получает только экземпляр приложения, доставивший их из outbox: при нескольких экземплярах
+ * подписчик получает изменения, обработанные его экземпляром.
+ */
+@Slf4j
+@Service
+public class CardStreamService implements DomainEventSink {
+    private static final String CHANGES_EVENT = "card-changes";
+    private static final String RESET_EVENT = "reset";
+
+    private final ScheduledExecutorService cardStreamExecutor;
+    private final Duration heartbeatInterval;
+    private final long timeoutMillis;
+    private final int replaySize;
+    private final Map<Long, Set<SseEmitter>> subscribers = new HashMap<>();
+    private final ArrayDeque<CardChanges> replay = new ArrayDeque<>();
+    // Номер последнего опубликованного события
+    private long sequence;
+    // События с номером не больше этого нельзя повторить подписчику: они вытеснены или опубликованы до запуска
+    private long replayAfter;
+    private ScheduledFuture<?> heartbeatTask;
+
+    /**
+     * @param cardStreamExecutor поток отправки событий подписчикам
+     * @param heartbeatInterval пауза между комментариями поддержания соединения (из property)
+     * @param timeout время жизни соединения, после которого клиент переподключается (из property)
+     * @param replaySize количество последних событий, повторяемых переподключившимся подписчикам (из property)
+     */
+    public CardStreamService(@Qualifier("cardStreamExecutor") ScheduledExecutorService cardStreamExecutor,
+                             @Value("${payment.card.stream.heartbeat-interval:PT15S}") Duration heartbeatInterval,
+                             @Value("${payment.card.stream.timeout:PT30M}") Duration timeout,
+                             @Value("${payment.card.stream.replay-size:1000}") int replaySize) {
+        if (replaySize <= 0) {
+            throw new IllegalArgumentException("Card stream replay size must be positive");
+        }
+        this.cardStreamExecutor = cardStreamExecutor;
+        this.heartbeatInterval = heartbeatInterval;
+        this.timeoutMillis = timeout.toMillis();
+        this.replaySize = replaySize;
+        this.sequence = System.currentTimeMillis();
+        this.replayAfter = sequence;
+    }
+
+    /**
+     * Запускает отправку комментариев поддержания соединения после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startHeartbeat() {
+        heartbeatTask = cardStreamExecutor.scheduleWithFixedDelay(this::heartbeat,
+                heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Закрывает соединения подписчиков, чтобы клиенты переподключились к работающему экземпляру
+     */
+    @PreDestroy
+    public void close() {
+        if (heartbeatTask != null) {
+            heartbeatTask.cancel(false);
+        }
+        executeQuietly(() -> {
+            subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+            subscribers.clear();
+        });
+    }
+
+    /**
+     * Подписывает пользователя на изменения его карт
+     *
+     * @param userId id пользователя
+     * @param lastEventId номер последнего полученного события при переподключении; null при первом подключении
+     * @return соединение, в которое отправляются события
+     */
+    public SseEmitter subscribe(long userId, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Runnable unsubscribe = () -> executeQuietly(() -> unsubscribe(userId, emitter));
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        try {
+            cardStreamExecutor.execute(() -> {
+                subscribers.computeIfAbsent(userId, id -> new LinkedHashSet<>()).add(emitter);
+                if (lastEventId != null) {
+                    replay(userId, lastEventId, emitter);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    @Override
+    public void accept(List<DomainEventDto> events) {
+        List<CardChanges> changes = new ArrayList<>(events.size());
+        for (DomainEventDto event : events) {
+            if (event.userId() == null) {
+                continue;
+            }
+            switch (event.type()) {
+                case TRANSFER_COMPLETED -> {
+                    OutboxService.TransferPayload transfer = OutboxService.readPayload(event, OutboxService.TransferPayload.class);
+                    changes.add(new CardChanges(0, event.userId(), List.of(
+                            new CardChangeDto(transfer.fromCardId(), Money.ZERO.minus(transfer.amount()), null),
+                            new CardChangeDto(transfer.toCardId(), transfer.amount(), null))));
+                }
+                case CARD_STATUS_CHANGED -> {
+                    OutboxService.CardStatusPayload status = OutboxService.readPayload(event, OutboxService.CardStatusPayload.class);
+                    changes.add(new CardChanges(0, event.userId(), List.of(
+                            new CardChangeDto(status.cardId(), null, status.status()))));
+                }
+                // Решение по заявке меняет статус карты, об этом приходит отдельное событие CARD_STATUS_CHANGED
+                case CARD_BLOCK_REQUEST_PROCESSED -> {
+                }
+            }
+        }
+        if (!changes.isEmpty()) {
+            executeQuietly(() -> changes.forEach(this::publish));
+        }
+    }
+
+    private void publish(CardChanges unsequenced) {
+        CardChanges changes = new CardChanges(++sequence, unsequenced.userId(), unsequenced.cards());
+        replay.addLast(changes);
+        while (replay.size() > replaySize) {
+            replayAfter = Math.max(replayAfter, replay.removeFirst().id());
+        }
+        Set<SseEmitter> emitters = subscribers.get(changes.userId());
+        if (emitters != null) {
+            List.copyOf(emitters).forEach(emitter -> send(changes, emitter));
+        }
+    }
+
+    private void replay(long userId, long lastEventId, SseEmitter emitter) {
+        if (lastEventId < replayAfter || lastEventId > sequence) {
+            sendEvent(userId, emitter, SseEmitter.event().name(RESET_EVENT).data(""));
+            return;
+        }
+        for (CardChanges changes : replay) {
+            if (changes.userId() == userId && changes.id() > lastEventId) {
+                send(changes, emitter);
+            }
+        }
+    }
+
+    private void heartbeat() {
+        subscribers.forEach((userId, emitters) -> List.copyOf(emitters)
+                .forEach(emitter -> sendEvent(userId, emitter, SseEmitter.event().comment("heartbeat"))));
+    }
+
+    private void send(CardChanges changes, SseEmitter emitter) {
+        sendEvent(changes.userId(), emitter, SseEmitter.event()
+                .id(String.valueOf(changes.id()))
+                .name(CHANGES_EVENT)
+                .data(changes.cards()));
+    }
+
+    private void sendEvent(long userId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // Клиент отключился или соединение уже закрыто: контейнер завершает запрос сам, остается удалить подписку
+            unsubscribe(userId, emitter);
+        }
+    }
+
+    private void unsubscribe(long userId, SseEmitter emitter) {
+        Set<SseEmitter> emitters = subscribers.get(userId);
+        if (emitters != null && emitters.remove(emitter) && emitters.isEmpty()) {
+            subscribers.remove(userId);
+        }
+    }
+
+    private void executeQuietly(Runnable task) {
+        try {
+            cardStreamExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("Card stream is stopped, task skipped");
+        }
+    }
+
+    private record CardChanges(long id, long userId, List<CardChangeDto> cards) {}
+}
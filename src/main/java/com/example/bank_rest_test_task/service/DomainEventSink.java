@@ -0,0 +1,23 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.DomainEventDto;
+
+import java.util.List;
+
+/**
+ * Получатель доменных событий внутри приложения.
+ *
+ * {@link OutboxRelay} передает каждому получателю (в порядке {@link org.springframework.core.annotation.Order})
+ * пакеты событий в порядке их id в потоке доставки, а не в потоке запроса. Получатель должен работать быстро:
+ * пока он обрабатывает пакет, строки событий заблокированы. Если получатель выбросил исключение, пакет остается
+ * в outbox и передается ему повторно с паузой; получателям, принявшим пакет, он повторно не передается.
+ * Доставка не меньше одного раза: после перезапуска приложения или если база данных стала недоступна
+ * до удаления пакета, пакет будет доставлен повторно всем получателям.
+ */
+public interface DomainEventSink {
+
+    /**
+     * @param events события в порядке возрастания id
+     */
+    void accept(List<DomainEventDto> events);
+}
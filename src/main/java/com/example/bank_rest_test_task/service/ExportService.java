@@ -0,0 +1,198 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.CardExportDto;
+import com.example.bank_rest_test_task.dto.ExportFormat;
+import com.example.bank_rest_test_task.dto.TransferExportDto;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
+import com.example.bank_rest_test_task.repository.projection.CardExportRow;
+import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.LogMarker;
+import com.example.bank_rest_test_task.util.OrderedParallelPipeline;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+
+/**
+ * Сервис потоковой выгрузки карт и истории переводов в NDJSON или CSV.
+ *
+ * Строки читаются курсором JDBC в read-only транзакции и сразу пишутся в поток ответа, поэтому объем памяти
+ * не зависит от количества строк: в памяти находятся только порция курсора ({@code fetchSize}), буфер записи
+ * и пачки, ожидающие расшифровки. Номера карт расшифровываются параллельно в ограниченном пуле потоков
+ * с сохранением порядка строк.
+ */
+@Slf4j
+@Service
+public class ExportService {
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final String CARD_CSV_HEADER = "cardId,cardNumber,userId,validityPeriod,statusCard,balance";
+    static final String TRANSFER_CSV_HEADER = "id,userId,fromCardId,toCardId,amount,timestamp,comment";
+
+    private final CardRepository cardRepository;
+    private final TransferHistoryRepository transferHistoryRepository;
+    private final CryptoService cryptoService;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService cardExportExecutor;
+    private final int chunkSize;
+    private final int maxInFlightChunks;
+
+    /**
+     * @param cardRepository интерфейс для работы с картами в базе данных
+     * @param transferHistoryRepository интерфейс для работы с историей переводов в базе данных
+     * @param cryptoService сервис расшифровки номеров карт
+     * @param objectMapper сериализация строк в JSON
+     * @param cardExportExecutor пул потоков расшифровки
+     * @param chunkSize количество карт в одной задаче расшифровки (из property)
+     * @param maxInFlightChunks максимальное количество одновременно расшифровываемых пачек одной выгрузки (из property)
+     */
+    public ExportService(CardRepository cardRepository, TransferHistoryRepository transferHistoryRepository,
+                         CryptoService cryptoService, ObjectMapper objectMapper,
+                         @Qualifier("cardExportExecutor") ExecutorService cardExportExecutor,
+                         @Value("${payment.export.chunk-size:256}") int chunkSize,
+                         @Value("${payment.export.max-in-flight-chunks:8}") int maxInFlightChunks) {
+        this.cardRepository = cardRepository;
+        this.transferHistoryRepository = transferHistoryRepository;
+        this.cryptoService = cryptoService;
+        this.objectMapper = objectMapper;
+        this.cardExportExecutor = cardExportExecutor;
+        this.chunkSize = chunkSize;
+        this.maxInFlightChunks = maxInFlightChunks;
+    }
+
+    /**
+     * Выгружает все карты с расшифрованными номерами в порядке id
+     *
+     * @param format формат выгрузки
+     * @param out поток ответа; не закрывается
+     * @param adminId id администратора, выполняющего выгрузку (для аудита)
+     * @return количество выгруженных карт
+     * @throws IOException если запись в поток не удалась (например, клиент разорвал соединение)
+     */
+    @Transactional(readOnly = true)
+    public long exportCards(ExportFormat format, OutputStream out, Long adminId) throws IOException {
+        Writer writer = writer(out);
+        if (format == ExportFormat.CSV) {
+            writeLine(writer, CARD_CSV_HEADER);
+        }
+
+        Function<CardExportDto, String> formatter = line(format, dto -> csv(dto.cardId(), dto.cardNumber(), dto.userId(),
+                dto.validityPeriod(), dto.statusCard(), dto.balance()));
+        OrderedParallelPipeline<CardExportRow, String> pipeline = new OrderedParallelPipeline<>(cardExportExecutor,
+                chunkSize, maxInFlightChunks, row -> formatter.apply(decrypt(row)), formatted -> writeLine(writer, formatted));
+
+        long count = 0;
+        try (Stream<CardExportRow> rows = cardRepository.streamExportRows()) {
+            Iterator<CardExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                pipeline.accept(iterator.next());
+                count++;
+            }
+            pipeline.finish();
+        }
+        writer.flush();
+
+        log.info(LogMarker.AUDIT.getMarker(), "action=EXPORT_CARDS | result=SUCCESSFULLY | reason=- | adminId={} | format={} | rows={}",
+                adminId, format, count);
+        return count;
+    }
+
+    /**
+     * Выгружает всю историю переводов в порядке id
+     *
+     * @param format формат выгрузки
+     * @param out поток ответа; не закрывается
+     * @param adminId id администратора, выполняющего выгрузку (для аудита)
+     * @return количество выгруженных записей
+     * @throws IOException если запись в поток не удалась (например, клиент разорвал соединение)
+     */
+    @Transactional(readOnly = true)
+    public long exportTransfers(ExportFormat format, OutputStream out, Long adminId) throws IOException {
+        Writer writer = writer(out);
+        if (format == ExportFormat.CSV) {
+            writeLine(writer, TRANSFER_CSV_HEADER);
+        }
+
+        Function<TransferExportDto, String> formatter = line(format, dto -> csv(dto.id(), dto.userId(), dto.fromCardId(),
+                dto.toCardId(), dto.amount(), dto.timestamp(), dto.comment()));
+
+        long count = 0;
+        try (Stream<TransferExportDto> rows = transferHistoryRepository.streamExportRows()) {
+            Iterator<TransferExportDto> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                writeLine(writer, formatter.apply(iterator.next()));
+                count++;
+            }
+        }
+        writer.flush();
+
+        log.info(LogMarker.AUDIT.getMarker(), "action=EXPORT_TRANSFERS | result=SUCCESSFULLY | reason=- | adminId={} | format={} | rows={}",
+                adminId, format, count);
+        return count;
+    }
+
+    private CardExportDto decrypt(CardExportRow row) {
+        return new CardExportDto(row.id(), cryptoService.decrypt(row.encryptNumber()), row.userId(),
+                row.validityPeriod(), row.statusCard(), row.balance().toBigDecimal());
+    }
+
+    private <T> Function<T, String> line(ExportFormat format, Function<T, String> csv) {
+        if (format == ExportFormat.CSV) {
+            return csv;
+        }
+        return dto -> {
+            try {
+                return objectMapper.writeValueAsString(dto);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+    }
+
+    private static void writeLine(Writer writer, String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+    }
+
+    /**
+     * Строка CSV; значения с запятой, кавычкой или переводом строки берутся в кавычки (RFC 4180)
+     */
+    static String csv(Object... values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            if (values[i] == null) {
+                continue;
+            }
+            String value = values[i].toString();
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.exception.TransferOutcomeUnknownException;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Групповая фиксация переводов (включается {@code payment.transfer.group-commit.enabled}).
+ *
+ * Переводы, пришедшие одновременно, выполняются одним потоком в общей транзакции, поэтому под нагрузкой
+ * одна фиксация (и один сброс журнала базы данных на диск) приходится на группу, а не на каждый перевод. Логика:
+ * 1. Первый перевод из очереди открывает группу; группа добирается из очереди, пока не пройдет {@code window}
+ *    или не наберется {@code maxSize} переводов
+ * 2. Карты всех переводов группы блокируются одним запросом в порядке возрастания id
+ *    ({@link CardService#lockCards(java.util.Collection)}), поэтому группа не образует взаимоблокировок
+ *    с одиночными переводами и пакетами
+ * 3. Каждый перевод выполняется {@link PaymentService#transferMoneyInGroup(PaymentDto, Long)} после точки сохранения
+ *    JDBC (savepoint): ошибка перевода (недостаточно средств, карта заблокирована) откатывает только его.
+ *    Вложенные транзакции Spring ({@code PROPAGATION_NESTED}) не используются: {@code HibernateJpaDialect}
+ *    не поддерживает точки сохранения
+ * 4. После фиксации группы каждый вызывающий поток получает свой результат или свою ошибку
+ *
+ * Ошибка базы данных внутри перевода откатывает всю группу до фиксации; тогда переводы группы выполняются
+ * по одному обычным путем, и каждый получает собственный результат. Ошибка при фиксации повтором не исправляется:
+ * соединение могло оборваться после того, как база данных зафиксировала группу, и перевод выполнился бы дважды.
+ * Тогда каждый перевод группы завершается {@link TransferOutcomeUnknownException}, а клиент проверяет историю
+ * переводов перед повтором.
+ *
+ * Контекст журналирования (MDC, например ip клиента) переносится с вызывающего потока на время выполнения перевода.
+ *
+ * Пока исполнитель не запущен, выключен или очередь переполнена, перевод выполняется обычным путем
+ * в вызывающем потоке. Переводы с ключом идемпотентности должны фиксироваться вместе с ключом и через группу
+ * не проходят.
+ */
+@Slf4j
+@Service
+public class GroupCommitTransferExecutor {
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final PaymentService paymentService;
+    private final CardService cardService;
+    private final TransactionTemplate groupTransaction;
+    private final ExecutorService transferGroupCommitWorker;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxSize;
+    private final BlockingQueue<PendingTransfer> queue;
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private volatile boolean running;
+    private Future<?> worker;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param paymentService выполнение переводов
+     * @param cardService блокировка карт группы
+     * @param transactionManager менеджер транзакций группы
+     * @param transferGroupCommitWorker поток, выполняющий группы
+     * @param enabled включена ли групповая фиксация (из property)
+     * @param window сколько ждать остальные переводы группы после первого (из property)
+     * @param maxSize максимальное количество переводов в группе (из property)
+     * @param queueCapacity максимальное количество переводов, ожидающих группу (из property)
+     */
+    public GroupCommitTransferExecutor(PaymentService paymentService, CardService cardService,
+                                       PlatformTransactionManager transactionManager,
+                                       @Qualifier("transferGroupCommitWorker") ExecutorService transferGroupCommitWorker,
+                                       @Value("${payment.transfer.group-commit.enabled:false}") boolean enabled,
+                                       @Value("${payment.transfer.group-commit.window:PT0.002S}") Duration window,
+                                       @Value("${payment.transfer.group-commit.max-size:64}") int maxSize,
+                                       @Value("${payment.transfer.group-commit.queue-capacity:10000}") int queueCapacity) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Transfer group size must be positive");
+        }
+        this.paymentService = paymentService;
+        this.cardService = cardService;
+        this.groupTransaction = new TransactionTemplate(transactionManager);
+        this.transferGroupCommitWorker = transferGroupCommitWorker;
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.maxSize = maxSize;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Выполняет перевод в ближайшей группе и ждет фиксации группы
+     *
+     * @param paymentDto содержит id двух карт сумму и комментарий к переводу
+     * @param userId пользователя, который совершает перевод
+     * @return обновленные данные карт
+     * @throws RuntimeException те же исключения, что и {@link PaymentService#transferMoney(PaymentDto, Long)}
+     */
+    public List<Card> transferMoney(PaymentDto paymentDto, Long userId) {
+        PendingTransfer transfer = new PendingTransfer(paymentDto, userId, MDC.getCopyOfContextMap(), new CompletableFuture<>());
+        boolean queued;
+        lifecycle.readLock().lock();
+        try {
+            queued = running && queue.offer(transfer);
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+        if (!queued) {
+            return paymentService.transferMoney(paymentDto, userId);
+        }
+        try {
+            return transfer.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Запускает поток групп после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        lifecycle.writeLock().lock();
+        try {
+            if (enabled && !running) {
+                running = true;
+                worker = transferGroupCommitWorker.submit(this::run);
+            }
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Перестает принимать переводы в группы и дожидается выполнения уже принятых
+     */
+    @PreDestroy
+    public void close() {
+        lifecycle.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        if (worker == null) {
+            return;
+        }
+        try {
+            worker.get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("Transfer group commit worker did not stop cleanly", e);
+        }
+    }
+
+    private void run() {
+        List<PendingTransfer> group = new ArrayList<>(maxSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                PendingTransfer first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                collect(group);
+                execute(group);
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            group.addAll(queue);
+            queue.clear();
+            group.forEach(transfer -> transfer.result().completeExceptionally(
+                    new IllegalStateException("Transfer group commit worker was interrupted")));
+        }
+    }
+
+    /**
+     * Добирает переводы в группу до истечения окна или заполнения группы
+     */
+    private void collect(List<PendingTransfer> group) throws InterruptedException {
+        long deadline = System.nanoTime() + windowNanos;
+        while (group.size() < maxSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingTransfer next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    private void execute(List<PendingTransfer> group) {
+        List<Outcome> outcomes;
+        try {
+            outcomes = groupTransaction.execute(status -> {
+                try {
+                    return executeInTransaction(group);
+                } catch (RuntimeException e) {
+                    throw new GroupRolledBackException(e);
+                }
+            });
+        } catch (GroupRolledBackException e) {
+            // Исключение выброшено до фиксации, TransactionTemplate откатил группу: переводы можно выполнить заново
+            log.warn("Transfer group of {} failed, executing transfers one by one", group.size(), e.getCause());
+            group.forEach(this::executeAlone);
+            return;
+        } catch (RuntimeException e) {
+            log.error("Transfer group of {} failed on commit, outcome is unknown", group.size(), e);
+            TransferOutcomeUnknownException error = new TransferOutcomeUnknownException(
+                    "Transfer outcome is unknown, check transfer history before retrying", e);
+            group.forEach(transfer -> transfer.result().completeExceptionally(error));
+            return;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            Outcome outcome = outcomes.get(i);
+            if (outcome.error() == null) {
+                group.get(i).result().complete(outcome.cards());
+            } else {
+                group.get(i).result().completeExceptionally(outcome.error());
+            }
+        }
+    }
+
+    private List<Outcome> executeInTransaction(List<PendingTransfer> group) {
+        TreeSet<Long> cardIds = new TreeSet<>();
+        for (PendingTransfer transfer : group) {
+            cardIds.add(transfer.paymentDto().fromCardId());
+            cardIds.add(transfer.paymentDto().toCardId());
+        }
+        cardService.lockCards(cardIds);
+        entityManager.clear();
+
+        List<Outcome> outcomes = new ArrayList<>(group.size());
+        for (PendingTransfer transfer : group) {
+            Session session = entityManager.unwrap(Session.class);
+            Savepoint savepoint = session.doReturningWork(Connection::setSavepoint);
+            if (transfer.context() != null) {
+                MDC.setContextMap(transfer.context());
+            }
+            try {
+                List<Card> cards = paymentService.transferMoneyInGroup(transfer.paymentDto(), transfer.userId());
+                entityManager.flush();
+                session.doWork(connection -> connection.releaseSavepoint(savepoint));
+                outcomes.add(new Outcome(cards, null));
+            } catch (DataAccessException | PersistenceException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                session.doWork(connection -> connection.rollback(savepoint));
+                outcomes.add(new Outcome(null, e));
+            } finally {
+                MDC.clear();
+            }
+            // Следующий перевод читает карты заново: балансы, возвращенные этим переводом, не изменятся
+            entityManager.clear();
+        }
+        return outcomes;
+    }
+
+    private void executeAlone(PendingTransfer transfer) {
+        if (transfer.context() != null) {
+            MDC.setContextMap(transfer.context());
+        }
+        try {
+            transfer.result().complete(paymentService.transferMoney(transfer.paymentDto(), transfer.userId()));
+        } catch (RuntimeException e) {
+            transfer.result().completeExceptionally(e);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private record PendingTransfer(PaymentDto paymentDto, Long userId, Map<String, String> context,
+                                   CompletableFuture<List<Card>> result) {
+    }
+
+    private record Outcome(List<Card> cards, RuntimeException error) {
+    }
+
+    /**
+     * Ошибка внутри транзакции группы, после которой группа откатывается
+     */
+    private static final class GroupRolledBackException extends RuntimeException {
+        GroupRolledBackException(RuntimeException cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.bank_rest_test_task.service;
+
+/**
+ * Способ записи истории переводов.
+ *
+ * Выбирается настройкой {@code payment.history.write-mode}.
+ */
+public enum HistoryWriteMode {
+    /**
+     * Запись истории вставляется в {@code transfers_history} в транзакции перевода
+     */
+    SYNCHRONOUS,
+
+    /**
+     * Запись истории сохраняется в локальный журнал при фиксации транзакции перевода
+     * и переносится в {@code transfers_history} фоновым потоком ({@link TransferHistoryJournal});
+     * история становится видна в запросах с небольшой задержкой
+     */
+    JOURNAL
+}
@@ -0,0 +1,224 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.DomainEventDto;
+import com.example.bank_rest_test_task.entity.DomainEventType;
+import com.example.bank_rest_test_task.util.LogMarker;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Доставка доменных событий из outbox получателям внутри приложения ({@link DomainEventSink}).
+ *
+ * Логика (включается {@code payment.outbox.relay.enabled}):
+ * 1. Фоновый поток с паузой {@code poll-interval} выбирает в транзакции до {@code batch-size} самых старых событий
+ *    с {@code FOR UPDATE SKIP LOCKED}: несколько экземпляров приложения разбирают разные события, не ожидая друг друга
+ * 2. Передает пакет каждому получателю в порядке id; события, уже принятые получателем, ему повторно не передаются
+ * 3. Удаляет события в той же транзакции, только когда их приняли все получатели; если пакет был полным,
+ *    сразу выбирает следующий
+ *
+ * Если получатель завершился ошибкой, ошибка записывается в аудит, пакет остается в outbox, и доставка
+ * повторяется с паузой, растущей вдвое до {@code max-backoff}: получатель, принявший пакет, его больше
+ * не получает, а упавший получает повторно. После {@code max-attempts} неудачных попыток подряд события
+ * записываются в аудит как недоставленные этому получателю (DEAD_LETTER) и удаляются, чтобы не блокировать outbox.
+ *
+ * Принятые события запоминаются в памяти до удаления: при перезапуске приложения или недоступности базы
+ * пакет доставляется повторно всем получателям, то есть доставка не меньше одного раза.
+ *
+ * Id выделяются при вставке, а не при фиксации, поэтому событие с меньшим id, зафиксированное позже,
+ * доставляется в следующем пакете: порядок соблюдается внутри пакета и для событий одной транзакции.
+ */
+@Slf4j
+@Service
+public class OutboxRelay {
+    private static final String SELECT = """
+            select id, event_type, aggregate_id, user_id, payload, created_at from outbox_events
+            order by id limit ? for update skip locked""";
+
+    private final boolean enabled;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService outboxRelayExecutor;
+    private final ObjectProvider<DomainEventSink> sinks;
+    private final Duration pollInterval;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration maxBackoff;
+    // События, принятые получателем, но еще не удаленные из outbox; изменяется только в relay()
+    private final Map<DomainEventSink, Set<Long>> accepted = new IdentityHashMap<>();
+    private int failedAttempts;
+    private volatile long retryAtNanos;
+    private ScheduledFuture<?> relayTask;
+
+    /**
+     * @param enabled включена ли доставка событий (из property)
+     * @param jdbcTemplate выборка и удаление событий
+     * @param transactionManager менеджер транзакций доставки
+     * @param outboxRelayExecutor поток доставки
+     * @param sinks получатели событий
+     * @param pollInterval пауза между опросами (из property)
+     * @param batchSize максимальное количество событий в одном пакете (из property)
+     * @param maxAttempts количество неудачных попыток доставки подряд, после которого события не доставляются упавшему получателю (из property)
+     * @param maxBackoff наибольшая пауза перед повторной доставкой (из property)
+     */
+    public OutboxRelay(@Value("${payment.outbox.relay.enabled:true}") boolean enabled,
+                       JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                       @Qualifier("outboxRelayExecutor") ScheduledExecutorService outboxRelayExecutor,
+                       ObjectProvider<DomainEventSink> sinks,
+                       @Value("${payment.outbox.relay.poll-interval:PT0.2S}") Duration pollInterval,
+                       @Value("${payment.outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${payment.outbox.relay.max-attempts:10}") int maxAttempts,
+                       @Value("${payment.outbox.relay.max-backoff:PT30S}") Duration maxBackoff) {
+        if (batchSize <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("Outbox relay batch size and max attempts must be positive");
+        }
+        this.enabled = enabled;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.outboxRelayExecutor = outboxRelayExecutor;
+        this.sinks = sinks;
+        this.pollInterval = pollInterval;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Запускает доставку после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRelaying() {
+        if (enabled) {
+            relayTask = outboxRelayExecutor.scheduleWithFixedDelay(this::relayQuietly, 0,
+                    pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Останавливает доставку и доставляет оставшиеся события
+     */
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        if (relayTask != null) {
+            relayTask.cancel(false);
+        }
+        relayQuietly();
+    }
+
+    /**
+     * Доставляет все зафиксированные события; останавливается на пакете, который принят не всеми получателями
+     *
+     * @return количество доставленных и удаленных событий
+     */
+    public synchronized long relay() {
+        long relayed = 0;
+        while (true) {
+            BatchResult batch = transactionTemplate.execute(status -> relayBatch());
+            if (!batch.completed()) {
+                failedAttempts++;
+                long backoffMillis = Math.min(maxBackoff.toMillis(),
+                        pollInterval.toMillis() << Math.min(failedAttempts - 1, 20));
+                retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+                return relayed;
+            }
+            failedAttempts = 0;
+            relayed += batch.size();
+            if (batch.size() < batchSize) {
+                return relayed;
+            }
+        }
+    }
+
+    private BatchResult relayBatch() {
+        List<DomainEventDto> events = jdbcTemplate.query(SELECT, (rs, rowNum) -> new DomainEventDto(
+                rs.getLong(1),
+                DomainEventType.valueOf(rs.getString(2)),
+                rs.getLong(3),
+                rs.getObject(4, Long.class),
+                rs.getString(5),
+                rs.getObject(6, OffsetDateTime.class)), batchSize);
+        if (events.isEmpty()) {
+            return new BatchResult(0, true);
+        }
+
+        boolean completed = true;
+        for (DomainEventSink sink : sinks.orderedStream().toList()) {
+            Set<Long> sinkAccepted = accepted.computeIfAbsent(sink, key -> new HashSet<>());
+            List<DomainEventDto> pending = events.stream().filter(event -> !sinkAccepted.contains(event.id())).toList();
+            if (pending.isEmpty()) {
+                continue;
+            }
+            try {
+                sink.accept(pending);
+                pending.forEach(event -> sinkAccepted.add(event.id()));
+            } catch (RuntimeException e) {
+                String ids = pending.stream().map(event -> String.valueOf(event.id())).collect(Collectors.joining(","));
+                if (failedAttempts + 1 < maxAttempts) {
+                    completed = false;
+                    log.error(LogMarker.AUDIT.getMarker(), "action=DISPATCH_DOMAIN_EVENTS | result=FAILURE | reason={} | sink={} | attempt={} | ids={}",
+                            e.getMessage(), sink.getClass().getSimpleName(), failedAttempts + 1, ids, e);
+                } else {
+                    pending.forEach(event -> sinkAccepted.add(event.id()));
+                    log.error(LogMarker.AUDIT.getMarker(), "action=DISPATCH_DOMAIN_EVENTS | result=FAILURE | reason=DEAD_LETTER | sink={} | attempt={} | ids={} | events={}",
+                            sink.getClass().getSimpleName(), failedAttempts + 1, ids, pending, e);
+                }
+            }
+        }
+        if (!completed) {
+            return new BatchResult(events.size(), false);
+        }
+
+        String placeholders = events.stream().map(event -> "?").collect(Collectors.joining(", "));
+        jdbcTemplate.update("delete from outbox_events where id in (" + placeholders + ")",
+                events.stream().map(DomainEventDto::id).toArray());
+        // Отметки снимаются после фиксации удаления: при откате пакет повторно получат только не принявшие его
+        List<Long> ids = events.stream().map(DomainEventDto::id).toList();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    accepted.values().forEach(sinkAccepted -> ids.forEach(sinkAccepted::remove));
+                }
+            }
+        });
+        return new BatchResult(events.size(), true);
+    }
+
+    private void relayQuietly() {
+        if (System.nanoTime() - retryAtNanos < 0) {
+            return;
+        }
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            log.error("Failed to relay outbox events, retrying later", e);
+        }
+    }
+
+    private record BatchResult(int size, boolean completed) {}
+}
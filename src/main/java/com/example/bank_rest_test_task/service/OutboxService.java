@@ -0,0 +1,121 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.DomainEventDto;
+import com.example.bank_rest_test_task.entity.BlockRequestStatus;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.CardBlockRequest;
+import com.example.bank_rest_test_task.entity.DomainEventType;
+import com.example.bank_rest_test_task.entity.OutboxEvent;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.repository.OutboxEventRepository;
+import com.example.bank_rest_test_task.util.money.Money;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+
+/**
+ * Запись доменных событий в таблицу outbox ({@link OutboxEvent}).
+ *
+ * Методы вызываются внутри транзакции изменения, поэтому событие фиксируется или откатывается вместе с ним.
+ * Доставку получателям выполняет {@link OutboxRelay} в отдельном потоке.
+ */
+@Service
+public class OutboxService {
+    private static final JsonMapper JSON = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    /**
+     * @param outboxEventRepository репозиторий событий
+     */
+    public OutboxService(OutboxEventRepository outboxEventRepository) {
+        this.outboxEventRepository = outboxEventRepository;
+    }
+
+    /**
+     * Записывает событие {@link DomainEventType#TRANSFER_COMPLETED} для каждого перевода одной пакетной вставкой
+     *
+     * @param transfers сохраненные переводы (с id)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfers(Collection<TransferHistory> transfers) {
+        OffsetDateTime now = OffsetDateTime.now();
+        outboxEventRepository.saveAll(transfers.stream()
+                .map(transfer -> event(DomainEventType.TRANSFER_COMPLETED, transfer.getId(), transfer.getUser().getId(),
+                        new TransferPayload(transfer.getId(), transfer.getFromCard().getId(), transfer.getToCard().getId(),
+                                transfer.getAmount(), transfer.getTimestamp()), now))
+                .toList());
+    }
+
+    /**
+     * Записывает событие {@link DomainEventType#CARD_STATUS_CHANGED}
+     *
+     * @param card карта с новым статусом
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCardStatusChange(Card card) {
+        outboxEventRepository.save(event(DomainEventType.CARD_STATUS_CHANGED, card.getId(),
+                card.getUser() == null ? null : card.getUser().getId(),
+                new CardStatusPayload(card.getId(), card.getStatusCard()), OffsetDateTime.now()));
+    }
+
+    /**
+     * Записывает событие {@link DomainEventType#CARD_BLOCK_REQUEST_PROCESSED}
+     *
+     * @param request обработанная заявка
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBlockRequestProcessed(CardBlockRequest request) {
+        outboxEventRepository.save(event(DomainEventType.CARD_BLOCK_REQUEST_PROCESSED, request.getId(),
+                request.getRequester() == null ? null : request.getRequester().getId(),
+                new BlockRequestPayload(request.getId(), request.getCard().getId(), request.getBlockRequestStatus(),
+                        request.getProcessedBy() == null ? null : request.getProcessedBy().getId()),
+                OffsetDateTime.now()));
+    }
+
+    /**
+     * Читает данные события, записанные этим классом
+     *
+     * @param event доставленное событие
+     * @param type тип данных события: {@link TransferPayload}, {@link CardStatusPayload} или {@link BlockRequestPayload}
+     * @return данные события
+     */
+    static <T> T readPayload(DomainEventDto event, Class<T> type) {
+        try {
+            return JSON.readValue(event.payload(), type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Malformed payload of outbox event " + event.id(), e);
+        }
+    }
+
+    private static OutboxEvent event(DomainEventType type, Long aggregateId, Long userId, Object payload, OffsetDateTime now) {
+        try {
+            return OutboxEvent.builder()
+                    .eventType(type)
+                    .aggregateId(aggregateId)
+                    .userId(userId)
+                    .payload(JSON.writeValueAsString(payload))
+                    .createdAt(now)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    record TransferPayload(Long historyId, Long fromCardId, Long toCardId, Money amount, OffsetDateTime timestamp) {}
+
+    record CardStatusPayload(Long cardId, StatusCard status) {}
+
+    record BlockRequestPayload(Long requestId, Long cardId, BlockRequestStatus status, Long adminId) {}
+}
@@ -0,0 +1,205 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.CardDto;
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.entity.PaymentIdempotencyKey;
+import com.example.bank_rest_test_task.exception.IdempotencyKeyConflictException;
+import com.example.bank_rest_test_task.repository.PaymentIdempotencyKeyRepository;
+import com.example.bank_rest_test_task.util.BoundedTtlCache;
+import com.example.bank_rest_test_task.util.LogMarker;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Сервис идемпотентных платежей (заголовок {@code Idempotency-Key}).
+ *
+ * Первый запрос с ключом выполняет перевод и сохраняет ключ, hash тела запроса и ответ в той же транзакции.
+ * Повтор запроса с тем же ключом возвращает сохраненный ответ и не обращается к картам:
+ * - сначала ответ ищется в ограниченном кэше в памяти (LRU + TTL, но не дольше срока действия ключа);
+ * - затем в таблице ключей.
+ *
+ * Повтор ключа с другим телом запроса отклоняется. Неуспешные переводы не сохраняются,
+ * поэтому их повтор выполняется заново.
+ */
+@Slf4j
+@Service
+public class PaymentIdempotencyService {
+    private static final TypeReference<List<CardDto>> RESPONSE_TYPE = new TypeReference<>() {};
+
+    private final PaymentIdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final BoundedTtlCache<CacheKey, StoredResponse> cache;
+
+    /**
+     * @param idempotencyKeyRepository репозиторий ключей идемпотентности
+     * @param objectMapper сериализатор сохраняемого ответа
+     * @param transactionManager менеджер транзакций для выполнения перевода вместе с сохранением ключа
+     * @param ttl время жизни ключа (из property)
+     * @param cacheMaxSize максимальное количество ответов в кэше (из property)
+     */
+    public PaymentIdempotencyService(PaymentIdempotencyKeyRepository idempotencyKeyRepository,
+                                     ObjectMapper objectMapper,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${payment.idempotency.ttl:PT24H}") Duration ttl,
+                                     @Value("${payment.idempotency.cache.max-size:10000}") int cacheMaxSize) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+        this.cache = new BoundedTtlCache<>(cacheMaxSize, ttl);
+    }
+
+    /**
+     * Выполняет перевод не более одного раза для ключа пользователя.
+     *
+     * Логика:
+     * 1. Ищет сохраненный ответ в кэше, затем в базе данных; если найден - возвращает его
+     * 2. Иначе в одной транзакции удаляет истекший ключ с тем же значением, если очистка его еще не удалила,
+     *    сохраняет ключ, выполняет перевод и сохраняет ответ
+     * 3. Если конкурентный запрос с тем же ключом успел зафиксироваться первым, возвращает его ответ
+     *
+     * @param userId пользователя, который совершает перевод
+     * @param idempotencyKey значение заголовка {@code Idempotency-Key}
+     * @param paymentDto тело запроса
+     * @param transfer выполнение перевода и формирование ответа
+     * @return ответ первого выполнения
+     * @throws IdempotencyKeyConflictException если ключ уже использован с другим телом запроса
+     */
+    public List<CardDto> executeOnce(Long userId, String idempotencyKey, PaymentDto paymentDto,
+                                     Supplier<List<CardDto>> transfer) {
+        CacheKey cacheKey = new CacheKey(userId, idempotencyKey);
+        String requestHash = hashRequest(paymentDto);
+
+        Optional<StoredResponse> cached = cache.get(cacheKey);
+        if (cached.isPresent()) {
+            return replay(cacheKey, cached.get(), requestHash);
+        }
+
+        Optional<StoredResponse> stored = findStoredResponse(cacheKey);
+        if (stored.isPresent()) {
+            cache.put(cacheKey, stored.get(), stored.get().expiresAt().toInstant());
+            return replay(cacheKey, stored.get(), requestHash);
+        }
+
+        try {
+            OffsetDateTime expiresAt = OffsetDateTime.now().plus(ttl);
+            List<CardDto> response = transactionTemplate.execute(status -> {
+                OffsetDateTime now = OffsetDateTime.now();
+                // Истекший ключ еще может быть в таблице до очистки; он освобождается в той же транзакции
+                idempotencyKeyRepository.deleteExpiredKey(userId, idempotencyKey, now);
+                PaymentIdempotencyKey key = idempotencyKeyRepository.saveAndFlush(PaymentIdempotencyKey.builder()
+                        .userId(userId)
+                        .idempotencyKey(idempotencyKey)
+                        .requestHash(requestHash)
+                        .createAt(now)
+                        .expiresAt(expiresAt)
+                        .build());
+
+                List<CardDto> result = transfer.get();
+                key.setResponseBody(writeResponse(result));
+                idempotencyKeyRepository.save(key);
+                return result;
+            });
+            cache.put(cacheKey, new StoredResponse(requestHash, response, expiresAt), expiresAt.toInstant());
+            return response;
+        } catch (DataIntegrityViolationException e) {
+            StoredResponse concurrent = findStoredResponse(cacheKey).orElseThrow(() -> e);
+            cache.put(cacheKey, concurrent, concurrent.expiresAt().toInstant());
+            return replay(cacheKey, concurrent, requestHash);
+        }
+    }
+
+    /**
+     * Удаляет истекшие ключи из базы данных
+     */
+    @Transactional
+    @Scheduled(fixedDelayString = "${payment.idempotency.cleanup-interval:PT1H}")
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyKeyRepository.deleteExpired(OffsetDateTime.now());
+        if (deleted > 0) {
+            log.info("Purged {} expired payment idempotency keys", deleted);
+        }
+    }
+
+    /**
+     * Возвращает сохраненный ответ, если тело запроса совпадает с первым
+     *
+     * @throws IdempotencyKeyConflictException если ключ уже использован с другим телом запроса
+     */
+    private List<CardDto> replay(CacheKey cacheKey, StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            log.warn(LogMarker.AUDIT.getMarker(), "action=TRANSFER_MONEY | result=FAILURE | reason=IDEMPOTENCY_KEY_REUSED | userId={} | idempotencyKey={}",
+                    cacheKey.userId(), cacheKey.idempotencyKey());
+            throw new IdempotencyKeyConflictException("Idempotency key: %s was already used with a different request"
+                    .formatted(cacheKey.idempotencyKey()));
+        }
+        return stored.response();
+    }
+
+    /**
+     * Ищет действующий ключ с сохраненным ответом в базе данных
+     */
+    private Optional<StoredResponse> findStoredResponse(CacheKey cacheKey) {
+        return idempotencyKeyRepository.findByUserIdAndIdempotencyKey(cacheKey.userId(), cacheKey.idempotencyKey())
+                .filter(key -> key.getResponseBody() != null && key.getExpiresAt().isAfter(OffsetDateTime.now()))
+                .map(key -> new StoredResponse(key.getRequestHash(), readResponse(key.getResponseBody()), key.getExpiresAt()));
+    }
+
+    private String writeResponse(List<CardDto> response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize payment response", e);
+        }
+    }
+
+    private List<CardDto> readResponse(String responseBody) {
+        try {
+            return objectMapper.readValue(responseBody, RESPONSE_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to deserialize stored payment response", e);
+        }
+    }
+
+    /**
+     * Вычисляет SHA-256 тела запроса; сумма нормализуется, чтобы {@code 100} и {@code 100.00} давали один hash
+     */
+    private String hashRequest(PaymentDto paymentDto) {
+        String canonical = "%s|%s|%s|%s".formatted(
+                paymentDto.fromCardId(),
+                paymentDto.toCardId(),
+                paymentDto.amount() == null ? null : paymentDto.amount().toBigDecimal().stripTrailingZeros().toPlainString(),
+                paymentDto.comment());
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record CacheKey(Long userId, String idempotencyKey) {}
+
+    private record StoredResponse(String requestHash, List<CardDto> response, OffsetDateTime expiresAt) {}
+}
@@ -1,18 +1,30 @@
 package com.example.bank_rest_test_task.service;
 
+import com.example.bank_rest_test_task.dto.BatchPaymentItemResultDto;
+import com.example.bank_rest_test_task.dto.BatchPaymentItemStatus;
+import com.example.bank_rest_test_task.dto.BatchPaymentMode;
+import com.example.bank_rest_test_task.dto.BatchPaymentResultDto;
 import com.example.bank_rest_test_task.dto.PaymentDto;
 import com.example.bank_rest_test_task.entity.Card;
 import com.example.bank_rest_test_task.entity.StatusCard;
 import com.example.bank_rest_test_task.entity.TransferHistory;
 import com.example.bank_rest_test_task.exception.CardBlockedException;
+import com.example.bank_rest_test_task.exception.CardNotFoundException;
 import com.example.bank_rest_test_task.exception.InsufficientFundsException;
 import com.example.bank_rest_test_task.util.LogMarker;
+import com.example.bank_rest_test_task.util.money.Money;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * Сервис платежей (перевод средств между картами пользователя).
@@ -20,21 +32,48 @@ import java.util.List;
  * Проверяет:
  * - статус и срок действия карт;
  * - достаточность средств;
- * - фиксирует перевод в истории.
+ * - фиксирует перевод в истории, в агрегатах расходов ({@link SpendingRollupService}) и событием в outbox
+ *   ({@link OutboxService}) в той же транзакции.
+ *
+ * Способ изменения балансов задается настройкой {@code payment.transfer.mode} ({@link TransferMode}):
+ * - {@link TransferMode#PESSIMISTIC_LOCK} - обе карты перевода блокируются ({@code SELECT ... FOR UPDATE}) в порядке
+ *   возрастания id, поэтому параллельные переводы по одной карте выполняются последовательно и не теряют обновления
+ *   баланса, а встречные переводы A→B и B→A не приводят к взаимоблокировке;
+ * - {@link TransferMode#CONDITIONAL_UPDATE} - списание и зачисление выполняются условными {@code UPDATE}
+ *   (также в порядке возрастания id), строки блокируются только на время самих изменений;
+ * - {@link TransferMode#OPTIMISTIC_LOCK} - карты читаются без блокировки, а {@code UPDATE} при фиксации проверяет
+ *   версию карты; при конфликте фиксация завершается исключением, и перевод повторяет {@link TransferRetryExecutor}.
+ * - {@link TransferMode#BALANCE_ENGINE} - карты читаются без блокировки только для проверки владельца и статуса,
+ *   а балансы проверяет и изменяет {@link BalanceEngine}; строки {@code cards} в транзакции перевода не изменяются.
  */
 @Slf4j
 @Service
 public class PaymentService {
     private final TransferHistoryService transferHistoryService;
     private final CardService cardService;
+    private final SpendingRollupService spendingRollupService;
+    private final OutboxService outboxService;
+    private final BalanceEngine balanceEngine;
+    private final TransferMode transferMode;
 
     /**
      * @param transferHistoryService класс для работы с историей
      * @param cardService класс для работы с картами
+     * @param spendingRollupService класс для работы с агрегатами расходов
+     * @param outboxService класс для записи доменных событий
+     * @param balanceEngine движок балансов в памяти для режима {@link TransferMode#BALANCE_ENGINE}
+     * @param transferMode способ изменения балансов (из property)
      */
-    public PaymentService(TransferHistoryService transferHistoryService, CardService cardService) {
+    public PaymentService(TransferHistoryService transferHistoryService, CardService cardService,
+                          SpendingRollupService spendingRollupService, OutboxService outboxService,
+                          BalanceEngine balanceEngine,
+                          @Value("${payment.transfer.mode:PESSIMISTIC_LOCK}") TransferMode transferMode) {
         this.transferHistoryService = transferHistoryService;
         this.cardService = cardService;
+        this.spendingRollupService = spendingRollupService;
+        this.outboxService = outboxService;
+        this.balanceEngine = balanceEngine;
+        this.transferMode = transferMode;
     }
 
     /**
@@ -44,31 +83,69 @@ public class PaymentService {
      * @param userId пользователя, который совершает перевод
      * @return обновленные данные карт
      * @throws InsufficientFundsException если не достаточно средств на карте с которой происходит перевод
+     * @throws CardNotFoundException если одна из карт не найдена у пользователя
+     * @throws CardBlockedException если одна из карт заблокирована или истек ее срок действия
+     * @throws org.springframework.orm.ObjectOptimisticLockingFailureException в режиме {@link TransferMode#OPTIMISTIC_LOCK},
+     *         если карту перевода одновременно изменила другая транзакция
      */
     @Transactional
     public List<Card> transferMoney(PaymentDto paymentDto, Long userId) {
-        Card fromCard = cardService.findCardByUserIdAndCardId(paymentDto.fromCardId(), userId);
-        Card toCard = cardService.findCardByUserIdAndCardId(paymentDto.toCardId(), userId);
+        return transfer(paymentDto, userId);
+    }
+
+    /**
+     * Переводит деньги в уже открытой транзакции группы переводов ({@link GroupCommitTransferExecutor}).
+     *
+     * Ошибка перевода не помечает транзакцию для отката: вызывающий сам откатывает изменения перевода
+     * до точки сохранения и продолжает группу.
+     *
+     * @param paymentDto содержит id двух карт сумму и комментарий к переводу
+     * @param userId пользователя, который совершает перевод
+     * @return обновленные данные карт
+     * @throws org.springframework.transaction.IllegalTransactionStateException если нет открытой транзакции
+     */
+    @Transactional(propagation = Propagation.MANDATORY, noRollbackFor = RuntimeException.class)
+    public List<Card> transferMoneyInGroup(PaymentDto paymentDto, Long userId) {
+        return transfer(paymentDto, userId);
+    }
+
+    private List<Card> transfer(PaymentDto paymentDto, Long userId) {
+        if (transferMode == TransferMode.CONDITIONAL_UPDATE) {
+            return transferMoneyByConditionalUpdate(paymentDto, userId);
+        }
+        if (transferMode == TransferMode.BALANCE_ENGINE) {
+            return transferMoneyByBalanceEngine(paymentDto, userId);
+        }
+
+        List<Long> cardIds = List.of(paymentDto.fromCardId(), paymentDto.toCardId());
+        Map<Long, Card> cards = transferMode == TransferMode.OPTIMISTIC_LOCK
+                ? cardService.findUserCards(userId, cardIds)
+                : cardService.lockUserCards(userId, cardIds);
+        Card fromCard = getLockedCard(cards, paymentDto.fromCardId(), userId);
+        Card toCard = getLockedCard(cards, paymentDto.toCardId(), userId);
 
         chekCard(fromCard, toCard);
 
-        if (fromCard.getBalance().compareTo(paymentDto.amount()) < 0) {
+        if (fromCard.getBalance().isLessThan(paymentDto.amount())) {
             log.warn(LogMarker.AUDIT.getMarker(), "action=TRANSFER_MONEY | result=FAILURE | reason=INSUFFICIENT_FUNDS | userId={} | amount={} | fromCardId={} | toCardId={}",
                     userId, paymentDto.amount(), fromCard.getId(), toCard.getId());
             throw new InsufficientFundsException("There are not enough funds on the card");
         }
 
-        fromCard.setBalance(fromCard.getBalance().subtract(paymentDto.amount()));
-        toCard.setBalance(toCard.getBalance().add(paymentDto.amount()));
+        fromCard.setBalance(fromCard.getBalance().minus(paymentDto.amount()));
+        toCard.setBalance(toCard.getBalance().plus(paymentDto.amount()));
 
-        transferHistoryService.saveTransferHistory(TransferHistory.builder()
-                        .fromCard(fromCard)
-                        .toCard(toCard)
-                        .amount(paymentDto.amount())
-                        .user(fromCard.getUser())
-                        .comment(paymentDto.comment())
-                        .timestamp(OffsetDateTime.now())
-                .build());
+        TransferHistory transferHistory = TransferHistory.builder()
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(paymentDto.amount())
+                .user(fromCard.getUser())
+                .comment(paymentDto.comment())
+                .timestamp(OffsetDateTime.now())
+                .build();
+        transferHistoryService.saveTransferHistory(transferHistory);
+        spendingRollupService.recordTransfers(List.of(transferHistory));
+        outboxService.recordTransfers(List.of(transferHistory));
 
         cardService.saveCard(fromCard);
         cardService.saveCard(toCard);
@@ -79,6 +156,309 @@ public class PaymentService {
         return List.of(fromCard, toCard);
     }
 
+    /**
+     * Выполняет пакет переводов между картами пользователя в одной транзакции.
+     *
+     * Логика:
+     * 1. Блокирует все различные карты пакета одним запросом {@link CardService#lockUserCards(Long, java.util.Collection)}
+     *    (в порядке возрастания id, каждую карту один раз)
+     * 2. Проверяет переводы по порядку, изменяя только рабочие копии балансов
+     * 3. В режиме {@link BatchPaymentMode#ALL_OR_NOTHING} при первой ошибке ничего не применяет,
+     *    в режиме {@link BatchPaymentMode#BEST_EFFORT} пропускает ошибочные переводы
+     * 4. Переносит итоговые балансы в карты (по одному {@code UPDATE} на измененную карту, независимо от числа переводов)
+     *    и пишет историю пакетной вставкой {@link TransferHistoryService#saveAllTransferHistory(java.util.Collection)}
+     * 5. Прибавляет успешные переводы к агрегатам расходов: каждая затронутая строка агрегатов изменяется один раз
+     *
+     * Пакет выполняется с блокировкой карт, независимо от {@link TransferMode}, кроме {@link TransferMode#BALANCE_ENGINE}:
+     * в нем карты читаются без блокировки, проверка идет по балансам {@link BalanceEngine}, а успешные переводы
+     * применяются движком целиком; если балансы успели измениться и средств уже не хватает, пакет отклоняется
+     * {@link InsufficientFundsException}.
+     *
+     * @param payments переводы в порядке выполнения
+     * @param mode режим пакета; по умолчанию {@link BatchPaymentMode#ALL_OR_NOTHING}
+     * @param userId пользователя, который совершает переводы
+     * @return результат по каждому переводу
+     */
+    @Transactional
+    public BatchPaymentResultDto transferMoneyBatch(List<PaymentDto> payments, BatchPaymentMode mode, Long userId) {
+        BatchPaymentMode batchMode = mode == null ? BatchPaymentMode.ALL_OR_NOTHING : mode;
+
+        TreeSet<Long> cardIds = new TreeSet<>();
+        payments.forEach(payment -> {
+            cardIds.add(payment.fromCardId());
+            cardIds.add(payment.toCardId());
+        });
+        boolean engine = transferMode == TransferMode.BALANCE_ENGINE;
+        Map<Long, Card> lockedCards = engine ? cardService.findUserCards(userId, cardIds) : cardService.lockUserCards(userId, cardIds);
+
+        Map<Long, Money> balances = new HashMap<>();
+        if (engine) {
+            balances.putAll(balanceEngine.balances(lockedCards.keySet()));
+        } else {
+            lockedCards.forEach((cardId, card) -> balances.put(cardId, card.getBalance()));
+        }
+
+        List<BatchPaymentItemResultDto> items = new ArrayList<>(payments.size());
+        List<TransferHistory> histories = new ArrayList<>();
+        OffsetDateTime timestamp = OffsetDateTime.now();
+        int failed = 0;
+
+        for (int i = 0; i < payments.size(); i++) {
+            PaymentDto payment = payments.get(i);
+            try {
+                Card fromCard = getLockedCard(lockedCards, payment.fromCardId(), userId);
+                Card toCard = getLockedCard(lockedCards, payment.toCardId(), userId);
+                chekCard(fromCard, toCard);
+
+                Money fromBalance = balances.get(fromCard.getId());
+                if (fromBalance.isLessThan(payment.amount())) {
+                    throw new InsufficientFundsException("There are not enough funds on the card");
+                }
+                balances.put(fromCard.getId(), fromBalance.minus(payment.amount()));
+                balances.merge(toCard.getId(), payment.amount(), Money::plus);
+
+                histories.add(TransferHistory.builder()
+                        .fromCard(fromCard)
+                        .toCard(toCard)
+                        .amount(payment.amount())
+                        .user(fromCard.getUser())
+                        .comment(payment.comment())
+                        .timestamp(timestamp)
+                        .build());
+                items.add(batchItemResult(i, payment, BatchPaymentItemStatus.SUCCESS, null));
+            } catch (CardNotFoundException | CardBlockedException | InsufficientFundsException e) {
+                failed++;
+                items.add(batchItemResult(i, payment, BatchPaymentItemStatus.FAILED, e.getMessage()));
+                if (batchMode == BatchPaymentMode.ALL_OR_NOTHING) {
+                    return rejectBatch(payments, items, userId);
+                }
+            }
+        }
+
+        if (!engine) {
+            lockedCards.forEach((cardId, card) -> {
+                Money balance = balances.get(cardId);
+                if (!card.getBalance().equals(balance)) {
+                    card.setBalance(balance);
+                }
+            });
+        }
+        transferHistoryService.saveAllTransferHistory(histories);
+        spendingRollupService.recordTransfers(histories);
+        outboxService.recordTransfers(histories);
+        if (engine && !histories.isEmpty()) {
+            balanceEngine.transfer(histories.stream().map(PaymentService::movement).toList());
+        }
+
+        log.info(LogMarker.AUDIT.getMarker(), "action=TRANSFER_MONEY_BATCH | result=SUCCESSFULLY | reason=- | userId={} | mode={} | succeeded={} | failed={}",
+                userId, batchMode, histories.size(), failed);
+
+        return BatchPaymentResultDto.builder()
+                .mode(batchMode)
+                .committed(!histories.isEmpty())
+                .succeeded(histories.size())
+                .failed(failed)
+                .items(items)
+                .build();
+    }
+
+    /**
+     * Формирует результат отклоненного пакета в режиме {@link BatchPaymentMode#ALL_OR_NOTHING}:
+     * ошибочный перевод остается {@link BatchPaymentItemStatus#FAILED}, остальные помечаются {@link BatchPaymentItemStatus#ROLLED_BACK}
+     *
+     * @param payments переводы пакета
+     * @param items результаты уже проверенных переводов; последний из них ошибочный
+     * @param userId пользователя, который совершает переводы
+     * @return результат пакета без примененных изменений
+     */
+    private BatchPaymentResultDto rejectBatch(List<PaymentDto> payments, List<BatchPaymentItemResultDto> items, Long userId) {
+        BatchPaymentItemResultDto failedItem = items.get(items.size() - 1);
+        items.forEach(item -> {
+            if (item != failedItem) {
+                item.setStatus(BatchPaymentItemStatus.ROLLED_BACK);
+            }
+        });
+        for (int i = items.size(); i < payments.size(); i++) {
+            items.add(batchItemResult(i, payments.get(i), BatchPaymentItemStatus.ROLLED_BACK, null));
+        }
+
+        log.warn(LogMarker.AUDIT.getMarker(), "action=TRANSFER_MONEY_BATCH | result=FAILURE | reason={} | userId={} | mode={} | failedIndex={}",
+                failedItem.getMessage(), userId, BatchPaymentMode.ALL_OR_NOTHING, failedItem.getIndex());
+
+        return BatchPaymentResultDto.builder()
+                .mode(BatchPaymentMode.ALL_OR_NOTHING)
+                .committed(false)
+                .succeeded(0)
+                .failed(1)
+                .items(items)
+                .build();
+    }
+
+    private BatchPaymentItemResultDto batchItemResult(int index, PaymentDto payment, BatchPaymentItemStatus status, String message) {
+        return BatchPaymentItemResultDto.builder()
+                .index(index)
+                .fromCardId(payment.fromCardId())
+                .toCardId(payment.toCardId())
+                .amount(payment.amount())
+                .status(status)
+                .message(message)
+                .build();
+    }
+
+    /**
+     * Переводит деньги условными {@code UPDATE} без предварительного чтения карт.
+     *
+     * Логика:
+     * 1. Выполняет списание {@link CardService#tryDebitCard(Long, Long, Money)} и зачисление
+     *    {@link CardService#tryCreditCard(Long, Long, Money)} в порядке возрастания id карт,
+     *    чтобы встречные переводы захватывали строки в одном порядке
+     * 2. Если запрос не изменил строку, определяет причину отказа и выбрасывает исключение (транзакция откатывается)
+     * 3. Читает обновленные карты одним запросом и фиксирует перевод в истории и в агрегатах расходов
+     *
+     * @param paymentDto содержит id двух карт сумму и комментарий к переводу
+     * @param userId пользователя, который совершает перевод
+     * @return обновленные данные карт
+     */
+    private List<Card> transferMoneyByConditionalUpdate(PaymentDto paymentDto, Long userId) {
+        Long fromCardId = paymentDto.fromCardId();
+        Long toCardId = paymentDto.toCardId();
+
+        if (fromCardId <= toCardId) {
+            debit(paymentDto, userId);
+            credit(paymentDto, userId);
+        } else {
+            credit(paymentDto, userId);
+            debit(paymentDto, userId);
+        }
+
+        Map<Long, Card> cards = new HashMap<>();
+        cardService.findCardsByIds(List.of(fromCardId, toCardId)).forEach(card -> cards.put(card.getId(), card));
+        Card fromCard = cards.get(fromCardId);
+        Card toCard = cards.get(toCardId);
+
+        TransferHistory transferHistory = TransferHistory.builder()
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(paymentDto.amount())
+                .user(fromCard.getUser())
+                .comment(paymentDto.comment())
+                .timestamp(OffsetDateTime.now())
+                .build();
+        transferHistoryService.saveTransferHistory(transferHistory);
+        spendingRollupService.recordTransfers(List.of(transferHistory));
+        outboxService.recordTransfers(List.of(transferHistory));
+
+        log.info(LogMarker.AUDIT.getMarker(), "action=TRANSFER_MONEY | result=SUCCESSFULLY | reason=- | userId={} | amount={} | fromCardId={} | toCardId={}",
+                userId, paymentDto.amount(), fromCardId, toCardId);
+
+        return List.of(fromCard, toCard);
+    }
+
+    /**
+     * Переводит деньги через движок балансов в памяти ({@link BalanceEngine}).
+     *
+     * Логика:
+     * 1. Читает карты пользователя без блокировки и проверяет их так же, как остальные режимы ({@link #chekCard(Card, Card)})
+     * 2. Фиксирует перевод в истории и в агрегатах расходов
+     * 3. Проверяет достаточность средств и изменяет балансы в движке: перевод записывается в журнал движка
+     *    до возврата, а при откате транзакции списание возвращается
+     *
+     * Загруженные карты не изменяются: возвращаются их копии с балансами из движка.
+     *
+     * @param paymentDto содержит id двух карт сумму и комментарий к переводу
+     * @param userId пользователя, который совершает перевод
+     * @return обновленные данные карт
+     */
+    private List<Card> transferMoneyByBalanceEngine(PaymentDto paymentDto, Long userId) {
+        Map<Long, Card> cards = cardService.findUserCards(userId, List.of(paymentDto.fromCardId(), paymentDto.toCardId()));
+        Card fromCard = getLockedCard(cards, paymentDto.fromCardId(), userId);
+        Card toCard = getLockedCard(cards, paymentDto.toCardId(), userId);
+
+        chekCard(fromCard, toCard);
+
+        TransferHistory transferHistory = TransferHistory.builder()
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(paymentDto.amount())
+                .user(fromCard.getUser())
+                .comment(paymentDto.comment())
+                .timestamp(OffsetDateTime.now())
+                .build();
+        transferHistoryService.saveTransferHistory(transferHistory);
+        spendingRollupService.recordTransfers(List.of(transferHistory));
+        outboxService.recordTransfers(List.of(transferHistory));
+
+        Map<Long, Money> balances;
+        try {
+            balances = balanceEngine.transfer(List.of(movement(transferHistory)));
+        } catch (InsufficientFundsException e) {
+            log.warn(LogMarker.AUDIT.getMarker(), "action=TRANSFER_MONEY | result=FAILURE | reason=INSUFFICIENT_FUNDS | userId={} | amount={} | fromCardId={} | toCardId={}",
+                    userId, paymentDto.amount(), fromCard.getId(), toCard.getId());
+            throw e;
+        }
+
+        log.info(LogMarker.AUDIT.getMarker(), "action=TRANSFER_MONEY | result=SUCCESSFULLY | reason=- | userId={} | amount={} | fromCardId={} | toCardId={}",
+                userId, paymentDto.amount(), fromCard.getId(), toCard.getId());
+
+        return List.of(fromCard.toBuilder().balance(balances.get(fromCard.getId())).build(),
+                toCard.toBuilder().balance(balances.get(toCard.getId())).build());
+    }
+
+    private static BalanceEngine.Movement movement(TransferHistory transferHistory) {
+        return new BalanceEngine.Movement(transferHistory.getId(), transferHistory.getFromCard().getId(),
+                transferHistory.getToCard().getId(), transferHistory.getAmount());
+    }
+
+    /**
+     * Списывает сумму с карты отправителя
+     *
+     * @throws CardNotFoundException если карта не найдена у пользователя
+     * @throws CardBlockedException если карта заблокирована или истек ее срок действия
+     * @throws InsufficientFundsException если на карте недостаточно средств
+     */
+    private void debit(PaymentDto paymentDto, Long userId) {
+        if (cardService.tryDebitCard(paymentDto.fromCardId(), userId, paymentDto.amount())) {
+            return;
+        }
+        checkCard(cardService.findCardByUserIdAndCardId(paymentDto.fromCardId(), userId));
+
+        log.warn(LogMarker.AUDIT.getMarker(), "action=TRANSFER_MONEY | result=FAILURE | reason=INSUFFICIENT_FUNDS | userId={} | amount={} | fromCardId={} | toCardId={}",
+                userId, paymentDto.amount(), paymentDto.fromCardId(), paymentDto.toCardId());
+        throw new InsufficientFundsException("There are not enough funds on the card");
+    }
+
+    /**
+     * Зачисляет сумму на карту получателя
+     *
+     * @throws CardNotFoundException если карта не найдена у пользователя
+     * @throws CardBlockedException если карта заблокирована или истек ее срок действия
+     */
+    private void credit(PaymentDto paymentDto, Long userId) {
+        if (cardService.tryCreditCard(paymentDto.toCardId(), userId, paymentDto.amount())) {
+            return;
+        }
+        checkCard(cardService.findCardByUserIdAndCardId(paymentDto.toCardId(), userId));
+
+        throw new IllegalStateException("Card by id: %s was not credited".formatted(paymentDto.toCardId()));
+    }
+
+    /**
+     * Достает карту из заблокированных карт пользователя
+     *
+     * @param lockedCards карты, полученные методом {@link CardService#lockUserCards(Long, java.util.Collection)}
+     * @param cardId id искомой карты
+     * @param userId пользователя, которому должна принадлежать карта
+     * @return данные карты
+     * @throws CardNotFoundException если карта не найдена у пользователя
+     */
+    private Card getLockedCard(Map<Long, Card> lockedCards, Long cardId, Long userId) {
+        Card card = lockedCards.get(cardId);
+        if (card == null) {
+            throw new CardNotFoundException("Card by id: %s not found for user %s".formatted(cardId, userId));
+        }
+        return card;
+    }
+
     /**
      * Проверяет срок действия карт и не в заблокированы ли они
      *
@@ -100,4 +480,19 @@ public class PaymentService {
             throw new CardBlockedException("Card by id: %s has expired".formatted(toCard.getId()));
         }
     }
+
+    /**
+     * Проверяет срок действия одной карты и не заблокирована ли она
+     *
+     * @param card проверяемая карта
+     * @throws CardBlockedException если карта заблокирована или истек ее срок действия
+     */
+    private void checkCard(Card card) {
+        if (card.getStatusCard().equals(StatusCard.BLOCKED)) {
+            throw new CardBlockedException("Card by id: %s is blocked for operation".formatted(card.getId()));
+        }
+        if (card.getStatusCard().equals(StatusCard.EXPIRED)) {
+            throw new CardBlockedException("Card by id: %s has expired".formatted(card.getId()));
+        }
+    }
 }
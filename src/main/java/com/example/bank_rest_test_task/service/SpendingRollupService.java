@@ -0,0 +1,283 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.RollupBackfillResultDto;
+import com.example.bank_rest_test_task.dto.SpendingAnalyticsFilter;
+import com.example.bank_rest_test_task.dto.SpendingRollupDto;
+import com.example.bank_rest_test_task.entity.RollupPeriod;
+import com.example.bank_rest_test_task.entity.RollupScope;
+import com.example.bank_rest_test_task.entity.SpendingRollup;
+import com.example.bank_rest_test_task.entity.SpendingRollupId;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.exception.InvalidRollupRangeException;
+import com.example.bank_rest_test_task.exception.RollupBackfillInProgressException;
+import com.example.bank_rest_test_task.repository.SpendingRollupRepository;
+import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
+import com.example.bank_rest_test_task.repository.projection.TransferRollupRow;
+import com.example.bank_rest_test_task.util.LogMarker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Сервис агрегатов расходов: количество, сумма, минимальный и максимальный перевод за день и за месяц
+ * по каждой карте списания и по каждому пользователю.
+ *
+ * Агрегаты изменяются в транзакции перевода ({@link #recordTransfers(Collection)}), поэтому всегда согласованы
+ * с историей, а аналитика читает только таблицу агрегатов, без просмотра {@code transfers_history}.
+ * Дни и месяцы определяются в часовом поясе {@code payment.rollup.zone}.
+ *
+ * Для истории, накопленной до появления агрегатов (или для исправления расхождений), дневные агрегаты
+ * прошедших дней перестраиваются из истории ({@link #backfill(LocalDate, LocalDate, Long)}).
+ */
+@Slf4j
+@Service
+public class SpendingRollupService {
+    private final SpendingRollupRepository spendingRollupRepository;
+    private final TransferHistoryRepository transferHistoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService rollupBackfillExecutor;
+    private final ZoneId zone;
+    private final int chunkUsers;
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+
+    /**
+     * @param spendingRollupRepository интерфейс для работы с агрегатами в базе данных
+     * @param transferHistoryRepository интерфейс для работы с историей переводов в базе данных
+     * @param transactionManager менеджер транзакций для перестроения каждого диапазона пользователей
+     * @param rollupBackfillExecutor пул потоков перестроения
+     * @param zone часовой пояс, в котором определяются дни и месяцы (из property)
+     * @param chunkUsers количество id пользователей в одном диапазоне перестроения (из property)
+     */
+    public SpendingRollupService(SpendingRollupRepository spendingRollupRepository,
+                                 TransferHistoryRepository transferHistoryRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Qualifier("rollupBackfillExecutor") ExecutorService rollupBackfillExecutor,
+                                 @Value("${payment.rollup.zone:UTC}") ZoneId zone,
+                                 @Value("${payment.rollup.backfill.chunk-users:1000}") int chunkUsers) {
+        this.spendingRollupRepository = spendingRollupRepository;
+        this.transferHistoryRepository = transferHistoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rollupBackfillExecutor = rollupBackfillExecutor;
+        this.zone = zone;
+        this.chunkUsers = chunkUsers;
+    }
+
+    /**
+     * Прибавляет переводы к дневным и месячным агрегатам карт списания и пользователей.
+     *
+     * Вызывается в транзакции перевода после сохранения истории: переводы сначала сворачиваются в памяти,
+     * затем каждая затронутая строка агрегатов изменяется одним {@code upsert}
+     * (для одиночного перевода - четыре строки).
+     *
+     * @param transfers сохраненные переводы
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfers(Collection<TransferHistory> transfers) {
+        Map<SpendingRollupId, SpendingRollup> deltas = new HashMap<>();
+        for (TransferHistory transfer : transfers) {
+            LocalDate date = transfer.getTimestamp().atZoneSameInstant(zone).toLocalDate();
+            for (RollupPeriod period : RollupPeriod.values()) {
+                addTransfer(deltas, RollupScope.CARD, transfer.getFromCard().getId(), transfer.getUser().getId(),
+                        period, date, transfer.getAmount().toBigDecimal());
+                addTransfer(deltas, RollupScope.USER, transfer.getUser().getId(), transfer.getUser().getId(),
+                        period, date, transfer.getAmount().toBigDecimal());
+            }
+        }
+        spendingRollupRepository.addAll(deltas.values());
+    }
+
+    /**
+     * Получение расходов пользователя по всем его картам
+     *
+     * @param userId id пользователя
+     * @param filter период агрегатов и диапазон дат {@link SpendingAnalyticsFilter}
+     * @return агрегаты по возрастанию периода; периоды без переводов не возвращаются
+     */
+    @Transactional(readOnly = true)
+    public List<SpendingRollupDto> getUserSpending(Long userId, SpendingAnalyticsFilter filter) {
+        return spendingRollupRepository.findRollups(RollupScope.USER, userId, filter.getPeriod(),
+                filter.getFrom(), filter.getTo());
+    }
+
+    /**
+     * Получение расходов с карты пользователя; для чужой карты возвращается пустой список
+     *
+     * @param userId id владельца карты
+     * @param cardId id карты списания
+     * @param filter период агрегатов и диапазон дат {@link SpendingAnalyticsFilter}
+     * @return агрегаты по возрастанию периода; периоды без переводов не возвращаются
+     */
+    @Transactional(readOnly = true)
+    public List<SpendingRollupDto> getUserCardSpending(Long userId, Long cardId, SpendingAnalyticsFilter filter) {
+        return spendingRollupRepository.findUserCardRollups(cardId, userId, filter.getPeriod(),
+                filter.getFrom(), filter.getTo());
+    }
+
+    /**
+     * Получение расходов с любой карты (для администратора)
+     *
+     * @param cardId id карты списания
+     * @param filter период агрегатов и диапазон дат {@link SpendingAnalyticsFilter}
+     * @return агрегаты по возрастанию периода; периоды без переводов не возвращаются
+     */
+    @Transactional(readOnly = true)
+    public List<SpendingRollupDto> getCardSpending(Long cardId, SpendingAnalyticsFilter filter) {
+        return spendingRollupRepository.findRollups(RollupScope.CARD, cardId, filter.getPeriod(),
+                filter.getFrom(), filter.getTo());
+    }
+
+    /**
+     * Перестраивает агрегаты за прошедшие дни {@code [from, to)} из истории переводов.
+     *
+     * Логика:
+     * 1. Делит id пользователей из истории на диапазоны по {@code payment.rollup.backfill.chunk-users};
+     *    все агрегаты (карт и пользователей) принадлежат одному пользователю, поэтому диапазоны не пересекаются
+     *    по строкам агрегатов и обрабатываются параллельно, каждый в своей транзакции
+     * 2. Для диапазона читает историю по покрывающему индексу {@code (user_id, timestamp, id)} и сворачивает ее
+     *    в дневные агрегаты в памяти
+     * 3. Заменяет сохраненные дневные агрегаты диапазона вычисленными
+     * 4. Прибавляет к месячным агрегатам разницу между новыми и прежними дневными агрегатами; прибавление
+     *    выполняется тем же {@code upsert}, что и при переводе, поэтому переводы текущего месяца,
+     *    выполняемые во время перестроения, не теряются
+     *
+     * Текущий день не перестраивается: его агрегаты изменяются переводами.
+     * Повторный запуск за те же дни не меняет результат.
+     *
+     * @param from первый перестраиваемый день
+     * @param to день, с которого агрегаты не перестраиваются; не позже текущего дня
+     * @param adminId id администратора, запустившего перестроение (для аудита)
+     * @return количество диапазонов и обработанных переводов
+     * @throws InvalidRollupRangeException если {@code from} не раньше {@code to} или {@code to} позже текущего дня
+     * @throws RollupBackfillInProgressException если перестроение уже выполняется
+     */
+    public RollupBackfillResultDto backfill(LocalDate from, LocalDate to, Long adminId) {
+        if (!from.isBefore(to) || to.isAfter(LocalDate.now(zone))) {
+            throw new InvalidRollupRangeException("Backfill range must be non-empty and must not include the current day");
+        }
+        if (!backfillRunning.compareAndSet(false, true)) {
+            throw new RollupBackfillInProgressException("Spending rollup backfill is already running");
+        }
+        try {
+            long startedAt = System.nanoTime();
+            List<CompletableFuture<Long>> chunks = new ArrayList<>();
+            Long minUserId = transferHistoryRepository.findMinUserId();
+            Long maxUserId = transferHistoryRepository.findMaxUserId();
+            if (minUserId != null) {
+                for (long start = minUserId; start <= maxUserId; start += chunkUsers) {
+                    long userIdFrom = start;
+                    long userIdTo = Math.min(start + chunkUsers - 1, maxUserId);
+                    chunks.add(CompletableFuture.supplyAsync(() -> transactionTemplate.execute(
+                            status -> backfillChunk(userIdFrom, userIdTo, from, to)), rollupBackfillExecutor));
+                }
+            }
+            long transfers = join(chunks);
+
+            RollupBackfillResultDto result = RollupBackfillResultDto.builder()
+                    .from(from)
+                    .to(to)
+                    .chunks(chunks.size())
+                    .transfers(transfers)
+                    .durationMillis((System.nanoTime() - startedAt) / 1_000_000)
+                    .build();
+            log.info(LogMarker.AUDIT.getMarker(), "action=BACKFILL_SPENDING_ROLLUPS | result=SUCCESSFULLY | reason=- | adminId={} | from={} | to={} | chunks={} | transfers={}",
+                    adminId, from, to, result.getChunks(), transfers);
+            return result;
+        } finally {
+            backfillRunning.set(false);
+        }
+    }
+
+    /**
+     * Перестраивает агрегаты одного диапазона пользователей
+     *
+     * @return количество обработанных переводов
+     */
+    private long backfillChunk(long userIdFrom, long userIdTo, LocalDate from, LocalDate to) {
+        Map<SpendingRollupId, SpendingRollup> daily = new HashMap<>();
+        long transfers = 0;
+        try (Stream<TransferRollupRow> rows = transferHistoryRepository.streamRollupRows(userIdFrom, userIdTo,
+                startOf(from), startOf(to))) {
+            for (TransferRollupRow row : (Iterable<TransferRollupRow>) rows::iterator) {
+                LocalDate date = row.timestamp().atZoneSameInstant(zone).toLocalDate();
+                addTransfer(daily, RollupScope.CARD, row.fromCardId(), row.userId(), RollupPeriod.DAY, date, row.amount().toBigDecimal());
+                addTransfer(daily, RollupScope.USER, row.userId(), row.userId(), RollupPeriod.DAY, date, row.amount().toBigDecimal());
+                transfers++;
+            }
+        }
+
+        Map<SpendingRollupId, SpendingRollup> monthly = new HashMap<>();
+        daily.values().forEach(rollup -> monthly.computeIfAbsent(monthOf(rollup.getId()), id -> empty(id, rollup.getUserId()))
+                .add(rollup));
+        for (SpendingRollup previous : spendingRollupRepository.findDailyRollups(userIdFrom, userIdTo, from, to)) {
+            SpendingRollup delta = monthly.computeIfAbsent(monthOf(previous.getId()), id -> empty(id, previous.getUserId()));
+            delta.setTxCount(delta.getTxCount() - previous.getTxCount());
+            delta.setTotalAmount(valueOrZero(delta.getTotalAmount()).subtract(previous.getTotalAmount()));
+            if (delta.getMinAmount() == null) {
+                delta.setMinAmount(previous.getMinAmount());
+                delta.setMaxAmount(previous.getMaxAmount());
+            }
+        }
+
+        spendingRollupRepository.deleteDailyRollups(userIdFrom, userIdTo, from, to);
+        spendingRollupRepository.addAll(daily.values());
+        spendingRollupRepository.addAll(monthly.values().stream()
+                .filter(delta -> delta.getTxCount() != 0 || delta.getTotalAmount().signum() != 0)
+                .toList());
+        return transfers;
+    }
+
+    private OffsetDateTime startOf(LocalDate date) {
+        return date.atStartOfDay(zone).toOffsetDateTime();
+    }
+
+    private static void addTransfer(Map<SpendingRollupId, SpendingRollup> rollups, RollupScope scope, Long ownerId, Long userId,
+                                    RollupPeriod period, LocalDate date, BigDecimal amount) {
+        SpendingRollupId id = new SpendingRollupId(scope, ownerId, period, period.periodStart(date));
+        rollups.computeIfAbsent(id, key -> empty(key, userId)).add(amount);
+    }
+
+    private static SpendingRollupId monthOf(SpendingRollupId day) {
+        return new SpendingRollupId(day.getScope(), day.getOwnerId(), RollupPeriod.MONTH,
+                RollupPeriod.MONTH.periodStart(day.getPeriodStart()));
+    }
+
+    private static SpendingRollup empty(SpendingRollupId id, Long userId) {
+        return SpendingRollup.builder().id(id).userId(userId).build();
+    }
+
+    private static BigDecimal valueOrZero(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    /**
+     * Дожидается всех диапазонов; при ошибке отменяет еще не начатые и пробрасывает исходное исключение
+     */
+    private static long join(List<CompletableFuture<Long>> chunks) {
+        try {
+            return chunks.stream().mapToLong(CompletableFuture::join).sum();
+        } catch (CompletionException e) {
+            chunks.forEach(chunk -> chunk.cancel(false));
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+}
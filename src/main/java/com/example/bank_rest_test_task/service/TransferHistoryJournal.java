@@ -0,0 +1,511 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.util.LogMarker;
+import com.example.bank_rest_test_task.util.MappedJournal;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.H2SequenceMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.PostgresSequenceMaxValueIncrementer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отложенная запись истории переводов через локальный журнал ({@link HistoryWriteMode#JOURNAL}).
+ *
+ * Транзакция перевода не вставляет строки в {@code transfers_history}, поэтому блокировки карт удерживаются
+ * меньше. Логика:
+ * 1. Записи истории получают id из последовательности {@code transfers_history_id_seq} блоками (pooled-lo,
+ *    как у Hibernate) и копятся до фиксации транзакции
+ * 2. Перед фиксацией ({@link TransactionSynchronization#beforeCommit}) записи транзакции добавляются в журнал
+ *    ({@link MappedJournal}) одной записью и сбрасываются на диск; ошибка журнала откатывает перевод.
+ *    В той же транзакции вставляется отметка фиксации ({@code transfer_history_journal_commits}) с id первой записи
+ * 3. Если транзакция все-таки откатилась, в журнал добавляется отметка отмены, и записи не переносятся
+ * 4. Фоновый поток переносит записи завершенных транзакций пакетной вставкой JDBC, удаляет их отметки фиксации
+ *    и отмечает записи обработанными
+ *
+ * После перезапуска необработанные записи переносятся заново, но только если отметка фиксации существует:
+ * сбой между записью в журнал и фиксацией в базе оставляет запись без отметки, она записывается в аудит
+ * и отбрасывается. Строки, уже вставленные до сбоя, пропускаются по id. Поэтому строка истории появляется только
+ * для зафиксированного перевода, и {@link BalanceEngine} может проверять фиксацию по ней.
+ *
+ * Строки, нарушающие ограничения базы (например, удаленная карта), не блокируют журнал: они записываются
+ * в аудит и пропускаются. При недоступности базы перенос повторяется с той же позиции.
+ */
+@Slf4j
+@Service
+public class TransferHistoryJournal {
+    private static final String POSTGRESQL = "PostgreSQL";
+    private static final String H2 = "H2";
+    private static final String SEQUENCE = "transfers_history_id_seq";
+    private static final int ID_BLOCK_SIZE = 50;
+    private static final byte ENTRIES = 1;
+    private static final byte ABORT = 2;
+
+    private static final String INSERT_COMMIT = "insert into transfer_history_journal_commits (history_id) values (?)";
+
+    private static final String INSERT = """
+            insert into transfers_history (id, from_card_id, to_card_id, user_id, amount, "timestamp", comment)
+            values (?, ?, ?, ?, ?, ?, ?)""";
+
+    private final boolean enabled;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService historyJournalDrainer;
+    private final Duration drainInterval;
+    private final int drainBatchSize;
+    private final MappedJournal journal;
+    private final DataFieldMaxValueIncrementer idIncrementer;
+    private final TreeSet<MappedJournal.Position> pending = new TreeSet<>();
+    private final Set<MappedJournal.Position> aborted = ConcurrentHashMap.newKeySet();
+    private final MappedJournal.Position replayUntil;
+    private long nextId;
+    private long idLimit;
+    private ScheduledFuture<?> drainTask;
+
+    /**
+     * При включенном журнале открывает его и находит отметки отмены в необработанной части
+     *
+     * @param writeMode способ записи истории (из property)
+     * @param jdbcTemplate выполнение вставок
+     * @param dataSource источник данных, по метаданным которого выбирается получение id из последовательности
+     * @param transactionManager менеджер транзакций переноса
+     * @param historyJournalDrainer поток переноса
+     * @param dir каталог сегментов журнала (из property)
+     * @param segmentSize размер сегмента журнала в байтах (из property)
+     * @param fsync сбрасывать ли записи на диск до фиксации транзакции (из property)
+     * @param drainInterval пауза между переносами (из property)
+     * @param drainBatchSize количество транзакций в одной пакетной вставке (из property)
+     * @throws MetaDataAccessException если не удалось определить базу данных
+     */
+    public TransferHistoryJournal(@Value("${payment.history.write-mode:SYNCHRONOUS}") HistoryWriteMode writeMode,
+                                  JdbcTemplate jdbcTemplate, DataSource dataSource,
+                                  PlatformTransactionManager transactionManager,
+                                  @Qualifier("historyJournalDrainer") ScheduledExecutorService historyJournalDrainer,
+                                  @Value("${payment.history.journal.dir:./journal/transfer-history}") Path dir,
+                                  @Value("${payment.history.journal.segment-size:67108864}") int segmentSize,
+                                  @Value("${payment.history.journal.fsync:true}") boolean fsync,
+                                  @Value("${payment.history.journal.drain-interval:PT0.2S}") Duration drainInterval,
+                                  @Value("${payment.history.journal.drain-batch-size:500}") int drainBatchSize)
+            throws MetaDataAccessException {
+        this.enabled = writeMode == HistoryWriteMode.JOURNAL;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.historyJournalDrainer = historyJournalDrainer;
+        this.drainInterval = drainInterval;
+        this.drainBatchSize = drainBatchSize;
+        if (!enabled) {
+            this.journal = null;
+            this.idIncrementer = null;
+            this.replayUntil = null;
+            return;
+        }
+        this.idIncrementer = idIncrementer(dataSource);
+        this.journal = new MappedJournal(dir, segmentSize, fsync);
+        this.replayUntil = journal.writePosition();
+        int undrained = findAborted();
+        if (undrained > 0) {
+            log.warn("Transfer history journal {} has {} undrained records, replaying", dir, undrained);
+        }
+    }
+
+    /**
+     * @return включена ли запись истории через журнал
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Назначает записям id и добавляет их в журнал при фиксации текущей транзакции
+     *
+     * @param transferHistories записи истории; после вызова у них заполнен id
+     * @throws IllegalStateException если журнал выключен или нет активной транзакции
+     */
+    public void append(Collection<TransferHistory> transferHistories) {
+        if (!enabled || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Transfer history journal requires JOURNAL mode and an active transaction");
+        }
+        JournalSynchronization synchronization = (JournalSynchronization) TransactionSynchronizationManager.getResource(this);
+        if (synchronization == null) {
+            synchronization = new JournalSynchronization();
+            TransactionSynchronizationManager.bindResource(this, synchronization);
+            TransactionSynchronizationManager.registerSynchronization(synchronization);
+        }
+        for (TransferHistory transferHistory : transferHistories) {
+            transferHistory.setId(nextId());
+            synchronization.entries.add(transferHistory);
+        }
+    }
+
+    /**
+     * Запускает перенос записей после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startDraining() {
+        if (enabled) {
+            drainTask = historyJournalDrainer.scheduleWithFixedDelay(this::drainQuietly, 0,
+                    drainInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Останавливает перенос, переносит оставшиеся записи и закрывает журнал
+     */
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        if (drainTask != null) {
+            drainTask.cancel(false);
+        }
+        drainQuietly();
+        journal.close();
+    }
+
+    /**
+     * Переносит в базу все записи завершенных транзакций
+     *
+     * @return количество перенесенных записей истории
+     */
+    public synchronized long drain() {
+        if (!enabled) {
+            return 0;
+        }
+        long drained = 0;
+        while (true) {
+            MappedJournal.Position limit;
+            synchronized (pending) {
+                limit = pending.isEmpty() ? journal.writePosition() : pending.first();
+            }
+            List<MappedJournal.Record> records = journal.read(journal.drainedPosition(), limit, drainBatchSize);
+            if (records.isEmpty()) {
+                return drained;
+            }
+
+            boolean replay = records.get(0).position().compareTo(replayUntil) < 0;
+            List<List<JournalEntry>> transactions = new ArrayList<>();
+            for (MappedJournal.Record record : records) {
+                if (record.payload()[0] == ENTRIES && !aborted.remove(record.position())) {
+                    transactions.add(decodeEntries(record.payload()));
+                }
+            }
+            if (replay) {
+                transactions = withoutUncommitted(transactions);
+            }
+            List<JournalEntry> entries = transactions.stream().flatMap(List::stream).toList();
+            MappedJournal.Record last = records.get(records.size() - 1);
+            drained += insert(entries, replay);
+            deleteCommitMarkers(transactions);
+            journal.markDrained(last.next());
+        }
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.error("Failed to drain transfer history journal, retrying later", e);
+        }
+    }
+
+    private long insert(List<JournalEntry> entries, boolean replay) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                List<JournalEntry> rows = replay ? withoutInserted(entries) : entries;
+                jdbcTemplate.batchUpdate(INSERT, rows, rows.size(), TransferHistoryJournal::setInsertParameters);
+                if (replay) {
+                    rows.forEach(entry -> log.warn(LogMarker.AUDIT.getMarker(),
+                            "action=REPLAY_TRANSFER_HISTORY | result=SUCCESSFULLY | reason=JOURNAL_RECOVERY | id={} | userId={} | amount={} | fromCardId={} | toCardId={}",
+                            entry.id(), entry.userId(), entry.amount(), entry.fromCardId(), entry.toCardId()));
+                }
+                return (long) rows.size();
+            });
+        } catch (DataIntegrityViolationException e) {
+            long inserted = 0;
+            for (JournalEntry entry : entries) {
+                inserted += insertOne(entry, replay);
+            }
+            return inserted;
+        }
+    }
+
+    private long insertOne(JournalEntry entry, boolean replay) {
+        try {
+            return transactionTemplate.execute(status -> {
+                if (replay && withoutInserted(List.of(entry)).isEmpty()) {
+                    return 0L;
+                }
+                jdbcTemplate.update(INSERT, ps -> setInsertParameters(ps, entry));
+                return 1L;
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.error(LogMarker.AUDIT.getMarker(),
+                    "action=DRAIN_TRANSFER_HISTORY | result=FAILURE | reason={} | id={} | userId={} | amount={} | fromCardId={} | toCardId={} | timestamp={} | comment={}",
+                    e.getMostSpecificCause().getMessage(), entry.id(), entry.userId(), entry.amount(),
+                    entry.fromCardId(), entry.toCardId(), entry.timestamp(), entry.comment());
+            return 0;
+        }
+    }
+
+    /**
+     * Оставляет записи транзакций, отметка фиксации которых есть в базе; остальные записаны в журнал перед сбоем,
+     * и их транзакции не зафиксированы
+     */
+    private List<List<JournalEntry>> withoutUncommitted(List<List<JournalEntry>> transactions) {
+        if (transactions.isEmpty()) {
+            return transactions;
+        }
+        Set<Long> committed = new HashSet<>(jdbcTemplate.queryForList(
+                "select history_id from transfer_history_journal_commits where history_id in ("
+                        + placeholders(transactions.size()) + ")", Long.class,
+                transactions.stream().map(entries -> entries.get(0).id()).toArray()));
+        List<List<JournalEntry>> result = new ArrayList<>(transactions.size());
+        for (List<JournalEntry> entries : transactions) {
+            if (committed.contains(entries.get(0).id())) {
+                result.add(entries);
+                continue;
+            }
+            entries.forEach(entry -> log.warn(LogMarker.AUDIT.getMarker(),
+                    "action=REPLAY_TRANSFER_HISTORY | result=FAILURE | reason=NOT_COMMITTED | id={} | userId={} | amount={} | fromCardId={} | toCardId={}",
+                    entry.id(), entry.userId(), entry.amount(), entry.fromCardId(), entry.toCardId()));
+        }
+        return result;
+    }
+
+    private void deleteCommitMarkers(List<List<JournalEntry>> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("delete from transfer_history_journal_commits where history_id in ("
+                        + placeholders(transactions.size()) + ")",
+                transactions.stream().map(entries -> entries.get(0).id()).toArray());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private List<JournalEntry> withoutInserted(List<JournalEntry> entries) {
+        Set<Long> inserted = new HashSet<>(jdbcTemplate.queryForList(
+                "select id from transfers_history where id in (" + placeholders(entries.size()) + ")", Long.class,
+                entries.stream().map(JournalEntry::id).toArray()));
+        return entries.stream().filter(entry -> !inserted.contains(entry.id())).toList();
+    }
+
+    private static void setInsertParameters(PreparedStatement ps, JournalEntry entry) throws SQLException {
+        ps.setLong(1, entry.id());
+        ps.setLong(2, entry.fromCardId());
+        ps.setLong(3, entry.toCardId());
+        ps.setLong(4, entry.userId());
+        ps.setBigDecimal(5, entry.amount());
+        ps.setObject(6, entry.timestamp());
+        ps.setString(7, entry.comment());
+    }
+
+    private int findAborted() {
+        int undrained = 0;
+        MappedJournal.Position position = journal.drainedPosition();
+        List<MappedJournal.Record> records;
+        while (!(records = journal.read(position, replayUntil, drainBatchSize)).isEmpty()) {
+            for (MappedJournal.Record record : records) {
+                if (record.payload()[0] == ABORT) {
+                    aborted.add(decodeAbort(record.payload()));
+                } else {
+                    undrained++;
+                }
+            }
+            position = records.get(records.size() - 1).next();
+        }
+        return undrained;
+    }
+
+    private synchronized long nextId() {
+        if (nextId == idLimit) {
+            nextId = idIncrementer.nextLongValue();
+            idLimit = nextId + ID_BLOCK_SIZE;
+        }
+        return nextId++;
+    }
+
+    private static DataFieldMaxValueIncrementer idIncrementer(DataSource dataSource) throws MetaDataAccessException {
+        String databaseName = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        if (POSTGRESQL.equalsIgnoreCase(databaseName)) {
+            return new PostgresSequenceMaxValueIncrementer(dataSource, SEQUENCE);
+        }
+        if (H2.equalsIgnoreCase(databaseName)) {
+            return new H2SequenceMaxValueIncrementer(dataSource, SEQUENCE);
+        }
+        throw new IllegalStateException("Transfer history journal does not support database " + databaseName);
+    }
+
+    private static byte[] encodeEntries(List<TransferHistory> transferHistories) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * transferHistories.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ENTRIES);
+            out.writeInt(transferHistories.size());
+            for (TransferHistory transferHistory : transferHistories) {
+                out.writeLong(transferHistory.getId());
+                out.writeLong(transferHistory.getUser().getId());
+                out.writeLong(transferHistory.getFromCard().getId());
+                out.writeLong(transferHistory.getToCard().getId());
+                writeString(out, transferHistory.getAmount().toString());
+                Instant instant = transferHistory.getTimestamp().toInstant();
+                out.writeLong(instant.getEpochSecond());
+                out.writeInt(instant.getNano());
+                out.writeInt(transferHistory.getTimestamp().getOffset().getTotalSeconds());
+                out.writeBoolean(transferHistory.getComment() != null);
+                if (transferHistory.getComment() != null) {
+                    writeString(out, transferHistory.getComment());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<JournalEntry> decodeEntries(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            in.readByte();
+            int count = in.readInt();
+            List<JournalEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                long userId = in.readLong();
+                long fromCardId = in.readLong();
+                long toCardId = in.readLong();
+                BigDecimal amount = new BigDecimal(readString(in));
+                Instant instant = Instant.ofEpochSecond(in.readLong(), in.readInt());
+                OffsetDateTime timestamp = instant.atOffset(ZoneOffset.ofTotalSeconds(in.readInt()));
+                String comment = in.readBoolean() ? readString(in) : null;
+                entries.add(new JournalEntry(id, userId, fromCardId, toCardId, amount, timestamp, comment));
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encodeAbort(MappedJournal.Position position) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(13);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ABORT);
+            out.writeLong(position.segment());
+            out.writeInt(position.offset());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static MappedJournal.Position decodeAbort(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            in.readByte();
+            return new MappedJournal.Position(in.readLong(), in.readInt());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Записи истории одной транзакции; добавляются в журнал перед фиксацией
+     */
+    private final class JournalSynchronization implements TransactionSynchronization {
+        private final List<TransferHistory> entries = new ArrayList<>();
+        private MappedJournal.Position position;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (entries.isEmpty()) {
+                return;
+            }
+            byte[] payload = encodeEntries(entries);
+            // Отметка фиксируется вместе с переводом: по ней восстановление отличает зафиксированные записи
+            jdbcTemplate.update(INSERT_COMMIT, entries.get(0).getId());
+            synchronized (pending) {
+                position = journal.append(List.of(payload));
+                pending.add(position);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransferHistoryJournal.this);
+            if (position == null) {
+                return;
+            }
+            try {
+                if (status == STATUS_ROLLED_BACK) {
+                    aborted.add(position);
+                    journal.append(List.of(encodeAbort(position)));
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to journal rollback of transfer history at {}", position, e);
+            } finally {
+                synchronized (pending) {
+                    pending.remove(position);
+                }
+            }
+        }
+    }
+
+    private record JournalEntry(long id, long userId, long fromCardId, long toCardId, BigDecimal amount,
+                                OffsetDateTime timestamp, String comment) {
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.util.LogMarker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.DatabaseMetaData;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Обслуживание помесячных партиций {@code transfers_history} (PostgreSQL, миграция V12).
+ *
+ * Таблица разбита по {@code timestamp} на партиции {@code transfers_history_pYYYY_MM}, границы - начало месяца в UTC.
+ * Периодическая задача:
+ * 1. Создает партиции текущего месяца и {@code monthsAhead} следующих, чтобы новые переводы не попадали
+ *    в партицию по умолчанию
+ * 2. Отсоединяет партиции старше срока хранения ({@code DETACH PARTITION}): запросы истории их больше не видят
+ * 3. Выгружает каждую отсоединенную партицию в {@code <archiveDir>/transfers_history_pYYYY_MM.csv.gz},
+ *    сверяет количество строк и удаляет таблицу
+ *
+ * Шаги 2 и 3 разделены: если архивирование прервалось, отсоединенная таблица остается в базе
+ * и архивируется при следующем запуске. Агрегаты расходов ({@code spending_rollups}) при этом не удаляются.
+ *
+ * На других базах (H2 в тестах) таблица не разбита на партиции, и задача ничего не делает.
+ * Рассчитана на выполнение в одном экземпляре приложения, как и очистка ключей идемпотентности.
+ */
+@Slf4j
+@Service
+public class TransferHistoryPartitionService {
+    private static final String POSTGRESQL = "PostgreSQL";
+    private static final String PARENT_TABLE = "transfers_history";
+    private static final Pattern PARTITION_NAME = Pattern.compile("transfers_history_p(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final int ARCHIVE_FETCH_SIZE = 1000;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private static final String FIND_PARTITIONS = """
+            select c.relname, exists(select 1 from pg_inherits i where i.inhrelid = c.oid) as attached
+            from pg_class c
+            join pg_namespace n on n.oid = c.relnamespace
+            where n.nspname = current_schema() and c.relkind = 'r' and c.relname like 'transfers\\_history\\_p%'
+            order by c.relname
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate archiveJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean postgres;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Path archiveDir;
+
+    /**
+     * @param jdbcTemplate выполнение DDL партиций
+     * @param dataSource источник данных, по метаданным которого определяется база
+     * @param transactionManager менеджер транзакций для чтения партиции курсором
+     * @param monthsAhead на сколько месяцев вперед создавать партиции (из property)
+     * @param retentionMonths сколько полных месяцев до текущего хранить в таблице (из property)
+     * @param archiveDir каталог архивов отсоединенных партиций (из property)
+     * @throws MetaDataAccessException если не удалось определить базу данных
+     */
+    public TransferHistoryPartitionService(JdbcTemplate jdbcTemplate, DataSource dataSource,
+                                           PlatformTransactionManager transactionManager,
+                                           @Value("${payment.history.partitions.months-ahead:3}") int monthsAhead,
+                                           @Value("${payment.history.retention.months:24}") int retentionMonths,
+                                           @Value("${payment.history.archive.dir:./archive/transfers-history}") Path archiveDir)
+            throws MetaDataAccessException {
+        if (monthsAhead < 0 || retentionMonths <= 0) {
+            throw new IllegalArgumentException("Partition months ahead must not be negative and retention must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.archiveJdbcTemplate = new JdbcTemplate(dataSource);
+        this.archiveJdbcTemplate.setFetchSize(ARCHIVE_FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.postgres = POSTGRESQL.equalsIgnoreCase(
+                JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName));
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archiveDir = archiveDir;
+    }
+
+    /**
+     * Создает недостающие партиции, отсоединяет и архивирует устаревшие (первый запуск - при старте приложения)
+     */
+    @Scheduled(fixedDelayString = "${payment.history.partitions.maintenance-interval:PT6H}")
+    public void maintainPartitions() {
+        if (!postgres) {
+            return;
+        }
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        createPartitions(current);
+        archiveExpiredPartitions(current);
+    }
+
+    /**
+     * Создает партиции с {@code current} по {@code current + monthsAhead} включительно, если их еще нет.
+     *
+     * Если партиция по умолчанию уже содержит строки из диапазона месяца, PostgreSQL не создаст партицию;
+     * ошибка записывается в лог, остальные месяцы обрабатываются.
+     *
+     * @param current текущий месяц (UTC)
+     */
+    void createPartitions(YearMonth current) {
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            try {
+                jdbcTemplate.execute(createPartitionSql(month));
+            } catch (DataAccessException e) {
+                log.error("Failed to create partition {}", partitionName(month), e);
+            }
+        }
+    }
+
+    /**
+     * Отсоединяет партиции месяцев раньше {@code current - retentionMonths}, затем архивирует и удаляет
+     * все отсоединенные партиции
+     *
+     * @param current текущий месяц (UTC)
+     */
+    void archiveExpiredPartitions(YearMonth current) {
+        YearMonth oldestRetained = current.minusMonths(retentionMonths);
+        List<PartitionTable> partitions = jdbcTemplate.query(FIND_PARTITIONS,
+                (rs, rowNum) -> new PartitionTable(rs.getString(1), rs.getBoolean(2)));
+
+        for (PartitionTable partition : partitions) {
+            Optional<YearMonth> month = partitionMonth(partition.name());
+            if (month.isEmpty() || !month.get().isBefore(oldestRetained)) {
+                continue;
+            }
+            try {
+                if (partition.attached()) {
+                    jdbcTemplate.execute("alter table " + PARENT_TABLE + " detach partition " + partition.name());
+                    log.info(LogMarker.AUDIT.getMarker(), "action=DETACH_PARTITION | result=SUCCESSFULLY | reason=- | table={}",
+                            partition.name());
+                }
+                archivePartition(partition.name());
+            } catch (DataAccessException | UncheckedIOException e) {
+                log.error(LogMarker.AUDIT.getMarker(), "action=ARCHIVE_PARTITION | result=FAILED | reason={} | table={}",
+                        e.getMessage(), partition.name(), e);
+            }
+        }
+    }
+
+    /**
+     * Выгружает отсоединенную партицию в сжатый CSV (формат выгрузки истории администратором)
+     * и удаляет таблицу, если количество выгруженных строк совпало с количеством строк в таблице.
+     *
+     * Файл пишется во временный и переименовывается после успешной записи, поэтому в каталоге архивов
+     * не остается неполных файлов; повторное архивирование перезаписывает файл.
+     *
+     * @param table имя отсоединенной партиции
+     * @return количество выгруженных строк
+     * @throws UncheckedIOException если не удалось записать или проверить архив
+     * @throws IllegalStateException если количество строк в архиве не совпало с таблицей
+     */
+    long archivePartition(String table) {
+        if (partitionMonth(table).isEmpty()) {
+            throw new IllegalArgumentException("Not a transfers_history partition: " + table);
+        }
+        Path archive = archiveDir.resolve(table + ".csv.gz");
+        Path temporary = archiveDir.resolve(table + ".csv.gz.tmp");
+
+        long archived = transactionTemplate.execute(status -> {
+            long written = writeArchive(table, temporary);
+            Long expected = jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+            if (expected == null || expected != written) {
+                throw new IllegalStateException("Archived %d rows of %d in %s".formatted(written, expected, table));
+            }
+            return written;
+        });
+        try {
+            verifyArchive(temporary);
+            Files.move(temporary, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        jdbcTemplate.execute("drop table " + table);
+
+        log.info(LogMarker.AUDIT.getMarker(), "action=ARCHIVE_PARTITION | result=SUCCESSFULLY | reason=- | table={} | rows={} | file={}",
+                table, archived, archive);
+        return archived;
+    }
+
+    private long writeArchive(String table, Path file) {
+        long[] count = {0};
+        try {
+            Files.createDirectories(archiveDir);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(file), WRITE_BUFFER_SIZE), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+                writer.write(ExportService.TRANSFER_CSV_HEADER);
+                writer.write('\n');
+                archiveJdbcTemplate.query("select id, user_id, from_card_id, to_card_id, amount, \"timestamp\", comment from "
+                        + table + " order by id", rs -> {
+                    try {
+                        writer.write(ExportService.csv(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4),
+                                rs.getBigDecimal(5), rs.getObject(6, OffsetDateTime.class), rs.getString(7)));
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count[0];
+    }
+
+    /**
+     * Читает архив до конца: GZIP проверяет контрольную сумму и длину данных
+     */
+    private static void verifyArchive(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file), WRITE_BUFFER_SIZE)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARENT_TABLE + "_p" + month.format(PARTITION_SUFFIX);
+    }
+
+    static Optional<YearMonth> partitionMonth(String table) {
+        Matcher matcher = PARTITION_NAME.matcher(table);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        int month = Integer.parseInt(matcher.group(2));
+        if (month < 1 || month > 12) {
+            return Optional.empty();
+        }
+        return Optional.of(YearMonth.of(Integer.parseInt(matcher.group(1)), month));
+    }
+
+    static String createPartitionSql(YearMonth month) {
+        return "create table if not exists %s partition of %s for values from ('%s') to ('%s')".formatted(
+                partitionName(month), PARENT_TABLE, month.atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC),
+                month.plusMonths(1).atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC));
+    }
+
+    private record PartitionTable(String name, boolean attached) {
+    }
+}
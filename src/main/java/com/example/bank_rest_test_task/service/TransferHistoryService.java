@@ -1,26 +1,49 @@
 package com.example.bank_rest_test_task.service;
 
+import com.example.bank_rest_test_task.dto.TransferHistoryDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryFilter;
 import com.example.bank_rest_test_task.entity.TransferHistory;
 import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
  * Сервис истории переводов.
  *
  * Хранит и предоставляет постраничный доступ к операциям пользователя.
+ *
+ * Запись истории выполняется в транзакции перевода либо, в режиме {@link HistoryWriteMode#JOURNAL},
+ * через журнал {@link TransferHistoryJournal} с переносом в базу после фиксации.
  */
 @Service
 public class TransferHistoryService {
+    /**
+     * Порядок истории переводов: от новых к старым; ключи курсора - {@code timestamp} и {@code id}
+     */
+    public static final Sort HISTORY_SORT = Sort.by(Sort.Direction.DESC, "timestamp", "id");
+
     private final TransferHistoryRepository transferHistoryRepository;
+    private final TransferHistoryJournal transferHistoryJournal;
 
     /**
      * @param transferHistoryRepository интерфейс для работы с JPA сущностями в базе данных
+     * @param transferHistoryJournal журнал отложенной записи истории
      */
-    public TransferHistoryService(TransferHistoryRepository transferHistoryRepository) {
+    public TransferHistoryService(TransferHistoryRepository transferHistoryRepository,
+                                  TransferHistoryJournal transferHistoryJournal) {
         this.transferHistoryRepository = transferHistoryRepository;
+        this.transferHistoryJournal = transferHistoryJournal;
     }
 
     /**
@@ -29,17 +52,57 @@ public class TransferHistoryService {
      * @param transferHistory данные транзакции
      */
     public void saveTransferHistory(TransferHistory transferHistory) {
+        if (transferHistoryJournal.isEnabled()) {
+            transferHistoryJournal.append(List.of(transferHistory));
+            return;
+        }
         transferHistoryRepository.save(transferHistory);
     }
 
     /**
-     * Получение всей истории транзакций одного пользователя
+     * Сохраняет историю нескольких транзакций.
+     *
+     * Id выделяются блоками из последовательности, поэтому Hibernate отправляет вставки пачками
+     * ({@code hibernate.jdbc.batch_size}), а не отдельным запросом на каждую запись.
+     * В режиме журнала все записи транзакции попадают в журнал одной записью.
      *
-     * @param username имя пользователя
-     * @param pageable объект постраничного запроса
-     * @return историю транзакций разделенную на страницы
+     * @param transferHistories данные транзакций
      */
-    public Page<TransferHistory> getTransferHistoryByUsernamePaginated(String username, Pageable pageable) {
-        return transferHistoryRepository.findByUser_Username(username, pageable);
+    public void saveAllTransferHistory(Collection<TransferHistory> transferHistories) {
+        if (transferHistoryJournal.isEnabled()) {
+            transferHistoryJournal.append(transferHistories);
+            return;
+        }
+        transferHistoryRepository.saveAll(transferHistories);
+    }
+
+    /**
+     * Получение истории транзакций одного пользователя в режиме курсора (keyset) от новых к старым
+     *
+     * Записи выбираются плоской проекцией по индексу {@code (user_id, timestamp, id)}: без соединения с картами
+     * и пользователями, без подсчета общего количества и без OFFSET.
+     *
+     * @param userId id пользователя
+     * @param filter фильтры по карте, сумме и времени
+     * @param position позиция, после которой начинается страница (ключи {@code timestamp} и {@code id})
+     * @param limit размер страницы
+     * @return окно записей истории
+     */
+    @Transactional(readOnly = true)
+    public Window<TransferHistoryDto> scrollTransferHistory(Long userId, TransferHistoryFilter filter,
+                                                            KeysetScrollPosition position, int limit) {
+        Map<String, Object> keys = position.getKeys();
+        List<TransferHistoryDto> rows = transferHistoryRepository.findHistoryPage(userId, filter,
+                (OffsetDateTime) keys.get("timestamp"), (Long) keys.get("id"), limit + 1);
+
+        List<TransferHistoryDto> content = rows.size() > limit ? rows.subList(0, limit) : rows;
+        return Window.from(content, index -> position(content.get(index)), rows.size() > limit);
+    }
+
+    private static ScrollPosition position(TransferHistoryDto entry) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("timestamp", entry.timestamp());
+        keys.put("id", entry.id());
+        return ScrollPosition.forward(keys);
     }
 }
@@ -0,0 +1,191 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.dto.TransferLaneMetricsDto;
+import com.example.bank_rest_test_task.exception.TransferLaneBusyException;
+import com.example.bank_rest_test_task.util.LogMarker;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Выполнение переводов в полосах (lanes) по картам (включается {@code payment.transfer.lanes.enabled}).
+ *
+ * Перевод попадает в полосу по меньшему из id своих карт; полоса - один поток с ограниченной очередью.
+ * Все переводы, у которых эта карта меньшая, выполняются на одной полосе по очереди, поэтому за блокировку
+ * строки "горячей" карты в базе данных конкурирует не очередь запросов, а не больше одного перевода на полосу.
+ * Блокировки карт в {@link PaymentService} остаются: перевод, у которого "горячая" карта большая,
+ * выполняется на другой полосе, и корректность по-прежнему обеспечивает база данных.
+ *
+ * Если очередь полосы заполнена, перевод отклоняется {@link TransferLaneBusyException} (429) сразу,
+ * не занимая поток запроса ожиданием. Вызывающий поток ждет выполнения перевода на полосе и получает
+ * его результат или исключение. Контекст журналирования (MDC, например ip клиента) переносится на полосу.
+ *
+ * Для каждой полосы считаются глубина очереди, количество выполненных и отклоненных переводов,
+ * среднее время ожидания в очереди и среднее и максимальное время от постановки до выполнения ({@link #getMetrics()}).
+ */
+@Slf4j
+@Service
+public class TransferLaneExecutor {
+    private final boolean enabled;
+    private final int queueCapacity;
+    private final List<Lane> lanes;
+
+    /**
+     * @param enabled включены ли полосы (из property)
+     * @param laneCount количество полос (из property)
+     * @param queueCapacity максимальное количество переводов, ожидающих в очереди одной полосы (из property)
+     */
+    public TransferLaneExecutor(@Value("${payment.transfer.lanes.enabled:false}") boolean enabled,
+                                @Value("${payment.transfer.lanes.count:16}") int laneCount,
+                                @Value("${payment.transfer.lanes.queue-capacity:256}") int queueCapacity) {
+        if (laneCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Transfer lane count and queue capacity must be positive");
+        }
+        this.enabled = enabled;
+        this.queueCapacity = queueCapacity;
+        this.lanes = new ArrayList<>(enabled ? laneCount : 0);
+        for (int i = 0; enabled && i < laneCount; i++) {
+            lanes.add(new Lane(i, queueCapacity));
+        }
+    }
+
+    /**
+     * Выполняет перевод на полосе его меньшей карты и ждет результата
+     *
+     * @param paymentDto перевод, по картам которого выбирается полоса
+     * @param transfer выполнение перевода
+     * @return результат перевода
+     * @throws TransferLaneBusyException если очередь полосы заполнена
+     */
+    public <T> T execute(PaymentDto paymentDto, Supplier<T> transfer) {
+        if (!enabled) {
+            return transfer.get();
+        }
+        Lane lane = lanes.get(laneOf(Math.min(paymentDto.fromCardId(), paymentDto.toCardId())));
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        long submittedAt = System.nanoTime();
+        try {
+            lane.executor.execute(() -> lane.run(transfer, result, context, submittedAt));
+        } catch (RejectedExecutionException e) {
+            lane.rejected.increment();
+            log.warn(LogMarker.AUDIT.getMarker(), "action=TRANSFER_MONEY | result=FAILURE | reason=LANE_BUSY | lane={} | fromCardId={} | toCardId={}",
+                    lane.number, paymentDto.fromCardId(), paymentDto.toCardId());
+            throw new TransferLaneBusyException("Too many transfers for card %s, try again later"
+                    .formatted(Math.min(paymentDto.fromCardId(), paymentDto.toCardId())));
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return счетчики каждой полосы с момента старта приложения; пустой список, если полосы выключены
+     */
+    public List<TransferLaneMetricsDto> getMetrics() {
+        return lanes.stream().map(lane -> {
+            long completed = lane.completed.sum();
+            return TransferLaneMetricsDto.builder()
+                    .lane(lane.number)
+                    .queueDepth(lane.executor.getQueue().size())
+                    .queueCapacity(queueCapacity)
+                    .completed(completed)
+                    .rejected(lane.rejected.sum())
+                    .averageWaitMillis(completed == 0 ? 0 : toMillis(lane.waitNanos.sum()) / completed)
+                    .averageLatencyMillis(completed == 0 ? 0 : toMillis(lane.latencyNanos.sum()) / completed)
+                    .maxLatencyMillis(toMillis(lane.maxLatencyNanos.get()))
+                    .build();
+        }).toList();
+    }
+
+    /**
+     * Останавливает полосы, дождавшись уже принятых переводов
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        lanes.forEach(lane -> lane.executor.shutdown());
+        for (Lane lane : lanes) {
+            if (!lane.executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.error("Transfer lane {} did not stop in time", lane.number);
+            }
+        }
+    }
+
+    int laneOf(long cardId) {
+        return (int) Math.floorMod(cardId, (long) lanes.size());
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class Lane {
+        private final int number;
+        private final ThreadPoolExecutor executor;
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder latencyNanos = new LongAdder();
+        private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+        private Lane(int number, int queueCapacity) {
+            this.number = number;
+            this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), task -> {
+                Thread thread = new Thread(task, "transfer-lane-" + number);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        private <T> void run(Supplier<T> transfer, CompletableFuture<T> result, Map<String, String> context, long submittedAt) {
+            waitNanos.add(System.nanoTime() - submittedAt);
+            if (context != null) {
+                MDC.setContextMap(context);
+            }
+            T value = null;
+            Throwable error = null;
+            try {
+                value = transfer.get();
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                MDC.clear();
+            }
+            // Счетчики обновляются до ответа вызывающему потоку, чтобы метрики учитывали уже полученный результат
+            long latency = System.nanoTime() - submittedAt;
+            latencyNanos.add(latency);
+            maxLatencyNanos.accumulate(latency);
+            completed.increment();
+            if (error == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.bank_rest_test_task.service;
+
+/**
+ * Способ изменения балансов карт при переводе.
+ *
+ * Выбирается настройкой {@code payment.transfer.mode}.
+ */
+public enum TransferMode {
+    /**
+     * Карты читаются с блокировкой строк ({@code SELECT ... FOR UPDATE}) в порядке возрастания id,
+     * балансы изменяются в сущностях и сохраняются при фиксации транзакции.
+     */
+    PESSIMISTIC_LOCK,
+
+    /**
+     * Списание и зачисление выполняются условными {@code UPDATE} без предварительного чтения карт;
+     * условие (владелец, статус, достаточность средств) проверяется базой данных,
+     * а причина отказа определяется по количеству измененных строк.
+     */
+    CONDITIONAL_UPDATE,
+
+    /**
+     * Карты читаются без блокировки, балансы изменяются в сущностях; при фиксации {@code UPDATE} проверяет версию
+     * строки ({@code @Version}). Если карту изменила другая транзакция, перевод повторяется целиком
+     * ({@link TransferRetryExecutor}). Подходит для нагрузки, где переводы редко затрагивают одни и те же карты.
+     */
+    OPTIMISTIC_LOCK,
+
+    /**
+     * Балансы карт хранятся в памяти ({@link BalanceEngine}) и изменяются без обращения к строкам {@code cards};
+     * каждый перевод записывается в журнал движка до ответа, а база данных обновляется контрольными точками.
+     * Балансы карт, прочитанные из базы данных, отстают от движка не больше чем на интервал контрольных точек.
+     */
+    BALANCE_ENGINE
+}
@@ -0,0 +1,121 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.TransferRetryMetricsDto;
+import com.example.bank_rest_test_task.exception.TransferConflictException;
+import com.example.bank_rest_test_task.util.LogMarker;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Повтор перевода при конфликте конкурентных изменений.
+ *
+ * Перевод выполняется целиком в новой транзакции, поэтому вызывается вне транзакции, вокруг
+ * {@link PaymentService#transferMoney} (или идемпотентного выполнения перевода). Повторяются попытки,
+ * завершившиеся {@link ConcurrencyFailureException}: конфликт версии карты в режиме
+ * {@link TransferMode#OPTIMISTIC_LOCK}, ошибка сериализации, взаимоблокировка или тайм-аут блокировки.
+ * Остальные ошибки (недостаточно средств, карта заблокирована) возвращаются сразу.
+ *
+ * Пауза перед повтором - экспоненциальная со случайным разбросом (full jitter): случайное значение от нуля
+ * до {@code min(maxBackoff, initialBackoff * 2^(попытка - 1))}, чтобы конфликтующие переводы не повторялись
+ * одновременно. Количество попыток ограничено {@code maxAttempts}.
+ *
+ * Счетчики попыток и конфликтов доступны через {@link #getMetrics()}.
+ */
+@Slf4j
+@Service
+public class TransferRetryExecutor {
+    private final TransferMode transferMode;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * @param transferMode способ изменения балансов (из property), выводится вместе со счетчиками
+     * @param maxAttempts максимальное количество попыток одного перевода (из property)
+     * @param initialBackoff пауза перед первым повтором без учета разброса (из property)
+     * @param maxBackoff максимальная пауза перед повтором (из property)
+     */
+    public TransferRetryExecutor(@Value("${payment.transfer.mode:PESSIMISTIC_LOCK}") TransferMode transferMode,
+                                 @Value("${payment.transfer.retry.max-attempts:5}") int maxAttempts,
+                                 @Value("${payment.transfer.retry.initial-backoff:PT0.005S}") Duration initialBackoff,
+                                 @Value("${payment.transfer.retry.max-backoff:PT0.2S}") Duration maxBackoff) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Transfer retry attempts must be positive");
+        }
+        this.transferMode = transferMode;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    /**
+     * Выполняет перевод, повторяя его при конфликте конкурентных изменений
+     *
+     * @param transfer перевод в собственной транзакции
+     * @return результат перевода
+     * @throws TransferConflictException если все попытки завершились конфликтом
+     */
+    public <T> T execute(Supplier<T> transfer) {
+        transfers.increment();
+        for (int attempt = 1; ; attempt++) {
+            attempts.increment();
+            try {
+                return transfer.get();
+            } catch (ConcurrencyFailureException | OptimisticLockException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn(LogMarker.AUDIT.getMarker(), "action=TRANSFER_MONEY | result=FAILURE | reason=CONCURRENT_UPDATE | mode={} | attempts={}",
+                            transferMode, attempt);
+                    throw new TransferConflictException("Transfer conflicted with concurrent updates, try again later");
+                }
+                retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * @return счетчики с момента старта приложения
+     */
+    public TransferRetryMetricsDto getMetrics() {
+        long attemptCount = attempts.sum();
+        long conflictCount = conflicts.sum();
+        return TransferRetryMetricsDto.builder()
+                .transferMode(transferMode.name())
+                .transfers(transfers.sum())
+                .attempts(attemptCount)
+                .conflicts(conflictCount)
+                .retries(retries.sum())
+                .exhausted(exhausted.sum())
+                .conflictRate(attemptCount == 0 ? 0 : (double) conflictCount / attemptCount)
+                .build();
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 30));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException("Transfer retry was interrupted");
+        }
+    }
+}
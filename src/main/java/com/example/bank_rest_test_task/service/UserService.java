@@ -6,10 +6,17 @@ import com.example.bank_rest_test_task.entity.UserRole;
 import com.example.bank_rest_test_task.exception.DuplicateUserException;
 import com.example.bank_rest_test_task.exception.UserNotFoundException;
 import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.repository.search.UsernameSearch;
 import com.example.bank_rest_test_task.util.LogMarker;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,14 +39,26 @@ import org.springframework.transaction.annotation.Transactional;
 public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UsernameSearch usernameSearch;
 
     /**
      * @param userRepository интерфейс для работы с JPA сущностями в базе данных
      * @param passwordEncoder интерфейс для хеширования пароль пользователя
+     * @param usernameSearch поиск пользователей по подстроке имени
      */
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, UsernameSearch usernameSearch) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.usernameSearch = usernameSearch;
+    }
+
+    /**
+     * Строит индекс поиска по имени после старта приложения (для реализаций, которым он нужен)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadUsernameSearch() {
+        usernameSearch.load(userRepository::findUsernamesBy);
     }
 
     /**
@@ -58,7 +77,8 @@ public class UserService {
      * @param user сохраняемый пользователь
      */
     public void saveUser(User user) {
-        userRepository.save(user);
+        User saved = userRepository.save(user);
+        usernameSearch.index(saved.getId(), saved.getUsername());
     }
 
     /**
@@ -74,6 +94,19 @@ public class UserService {
         );
     }
 
+    /**
+     * Поиск пользователя по имени вместе с картами используя метод {@link UserRepository#findWithCardsByUsername(String)}
+     *
+     * @param username имя искомого пользователя
+     * @return {@link User} искомый пользователь с загруженными картами
+     * @throws UserNotFoundException если пользователя с таким именем несуществует
+     */
+    public User findUserWithCardsByUsername(String username) {
+        return userRepository.findWithCardsByUsername(username).orElseThrow(
+                () -> new UserNotFoundException("User by name: %s not found".formatted(username))
+        );
+    }
+
     /**
      * Получает пользователя по имени с помощью метода {@link UserRepository#findByUsername(String)} и удаляет его с помощью метода {@link UserRepository#delete(Object)}
      *
@@ -125,7 +158,9 @@ public class UserService {
         log.info(LogMarker.AUDIT.getMarker(), "action=UPDATE_USERNAME | result=SUCCESSFULLY | reason=- | adminId={} | userId={} | newUsername={}",
                 adminId, user.getId(), newUsername);
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        usernameSearch.index(saved.getId(), saved.getUsername());
+        return saved;
     }
 
 
@@ -168,6 +203,7 @@ public class UserService {
                 .password(passwordEncoder.encode(userRegisterDto.password()))
                 .role(UserRole.ROLE_USER)
                 .build());
+        usernameSearch.index(user.getId(), user.getUsername());
 
         log.info(LogMarker.AUDIT.getMarker(), "action=CREATE_USER | result=SUCCESSFULLY | reason=- | adminId={} | newUserId={}",
                 adminId, user.getId());
@@ -201,6 +237,27 @@ public class UserService {
         return page;
     }
 
+    /**
+     * Получение всех пользователей в режиме курсора (keyset) без подсчета общего количества
+     *
+     * @param position позиция, после которой начинается страница
+     * @param sort сортировка; id добавляется как последний ключ автоматически
+     * @param limit размер страницы
+     * @param includeCars флаг для указания загрузить с картами или без
+     * @return окно пользователей
+     */
+    @Transactional(readOnly = true)
+    public Window<User> scrollUsers(KeysetScrollPosition position, Sort sort, int limit, boolean includeCars) {
+        Window<User> window = userRepository.findBy(Specification.unrestricted(),
+                query -> query.sortBy(sort).limit(limit).scroll(position));
+
+        if (includeCars && !window.isEmpty()) {
+            window.getContent().forEach(u -> u.getCards().size());
+        }
+
+        return window;
+    }
+
     /**
      * Получение пользователя по имени с подстрочным регистронезависимым поиск и с точным совпадением роли.
      *
@@ -211,7 +268,7 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public Page<User> searchUser(String username, String roleName, boolean includeCars, Pageable pageable) {
-        Page<User> page = userRepository.searchUser(username, roleName, pageable);
+        Page<User> page = userRepository.searchUser(username, roleName, usernameSearch, pageable);
 
         if (includeCars && !page.isEmpty()) {
             page.getContent().forEach(u -> u.getCards().size());
@@ -0,0 +1,43 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.DomainEventDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Заготовка отправки доменных событий во внешнюю систему (включается {@code payment.outbox.webhook.enabled}).
+ *
+ * HTTP-запрос пока не выполняется: события записываются в лог с адресом, на который они будут отправляться.
+ * Получатель выполняется последним, чтобы будущая сетевая задержка не откладывала получателей внутри приложения.
+ */
+@Slf4j
+@Service
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class WebhookEventSink implements DomainEventSink {
+    private final boolean enabled;
+    private final String url;
+
+    /**
+     * @param enabled включена ли отправка (из property)
+     * @param url адрес получателя (из property)
+     */
+    public WebhookEventSink(@Value("${payment.outbox.webhook.enabled:false}") boolean enabled,
+                            @Value("${payment.outbox.webhook.url:}") String url) {
+        this.enabled = enabled;
+        this.url = url;
+    }
+
+    @Override
+    public void accept(List<DomainEventDto> events) {
+        if (!enabled) {
+            return;
+        }
+        events.forEach(event -> log.info("Webhook {} <- id={} | type={} | aggregateId={} | payload={}",
+                url, event.id(), event.type(), event.aggregateId(), event.payload()));
+    }
+}
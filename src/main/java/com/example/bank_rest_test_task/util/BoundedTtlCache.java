@@ -0,0 +1,111 @@
+package com.example.bank_rest_test_task.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Потокобезопасный кэш в памяти с ограниченным размером и временем жизни записей.
+ *
+ * - при превышении {@code maxSize} вытесняется давно не использованная запись (LRU);
+ * - запись старше {@code ttl} считается отсутствующей и удаляется при обращении.
+ *
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+public class BoundedTtlCache<K, V> {
+    private final int maxSize;
+    private final Duration ttl;
+    private final Clock clock;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    /**
+     * @param maxSize максимальное количество записей
+     * @param ttl время жизни записи
+     */
+    public BoundedTtlCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, Clock.systemUTC());
+    }
+
+    /**
+     * @param maxSize максимальное количество записей
+     * @param ttl время жизни записи
+     * @param clock источник времени
+     */
+    public BoundedTtlCache(int maxSize, Duration ttl, Clock clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                return size() > BoundedTtlCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Получает значение и отмечает запись как недавно использованную
+     *
+     * @param key ключ
+     * @return значение или пустой результат, если записи нет или она истекла
+     */
+    public synchronized Optional<V> get(K key) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (!clock.instant().isBefore(entry.expiresAt())) {
+            entries.remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(entry.value());
+    }
+
+    /**
+     * Сохраняет значение; при переполнении вытесняет давно не использованную запись
+     *
+     * @param key ключ
+     * @param value значение
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new CacheEntry<>(value, clock.instant().plus(ttl)));
+    }
+
+    /**
+     * Сохраняет значение, которое перестает быть действительным в момент {@code expiresAt};
+     * запись живет не дольше {@code ttl} и не дольше этого момента
+     *
+     * @param key ключ
+     * @param value значение
+     * @param expiresAt момент истечения значения
+     */
+    public synchronized void put(K key, V value, Instant expiresAt) {
+        Instant ttlExpiresAt = clock.instant().plus(ttl);
+        entries.put(key, new CacheEntry<>(value, expiresAt.isBefore(ttlExpiresAt) ? expiresAt : ttlExpiresAt));
+    }
+
+    /**
+     * Удаляет запись
+     *
+     * @param key ключ
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * @return текущее количество записей, включая еще не удаленные истекшие
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private record CacheEntry<V>(V value, Instant expiresAt) {}
+}
@@ -14,7 +14,17 @@ public class CardFormattedService {
      * @return замаскированный номер карты
      */
     public static String formatedMaskedCard(String cardNumber) {
-        return MASK + cardNumber.substring(cardNumber.length() - VISIBLE_DIGITS);
+        return maskedByLast4(cardNumber.substring(cardNumber.length() - VISIBLE_DIGITS));
+    }
+
+    /**
+     * Накладывает маску по последним 4 цифрам карты, без расшифровки полного номера
+     *
+     * @param last4 последние 4 цифры карты
+     * @return замаскированный номер карты
+     */
+    public static String maskedByLast4(String last4) {
+        return MASK + last4;
     }
 
     /**
@@ -0,0 +1,173 @@
+package com.example.bank_rest_test_task.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Шифратор номеров карт на AES-256-GCM.
+ *
+ * Ключ выводится из секрета через PBKDF2 один раз при создании бина, поэтому шифрование и расшифровка
+ * не повторяют дорогое вычисление ключа на каждый вызов.
+ *
+ * Формат шифротекста: {@code v<версия ключа>:<Base64(IV || шифротекст || тег)>}.
+ * Версия ключа позволяет отличать значения этого шифратора от значений в старом формате Jasypt
+ * и проводить ротацию ключа: новые значения шифруются текущей версией, а значения предыдущих версий
+ * расшифровываются ключом, выбранным по префиксу ({@code payment.card.encryption.previous-secrets}),
+ * пока не будут перешифрованы.
+ */
+@Component
+public class CardNumberCipher {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String KEY_DERIVATION_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int KEY_DERIVATION_ITERATIONS = 210_000;
+    private static final int KEY_LENGTH_BITS = 256;
+    private static final int IV_LENGTH_BYTES = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final String VERSION_PREFIX = "v";
+    private static final char VERSION_SEPARATOR = ':';
+
+    private final SecretKey key;
+    private final Map<Integer, SecretKey> keys = new HashMap<>();
+    private final int keyVersion;
+    private final String prefix;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    /**
+     * @param secret секрет, из которого выводится ключ (из property)
+     * @param salt соль для вывода ключа (из property)
+     * @param keyVersion версия ключа, записываемая в шифротекст (из property)
+     * @param previousSecrets секреты предыдущих версий ключа в формате {@code <версия>:<секрет>} с той же солью (из property)
+     * @throws IllegalArgumentException если секрет предыдущей версии задан некорректно или повторяет версию
+     */
+    public CardNumberCipher(@Value("${payment.card.encryption.secret}") String secret,
+                            @Value("${payment.card.encryption.salt}") String salt,
+                            @Value("${payment.card.encryption.key-version:1}") int keyVersion,
+                            @Value("${payment.card.encryption.previous-secrets:}") List<String> previousSecrets) {
+        this.key = deriveKey(secret, salt);
+        this.keyVersion = keyVersion;
+        this.prefix = VERSION_PREFIX + keyVersion + VERSION_SEPARATOR;
+        keys.put(keyVersion, key);
+        for (String previous : previousSecrets) {
+            if (previous.isBlank()) {
+                continue;
+            }
+            int separator = previous.indexOf(VERSION_SEPARATOR);
+            if (separator <= 0 || separator == previous.length() - 1) {
+                throw new IllegalArgumentException("Previous card encryption secret must be <version>:<secret>");
+            }
+            int version = Integer.parseInt(previous.substring(0, separator).trim());
+            if (keys.putIfAbsent(version, deriveKey(previous.substring(separator + 1).trim(), salt)) != null) {
+                throw new IllegalArgumentException("Duplicate card encryption key version %s".formatted(version));
+            }
+        }
+    }
+
+    /**
+     * Шифрует номер карты текущим ключом со случайным IV
+     *
+     * @param rawData номер карты
+     * @return шифротекст с префиксом версии ключа
+     */
+    public String encrypt(String rawData) {
+        try {
+            byte[] iv = new byte[IV_LENGTH_BYTES];
+            secureRandom.nextBytes(iv);
+
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            byte[] encrypted = cipher.doFinal(rawData.getBytes(StandardCharsets.UTF_8));
+
+            byte[] payload = ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array();
+            return prefix + Base64.getEncoder().encodeToString(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to encrypt card number", e);
+        }
+    }
+
+    /**
+     * Расшифровывает значение, полученное методом {@link #encrypt(String)}
+     *
+     * @param encryptData шифротекст с префиксом текущей или предыдущей версии ключа
+     * @return номер карты
+     * @throws IllegalArgumentException если значение не в формате шифратора или зашифровано неизвестной версией ключа
+     * @throws IllegalStateException если проверка тега не прошла (значение повреждено или ключ не совпадает)
+     */
+    public String decrypt(String encryptData) {
+        if (!isVersioned(encryptData)) {
+            throw new IllegalArgumentException("Card number is not encrypted with a versioned key");
+        }
+        int separator = encryptData.indexOf(VERSION_SEPARATOR);
+        int version = Integer.parseInt(encryptData.substring(VERSION_PREFIX.length(), separator));
+        SecretKey versionKey = keys.get(version);
+        if (versionKey == null) {
+            throw new IllegalArgumentException("Unknown card encryption key version %s".formatted(version));
+        }
+        try {
+            byte[] payload = Base64.getDecoder().decode(encryptData.substring(separator + 1));
+
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, versionKey, new GCMParameterSpec(TAG_LENGTH_BITS, payload, 0, IV_LENGTH_BYTES));
+            byte[] decrypted = cipher.doFinal(payload, IV_LENGTH_BYTES, payload.length - IV_LENGTH_BYTES);
+            return new String(decrypted, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to decrypt card number", e);
+        }
+    }
+
+    /**
+     * @param encryptData сохраненное значение номера карты
+     * @return {@code true} если значение зашифровано этим шифратором (в любой версии ключа)
+     */
+    public boolean isVersioned(String encryptData) {
+        if (encryptData == null || !encryptData.startsWith(VERSION_PREFIX)) {
+            return false;
+        }
+        int separator = encryptData.indexOf(VERSION_SEPARATOR);
+        if (separator <= VERSION_PREFIX.length()) {
+            return false;
+        }
+        for (int i = VERSION_PREFIX.length(); i < separator; i++) {
+            if (!Character.isDigit(encryptData.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param encryptData сохраненное значение номера карты
+     * @return {@code true} если значение зашифровано текущей версией ключа
+     */
+    public boolean isCurrentVersion(String encryptData) {
+        return encryptData != null && encryptData.startsWith(prefix);
+    }
+
+    private static SecretKey deriveKey(String secret, String salt) {
+        PBEKeySpec spec = new PBEKeySpec(secret.toCharArray(), salt.getBytes(StandardCharsets.UTF_8),
+                KEY_DERIVATION_ITERATIONS, KEY_LENGTH_BITS);
+        try {
+            byte[] encoded = SecretKeyFactory.getInstance(KEY_DERIVATION_ALGORITHM).generateSecret(spec).getEncoded();
+            return new SecretKeySpec(encoded, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to derive card number encryption key", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -9,26 +9,42 @@ import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
 
 
 /**
  * Сервис для шифрования/дешифрования номера банковской карты и вычисления хеша номера карты
  *
- * Использует класс {@link StringEncryptor} из библиотеки jasypt
+ * Новые значения шифруются {@link CardNumberCipher} (AES-GCM, ключ вычисляется один раз при старте).
+ * Значения, зашифрованные ранее {@link StringEncryptor} из библиотеки jasypt, читаются прозрачно
+ * и перешифровываются при следующей записи карты (см. {@link #needsReEncryption(String)}).
+ *
+ * Поисковой hash вычисляется HMAC-SHA256: ключ HMAC создается один раз, а экземпляр {@link Mac}
+ * инициализируется один раз на поток и переиспользуется ({@link Mac} не потокобезопасен).
  */
 @Service
 public class CryptoService {
-    private final StringEncryptor encryptor;
-    private final String hashKey;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final CardNumberCipher cardNumberCipher;
+    private final StringEncryptor legacyEncryptor;
+    private final ThreadLocal<Mac> hmac;
 
     /**
-     * @param encryptor шифратор строк
+     * @param cardNumberCipher шифратор номеров карт
+     * @param legacyEncryptor шифратор строк jasypt, нужен только для чтения старых значений
      * @param hashKey секрет для SHA-265 (из property)
      */
-    public CryptoService(StringEncryptor encryptor, @Value("${payment.card.tokenization.hash-key}") String hashKey) {
-        this.encryptor = encryptor;
-        this.hashKey = hashKey;
+    public CryptoService(CardNumberCipher cardNumberCipher, StringEncryptor legacyEncryptor,
+                         @Value("${payment.card.tokenization.hash-key}") String hashKey) {
+        this.cardNumberCipher = cardNumberCipher;
+        this.legacyEncryptor = legacyEncryptor;
+        SecretKeySpec hmacKey = new SecretKeySpec(hashKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        newHmac(hmacKey); // некорректный ключ обнаруживается при старте, а не при первом запросе
+        this.hmac = ThreadLocal.withInitial(() -> newHmac(hmacKey));
     }
 
     /**
@@ -38,18 +54,39 @@ public class CryptoService {
      * @return зашифрованный номер карты
      */
     public String encrypt(String rawData) {
-        return encryptor.encrypt(rawData);
+        return cardNumberCipher.encrypt(rawData);
     }
 
     /**
-     * Расшифровывает номер карты, полученный методом {@link #encrypt(String)}
+     * Расшифровывает номер карты, полученный методом {@link #encrypt(String)} или старым шифратором jasypt
      *
      * @param encryptData зашифрованный номер карты
      * @return исходная строка
      * @throws RuntimeException если расшифровка не удалась
      */
     public String decrypt(String encryptData) {
-        return encryptor.decrypt(encryptData);
+        if (cardNumberCipher.isVersioned(encryptData)) {
+            return cardNumberCipher.decrypt(encryptData);
+        }
+        return legacyEncryptor.decrypt(encryptData);
+    }
+
+    /**
+     * @param encryptData сохраненный зашифрованный номер карты
+     * @return {@code true} если номер зашифрован старым шифратором или предыдущей версией ключа
+     */
+    public boolean needsReEncryption(String encryptData) {
+        return encryptData != null && !cardNumberCipher.isCurrentVersion(encryptData);
+    }
+
+    /**
+     * Перешифровывает номер карты текущим ключом
+     *
+     * @param encryptData сохраненный зашифрованный номер карты
+     * @return номер карты, зашифрованный методом {@link #encrypt(String)}
+     */
+    public String reEncrypt(String encryptData) {
+        return cardNumberCipher.encrypt(decrypt(encryptData));
     }
 
     /**
@@ -57,14 +94,37 @@ public class CryptoService {
      *
      * @param number номер карты
      * @return Base64-строка хэша
-     * @throws IllegalArgumentException если ключ HMAC некорректный
      */
     public String calculationCardHash(String number) {
+        return Base64.getEncoder().encodeToString(hmac.get().doFinal(number.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Вычисляет Hash коды нескольких номеров карт одним экземпляром {@link Mac}
+     *
+     * @param numbers номера карт
+     * @return Base64-строки хэшей в порядке передаваемых номеров
+     */
+    public List<String> hashAll(Collection<String> numbers) {
+        Mac mac = hmac.get();
+        Base64.Encoder encoder = Base64.getEncoder();
+        List<String> hashes = new ArrayList<>(numbers.size());
+        for (String number : numbers) {
+            hashes.add(encoder.encodeToString(mac.doFinal(number.getBytes(StandardCharsets.UTF_8))));
+        }
+        return hashes;
+    }
+
+    /**
+     * Создает и инициализирует экземпляр HMAC
+     *
+     * @throws IllegalArgumentException если ключ HMAC некорректный
+     */
+    private static Mac newHmac(SecretKeySpec key) {
         try {
-            Mac hmac = Mac.getInstance("HmacSHA256");
-            hmac.init(new SecretKeySpec(hashKey.getBytes(), "HmacSHA256"));
-            byte[] hash = hmac.doFinal(number.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hash);
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
         } catch (InvalidKeyException e) {
             throw new IllegalArgumentException("Invalid HMAC key", e);
         } catch (NoSuchAlgorithmException e) {
@@ -0,0 +1,158 @@
+package com.example.bank_rest_test_task.util;
+
+import com.example.bank_rest_test_task.exception.InvalidCursorException;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.EntityType;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Component;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+
+/**
+ * Кодирование позиции keyset-пагинации в непрозрачный курсор и обратно.
+ *
+ * Курсор содержит значения ключа сортировки и id последнего элемента страницы
+ * ({@code Base64url("validityPeriod=2030-01-01&id=42")}). При разборе значения приводятся к типам атрибутов
+ * сущности по метамодели JPA, поэтому клиент не может подставить в запрос значение другого типа.
+ * Курсор действителен только для той же сортировки, с которой он был получен.
+ */
+@Component
+public class KeysetCursorCodec {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final DefaultConversionService CONVERSION_SERVICE = new DefaultConversionService();
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public KeysetCursorCodec(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Получает курсор следующей страницы по последнему элементу окна
+     *
+     * @param window окно результата keyset-выборки
+     * @return курсор или {@code null} если следующей страницы нет
+     */
+    public String nextCursor(Window<?> window) {
+        if (!window.hasNext() || window.isEmpty()) {
+            return null;
+        }
+        return encode(window.positionAt(window.size() - 1));
+    }
+
+    /**
+     * Кодирует позицию в курсор
+     *
+     * @param position позиция, полученная из {@link Window#positionAt(int)}
+     * @return непрозрачный курсор
+     */
+    public String encode(ScrollPosition position) {
+        if (!(position instanceof KeysetScrollPosition keyset)) {
+            throw new IllegalArgumentException("Only keyset positions can be encoded");
+        }
+
+        StringJoiner joiner = new StringJoiner("&");
+        keyset.getKeys().forEach((key, value) -> joiner.add(encodePart(key) + "=" + encodePart(format(value))));
+        return ENCODER.encodeToString(joiner.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Проверяет сортировку, переданную клиентом, до выполнения выборки
+     *
+     * Значения ключа сортировки записываются в курсор, поэтому сортировать можно только по атрибутам сущности
+     * без null-значений; вложенные пути ({@code user.username}) в курсоре не поддерживаются.
+     *
+     * @param sort сортировка запроса
+     * @param sortable атрибуты сущности, по которым разрешена сортировка
+     * @return та же сортировка
+     * @throws InvalidCursorException если сортировка содержит неразрешенный атрибут
+     */
+    public static Sort requireSortable(Sort sort, Set<String> sortable) {
+        for (Sort.Order order : sort) {
+            if (!sortable.contains(order.getProperty())) {
+                throw new InvalidCursorException("Sort by '%s' is not supported, allowed: %s"
+                        .formatted(order.getProperty(), sortable.stream().sorted().collect(Collectors.joining(", "))));
+            }
+        }
+        return sort;
+    }
+
+    /**
+     * Разбирает курсор в позицию для продолжения выборки
+     *
+     * @param cursor курсор из параметра {@code after}; если не передан - выборка начинается с начала
+     * @param entityClass класс сущности, по которой выполняется выборка
+     * @param sort сортировка текущего запроса
+     * @return позиция для {@code scroll}
+     * @throws InvalidCursorException если курсор поврежден или получен для другой сортировки
+     */
+    public KeysetScrollPosition decode(String cursor, Class<?> entityClass, Sort sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+
+        EntityType<?> entityType = entityManagerFactory.getMetamodel().entity(entityClass);
+        Map<String, Object> keys = new LinkedHashMap<>();
+        try {
+            String decoded = new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+            for (String part : decoded.split("&")) {
+                int separator = part.indexOf('=');
+                String key = decodePart(part.substring(0, separator));
+                String value = decodePart(part.substring(separator + 1));
+                keys.put(key, convert(value, entityType.getAttribute(key).getJavaType()));
+            }
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Cursor is malformed");
+        }
+
+        String idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        boolean matchesSort = keys.containsKey(idName)
+                && sort.stream().allMatch(order -> keys.containsKey(order.getProperty()))
+                && keys.size() == sort.stream().map(Sort.Order::getProperty).filter(p -> !p.equals(idName)).count() + 1;
+        if (!matchesSort) {
+            throw new InvalidCursorException("Cursor does not match the requested sort");
+        }
+
+        return ScrollPosition.forward(keys);
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Keyset pagination does not support null sort values");
+        }
+        return value instanceof Enum<?> e ? e.name() : value.toString();
+    }
+
+    private static Object convert(String value, Class<?> type) {
+        if (type == LocalDate.class) return LocalDate.parse(value);
+        if (type == LocalDateTime.class) return LocalDateTime.parse(value);
+        if (type == OffsetDateTime.class) return OffsetDateTime.parse(value);
+        if (type == Instant.class) return Instant.parse(value);
+        return CONVERSION_SERVICE.convert(value, type);
+    }
+
+    private static String encodePart(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String decodePart(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
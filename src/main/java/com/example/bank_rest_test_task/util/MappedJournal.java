@@ -0,0 +1,325 @@
+package com.example.bank_rest_test_task.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал записей только на добавление в файлах-сегментах, отображенных в память (memory-mapped).
+ *
+ * Сегмент {@code <номер>.seg} имеет фиксированный размер и создается заполненным нулями:
+ * - заголовок: magic и смещение, до которого записи сегмента уже обработаны ({@link #markDrained});
+ * - записи подряд: длина, CRC32 содержимого, содержимое; нулевая длина - конец записанных данных.
+ *
+ * Запись, не помещающаяся в текущий сегмент, начинает следующий. Полностью обработанные сегменты удаляются.
+ * При открытии журнал находит конец записанных данных по контрольным суммам: запись, оборванная сбоем,
+ * отбрасывается вместе с остатком сегмента.
+ *
+ * {@link #append} потокобезопасен; чтение и {@link #markDrained} выполняются одним потоком-обработчиком.
+ * Записи, лежащие до позиции, полученной из {@link #writePosition()}, видны читающему потоку.
+ */
+public class MappedJournal implements Closeable {
+    private static final int MAGIC = 0x4A524E4C;
+    private static final int HEADER_SIZE = 16;
+    private static final int DRAINED_OFFSET = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path dir;
+    private final int segmentSize;
+    private final boolean force;
+    private final NavigableMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+    private MappedByteBuffer writeBuffer;
+    private volatile Position writePosition;
+    private volatile Position drainedPosition;
+
+    /**
+     * Открывает журнал в каталоге, создавая его при необходимости
+     *
+     * @param dir каталог сегментов
+     * @param segmentSize размер нового сегмента в байтах; существующие сегменты сохраняют свой размер
+     * @param force сбрасывать ли записанные данные на диск ({@link MappedByteBuffer#force(int, int)}) до возврата из {@link #append}
+     * @throws UncheckedIOException если не удалось открыть или создать сегменты
+     * @throws IllegalStateException если файл сегмента поврежден
+     */
+    public MappedJournal(Path dir, int segmentSize, boolean force) {
+        if (segmentSize <= HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Journal segment size is too small: " + segmentSize);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.force = force;
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Добавляет записи подряд и, если включено, сбрасывает их на диск
+     *
+     * @param records содержимое записей
+     * @return позиция первой записи
+     * @throws IllegalArgumentException если запись больше сегмента
+     * @throws UncheckedIOException если не удалось создать следующий сегмент
+     */
+    public synchronized Position append(List<byte[]> records) {
+        Position start = null;
+        int forceFrom = writePosition.offset();
+        for (byte[] record : records) {
+            int length = RECORD_HEADER_SIZE + record.length;
+            if (length > segmentSize - HEADER_SIZE) {
+                throw new IllegalArgumentException("Journal record of %d bytes exceeds segment size".formatted(record.length));
+            }
+            if (writePosition.offset() + length > writeBuffer.capacity()) {
+                forceRange(writeBuffer, forceFrom, writePosition.offset());
+                roll();
+                forceFrom = HEADER_SIZE;
+            }
+            int offset = writePosition.offset();
+            if (start == null) {
+                start = writePosition;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            writeBuffer.put(offset + RECORD_HEADER_SIZE, record);
+            writeBuffer.putInt(offset + 4, (int) crc.getValue());
+            writeBuffer.putInt(offset, record.length);
+            writePosition = new Position(writePosition.segment(), offset + length);
+        }
+        forceRange(writeBuffer, forceFrom, writePosition.offset());
+        return start == null ? writePosition : start;
+    }
+
+    /**
+     * Читает записи, начиная с {@code from}, до позиции {@code limit} (не включая)
+     *
+     * @param from позиция первой записи, например {@link #drainedPosition()}
+     * @param limit граница чтения, не дальше {@link #writePosition()}
+     * @param maxRecords максимальное количество записей
+     * @return прочитанные записи по порядку
+     * @throws IllegalStateException если контрольная сумма записи не совпала
+     */
+    public List<Record> read(Position from, Position limit, int maxRecords) {
+        List<Record> records = new ArrayList<>();
+        Position position = from;
+        while (records.size() < maxRecords && position.compareTo(limit) < 0) {
+            ByteBuffer buffer = segments.get(position.segment());
+            int offset = position.offset();
+            int length = offset + RECORD_HEADER_SIZE <= buffer.capacity() ? buffer.getInt(offset) : 0;
+            if (length == 0) {
+                Long next = segments.higherKey(position.segment());
+                if (next == null || next > limit.segment()) {
+                    break;
+                }
+                position = new Position(next, HEADER_SIZE);
+                continue;
+            }
+            byte[] payload = readRecord(buffer, offset, length);
+            if (payload == null) {
+                throw new IllegalStateException("Corrupted journal record at " + position);
+            }
+            Position next = new Position(position.segment(), offset + RECORD_HEADER_SIZE + length);
+            records.add(new Record(position, next, payload));
+            position = next;
+        }
+        return records;
+    }
+
+    /**
+     * Запоминает, что записи до {@code next} обработаны, и удаляет сегменты, лежащие целиком до этой позиции
+     *
+     * @param next позиция после последней обработанной записи ({@link Record#next()})
+     * @throws UncheckedIOException если не удалось удалить сегмент
+     */
+    public void markDrained(Position next) {
+        MappedByteBuffer buffer = segments.get(next.segment());
+        buffer.putLong(DRAINED_OFFSET, next.offset());
+        forceRange(buffer, 0, HEADER_SIZE);
+        drainedPosition = next;
+
+        Iterator<Map.Entry<Long, MappedByteBuffer>> older = segments.headMap(next.segment(), false).entrySet().iterator();
+        while (older.hasNext()) {
+            long segment = older.next().getKey();
+            older.remove();
+            try {
+                Files.deleteIfExists(segmentPath(segment));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @return позиция после последней добавленной записи
+     */
+    public Position writePosition() {
+        return writePosition;
+    }
+
+    /**
+     * @return позиция первой необработанной записи
+     */
+    public Position drainedPosition() {
+        return drainedPosition;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (force) {
+            segments.values().forEach(MappedByteBuffer::force);
+        }
+        segments.clear();
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Long> existing;
+        try (Stream<Path> files = Files.list(dir)) {
+            existing = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        if (existing.isEmpty()) {
+            segments.put(0L, map(0L, true));
+            drainedPosition = new Position(0L, HEADER_SIZE);
+            writeBuffer = segments.get(0L);
+            writePosition = drainedPosition;
+            return;
+        }
+
+        TreeMap<Long, MappedByteBuffer> opened = new TreeMap<>();
+        for (Long segment : existing) {
+            opened.put(segment, map(segment, false));
+        }
+        // Сегменты до последнего с отметкой обработки остались от сбоя между отметкой и удалением
+        long oldest = opened.firstKey();
+        for (Map.Entry<Long, MappedByteBuffer> entry : opened.entrySet()) {
+            if (entry.getValue().getLong(DRAINED_OFFSET) != 0) {
+                oldest = entry.getKey();
+            }
+        }
+        for (Long segment : opened.headMap(oldest, false).keySet()) {
+            Files.deleteIfExists(segmentPath(segment));
+        }
+        segments.putAll(opened.tailMap(oldest, true));
+
+        long drained = segments.get(oldest).getLong(DRAINED_OFFSET);
+        drainedPosition = new Position(oldest, drained == 0 ? HEADER_SIZE : (int) drained);
+
+        long last = segments.lastKey();
+        writeBuffer = segments.get(last);
+        int offset = last == oldest ? drainedPosition.offset() : HEADER_SIZE;
+        writePosition = new Position(last, recoverEnd(writeBuffer, offset));
+    }
+
+    /**
+     * Находит конец записанных данных сегмента; остаток после оборванной записи заполняется нулями
+     */
+    private int recoverEnd(MappedByteBuffer buffer, int offset) {
+        while (offset + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                return offset;
+            }
+            if (length < 0 || offset + RECORD_HEADER_SIZE + length > buffer.capacity()
+                    || readRecord(buffer, offset, length) == null) {
+                for (int i = offset; i < buffer.capacity(); i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                forceRange(buffer, offset, buffer.capacity());
+                return offset;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private static byte[] readRecord(ByteBuffer buffer, int offset, int length) {
+        if (length < 0 || offset + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(offset + RECORD_HEADER_SIZE, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == buffer.getInt(offset + 4) ? payload : null;
+    }
+
+    private void roll() {
+        long next = writePosition.segment() + 1;
+        try {
+            writeBuffer = map(next, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments.put(next, writeBuffer);
+        writePosition = new Position(next, HEADER_SIZE);
+    }
+
+    private MappedByteBuffer map(long segment, boolean create) throws IOException {
+        Path path = segmentPath(segment);
+        try (FileChannel channel = create
+                ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = create ? segmentSize : channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (create) {
+                buffer.putInt(0, MAGIC);
+                forceRange(buffer, 0, HEADER_SIZE);
+            } else if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IllegalStateException("Not a journal segment: " + path);
+            }
+            return buffer;
+        }
+    }
+
+    private void forceRange(MappedByteBuffer buffer, int from, int to) {
+        if (force && to > from) {
+            buffer.force(from, to - from);
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve("%016d%s".formatted(segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Позиция в журнале: номер сегмента и смещение в нем
+     */
+    public record Position(long segment, int offset) implements Comparable<Position> {
+        @Override
+        public int compareTo(Position other) {
+            int bySegment = Long.compare(segment, other.segment);
+            return bySegment != 0 ? bySegment : Integer.compare(offset, other.offset);
+        }
+    }
+
+    /**
+     * Запись журнала
+     *
+     * @param position позиция записи
+     * @param next позиция следующей записи
+     * @param payload содержимое
+     */
+    public record Record(Position position, Position next, byte[] payload) {
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.bank_rest_test_task.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Отображение {@code long -> long} вне кучи (off-heap) с открытой адресацией.
+ *
+ * Пары хранятся подряд в прямом буфере ({@link ByteBuffer#allocateDirect(int)}): 8 байт ключа и 8 байт значения,
+ * поэтому миллионы записей не создают объектов в куче и не нагружают сборщик мусора. Коллизии разрешаются
+ * линейным пробированием; при заполнении больше чем на 3/4 таблица удваивается.
+ *
+ * Ключ 0 означает пустую ячейку и не допускается. Удаления нет. Класс не потокобезопасен:
+ * доступ синхронизирует владелец.
+ */
+public class OffHeapLongMap {
+    private static final int SLOT_SIZE = 16;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final long EMPTY = 0;
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int size;
+
+    /**
+     * @param expectedSize ожидаемое количество записей; таблица создается с запасом до порога расширения
+     */
+    public OffHeapLongMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size must not be negative: " + expectedSize);
+        }
+        int required = Math.max(16, (int) Math.min(MAX_CAPACITY, expectedSize * 4L / 3 + 1));
+        this.capacity = Integer.highestOneBit(required - 1) << 1;
+        this.slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+    }
+
+    /**
+     * @return есть ли значение для ключа
+     */
+    public boolean containsKey(long key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * @param key ключ
+     * @param defaultValue что вернуть, если значения нет
+     * @return значение для ключа или {@code defaultValue}
+     */
+    public long get(long key, long defaultValue) {
+        int slot = slotOf(key);
+        return slot >= 0 ? slots.getLong(slot * SLOT_SIZE + 8) : defaultValue;
+    }
+
+    /**
+     * Записывает значение для ключа, заменяя прежнее
+     *
+     * @throws IllegalArgumentException если ключ равен 0
+     * @throws IllegalStateException если таблица достигла максимального размера
+     */
+    public void put(long key, long value) {
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            slots.putLong(slot * SLOT_SIZE + 8, value);
+            return;
+        }
+        insert(key, value);
+    }
+
+    /**
+     * Записывает значение, только если для ключа его еще нет
+     *
+     * @return записано ли значение
+     * @throws IllegalArgumentException если ключ равен 0
+     * @throws IllegalStateException если таблица достигла максимального размера
+     */
+    public boolean putIfAbsent(long key, long value) {
+        if (slotOf(key) >= 0) {
+            return false;
+        }
+        insert(key, value);
+        return true;
+    }
+
+    /**
+     * @return количество записей
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return номер ячейки ключа или -1, если ключа нет
+     */
+    private int slotOf(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key 0 is reserved for empty slots");
+        }
+        int mask = capacity - 1;
+        for (int slot = indexOf(key, mask); ; slot = (slot + 1) & mask) {
+            long current = slots.getLong(slot * SLOT_SIZE);
+            if (current == key) {
+                return slot;
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private void insert(long key, long value) {
+        if ((size + 1) * 4L > capacity * 3L) {
+            grow();
+        }
+        place(slots, capacity, key, value);
+        size++;
+    }
+
+    private void grow() {
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("Off-heap map reached its maximum capacity of " + MAX_CAPACITY);
+        }
+        int newCapacity = capacity << 1;
+        ByteBuffer newSlots = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+        for (int slot = 0; slot < capacity; slot++) {
+            long key = slots.getLong(slot * SLOT_SIZE);
+            if (key != EMPTY) {
+                place(newSlots, newCapacity, key, slots.getLong(slot * SLOT_SIZE + 8));
+            }
+        }
+        slots = newSlots;
+        capacity = newCapacity;
+    }
+
+    private static void place(ByteBuffer slots, int capacity, long key, long value) {
+        int mask = capacity - 1;
+        int slot = indexOf(key, mask);
+        while (slots.getLong(slot * SLOT_SIZE) != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        slots.putLong(slot * SLOT_SIZE, key);
+        slots.putLong(slot * SLOT_SIZE + 8, value);
+    }
+
+    private static int indexOf(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
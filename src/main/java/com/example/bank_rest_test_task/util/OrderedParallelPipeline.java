@@ -0,0 +1,124 @@
+package com.example.bank_rest_test_task.util;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Параллельное преобразование потока элементов с сохранением порядка и ограниченным объемом буфера.
+ *
+ * Элементы собираются в пачки по {@code chunkSize} и преобразуются в пуле потоков; результаты передаются
+ * получателю в исходном порядке в вызывающем потоке. Одновременно обрабатывается не больше
+ * {@code maxInFlightChunks} пачек: когда лимит достигнут, вызывающий поток ждет самую старую пачку и отдает ее
+ * результаты получателю. Поэтому в памяти находится не больше {@code chunkSize * maxInFlightChunks} элементов
+ * независимо от размера потока.
+ *
+ * Не потокобезопасен: {@link #accept} и {@link #finish} вызываются из одного потока.
+ *
+ * @param <T> тип исходного элемента
+ * @param <R> тип результата преобразования
+ */
+public class OrderedParallelPipeline<T, R> {
+    private final Executor executor;
+    private final int chunkSize;
+    private final int maxInFlightChunks;
+    private final Function<T, R> mapper;
+    private final Sink<R> sink;
+    private final Deque<CompletableFuture<List<R>>> inFlight = new ArrayDeque<>();
+    private List<T> chunk;
+
+    /**
+     * @param executor пул потоков для преобразования
+     * @param chunkSize размер пачки
+     * @param maxInFlightChunks максимальное количество пачек, обрабатываемых одновременно
+     * @param mapper преобразование элемента; должно быть потокобезопасным
+     * @param sink получатель результатов в исходном порядке
+     */
+    public OrderedParallelPipeline(Executor executor, int chunkSize, int maxInFlightChunks,
+                                   Function<T, R> mapper, Sink<R> sink) {
+        if (chunkSize <= 0 || maxInFlightChunks <= 0) {
+            throw new IllegalArgumentException("Chunk size and in-flight chunks must be positive");
+        }
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxInFlightChunks = maxInFlightChunks;
+        this.mapper = mapper;
+        this.sink = sink;
+        this.chunk = new ArrayList<>(chunkSize);
+    }
+
+    /**
+     * Добавляет элемент; при заполнении пачки отправляет ее на обработку
+     *
+     * @param item элемент
+     * @throws IOException если получатель не смог принять результат
+     */
+    public void accept(T item) throws IOException {
+        chunk.add(item);
+        if (chunk.size() == chunkSize) {
+            submit();
+        }
+    }
+
+    /**
+     * Отправляет неполную пачку и дожидается передачи всех результатов получателю
+     *
+     * @throws IOException если получатель не смог принять результат
+     */
+    public void finish() throws IOException {
+        if (!chunk.isEmpty()) {
+            submit();
+        }
+        while (!inFlight.isEmpty()) {
+            drainOldest();
+        }
+    }
+
+    private void submit() throws IOException {
+        if (inFlight.size() == maxInFlightChunks) {
+            drainOldest();
+        }
+        List<T> items = chunk;
+        chunk = new ArrayList<>(chunkSize);
+        inFlight.addLast(CompletableFuture.supplyAsync(() -> items.stream().map(mapper).toList(), executor));
+    }
+
+    private void drainOldest() throws IOException {
+        List<R> results;
+        try {
+            results = inFlight.removeFirst().join();
+        } catch (CompletionException e) {
+            cancelInFlight();
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+        try {
+            for (R result : results) {
+                sink.accept(result);
+            }
+        } catch (IOException | RuntimeException e) {
+            cancelInFlight();
+            throw e;
+        }
+    }
+
+    private void cancelInFlight() {
+        inFlight.forEach(future -> future.cancel(false));
+        inFlight.clear();
+    }
+
+    /**
+     * Получатель результатов, например запись в поток ответа
+     *
+     * @param <R> тип результата
+     */
+    @FunctionalInterface
+    public interface Sink<R> {
+        void accept(R result) throws IOException;
+    }
+}
@@ -2,8 +2,10 @@ package com.example.bank_rest_test_task.util.factory;
 
 import com.example.bank_rest_test_task.dto.CardDto;
 import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.repository.projection.CardSummary;
 import com.example.bank_rest_test_task.util.CardFormattedService;
 import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.money.Money;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -19,7 +21,7 @@ public class CardDtoFactory {
                 .cardId(card.getId())
                 .cardNumber(cryptoService.decrypt(card.getEncryptNumber()))
                 .validityPeriod(card.getValidityPeriod())
-                .balance(card.getBalance())
+                .balance(card.getBalance().toBigDecimal())
                 .statusCard(card.getStatusCard())
                 .build();
     }
@@ -27,9 +29,19 @@ public class CardDtoFactory {
     public CardDto createCardDtoForUser(Card card) {
         return CardDto.builder()
                 .cardId(card.getId())
-                .cardNumber(CardFormattedService.formatedMaskedCard(cryptoService.decrypt(card.getEncryptNumber())))
+                .cardNumber(CardFormattedService.maskedByLast4(card.getLast4()))
                 .validityPeriod(card.getValidityPeriod())
-                .balance(card.getBalance())
+                .balance(card.getBalance().toBigDecimal())
+                .statusCard(card.getStatusCard())
+                .build();
+    }
+
+    public CardDto createCardDtoForUser(CardSummary card) {
+        return CardDto.builder()
+                .cardId(card.getId())
+                .cardNumber(CardFormattedService.maskedByLast4(card.getLast4()))
+                .validityPeriod(card.getValidityPeriod())
+                .balance(card.getBalance().toBigDecimal())
                 .statusCard(card.getStatusCard())
                 .build();
     }
@@ -22,7 +22,7 @@ public class UserDtoFactory {
                 .cards(user.getCards().stream().map(card ->  CardDto.builder()
                             .cardId(card.getId())
                             .statusCard(card.getStatusCard())
-                            .balance(card.getBalance())
+                            .balance(card.getBalance().toBigDecimal())
                             .validityPeriod(card.getValidityPeriod())
                             .cardNumber(cryptoService.decrypt(card.getEncryptNumber()))
                             .build()).toList())
@@ -0,0 +1,33 @@
+package com.example.bank_rest_test_task.util.money;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import jakarta.validation.constraints.Digits;
+
+import java.math.BigDecimal;
+
+/**
+ * Проверка {@link Digits} для {@link Money} по значащим цифрам суммы; подключается через
+ * {@code META-INF/services/jakarta.validation.ConstraintValidator}
+ */
+public class DigitsMoneyValidator implements ConstraintValidator<Digits, Money> {
+    private int maxIntegerLength;
+    private int maxFractionLength;
+
+    @Override
+    public void initialize(Digits constraint) {
+        this.maxIntegerLength = constraint.integer();
+        this.maxFractionLength = constraint.fraction();
+    }
+
+    @Override
+    public boolean isValid(Money value, ConstraintValidatorContext context) {
+        if (value == null) {
+            return true;
+        }
+        BigDecimal amount = value.toBigDecimal().stripTrailingZeros();
+        int fractionLength = Math.max(amount.scale(), 0);
+        int integerLength = amount.precision() - amount.scale();
+        return integerLength <= maxIntegerLength && fractionLength <= maxFractionLength;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.bank_rest_test_task.util.money;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.math.BigDecimal;
+
+/**
+ * Денежная сумма в минимальных единицах: {@code long} десятитысячных долей ({@link #SCALE} знака после запятой,
+ * как у столбцов {@code numeric(19, 4)} балансов и сумм переводов).
+ *
+ * Особенности:
+ * - Сложение и вычитание проверяют переполнение ({@link ArithmeticException}), сравнение не создает объектов.
+ * - Политика округления одна: сумма никогда не округляется неявно. Значение с большим числом знаков после
+ *   запятой или вне диапазона {@code long} отклоняется при создании ({@link #of(BigDecimal)}).
+ * - В JSON записывается числом, как {@link BigDecimal} ({@link MoneyJsonSerializer}, {@link MoneyJsonDeserializer}),
+ *   в базе данных хранится как {@code numeric} ({@link MoneyConverter}).
+ * - Неизменяемый; равенство по значению, поэтому {@code 1.5} и {@code 1.50} равны, в отличие от {@link BigDecimal#equals}.
+ */
+@JsonSerialize(using = MoneyJsonSerializer.class)
+@JsonDeserialize(using = MoneyJsonDeserializer.class)
+public final class Money implements Comparable<Money> {
+    /**
+     * Количество знаков после запятой
+     */
+    public static final int SCALE = 4;
+
+    public static final Money ZERO = new Money(0);
+
+    private static final Money MAX = new Money(Long.MAX_VALUE);
+    private static final Money MIN = new Money(Long.MIN_VALUE);
+
+    private static final long UNIT = 10_000;
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    /**
+     * @param minorUnits сумма в десятитысячных долях
+     * @return сумма
+     */
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * @param units сумма в целых единицах
+     * @return сумма
+     * @throws ArithmeticException если сумма не помещается в диапазон
+     */
+    public static Money of(long units) {
+        return ofMinor(Math.multiplyExact(units, UNIT));
+    }
+
+    /**
+     * Переводит сумму без округления
+     *
+     * @param amount сумма; не больше {@link #SCALE} значащих знаков после запятой
+     * @return сумма
+     * @throws ArithmeticException если у суммы больше {@link #SCALE} знаков после запятой или она не помещается в диапазон
+     */
+    public static Money of(BigDecimal amount) {
+        return ofMinor(amount.setScale(SCALE).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Переводит границу фильтра: значение вне диапазона заменяется наибольшей или наименьшей суммой,
+     * поэтому сравнение с границей дает тот же результат, что и с исходным значением
+     *
+     * @param bound граница; не больше {@link #SCALE} значащих знаков после запятой
+     * @return сумма
+     * @throws ArithmeticException если у границы больше {@link #SCALE} знаков после запятой
+     */
+    public static Money ofClamped(BigDecimal bound) {
+        if (bound.compareTo(MAX.toBigDecimal()) > 0) {
+            return MAX;
+        }
+        if (bound.compareTo(MIN.toBigDecimal()) < 0) {
+            return MIN;
+        }
+        return of(bound);
+    }
+
+    /**
+     * Разбирает сумму без округления
+     *
+     * @param amount сумма в десятичной записи, например {@code 100.50}
+     * @return сумма
+     * @throws NumberFormatException если строка не является числом
+     * @throws ArithmeticException если у суммы больше {@link #SCALE} знаков после запятой или она не помещается в диапазон
+     */
+    public static Money of(String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+    /**
+     * @return сумма в десятитысячных долях
+     */
+    public long minorUnits() {
+        return minorUnits;
+    }
+
+    /**
+     * @throws ArithmeticException при переполнении
+     */
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    /**
+     * @throws ArithmeticException при переполнении
+     */
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    /**
+     * @throws ArithmeticException при переполнении
+     */
+    public Money times(long factor) {
+        return ofMinor(Math.multiplyExact(minorUnits, factor));
+    }
+
+    /**
+     * @return меньше ли сумма, чем {@code other}
+     */
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+
+    /**
+     * @return -1, 0 или 1 для отрицательной, нулевой и положительной суммы
+     */
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    /**
+     * @return сумма с масштабом {@link #SCALE}
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Money other && minorUnits == other.minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    /**
+     * @return сумма без экспоненты с {@link #SCALE} знаками после запятой, например {@code 100.5000}
+     */
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.bank_rest_test_task.util.money;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+
+/**
+ * Хранение {@link Money} в столбце {@code numeric}.
+ *
+ * Подключается к атрибуту явно ({@code @Convert}); значение из базы данных переводится без округления,
+ * поэтому масштаб столбца не должен превышать {@link Money#SCALE}.
+ */
+@Immutable
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money money) {
+        return money == null ? null : money.toBigDecimal();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(BigDecimal amount) {
+        return amount == null ? null : Money.of(amount);
+    }
+}
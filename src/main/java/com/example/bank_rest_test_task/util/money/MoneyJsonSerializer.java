@@ -0,0 +1,23 @@
+package com.example.bank_rest_test_task.util.money;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Записывает {@link Money} числом с {@link Money#SCALE} знаками после запятой, как {@link java.math.BigDecimal}
+ * из столбца {@code numeric(19, 4)}: {@code 100.5000}
+ */
+public class MoneyJsonSerializer extends StdSerializer<Money> {
+
+    public MoneyJsonSerializer() {
+        super(Money.class);
+    }
+
+    @Override
+    public void serialize(Money money, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeNumber(money.toBigDecimal());
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.bank_rest_test_task.util.money;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import jakarta.validation.constraints.Positive;
+
+/**
+ * Проверка {@link Positive} для {@link Money}; подключается через
+ * {@code META-INF/services/jakarta.validation.ConstraintValidator}
+ */
+public class PositiveMoneyValidator implements ConstraintValidator<Positive, Money> {
+
+    @Override
+    public boolean isValid(Money value, ConstraintValidatorContext context) {
+        return value == null || value.signum() > 0;
+    }
+}
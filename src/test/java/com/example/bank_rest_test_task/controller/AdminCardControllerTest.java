@@ -2,10 +2,14 @@ package com.example.bank_rest_test_task.controller;
 
 import com.example.bank_rest_test_task.dto.CardCreateDto;
 import com.example.bank_rest_test_task.dto.CardDto;
+import com.example.bank_rest_test_task.dto.ExportFormat;
 import com.example.bank_rest_test_task.dto.UpdateStatusCardDto;
 import com.example.bank_rest_test_task.entity.Card;
 import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.exception.InvalidCursorException;
 import com.example.bank_rest_test_task.service.CardService;
+import com.example.bank_rest_test_task.service.ExportService;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
 import com.example.bank_rest_test_task.util.factory.CardDtoFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -15,6 +19,9 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.http.MediaType;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -23,11 +30,16 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Collections;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.never;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -45,6 +57,12 @@ public class AdminCardControllerTest {
     @MockitoBean
     private CardDtoFactory cardDtoFactory;
 
+    @MockitoBean
+    private KeysetCursorCodec keysetCursorCodec;
+
+    @MockitoBean
+    private ExportService exportService;
+
     @MockitoBean
     private Jwt jwt;
 
@@ -90,6 +108,33 @@ public class AdminCardControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void scrollAllCards() throws Exception {
+        Window<Card> window = Window.from(List.of(new Card()), ScrollPosition::offset, true);
+        when(keysetCursorCodec.decode(eq("cursor"), eq(Card.class), any(Sort.class))).thenReturn(ScrollPosition.keyset());
+        when(keysetCursorCodec.nextCursor(window)).thenReturn("next-cursor");
+        when(cardService.scrollAllCards(any(), any(Sort.class), eq(6))).thenReturn(window);
+        when(cardDtoFactory.createCardDtoForAdmin(any(Card.class))).thenReturn(new CardDto(1L, "1234567812345678", LocalDate.now().plusYears(5), StatusCard.ACTIVE, BigDecimal.ZERO));
+
+        mockMvc.perform(get("/admin/cards/scroll").param("after", "cursor")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.next").value("next-cursor"))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+
+    @Test
+    void scrollAllCards_WhenCursorInvalid_ThenBadRequest() throws Exception {
+        when(keysetCursorCodec.decode(eq("broken"), eq(Card.class), any(Sort.class)))
+                .thenThrow(new InvalidCursorException("Cursor is malformed"));
+
+        mockMvc.perform(get("/admin/cards/scroll").param("after", "broken")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getCardByCardNumber() throws Exception {
         when(jwt.getSubject()).thenReturn("1");
@@ -144,4 +189,49 @@ public class AdminCardControllerTest {
                                 .authorities(new SimpleGrantedAuthority("ADMIN"))))
                 .andExpect(status().isNoContent());
     }
-}
\ No newline at end of file
+
+    @Test
+    void exportCards() throws Exception {
+        when(exportService.exportCards(eq(ExportFormat.CSV), any(), eq(1L))).thenReturn(0L);
+
+        mockMvc.perform(get("/admin/cards/export").param("format", "CSV")
+                        .with(jwt()
+                                .jwt(j -> j.subject("1"))
+                                .authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"cards.csv\""));
+    }
+
+    @Test
+    void exportCards_WhenFormatUnknown_ThenBadRequest() throws Exception {
+        mockMvc.perform(get("/admin/cards/export").param("format", "XML")
+                        .with(jwt()
+                                .jwt(j -> j.subject("1"))
+                                .authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void scrollAllCards_WhenSortNotAllowed_ThenBadRequestWithoutQuery() throws Exception {
+        mockMvc.perform(get("/admin/cards/scroll").param("sort", "searchHash")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Sort by 'searchHash' is not supported, allowed: balance, id, statusCard, validityPeriod"));
+
+        verify(cardService, never()).scrollAllCards(any(), any(Sort.class), anyInt());
+    }
+
+    @Test
+    void scrollSearchCard_WhenSortByAssociationPath_ThenBadRequestOnFirstPage() throws Exception {
+        // Курсор хранит только атрибуты самой карты: вложенная сортировка отклоняется до выдачи первой страницы
+        mockMvc.perform(post("/admin/cards/search/scroll").param("sort", "user.username")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Sort by 'user.username' is not supported, allowed: balance, id, statusCard, validityPeriod"));
+
+        verify(cardService, never()).scrollSearchCard(any(), any(), any(Sort.class), anyInt());
+    }
+}
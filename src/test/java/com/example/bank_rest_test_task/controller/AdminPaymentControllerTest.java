@@ -0,0 +1,151 @@
+package com.example.bank_rest_test_task.controller;
+
+import com.example.bank_rest_test_task.dto.ExportFormat;
+import com.example.bank_rest_test_task.dto.RollupBackfillResultDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryDto;
+import com.example.bank_rest_test_task.dto.TransferLaneMetricsDto;
+import com.example.bank_rest_test_task.dto.TransferRetryMetricsDto;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.exception.RollupBackfillInProgressException;
+import com.example.bank_rest_test_task.service.ExportService;
+import com.example.bank_rest_test_task.service.SpendingRollupService;
+import com.example.bank_rest_test_task.service.TransferHistoryService;
+import com.example.bank_rest_test_task.service.TransferLaneExecutor;
+import com.example.bank_rest_test_task.service.TransferRetryExecutor;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
+import com.example.bank_rest_test_task.util.money.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AdminPaymentController.class)
+class AdminPaymentControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private TransferHistoryService transferHistoryService;
+
+    @MockitoBean
+    private KeysetCursorCodec keysetCursorCodec;
+
+    @MockitoBean
+    private ExportService exportService;
+
+    @MockitoBean
+    private SpendingRollupService spendingRollupService;
+
+    @MockitoBean
+    private TransferRetryExecutor transferRetryExecutor;
+
+    @MockitoBean
+    private TransferLaneExecutor transferLaneExecutor;
+
+    @Test
+    void getTransferHistory() throws Exception {
+        TransferHistoryDto entry = new TransferHistoryDto(10L, 1L, 2L, Money.of("100.00"),
+                OffsetDateTime.parse("2025-01-15T10:15:30Z"), "Test payment");
+        Window<TransferHistoryDto> window = Window.from(List.of(entry), ScrollPosition::offset, false);
+        when(keysetCursorCodec.decode(isNull(), eq(TransferHistory.class), eq(TransferHistoryService.HISTORY_SORT)))
+                .thenReturn(ScrollPosition.keyset());
+        when(transferHistoryService.scrollTransferHistory(eq(7L), any(), any(), eq(6))).thenReturn(window);
+
+        mockMvc.perform(get("/admin/payments/history").param("userId", "7")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(10))
+                .andExpect(jsonPath("$.hasNext").value(false));
+    }
+
+    @Test
+    void getTransferHistory_WhenUserIdMissing_ThenBadRequest() throws Exception {
+        mockMvc.perform(get("/admin/payments/history")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportTransfers() throws Exception {
+        when(exportService.exportTransfers(eq(ExportFormat.NDJSON), any(), eq(1L))).thenReturn(0L);
+
+        mockMvc.perform(get("/admin/payments/export")
+                        .with(jwt().jwt(j -> j.subject("1")).authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"transfers.ndjson\""));
+    }
+
+    @Test
+    void backfillSpending() throws Exception {
+        LocalDate from = LocalDate.parse("2025-01-01");
+        LocalDate to = LocalDate.parse("2025-02-01");
+        when(spendingRollupService.backfill(from, to, 1L)).thenReturn(RollupBackfillResultDto.builder()
+                .from(from).to(to).chunks(2).transfers(120).durationMillis(15).build());
+
+        mockMvc.perform(post("/admin/payments/analytics/backfill")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-02-01")
+                        .with(jwt().jwt(j -> j.subject("1")).authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.chunks").value(2))
+                .andExpect(jsonPath("$.transfers").value(120));
+    }
+
+    @Test
+    void backfillSpending_WhenAlreadyRunning_ThenConflict() throws Exception {
+        when(spendingRollupService.backfill(any(), any(), eq(1L)))
+                .thenThrow(new RollupBackfillInProgressException("Spending rollup backfill is already running"));
+
+        mockMvc.perform(post("/admin/payments/analytics/backfill")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-02-01")
+                        .with(jwt().jwt(j -> j.subject("1")).authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void getTransferRetryMetrics() throws Exception {
+        when(transferRetryExecutor.getMetrics()).thenReturn(TransferRetryMetricsDto.builder()
+                .transferMode("OPTIMISTIC_LOCK").transfers(100).attempts(110).conflicts(10).retries(10).conflictRate(10 / 110.0).build());
+
+        mockMvc.perform(get("/admin/payments/metrics/transfer-retries")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transferMode").value("OPTIMISTIC_LOCK"))
+                .andExpect(jsonPath("$.retries").value(10))
+                .andExpect(jsonPath("$.exhausted").value(0));
+    }
+
+    @Test
+    void getTransferLaneMetrics() throws Exception {
+        when(transferLaneExecutor.getMetrics()).thenReturn(List.of(TransferLaneMetricsDto.builder()
+                .lane(0).queueDepth(3).queueCapacity(256).completed(40).rejected(2).averageLatencyMillis(4.5).build()));
+
+        mockMvc.perform(get("/admin/payments/metrics/transfer-lanes")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].queueDepth").value(3))
+                .andExpect(jsonPath("$[0].rejected").value(2));
+    }
+}
@@ -6,6 +6,7 @@ import com.example.bank_rest_test_task.entity.CardBlockRequest;
 import com.example.bank_rest_test_task.entity.User;
 import com.example.bank_rest_test_task.security.CustomUserDetails;
 import com.example.bank_rest_test_task.service.CardBlockRequestService;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
 import com.example.bank_rest_test_task.util.factory.CardBlockRequestDtoFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -23,9 +24,12 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.util.Collections;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.never;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -45,6 +49,9 @@ public class CardBlockControllerTest {
     @MockitoBean
     private CardBlockRequestDtoFactory cardBlockRequestDtoFactory;
 
+    @MockitoBean
+    private KeysetCursorCodec keysetCursorCodec;
+
     @MockitoBean
     private Jwt jwt;
 
@@ -138,4 +145,29 @@ public class CardBlockControllerTest {
         mockMvc.perform(get("/blocks/1").with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("ADMIN"))))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    void scrollCardBlockRequest_WhenSortByNullableAttribute_ThenBadRequestWithoutQuery() throws Exception {
+        // processedAt пуст у заявок на рассмотрении: такой ключ нельзя записать в курсор
+        mockMvc.perform(post("/blocks/search/scroll").param("sort", "processedAt")
+                        .with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("ADMIN")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(CardBlockRequestFilter.builder().build())))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Sort by 'processedAt' is not supported, allowed: createAt, id"));
+
+        verify(blockService, never()).scrollCardBlockRequest(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void scrollCardBlockRequest_WhenSortByAssociationPath_ThenBadRequestOnFirstPage() throws Exception {
+        mockMvc.perform(post("/blocks/search/scroll").param("sort", "requester.username")
+                        .with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("ADMIN")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(CardBlockRequestFilter.builder().build())))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Sort by 'requester.username' is not supported, allowed: createAt, id"));
+
+        verify(blockService, never()).scrollCardBlockRequest(any(), any(), any(), anyInt());
+    }
+}
@@ -1,14 +1,38 @@
 package com.example.bank_rest_test_task.controller;
 
+import com.example.bank_rest_test_task.dto.BatchPaymentDto;
+import com.example.bank_rest_test_task.dto.BatchPaymentMode;
+import com.example.bank_rest_test_task.dto.BatchPaymentResultDto;
+import com.example.bank_rest_test_task.dto.CardDto;
 import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.dto.SpendingAnalyticsFilter;
+import com.example.bank_rest_test_task.dto.SpendingRollupDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryFilter;
 import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.RollupPeriod;
+import com.example.bank_rest_test_task.entity.TransferHistory;
 import com.example.bank_rest_test_task.security.CustomUserDetails;
+import com.example.bank_rest_test_task.exception.IdempotencyKeyConflictException;
+import com.example.bank_rest_test_task.exception.TransferConflictException;
+import com.example.bank_rest_test_task.exception.TransferLaneBusyException;
+import com.example.bank_rest_test_task.service.GroupCommitTransferExecutor;
+import com.example.bank_rest_test_task.service.PaymentIdempotencyService;
 import com.example.bank_rest_test_task.service.PaymentService;
+import com.example.bank_rest_test_task.service.SpendingRollupService;
+import com.example.bank_rest_test_task.service.TransferHistoryService;
+import com.example.bank_rest_test_task.service.TransferLaneExecutor;
+import com.example.bank_rest_test_task.service.TransferRetryExecutor;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
 import com.example.bank_rest_test_task.util.factory.CardDtoFactory;
+import com.example.bank_rest_test_task.util.money.Money;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.http.MediaType;
@@ -16,13 +40,25 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -36,24 +72,231 @@ public class PaymentControllerTest {
     @MockitoBean
     private PaymentService paymentService;
 
+    @MockitoBean
+    private PaymentIdempotencyService paymentIdempotencyService;
+
     @MockitoBean
     private CardDtoFactory cardDtoFactory;
 
+    @MockitoBean
+    private TransferHistoryService transferHistoryService;
+
+    @MockitoBean
+    private KeysetCursorCodec keysetCursorCodec;
+
+    @MockitoBean
+    private SpendingRollupService spendingRollupService;
+
+    @MockitoBean
+    private TransferRetryExecutor transferRetryExecutor;
+
+    @MockitoBean
+    private GroupCommitTransferExecutor groupCommitTransferExecutor;
+
+    @MockitoBean
+    private TransferLaneExecutor transferLaneExecutor;
+
     @MockitoBean
     private Jwt jwt;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    void setUp() {
+        when(transferRetryExecutor.execute(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(transferLaneExecutor.execute(any(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+    }
+
     @Test
     void transferMoney() throws Exception {
-        PaymentDto paymentDto = new PaymentDto(1L, 2L, new BigDecimal("100.00"), "Test payment");
+        PaymentDto paymentDto = new PaymentDto(1L, 2L, Money.of("100.00"), "Test payment");
+        when(jwt.getSubject()).thenReturn("1");
+        when(groupCommitTransferExecutor.transferMoney(any(PaymentDto.class), anyLong())).thenReturn(Collections.singletonList(new Card()));
+        when(cardDtoFactory.createCardDtoForUser(any(Card.class))).thenReturn(new CardDto());
+
+        mockMvc.perform(post("/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(paymentDto)).with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+
+        verify(paymentService, never()).transferMoney(any(PaymentDto.class), anyLong());
+    }
+
+    @Test
+    void transferMoney_WhenIdempotencyKeyPresent_ThenExecutedThroughIdempotencyService() throws Exception {
+        PaymentDto paymentDto = new PaymentDto(1L, 2L, Money.of("100.00"), "Test payment");
+        when(jwt.getSubject()).thenReturn("1");
+        when(paymentIdempotencyService.executeOnce(eq(1L), eq("key-1"), eq(paymentDto), any()))
+                .thenReturn(List.of(new CardDto()));
+
+        mockMvc.perform(post("/payments")
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(paymentDto)).with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
+                .andExpect(status().isOk());
+
+        verify(paymentService, never()).transferMoney(any(PaymentDto.class), anyLong());
+    }
+
+    @Test
+    void transferMoney_WhenIdempotencyKeyReusedWithDifferentBody_ThenConflict() throws Exception {
+        PaymentDto paymentDto = new PaymentDto(1L, 2L, Money.of("100.00"), "Test payment");
+        when(jwt.getSubject()).thenReturn("1");
+        when(paymentIdempotencyService.executeOnce(eq(1L), eq("key-1"), eq(paymentDto), any()))
+                .thenThrow(new IdempotencyKeyConflictException("Idempotency key: key-1 was already used with a different request"));
+
+        mockMvc.perform(post("/payments")
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(paymentDto)).with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void transferMoney_WhenConflictNotResolvedByRetries_ThenConflict() throws Exception {
+        PaymentDto paymentDto = new PaymentDto(1L, 2L, Money.of("100.00"), "Test payment");
+        when(jwt.getSubject()).thenReturn("1");
+        doThrow(new TransferConflictException("Transfer conflicted with concurrent updates, try again later"))
+                .when(transferRetryExecutor).execute(any());
+
+        mockMvc.perform(post("/payments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(paymentDto)).with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.code").value(409));
+    }
+
+    @Test
+    void transferMoney_WhenCardLaneFull_ThenTooManyRequests() throws Exception {
+        PaymentDto paymentDto = new PaymentDto(1L, 2L, Money.of("100.00"), "Test payment");
         when(jwt.getSubject()).thenReturn("1");
-        when(paymentService.transferMoney(any(PaymentDto.class), anyLong())).thenReturn(Collections.singletonList(new Card()));
+        doThrow(new TransferLaneBusyException("Too many transfers for card 1, try again later"))
+                .when(transferLaneExecutor).execute(any(), any());
 
         mockMvc.perform(post("/payments")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(paymentDto)).with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(jsonPath("$.code").value(429));
+
+        verify(groupCommitTransferExecutor, never()).transferMoney(any(PaymentDto.class), anyLong());
+    }
+
+    @Test
+    void transferMoneyBatch() throws Exception {
+        BatchPaymentDto batchPaymentDto = new BatchPaymentDto(
+                List.of(new PaymentDto(1L, 2L, Money.of("100.00"), "Test payment")), BatchPaymentMode.BEST_EFFORT);
+        when(jwt.getSubject()).thenReturn("1");
+        when(paymentService.transferMoneyBatch(anyList(), eq(BatchPaymentMode.BEST_EFFORT), anyLong()))
+                .thenReturn(BatchPaymentResultDto.builder().committed(true).succeeded(1).build());
+
+        mockMvc.perform(post("/payments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batchPaymentDto)).with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    void transferMoneyBatch_WhenNothingApplied_ThenUnprocessableEntity() throws Exception {
+        BatchPaymentDto batchPaymentDto = new BatchPaymentDto(
+                List.of(new PaymentDto(1L, 2L, Money.of("100.00"), "Test payment")), null);
+        when(jwt.getSubject()).thenReturn("1");
+        when(paymentService.transferMoneyBatch(anyList(), any(), anyLong()))
+                .thenReturn(BatchPaymentResultDto.builder().committed(false).failed(1).build());
+
+        mockMvc.perform(post("/payments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batchPaymentDto)).with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void transferMoneyBatch_WhenBatchEmpty_ThenBadRequest() throws Exception {
+        when(jwt.getSubject()).thenReturn("1");
+
+        mockMvc.perform(post("/payments/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatchPaymentDto(List.of(), null)))
+                        .with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getTransferHistory_ThenFilterBoundFromQueryAndHistoryOfCurrentUser() throws Exception {
+        TransferHistoryDto entry = new TransferHistoryDto(10L, 1L, 2L, Money.of("100.00"),
+                OffsetDateTime.parse("2025-01-15T10:15:30Z"), "Test payment");
+        Window<TransferHistoryDto> window = Window.from(List.of(entry), ScrollPosition::offset, true);
+        when(jwt.getSubject()).thenReturn("1");
+        when(keysetCursorCodec.decode(eq("cursor"), eq(TransferHistory.class), eq(TransferHistoryService.HISTORY_SORT)))
+                .thenReturn(ScrollPosition.keyset());
+        when(keysetCursorCodec.nextCursor(window)).thenReturn("next-cursor");
+        TransferHistoryFilter filter = TransferHistoryFilter.builder()
+                .cardId(1L)
+                .amountMin(new BigDecimal("10"))
+                .from(OffsetDateTime.parse("2025-01-01T00:00:00Z"))
+                .build();
+        when(transferHistoryService.scrollTransferHistory(eq(1L), eq(filter), any(), eq(6))).thenReturn(window);
+
+        mockMvc.perform(get("/payments/history")
+                        .param("cardId", "1")
+                        .param("amountMin", "10")
+                        .param("from", "2025-01-01T00:00:00Z")
+                        .param("after", "cursor")
+                        .with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].fromCardId").value(1))
+                .andExpect(jsonPath("$.content[0].toCardId").value(2))
+                .andExpect(jsonPath("$.next").value("next-cursor"));
+    }
+
+    @Test
+    void getTransferHistory_WhenAmountRangeInverted_ThenBadRequest() throws Exception {
+        when(jwt.getSubject()).thenReturn("1");
+
+        mockMvc.perform(get("/payments/history")
+                        .param("amountMin", "100")
+                        .param("amountMax", "10")
+                        .with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
+                .andExpect(status().isBadRequest());
+
+        verify(transferHistoryService, never()).scrollTransferHistory(anyLong(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getCardSpending_ThenRollupsOfCurrentUserCard() throws Exception {
+        when(jwt.getSubject()).thenReturn("1");
+        SpendingAnalyticsFilter filter = SpendingAnalyticsFilter.builder()
+                .period(RollupPeriod.MONTH)
+                .from(LocalDate.parse("2025-01-01"))
+                .to(LocalDate.parse("2025-03-01"))
+                .build();
+        when(spendingRollupService.getUserCardSpending(1L, 2L, filter)).thenReturn(List.of(
+                new SpendingRollupDto(LocalDate.parse("2025-01-01"), 3, new BigDecimal("60.00"),
+                        new BigDecimal("10.00"), new BigDecimal("30.00"))));
+
+        mockMvc.perform(get("/payments/analytics/cards/2")
+                        .param("period", "MONTH")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-03-01")
+                        .with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].periodStart").value("2025-01-01"))
+                .andExpect(jsonPath("$[0].count").value(3))
+                .andExpect(jsonPath("$[0].max").value(30.00));
+    }
+
+    @Test
+    void getSpending_WhenDailyRangeTooLong_ThenBadRequest() throws Exception {
+        when(jwt.getSubject()).thenReturn("1");
+
+        mockMvc.perform(get("/payments/analytics")
+                        .param("from", "2024-01-01")
+                        .param("to", "2025-06-01")
+                        .with(jwt().jwt(this.jwt).authorities(new SimpleGrantedAuthority("USER"))))
+                .andExpect(status().isBadRequest());
+
+        verify(spendingRollupService, never()).getUserSpending(anyLong(), any());
+    }
+}
@@ -1,14 +1,19 @@
 package com.example.bank_rest_test_task.controller;
 
+import com.example.bank_rest_test_task.config.CardStreamConfig;
 import com.example.bank_rest_test_task.dto.CardDto;
-import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.dto.DomainEventDto;
+import com.example.bank_rest_test_task.entity.DomainEventType;
 import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.repository.projection.CardSummary;
 import com.example.bank_rest_test_task.security.CustomUserDetails;
 import com.example.bank_rest_test_task.service.CardService;
+import com.example.bank_rest_test_task.service.CardStreamService;
 import com.example.bank_rest_test_task.util.factory.CardDtoFactory;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -16,21 +21,31 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 
 @WebMvcTest(UserCardController.class)
+@Import({CardStreamConfig.class, CardStreamService.class})
 public class UserCardControllerTest {
 
     @Autowired
@@ -45,12 +60,18 @@ public class UserCardControllerTest {
     @MockitoBean
     private Jwt jwt;
 
+    @Autowired
+    private CardStreamService cardStreamService;
+
+    @Autowired
+    private ScheduledExecutorService cardStreamExecutor;
+
     @Test
     @WithMockUser
     void getCardById() throws Exception {
         when(jwt.getSubject()).thenReturn("1");
-        when(cardService.findCardByUserIdAndCardId(anyLong(), anyLong())).thenReturn(new Card());
-        when(cardDtoFactory.createCardDtoForUser(any(Card.class))).thenReturn(new CardDto(1L, "1234567812345678", LocalDate.now().plusYears(5), StatusCard.ACTIVE, BigDecimal.ZERO));
+        when(cardService.findCardSummaryByUserIdAndCardId(anyLong(), anyLong())).thenReturn(mock(CardSummary.class));
+        when(cardDtoFactory.createCardDtoForUser(any(CardSummary.class))).thenReturn(new CardDto(1L, "1234567812345678", LocalDate.now().plusYears(5), StatusCard.ACTIVE, BigDecimal.ZERO));
 
         mockMvc.perform(get("/cards/1").with(jwt().jwt(this.jwt)))
                 .andExpect(status().isOk());
@@ -60,11 +81,94 @@ public class UserCardControllerTest {
     @WithMockUser
     void getUserCards() throws Exception {
         when(jwt.getSubject()).thenReturn("1");
-        Page<Card> page = new PageImpl<>(Collections.singletonList(new Card()));
-        when(cardService.getUserCardsPaginated(anyLong(), any(PageRequest.class))).thenReturn(page);
-        when(cardDtoFactory.createCardDtoForUser(any(Card.class))).thenReturn(new CardDto(1L, "1234567812345678", LocalDate.now().plusYears(5), StatusCard.ACTIVE, BigDecimal.ZERO));
+        Page<CardSummary> page = new PageImpl<>(Collections.singletonList(mock(CardSummary.class)));
+        when(cardService.getUserCardSummariesPaginated(anyLong(), any(PageRequest.class))).thenReturn(page);
+        when(cardDtoFactory.createCardDtoForUser(any(CardSummary.class))).thenReturn(new CardDto(1L, "1234567812345678", LocalDate.now().plusYears(5), StatusCard.ACTIVE, BigDecimal.ZERO));
 
         mockMvc.perform(get("/cards").with(jwt().jwt(this.jwt)))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser
+    void streamCardChanges_ThenOwnCardChangesPushed() throws Exception {
+        when(jwt.getSubject()).thenReturn("1");
+
+        MvcResult result = mockMvc.perform(get("/cards/stream").with(jwt().jwt(this.jwt)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        cardStreamService.accept(List.of(transfer(10, 1L, 1, 2, "100.5"), transfer(11, 2L, 3, 4, "7"),
+                statusChange(12, 1L, 2, "BLOCKED")));
+        awaitStream();
+
+        String content = result.getResponse().getContentAsString();
+        assertTrue(content.contains("""
+                event:card-changes
+                data:[{"cardId":1,"balanceChange":-100.5000,"status":null},{"cardId":2,"balanceChange":100.5000,"status":null}]
+                """), content);
+        assertTrue(content.contains("""
+                event:card-changes
+                data:[{"cardId":2,"balanceChange":null,"status":"BLOCKED"}]
+                """), content);
+        assertFalse(content.contains("\"cardId\":3"), content);
+        List<Long> ids = eventIds(content);
+        assertEquals(2, ids.size());
+        assertTrue(ids.get(0) < ids.get(1), content);
+    }
+
+    @Test
+    @WithMockUser
+    void streamCardChanges_WhenLastEventId_ThenMissedEventsReplayedOrReset() throws Exception {
+        when(jwt.getSubject()).thenReturn("1");
+        MvcResult live = mockMvc.perform(get("/cards/stream").with(jwt().jwt(this.jwt)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // Событие outbox с меньшим id зафиксировано позже: клиент, получивший первое, все равно получит второе
+        cardStreamService.accept(List.of(transfer(21, 1L, 1, 2, "1")));
+        cardStreamService.accept(List.of(statusChange(20, 1L, 1, "PENDING_BLOCKED")));
+        awaitStream();
+        List<Long> ids = eventIds(live.getResponse().getContentAsString());
+        assertEquals(2, ids.size());
+
+        MvcResult resumed = mockMvc.perform(get("/cards/stream").with(jwt().jwt(this.jwt))
+                        .header("Last-Event-ID", ids.get(0).toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult tooOld = mockMvc.perform(get("/cards/stream").with(jwt().jwt(this.jwt)).header("Last-Event-ID", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult unknown = mockMvc.perform(get("/cards/stream").with(jwt().jwt(this.jwt))
+                        .header("Last-Event-ID", String.valueOf(ids.get(1) + 100)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitStream();
+
+        String content = resumed.getResponse().getContentAsString();
+        assertEquals(List.of(ids.get(1)), eventIds(content));
+        assertTrue(content.contains("PENDING_BLOCKED"), content);
+        assertTrue(tooOld.getResponse().getContentAsString().contains("event:reset"), tooOld.getResponse().getContentAsString());
+        assertTrue(unknown.getResponse().getContentAsString().contains("event:reset"), unknown.getResponse().getContentAsString());
+    }
+
+    private void awaitStream() throws Exception {
+        cardStreamExecutor.submit(() -> {}).get();
+    }
+
+    private static List<Long> eventIds(String content) {
+        return content.lines()
+                .filter(line -> line.startsWith("id:"))
+                .map(line -> Long.valueOf(line.substring(3)))
+                .toList();
+    }
+
+    private static DomainEventDto transfer(long id, Long userId, long fromCardId, long toCardId, String amount) {
+        return new DomainEventDto(id, DomainEventType.TRANSFER_COMPLETED, id, userId, """
+                {"historyId":%d,"fromCardId":%d,"toCardId":%d,"amount":%s,"timestamp":"2025-01-15T10:15:30Z"}"""
+                .formatted(id, fromCardId, toCardId, amount), OffsetDateTime.now());
+    }
+
+    private static DomainEventDto statusChange(long id, Long userId, long cardId, String status) {
+        return new DomainEventDto(id, DomainEventType.CARD_STATUS_CHANGED, cardId, userId, """
+                {"cardId":%d,"status":"%s"}""".formatted(cardId, status), OffsetDateTime.now());
+    }
+}
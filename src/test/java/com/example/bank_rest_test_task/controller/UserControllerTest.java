@@ -6,6 +6,7 @@ import com.example.bank_rest_test_task.dto.UserRoleUpdateDto;
 import com.example.bank_rest_test_task.dto.UsernameUpdateDto;
 import com.example.bank_rest_test_task.entity.User;
 import com.example.bank_rest_test_task.service.UserService;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
 import com.example.bank_rest_test_task.util.factory.UserDtoFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -18,10 +19,14 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.never;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
@@ -40,6 +45,9 @@ public class UserControllerTest {
     @MockitoBean
     private UserDtoFactory userDtoFactory;
 
+    @MockitoBean
+    private KeysetCursorCodec keysetCursorCodec;
+
     @MockitoBean
     private Jwt jwt;
 
@@ -64,7 +72,7 @@ public class UserControllerTest {
     @WithMockUser(authorities = "ADMIN")
     void getUserByUsername() throws Exception {
         when(jwt.getSubject()).thenReturn("1");
-        when(userService.findUserByUsername(anyString())).thenReturn(new User());
+        when(userService.findUserWithCardsByUsername(anyString())).thenReturn(new User());
         when(userDtoFactory.createUserDtoAndCardDtoForAdminWithCards(any(User.class))).thenReturn(new UserDto());
 
         mockMvc.perform(get("/users/by-username/user").with(jwt().jwt(this.jwt)))
@@ -116,4 +124,13 @@ public class UserControllerTest {
                         .content(objectMapper.writeValueAsString(userRoleUpdateDto)).with(jwt().jwt(this.jwt)))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    void scrollAllUser_WhenSortByNullableAttribute_ThenBadRequestWithoutQuery() throws Exception {
+        mockMvc.perform(get("/users/scroll").param("sort", "accountLocked")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ADMIN"))))
+                .andExpect(status().isBadRequest());
+
+        verify(userService, never()).scrollUsers(any(), any(), anyInt(), anyBoolean());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.bank_rest_test_task.repository;
+
+import com.example.bank_rest_test_task.dto.CardSearchFilter;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сравнение поиска карт по началу (BIN) и концовке номера с индексами миграции V9 и без них.
+ *
+ * Карты вставляются пакетами через JDBC, поверх схемы применяется миграция V9. Для каждого фильтра
+ * проверяется, что спецификация находит те же карты, что и исходные условия {@code first8 LIKE 'prefix%'}
+ * и {@code last4 LIKE '%suffix'}, и в лог выводится средняя задержка запроса по индексу и полным сканированием
+ * ({@code USE INDEX ()} запрещает H2 использовать индексы).
+ *
+ * Заполнение 200 000 карт занимает время, поэтому тест помечен {@code @Tag("benchmark")} и запускается
+ * только профилем Maven {@code benchmark}; использование индексов в обычной сборке проверяет {@link IndexPlanTest}.
+ */
+@Slf4j
+@Tag("benchmark")
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:card-number-search;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "spring.jpa.properties.hibernate.hbm2ddl.default_constraint_mode=NO_CONSTRAINT"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CardNumberSearchBenchmarkTest {
+    private static final String INDEX_MIGRATION = "db/migration/V9__Create_card_number_search_indexes.yaml";
+    private static final int CARDS = 200_000;
+    private static final int BINS = 1_000;
+    private static final int BATCH_SIZE = 5_000;
+    private static final int QUERIES = 20;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @BeforeAll
+    void fillCards() throws Exception {
+        Random random = new Random(42);
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < CARDS; i++) {
+            String last4 = "%04d".formatted(random.nextInt(10_000));
+            batch.add(new Object[]{(long) i + 1, "bench-encrypted-" + i, "bench-hash-" + i,
+                    Date.valueOf(LocalDate.of(2030, 1, 1)), bin(random.nextInt(BINS)), last4,
+                    new StringBuilder(last4).reverse().toString()});
+            if (batch.size() == BATCH_SIZE) {
+                insert(batch);
+            }
+        }
+        insert(batch);
+
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            new Liquibase(INDEX_MIGRATION, new ClassLoaderResourceAccessor(), database).update("");
+        }
+    }
+
+    @AfterAll
+    void clearCards() {
+        jdbcTemplate.execute("truncate table cards");
+    }
+
+    @Test
+    void prefix_ThenSameCardsAsLikeAndFasterThanScan() {
+        compare("prefix", i -> CardSearchFilter.builder().first8Number(bin(i).substring(0, 6)).build(),
+                i -> "c.first8 like '" + bin(i).substring(0, 6) + "%'");
+    }
+
+    @Test
+    void suffix_ThenSameCardsAsLikeAndFasterThanScan() {
+        compare("suffix", i -> CardSearchFilter.builder().last4Number("%03d".formatted(i)).build(),
+                i -> "c.last4 like '%" + "%03d".formatted(i) + "'");
+    }
+
+    @Test
+    void combined_ThenSameCardsAsLikeAndFasterThanScan() {
+        compare("combined", i -> CardSearchFilter.builder().first8Number(bin(i)).last4Number("%02d".formatted(i)).build(),
+                i -> "c.first8 like '" + bin(i) + "%' and c.last4 like '%" + "%02d".formatted(i) + "'");
+    }
+
+    private void compare(String name, IntFunction<CardSearchFilter> filter,
+                         IntFunction<String> scanCondition) {
+        long indexNanos = 0;
+        long scanNanos = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            long startedAt = System.nanoTime();
+            long found = cardRepository.count(CardSpecification.withFilter(filter.apply(i), null));
+            indexNanos += System.nanoTime() - startedAt;
+
+            startedAt = System.nanoTime();
+            Long scanned = jdbcTemplate.queryForObject(
+                    "select count(*) from cards c use index () where " + scanCondition.apply(i), Long.class);
+            scanNanos += System.nanoTime() - startedAt;
+
+            assertEquals(scanned, found, name + " #" + i);
+        }
+
+        log.info("{} | cards={} | queries={} | indexAvgMicros={} | scanAvgMicros={}", name, CARDS, QUERIES,
+                TimeUnit.NANOSECONDS.toMicros(indexNanos / QUERIES), TimeUnit.NANOSECONDS.toMicros(scanNanos / QUERIES));
+        assertTrue(indexNanos < scanNanos, name);
+    }
+
+    private void insert(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("insert into cards (id, encrypted_number, search_hash, validity_period, status_card, "
+                + "balance, first8, last4, last4_reversed) values (?, ?, ?, ?, 'ACTIVE', 0, ?, ?, ?)", batch);
+        batch.clear();
+    }
+
+    private static String bin(int i) {
+        return "4%07d".formatted(i % BINS * 7919);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.bank_rest_test_task.repository;
+
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.repository.projection.CardSummary;
+import com.example.bank_rest_test_task.util.money.Money;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка проекций карт для пользовательских ответов: выбираются только поля {@link CardSummary},
+ * сущности {@link Card} и {@link User} не загружаются.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:card-projection;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CardRepositoryProjectionTest {
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    User owner;
+    Card card;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(User.builder()
+                .username("projection-owner")
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build());
+        User stranger = userRepository.save(User.builder()
+                .username("projection-stranger")
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build());
+        card = cardRepository.save(card(owner, "1111", Money.of(300)));
+        cardRepository.save(card(owner, "2222", Money.of(100)));
+        cardRepository.save(card(stranger, "3333", Money.of(200)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void findSummariesByUser_Id_ThenOnlyOwnerCardsWithoutLoadingEntities() {
+        Statistics statistics = statistics();
+
+        Page<CardSummary> page = cardRepository.findSummariesByUser_Id(owner.getId(),
+                PageRequest.of(0, 10, Sort.by("balance")));
+
+        assertEquals(2, page.getTotalElements());
+        assertEquals("2222", page.getContent().get(0).getLast4());
+        assertEquals(0, Money.of(300).compareTo(page.getContent().get(1).getBalance()));
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void findSummaryByIdAndUser_Id_WhenCardBelongsToUser_ThenSummaryWithoutLoadingEntities() {
+        Statistics statistics = statistics();
+
+        Optional<CardSummary> summary = cardRepository.findSummaryByIdAndUser_Id(card.getId(), owner.getId());
+
+        assertTrue(summary.isPresent());
+        assertEquals(card.getId(), summary.get().getId());
+        assertEquals("1111", summary.get().getLast4());
+        assertEquals(StatusCard.ACTIVE, summary.get().getStatusCard());
+        assertEquals(card.getValidityPeriod(), summary.get().getValidityPeriod());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void findSummaryByIdAndUser_Id_WhenCardBelongsToOtherUser_ThenEmpty() {
+        assertTrue(cardRepository.findSummaryByIdAndUser_Id(card.getId(), owner.getId() + 1).isEmpty());
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private Card card(User user, String last4, Money balance) {
+        return Card.builder()
+                .encryptNumber("encrypted-" + last4)
+                .searchHash("hash-" + last4)
+                .validityPeriod(LocalDate.now().plusYears(5))
+                .statusCard(StatusCard.ACTIVE)
+                .balance(balance)
+                .first8("55555555")
+                .last4(last4)
+                .user(user)
+                .build();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.bank_rest_test_task.repository;
+
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка планов запросов для горячих путей поиска.
+ *
+ * Схема создается по сущностям, затем поверх нее применяются миграции индексов V7, V9 и V10
+ * ({@code db/index-plan-changelog.yaml}), как на реальной базе.
+ * Внешние ключи не создаются: H2 неявно индексирует их, а PostgreSQL нет, и такие индексы скрыли бы
+ * отсутствие нужного индекса в миграции.
+ * Для каждого запроса репозитория/спецификации выполняется {@code EXPLAIN} на H2 в режиме PostgreSQL
+ * и проверяется, что используется ожидаемый индекс, а не полное сканирование таблицы.
+ * Новый горячий запрос нужно добавить в {@link #hotQueries()} вместе с индексом, который его обслуживает.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:index-plan;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "spring.jpa.properties.hibernate.hbm2ddl.default_constraint_mode=NO_CONSTRAINT"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class IndexPlanTest {
+    private static final String INDEX_MIGRATIONS = "db/index-plan-changelog.yaml";
+    private static final String FULL_SCAN = "tableScan";
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void applyIndexMigrations() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            new Liquibase(INDEX_MIGRATIONS, new ClassLoaderResourceAccessor(), database).update("");
+        }
+    }
+
+    static Stream<Arguments> hotQueries() {
+        return Stream.of(
+                Arguments.of("CardRepository.findBySearchHash / existsBySearchHash",
+                        "select c.id from cards c where c.search_hash = 'hash'",
+                        "idx_cards_search_hash"),
+                Arguments.of("CardRepository.findByUser_Id sorted by validityPeriod",
+                        "select c.id, c.last4, c.balance from cards c where c.user_id = 1 order by c.validity_period, c.id limit 6",
+                        "idx_cards_user_id_validity_period"),
+                Arguments.of("CardSpecification.withFilter userId + balanceMin sorted by balance",
+                        "select c.id, c.last4, c.balance from cards c where c.user_id = 1 and c.balance >= 100 order by c.balance, c.id limit 6",
+                        "idx_cards_user_id_balance"),
+                Arguments.of("CardService.scrollAllCards after cursor",
+                        "select c.id from cards c where c.validity_period > date '2030-01-01' "
+                                + "or (c.validity_period = date '2030-01-01' and c.id > 10) order by c.validity_period, c.id limit 7",
+                        "idx_cards_validity_period_id"),
+                Arguments.of("CardSpecification.withFilter BIN prefix",
+                        "select c.id from cards c where c.first8 like '400012%'",
+                        "idx_cards_first8_pattern"),
+                Arguments.of("CardSpecification.withFilter full BIN",
+                        "select c.id from cards c where c.first8 = '40001234'",
+                        "idx_cards_first8_pattern"),
+                Arguments.of("CardSpecification.withFilter card number suffix",
+                        "select c.id from cards c where c.last4_reversed like '321%'",
+                        "idx_cards_last4_reversed_pattern"),
+                Arguments.of("CardSpecification.withFilter last 4 digits",
+                        "select c.id from cards c where c.last4_reversed = '4321'",
+                        "idx_cards_last4_reversed_pattern"),
+                Arguments.of("TransferHistoryRepository.findHistoryPage",
+                        "select t.id, t.from_card_id, t.to_card_id, t.amount from transfers_history t where t.user_id = 1 "
+                                + "order by t.\"timestamp\" desc, t.id desc limit 7",
+                        "idx_transfers_history_user_id_timestamp_covering"),
+                Arguments.of("TransferHistoryRepository.findHistoryPage after cursor with card filter",
+                        "select t.id from transfers_history t where t.user_id = 1 and (t.from_card_id = 5 or t.to_card_id = 5) "
+                                + "and t.\"timestamp\" <= timestamp with time zone '2030-01-01 00:00:00+00' "
+                                + "and (t.\"timestamp\" < timestamp with time zone '2030-01-01 00:00:00+00' "
+                                + "or (t.\"timestamp\" = timestamp with time zone '2030-01-01 00:00:00+00' and t.id < 10)) "
+                                + "order by t.\"timestamp\" desc, t.id desc limit 7",
+                        "idx_transfers_history_user_id_timestamp_covering"),
+                Arguments.of("Card deletion: transfers_history.from_card_id",
+                        "select t.id from transfers_history t where t.from_card_id = 1",
+                        "idx_transfers_history_from_card_id"),
+                Arguments.of("Card deletion: transfers_history.to_card_id",
+                        "select t.id from transfers_history t where t.to_card_id = 1",
+                        "idx_transfers_history_to_card_id"),
+                Arguments.of("CardBlockRequestSpecifications.hasStatus sorted by createAt",
+                        "select r.id from card_block_requests r where r.block_request_status = 'PENDING' order by r.create_at limit 6",
+                        "idx_card_block_requests_status_create_at"),
+                Arguments.of("CardBlockRequestRepository.findAllByProcessedBy_Id",
+                        "select r.id from card_block_requests r where r.processed_by = 1 order by r.create_at limit 6",
+                        "idx_card_block_requests_processed_by_create_at"),
+                Arguments.of("CardBlockRequestSpecifications.requesterId",
+                        "select r.id from card_block_requests r where r.user_id = 1 order by r.create_at limit 6",
+                        "idx_card_block_requests_user_id_create_at"),
+                Arguments.of("CardBlockRequestService.scrollCardBlockRequest after cursor",
+                        "select r.id from card_block_requests r where r.create_at > timestamp with time zone '2030-01-01 00:00:00+00' "
+                                + "order by r.create_at, r.id limit 7",
+                        "idx_card_block_requests_create_at_id"),
+                Arguments.of("Card deletion: card_block_requests.card_id",
+                        "select r.id from card_block_requests r where r.card_id = 1",
+                        "idx_card_block_requests_card_id")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void explain_ThenQueryUsesIndex(String path, String sql, String expectedIndex) {
+        String plan = String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class));
+
+        assertFalse(plan.contains(FULL_SCAN), () -> path + " falls back to a full scan:\n" + plan);
+        assertTrue(plan.toLowerCase().contains(expectedIndex), () -> path + " does not use " + expectedIndex + ":\n" + plan);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.bank_rest_test_task.repository;
+
+import com.example.bank_rest_test_task.repository.projection.UsernameEntry;
+import com.example.bank_rest_test_task.repository.search.NgramUsernameSearch;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка индекса триграмм имен пользователей.
+ *
+ * Тест производительности ({@code @Tag("benchmark")}, запускается только профилем Maven {@code benchmark})
+ * строит индекс на 1 000 000 имен и выводит в лог среднюю задержку поиска по индексу и полного перебора имен
+ * (как {@code LIKE '%term%'} без индекса).
+ */
+@Slf4j
+class NgramUsernameSearchTest {
+    private static final int USERS = 1_000_000;
+    private static final int QUERIES = 200;
+
+    @Test
+    void findCandidateIds_ThenCaseInsensitiveSubstringMatches() {
+        NgramUsernameSearch search = loaded(10, List.of(entry(1L, "Alice"), entry(2L, "malice"), entry(3L, "bob")));
+
+        assertEquals(Set.of(1L, 2L), new HashSet<>(search.findCandidateIds("alic").orElseThrow()));
+        assertEquals(Set.of(3L), new HashSet<>(search.findCandidateIds("BOB").orElseThrow()));
+        assertTrue(search.findCandidateIds("carol").orElseThrow().isEmpty());
+    }
+
+    @Test
+    void findCandidateIds_WhenTermShorterThanTrigramOrTooFrequent_ThenDelegatedToDatabase() {
+        NgramUsernameSearch search = loaded(1, List.of(entry(1L, "alice"), entry(2L, "malice")));
+
+        assertTrue(search.findCandidateIds("al").isEmpty());
+        assertTrue(search.findCandidateIds("lic").isEmpty());
+    }
+
+    @Test
+    void findCandidateIds_WhenNotLoaded_ThenDelegatedToDatabase() {
+        NgramUsernameSearch search = new NgramUsernameSearch(10);
+        search.index(1L, "alice");
+
+        assertTrue(search.findCandidateIds("alice").isEmpty());
+    }
+
+    @Test
+    void index_WhenUserRenamed_ThenBothNamesAreCandidates() {
+        NgramUsernameSearch search = loaded(10, List.of(entry(1L, "alice")));
+
+        search.index(1L, "carol");
+
+        assertEquals(List.of(1L), List.copyOf(search.findCandidateIds("alice").orElseThrow()));
+        assertEquals(List.of(1L), List.copyOf(search.findCandidateIds("carol").orElseThrow()));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void findCandidateIds_WhenMillionUsers_ThenSameResultAsScanAndFaster() {
+        Random random = new Random(42);
+        List<UsernameEntry> entries = new ArrayList<>(USERS);
+        List<String> names = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            String name = randomName(random) + i;
+            names.add(name);
+            entries.add(entry((long) i, name));
+        }
+
+        long buildStartedAt = System.nanoTime();
+        NgramUsernameSearch search = loaded(USERS, entries);
+        long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - buildStartedAt);
+
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            String name = names.get(random.nextInt(USERS));
+            int from = random.nextInt(name.length() - 4);
+            terms.add(name.substring(from, from + 5));
+        }
+
+        long indexNanos = 0;
+        long scanNanos = 0;
+        for (String term : terms) {
+            long startedAt = System.nanoTime();
+            Optional<Collection<Long>> candidates = search.findCandidateIds(term);
+            indexNanos += System.nanoTime() - startedAt;
+
+            startedAt = System.nanoTime();
+            Set<Long> scanned = new HashSet<>();
+            for (int i = 0; i < names.size(); i++) {
+                if (names.get(i).contains(term)) {
+                    scanned.add((long) i);
+                }
+            }
+            scanNanos += System.nanoTime() - startedAt;
+
+            assertEquals(scanned, new HashSet<>(candidates.orElseThrow()), term);
+        }
+
+        log.info("users={} | buildMs={} | queries={} | ngramAvgMicros={} | scanAvgMicros={}", USERS, buildMillis, QUERIES,
+                TimeUnit.NANOSECONDS.toMicros(indexNanos / QUERIES), TimeUnit.NANOSECONDS.toMicros(scanNanos / QUERIES));
+        assertTrue(indexNanos < scanNanos);
+    }
+
+    private static NgramUsernameSearch loaded(int maxCandidates, List<UsernameEntry> entries) {
+        NgramUsernameSearch search = new NgramUsernameSearch(maxCandidates);
+        search.load(() -> entries);
+        return search;
+    }
+
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int length = 5 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            name.append((char) ('a' + random.nextInt(26)));
+        }
+        return name.toString();
+    }
+
+    private static UsernameEntry entry(Long id, String username) {
+        return new UsernameEntry() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getUsername() {
+                return username;
+            }
+        };
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.config.BalanceEngineConfig;
+import com.example.bank_rest_test_task.config.HistoryJournalConfig;
+import com.example.bank_rest_test_task.config.RollupConfig;
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.exception.CardBlockedException;
+import com.example.bank_rest_test_task.exception.InsufficientFundsException;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.SpendingRollupRepository;
+import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
+import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.money.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка движка балансов в памяти ({@link TransferMode#BALANCE_ENGINE}).
+ *
+ * Переводы не изменяют строки {@code cards} до контрольной точки, деньги не теряются и не создаются,
+ * откат транзакции возвращает списание, а после перезапуска балансы восстанавливаются по базе данных
+ * и журналу без незафиксированных переводов.
+ */
+@Slf4j
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:balance-engine;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "payment.transfer.mode=BALANCE_ENGINE",
+        "payment.transfer.engine.segment-size=65536",
+        "payment.transfer.engine.checkpoint-interval=PT1H"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BalanceEngineConfig.class, HistoryJournalConfig.class, RollupConfig.class, PaymentService.class, BalanceEngine.class,
+        CardService.class, OutboxService.class, TransferHistoryService.class, TransferHistoryJournal.class, SpendingRollupService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BalanceEngineTest {
+    private static final int CARDS = 4;
+    private static final int THREADS = 4;
+    private static final int TRANSFERS_PER_THREAD = 25;
+    private static final Money INITIAL_BALANCE = Money.of(1000);
+
+    @TempDir
+    static Path journalDir;
+
+    @TempDir
+    Path recoveryDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("payment.transfer.engine.dir", journalDir::toString);
+    }
+
+    @MockitoBean
+    CryptoService cryptoService;
+
+    @MockitoBean
+    UserService userService;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    BalanceEngine balanceEngine;
+
+    @Autowired
+    TransferHistoryJournal transferHistoryJournal;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TransferHistoryRepository transferHistoryRepository;
+
+    @Autowired
+    SpendingRollupRepository spendingRollupRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ScheduledExecutorService balanceEngineCheckpointer;
+
+    User user;
+    List<Card> cards;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from balance_engine_checkpoints");
+        user = userRepository.save(User.builder()
+                .username("engine-owner")
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build());
+        cards = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            cards.add(cardRepository.save(Card.builder()
+                    .encryptNumber("encrypted-" + i)
+                    .searchHash("engine-hash-" + i)
+                    .validityPeriod(OffsetDateTime.now().plusYears(5).toLocalDate())
+                    .statusCard(StatusCard.ACTIVE)
+                    .balance(INITIAL_BALANCE)
+                    .first8("5555555" + i)
+                    .last4("000" + i)
+                    .user(user)
+                    .build()));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        balanceEngine.checkpoint();
+        transferHistoryRepository.deleteAll();
+        spendingRollupRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void transferMoney_WhenConcurrent_ThenCardsWrittenOnlyByCheckpointAndMoneyConserved() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(CARDS);
+                    int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                    try {
+                        paymentService.transferMoney(new PaymentDto(cards.get(from).getId(), cards.get(to).getId(),
+                                Money.of(random.nextInt(1, 600)), "engine"), user.getId());
+                        succeeded.incrementAndGet();
+                    } catch (InsufficientFundsException e) {
+                        // ожидаемо при случайных суммах
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        executor.shutdown();
+        log.info("mode=BALANCE_ENGINE | transfers={} | succeeded={} | elapsedMs={} | throughput={} tx/s",
+                THREADS * TRANSFERS_PER_THREAD, succeeded.get(), elapsedMillis, THREADS * TRANSFERS_PER_THREAD * 1000L / elapsedMillis);
+
+        List<Long> cardIds = cards.stream().map(Card::getId).toList();
+        Map<Long, Money> engineBalances = balanceEngine.balances(cardIds);
+        assertEquals(0, INITIAL_BALANCE.times(CARDS)
+                .compareTo(engineBalances.values().stream().reduce(Money.ZERO, Money::plus)));
+        assertTrue(engineBalances.values().stream().allMatch(balance -> balance.signum() >= 0));
+        assertEquals(succeeded.get(), transferHistoryRepository.count());
+        cardRepository.findAllById(cardIds).forEach(card -> assertEquals(0, INITIAL_BALANCE.compareTo(card.getBalance())));
+
+        balanceEngine.checkpoint();
+
+        cardRepository.findAllById(cardIds).forEach(card ->
+                assertEquals(0, engineBalances.get(card.getId()).compareTo(card.getBalance())));
+    }
+
+    @Test
+    void transferMoney_WhenCardBlocked_ThenThrowCardBlockedExceptionAndBalancesUnchanged() {
+        Card blocked = cards.get(1);
+        blocked.setStatusCard(StatusCard.BLOCKED);
+        cardRepository.save(blocked);
+
+        assertThrows(CardBlockedException.class, () -> paymentService.transferMoney(
+                new PaymentDto(cards.get(0).getId(), blocked.getId(), Money.of(10), null), user.getId()));
+        assertThrows(InsufficientFundsException.class, () -> paymentService.transferMoney(
+                new PaymentDto(cards.get(0).getId(), cards.get(2).getId(), INITIAL_BALANCE.plus(Money.of(1)), null), user.getId()));
+
+        assertEquals(0, INITIAL_BALANCE.compareTo(balanceEngine.balances(List.of(cards.get(0).getId())).get(cards.get(0).getId())));
+        assertEquals(0, transferHistoryRepository.count());
+    }
+
+    @Test
+    void transfer_WhenTransactionRolledBack_ThenDebitReturnedAndCreditNeverVisible() {
+        Long fromCardId = cards.get(0).getId();
+        Long toCardId = cards.get(1).getId();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            balanceEngine.transfer(List.of(new BalanceEngine.Movement(1L, fromCardId, toCardId, Money.of(300))));
+            Map<Long, Money> inFlight = balanceEngine.balances(List.of(fromCardId, toCardId));
+            assertEquals(0, Money.of(700).compareTo(inFlight.get(fromCardId)));
+            assertEquals(0, INITIAL_BALANCE.compareTo(inFlight.get(toCardId)));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    throw new IllegalStateException("commit failed");
+                }
+            });
+        }));
+
+        Map<Long, Money> balances = balanceEngine.balances(List.of(fromCardId, toCardId));
+        assertEquals(0, INITIAL_BALANCE.compareTo(balances.get(fromCardId)));
+        assertEquals(0, INITIAL_BALANCE.compareTo(balances.get(toCardId)));
+
+        balanceEngine.checkpoint();
+
+        cardRepository.findAllById(List.of(fromCardId, toCardId))
+                .forEach(card -> assertEquals(0, INITIAL_BALANCE.compareTo(card.getBalance())));
+    }
+
+    @Test
+    void recover_WhenReopenedAfterCrash_ThenCommittedReplayedAndUncommittedSkipped() {
+        BalanceEngine crashed = engine(recoveryDir);
+        Long first = cards.get(0).getId();
+        Long second = cards.get(1).getId();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            insertHistory(1_000_001L, first, second, Money.of(100));
+            crashed.transfer(List.of(new BalanceEngine.Movement(1_000_001L, first, second, Money.of(100))));
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            insertHistory(1_000_002L, second, first, Money.of("0.01"));
+            crashed.transfer(List.of(new BalanceEngine.Movement(1_000_002L, second, first, Money.of("0.01"))));
+        });
+        // Запись попала в журнал, но транзакция перевода не успела зафиксироваться: строки истории нет
+        transactionTemplate.executeWithoutResult(status ->
+                crashed.transfer(List.of(new BalanceEngine.Movement(1_000_003L, first, second, Money.of(500)))));
+
+        BalanceEngine recovered = engine(recoveryDir);
+
+        Map<Long, Money> balances = recovered.balances(List.of(first, second));
+        assertEquals(0, Money.of("900.01").compareTo(balances.get(first)));
+        assertEquals(0, Money.of("1099.99").compareTo(balances.get(second)));
+        cardRepository.findAllById(List.of(first, second))
+                .forEach(card -> assertEquals(0, balances.get(card.getId()).compareTo(card.getBalance())));
+        assertEquals(0, engine(recoveryDir).checkpoint());
+        assertEquals(0, Money.of("900.01").compareTo(engine(recoveryDir).balances(List.of(first)).get(first)));
+    }
+
+    private BalanceEngine engine(Path dir) {
+        return new BalanceEngine(TransferMode.BALANCE_ENGINE, jdbcTemplate, transactionManager, transferHistoryJournal,
+                balanceEngineCheckpointer, dir, 65536, true, Duration.ofHours(1), 16);
+    }
+
+    private void insertHistory(long id, Long fromCardId, Long toCardId, Money amount) {
+        jdbcTemplate.update("insert into transfers_history (id, from_card_id, to_card_id, user_id, amount, \"timestamp\", comment) "
+                + "values (?, ?, ?, ?, ?, ?, ?)", id, fromCardId, toCardId, user.getId(), amount.toBigDecimal(), OffsetDateTime.now(), null);
+    }
+}
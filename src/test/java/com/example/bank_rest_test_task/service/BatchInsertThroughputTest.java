@@ -0,0 +1,151 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.config.HistoryJournalConfig;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
+import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.util.money.Money;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка пакетной вставки карт и истории переводов.
+ *
+ * Id выделяются из последовательности блоками (pooled-lo), поэтому Hibernate группирует INSERT-ы
+ * в пачки по {@code hibernate.jdbc.batch_size}. Тест проверяет по статистике Hibernate, что количество
+ * отправленных JDBC-пакетов и подготовленных запросов на порядок меньше количества записей.
+ */
+@Slf4j
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:batch-insert;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.id.optimizer.pooled.preferred=pooled-lo",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({HistoryJournalConfig.class, TransferHistoryService.class, TransferHistoryJournal.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BatchInsertThroughputTest {
+    private static final int ROWS = 1000;
+    private static final int BATCH_SIZE = 50;
+
+    @Autowired
+    TransferHistoryService transferHistoryService;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TransferHistoryRepository transferHistoryRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("bulk-owner")
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferHistoryRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void saveAll_WhenBulkCardCreation_ThenInsertsAreBatched() {
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            cards.add(card(i));
+        }
+
+        Statistics statistics = measure("cards", () -> cardRepository.saveAll(cards));
+
+        assertEquals(ROWS, cardRepository.count());
+        assertEquals(ROWS, statistics.getEntityInsertCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 2L * ROWS / BATCH_SIZE + 2,
+                "prepared statements: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void saveAllTransferHistory_WhenBulkHistoryWrite_ThenInsertsAreBatched() {
+        List<Card> cards = cardRepository.saveAll(List.of(card(0), card(1)));
+        List<TransferHistory> histories = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            histories.add(TransferHistory.builder()
+                    .fromCard(cards.get(i % 2))
+                    .toCard(cards.get((i + 1) % 2))
+                    .user(user)
+                    .amount(Money.of(1))
+                    .timestamp(OffsetDateTime.now())
+                    .comment("bulk")
+                    .build());
+        }
+
+        Statistics statistics = measure("transfers_history", () -> transferHistoryService.saveAllTransferHistory(histories));
+
+        assertEquals(ROWS, transferHistoryRepository.count());
+        assertEquals(ROWS, statistics.getEntityInsertCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 2L * ROWS / BATCH_SIZE + 2,
+                "prepared statements: " + statistics.getPrepareStatementCount());
+    }
+
+    private Statistics measure(String table, Runnable insert) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        insert.run();
+
+        log.info("table={} | rows={} | preparedStatements={}", table, ROWS, statistics.getPrepareStatementCount());
+        return statistics;
+    }
+
+    private Card card(int i) {
+        return Card.builder()
+                .encryptNumber("bulk-encrypted-" + i)
+                .searchHash("bulk-hash-" + i)
+                .validityPeriod(LocalDate.now().plusYears(5))
+                .statusCard(StatusCard.ACTIVE)
+                .balance(Money.of(10))
+                .first8("55555555")
+                .last4("%04d".formatted(i % 10000))
+                .user(user)
+                .build();
+    }
+}
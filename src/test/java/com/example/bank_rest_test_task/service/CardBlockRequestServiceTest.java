@@ -6,6 +6,7 @@ import com.example.bank_rest_test_task.entity.*;
 import com.example.bank_rest_test_task.exception.BlockRequestNotFoundException;
 import com.example.bank_rest_test_task.exception.CardBlockedException;
 import com.example.bank_rest_test_task.repository.CardBlockRequestRepository;
+import com.example.bank_rest_test_task.repository.search.UsernameSearch;
 import com.example.bank_rest_test_task.util.CryptoService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -37,6 +38,12 @@ class CardBlockRequestServiceTest {
     @Mock
     CardService cardService;
 
+    @Mock
+    UsernameSearch usernameSearch;
+
+    @Mock
+    OutboxService outboxService;
+
     @InjectMocks
     CardBlockRequestService cardBlockRequestService;
 
@@ -30,6 +30,9 @@ class CardServiceTest {
     @Mock
     UserService userService;
 
+    @Mock
+    OutboxService outboxService;
+
     @InjectMocks
     CardService cardService;
 
@@ -67,7 +70,7 @@ class CardServiceTest {
 
         verify(userService).findUserById(userId);
         verify(cardRepository).existsBySearchHash(searchHash);
-        verify(cryptoService, times(2)).calculationCardHash(cardNumber);
+        verify(cryptoService, times(1)).calculationCardHash(cardNumber);
         verify(cryptoService).encrypt(cardNumber);
         verify(cardRepository).existsBySearchHash(searchHash);
         verify(cardRepository).save(argThat(actCard ->
@@ -102,12 +105,32 @@ class CardServiceTest {
     }
 
 
-}
-
-
 
+    @Test
+    void saveCard_WhenCardNumberEncryptedByLegacyCipher_ThenReEncrypted() {
+        Card card = Card.builder()
+                .id(1L)
+                .encryptNumber("legacyCryptNumber")
+                .build();
+        when(cryptoService.needsReEncryption("legacyCryptNumber")).thenReturn(true);
+        when(cryptoService.reEncrypt("legacyCryptNumber")).thenReturn("v1:cryptNumber");
 
+        cardService.saveCard(card);
 
+        verify(cardRepository).save(argThat(saved -> "v1:cryptNumber".equals(saved.getEncryptNumber())));
+    }
 
+    @Test
+    void saveCard_WhenCardNumberEncryptedByCurrentCipher_ThenNotReEncrypted() {
+        Card card = Card.builder()
+                .id(1L)
+                .encryptNumber("v1:cryptNumber")
+                .build();
+        when(cryptoService.needsReEncryption("v1:cryptNumber")).thenReturn(false);
 
+        cardService.saveCard(card);
 
+        verify(cryptoService, never()).reEncrypt(any());
+        verify(cardRepository).save(card);
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.config.BalanceEngineConfig;
+import com.example.bank_rest_test_task.config.HistoryJournalConfig;
+import com.example.bank_rest_test_task.config.RollupConfig;
+import com.example.bank_rest_test_task.config.UsernameSearchConfig;
+import com.example.bank_rest_test_task.dto.CardBlockRequestDto;
+import com.example.bank_rest_test_task.dto.CardBlockRequestFilter;
+import com.example.bank_rest_test_task.dto.CardDto;
+import com.example.bank_rest_test_task.dto.CardSearchFilter;
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryFilter;
+import com.example.bank_rest_test_task.dto.UserDto;
+import com.example.bank_rest_test_task.entity.BlockRequestStatus;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.CardBlockRequest;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.repository.CardBlockRequestRepository;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
+import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
+import com.example.bank_rest_test_task.util.factory.CardBlockRequestDtoFactory;
+import com.example.bank_rest_test_task.util.factory.CardDtoFactory;
+import com.example.bank_rest_test_task.util.factory.UserDtoFactory;
+import com.example.bank_rest_test_task.util.money.Money;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка количества SQL-запросов для каждого endpoint.
+ *
+ * Каждый тест выполняет ту же цепочку, что и контроллер (сервис + фабрика DTO), в одной сессии
+ * (как open-in-view) и сравнивает количество подготовленных JDBC-запросов из статистики Hibernate
+ * с точным ожидаемым значением. Запросы считаются на странице из нескольких строк, поэтому ленивая загрузка
+ * связей по строкам (1+N) увеличивает счетчик и тест падает.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:query-count;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.order_updates=true",
+        "spring.jpa.properties.hibernate.id.optimizer.pooled.preferred=pooled-lo",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BalanceEngineConfig.class, HistoryJournalConfig.class, UsernameSearchConfig.class, RollupConfig.class, CardService.class, OutboxService.class, UserService.class, CardBlockRequestService.class,
+        PaymentService.class, BalanceEngine.class, TransferHistoryService.class, TransferHistoryJournal.class, SpendingRollupService.class, CardDtoFactory.class, UserDtoFactory.class,
+        CardBlockRequestDtoFactory.class, KeysetCursorCodec.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EndpointQueryCountTest {
+    private static final Pageable PAGE = PageRequest.of(0, 2, Sort.by("id"));
+
+    @MockitoBean
+    CryptoService cryptoService;
+
+    @MockitoBean
+    PasswordEncoder passwordEncoder;
+
+    @Autowired
+    CardService cardService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    CardBlockRequestService cardBlockRequestService;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    TransferHistoryService transferHistoryService;
+
+    @Autowired
+    KeysetCursorCodec keysetCursorCodec;
+
+    @Autowired
+    CardDtoFactory cardDtoFactory;
+
+    @Autowired
+    UserDtoFactory userDtoFactory;
+
+    @Autowired
+    CardBlockRequestDtoFactory cardBlockRequestDtoFactory;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    CardBlockRequestRepository cardBlockRequestRepository;
+
+    @Autowired
+    TransferHistoryRepository transferHistoryRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    User owner;
+    User admin;
+    List<Card> cards;
+    CardBlockRequest blockRequest;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(user("query-owner", UserRole.ROLE_USER));
+        admin = userRepository.save(user("query-admin", UserRole.ROLE_ADMIN));
+        User other = userRepository.save(user("query-other", UserRole.ROLE_USER));
+        cards = cardRepository.saveAll(List.of(card(owner, 0), card(owner, 1), card(owner, 2), card(other, 3)));
+
+        blockRequest = cardBlockRequestRepository.save(blockRequest(cards.get(0), owner));
+        cardBlockRequestRepository.save(blockRequest(cards.get(1), owner));
+        cardBlockRequestRepository.save(blockRequest(cards.get(3), other));
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferHistoryRepository.deleteAll();
+        cardBlockRequestRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void getUserCards_UsesOneQueryPlusCount() {
+        Page<CardDto> page = assertStatements(2, () -> cardService.getUserCardSummariesPaginated(owner.getId(), PAGE)
+                .map(cardDtoFactory::createCardDtoForUser));
+
+        assertEquals(3, page.getTotalElements());
+    }
+
+    @Test
+    void getUserCardById_UsesOneQuery() {
+        assertStatements(1, () -> cardDtoFactory.createCardDtoForUser(
+                cardService.findCardSummaryByUserIdAndCardId(cards.get(0).getId(), owner.getId())));
+    }
+
+    @Test
+    void adminGetCardById_UsesOneQuery() {
+        assertStatements(1, () -> cardDtoFactory.createCardDtoForAdmin(cardService.findCardById(cards.get(0).getId())));
+    }
+
+    @Test
+    void adminGetUserCards_UsesOneQueryPlusCount() {
+        assertStatements(2, () -> cardService.getUserCardsPaginated(owner.getId(), PAGE)
+                .map(cardDtoFactory::createCardDtoForAdmin));
+    }
+
+    @Test
+    void adminGetCardsByUsername_UsesOneQueryPlusCount() {
+        assertStatements(2, () -> cardService.findCardsByUsername(owner.getUsername(), PAGE)
+                .map(cardDtoFactory::createCardDtoForAdmin));
+    }
+
+    @Test
+    void adminGetAllCards_UsesOneQueryPlusCount() {
+        assertStatements(2, () -> cardService.findAllCards(PAGE).map(cardDtoFactory::createCardDtoForAdmin));
+    }
+
+    @Test
+    void adminSearchCards_UsesOneQueryPlusCount() {
+        CardSearchFilter filter = CardSearchFilter.builder().status(StatusCard.ACTIVE).build();
+
+        assertStatements(2, () -> cardService.searchCard(filter, PAGE).map(cardDtoFactory::createCardDtoForAdmin));
+    }
+
+    @Test
+    void adminScrollCards_UsesOneQueryOnFirstAndNextPage() {
+        Sort sort = Sort.by("validityPeriod");
+        Window<Card> first = assertStatements(1, () -> cardService.scrollAllCards(ScrollPosition.keyset(), sort, 2));
+        String after = keysetCursorCodec.nextCursor(first);
+
+        Window<CardDto> next = assertStatements(1, () -> cardService.scrollAllCards(
+                keysetCursorCodec.decode(after, Card.class, sort), sort, 2).map(cardDtoFactory::createCardDtoForAdmin));
+
+        assertEquals(2, next.size());
+        assertFalse(next.hasNext());
+    }
+
+    @Test
+    void adminScrollSearchCards_UsesOneQuery() {
+        CardSearchFilter filter = CardSearchFilter.builder().status(StatusCard.ACTIVE).build();
+
+        assertStatements(1, () -> cardService.scrollSearchCard(filter, ScrollPosition.keyset(), Sort.by("validityPeriod"), 2)
+                .map(cardDtoFactory::createCardDtoForAdmin));
+    }
+
+    @Test
+    void scrollBlockRequests_UsesOneQuery() {
+        assertStatements(1, () -> cardBlockRequestService.scrollCardBlockRequest(CardBlockRequestFilter.builder().build(),
+                ScrollPosition.keyset(), Sort.by("createAt"), 2).map(cardBlockRequestDtoFactory::creatCardBlockRequestDto));
+    }
+
+    @Test
+    void scrollUsersWithCards_UsesOneQueryPlusCardsSubselect() {
+        assertStatements(2, () -> userService.scrollUsers(ScrollPosition.keyset(), Sort.by("id"), 2, true)
+                .map(userDtoFactory::createUserDtoAndCardDtoForAdminWithCards));
+    }
+
+    @Test
+    void getBlockRequestById_UsesOneQuery() {
+        CardBlockRequestDto dto = assertStatements(1, () -> cardBlockRequestDtoFactory.creatCardBlockRequestDto(
+                cardBlockRequestService.findCardBlockRequestById(blockRequest.getId())));
+
+        assertEquals(owner.getUsername(), dto.getRequester().getUsername());
+        assertEquals(admin.getUsername(), dto.getProcessedBy().getUsername());
+    }
+
+    @Test
+    void getBlockRequestsProcessedBy_UsesOneQueryPlusCount() {
+        assertStatements(2, () -> cardBlockRequestService.findCardBlockRequestByProcessed(admin.getId(), PAGE)
+                .map(cardBlockRequestDtoFactory::creatCardBlockRequestDto));
+    }
+
+    @Test
+    void searchBlockRequests_UsesOneQueryPlusCount() {
+        assertStatements(2, () -> cardBlockRequestService.searCardBlockRequest(CardBlockRequestFilter.builder().build(), PAGE)
+                .map(cardBlockRequestDtoFactory::creatCardBlockRequestDto));
+    }
+
+    @Test
+    void getUserByUsername_UsesOneQueryForUserAndCards() {
+        UserDto dto = assertStatements(1, () -> userDtoFactory.createUserDtoAndCardDtoForAdminWithCards(
+                userService.findUserWithCardsByUsername(owner.getUsername())));
+
+        assertEquals(3, dto.getCards().size());
+    }
+
+    @Test
+    void listUsersWithCards_UsesOneQueryPlusCountPlusCardsSubselect() {
+        assertStatements(3, () -> userService.listUsers(PAGE, true)
+                .map(userDtoFactory::createUserDtoAndCardDtoForAdminWithCards));
+    }
+
+    @Test
+    void transferMoney_UsesLockQueryInsertsAndBatchedUpdate() {
+        PaymentDto paymentDto = new PaymentDto(cards.get(0).getId(), cards.get(1).getId(), Money.of(1), "query count");
+        inSession(() -> paymentService.transferMoney(paymentDto, owner.getId()));
+
+        // Агрегаты расходов изменяются через JDBC (SpendingRollupRepositoryImpl) и в статистике Hibernate не учитываются;
+        // четвертый запрос - событие перевода в outbox (идентификаторы уже выделены пулом последовательности)
+        assertStatements(4, () -> paymentService.transferMoney(paymentDto, owner.getId())
+                .stream().map(cardDtoFactory::createCardDtoForUser).toList());
+    }
+
+    @Test
+    void getTransferHistory_UsesOneQueryOnFirstAndNextPageWithoutLoadingEntities() {
+        PaymentDto paymentDto = new PaymentDto(cards.get(0).getId(), cards.get(1).getId(), Money.of(1), "history");
+        for (int i = 0; i < 3; i++) {
+            inSession(() -> paymentService.transferMoney(paymentDto, owner.getId()));
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Window<TransferHistoryDto> first = assertStatements(1, () -> transferHistoryService.scrollTransferHistory(
+                owner.getId(), null, ScrollPosition.keyset(), 2));
+        assertEquals(0, statistics.getEntityLoadCount(), "entities loaded");
+        String after = keysetCursorCodec.nextCursor(first);
+
+        Window<TransferHistoryDto> next = assertStatements(1, () -> transferHistoryService.scrollTransferHistory(
+                owner.getId(), TransferHistoryFilter.builder().cardId(cards.get(0).getId()).build(),
+                keysetCursorCodec.decode(after, TransferHistory.class, TransferHistoryService.HISTORY_SORT), 2));
+        assertEquals(0, statistics.getEntityLoadCount(), "entities loaded");
+
+        assertEquals(1, next.size());
+        assertFalse(next.hasNext());
+    }
+
+    /**
+     * Выполняет endpoint в одной сессии и проверяет точное количество подготовленных SQL-запросов
+     */
+    private <T> T assertStatements(long expected, Supplier<T> endpoint) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        T result = inSession(endpoint);
+
+        assertEquals(expected, statistics.getPrepareStatementCount(), "SQL statements");
+        return result;
+    }
+
+    private <T> T inSession(Supplier<T> endpoint) {
+        return new TransactionTemplate(transactionManager).execute(status -> endpoint.get());
+    }
+
+    private User user(String username, UserRole role) {
+        return User.builder()
+                .username(username)
+                .password("password")
+                .role(role)
+                .build();
+    }
+
+    private Card card(User user, int i) {
+        return Card.builder()
+                .encryptNumber("query-encrypted-" + i)
+                .searchHash("query-hash-" + i)
+                .validityPeriod(LocalDate.now().plusYears(5))
+                .statusCard(StatusCard.ACTIVE)
+                .balance(Money.of(100))
+                .first8("55555555")
+                .last4("000" + i)
+                .user(user)
+                .build();
+    }
+
+    private CardBlockRequest blockRequest(Card card, User requester) {
+        return CardBlockRequest.builder()
+                .card(card)
+                .requester(requester)
+                .reason("lost")
+                .processedBy(admin)
+                .blockRequestStatus(BlockRequestStatus.APPROVED)
+                .build();
+    }
+}
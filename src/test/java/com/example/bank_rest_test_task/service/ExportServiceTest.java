@@ -0,0 +1,238 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.config.ExportConfig;
+import com.example.bank_rest_test_task.dto.ExportFormat;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
+import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.money.Money;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверка потоковой выгрузки карт и истории переводов.
+ *
+ * Строки должны читаться одним запросом без загрузки сущностей в контекст персистентности,
+ * номера карт расшифровываться с сохранением порядка, а CSV экранироваться по RFC 4180.
+ * Тест объема ({@code @Tag("benchmark")}, запускается только профилем Maven {@code benchmark}) выгружает
+ * большое количество карт в поток без хранения результата и выводит в лог время выгрузки и прирост используемой памяти.
+ */
+@Slf4j
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:export;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "payment.export.decrypt-threads=4",
+        "payment.export.chunk-size=16",
+        "payment.export.max-in-flight-chunks=4"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({ExportConfig.class, ExportService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ExportServiceTest {
+    private static final int CARDS = 100;
+    private static final int BULK_CARDS = 100_000;
+
+    @MockitoBean
+    CryptoService cryptoService;
+
+    @Autowired
+    ExportService exportService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TransferHistoryRepository transferHistoryRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    User owner;
+    List<Card> cards;
+
+    @BeforeEach
+    void setUp() {
+        when(cryptoService.decrypt(anyString())).thenAnswer(invocation -> "number-of-" + invocation.getArgument(0));
+        owner = userRepository.save(User.builder()
+                .username("export-owner")
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build());
+
+        List<Card> newCards = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            newCards.add(Card.builder()
+                    .encryptNumber("encrypted-" + i)
+                    .searchHash("export-hash-" + i)
+                    .validityPeriod(LocalDate.of(2030, 1, 1))
+                    .statusCard(StatusCard.ACTIVE)
+                    .balance(Money.of(i))
+                    .first8("55555555")
+                    .last4("%04d".formatted(i))
+                    .user(owner)
+                    .build());
+        }
+        cards = cardRepository.saveAll(newCards);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferHistoryRepository.deleteAll();
+        jdbcTemplate.update("delete from cards");
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void exportCards_WhenNdjson_ThenDecryptedRowsInIdOrderWithoutLoadingEntities() throws IOException {
+        Statistics statistics = statistics();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = exportService.exportCards(ExportFormat.NDJSON, out, 1L);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(CARDS, count);
+        assertEquals(CARDS, lines.length);
+        for (int i = 0; i < CARDS; i++) {
+            JsonNode row = objectMapper.readTree(lines[i]);
+            assertEquals(cards.get(i).getId(), row.get("cardId").asLong());
+            assertEquals("number-of-encrypted-" + i, row.get("cardNumber").asText());
+            assertEquals(owner.getId(), row.get("userId").asLong());
+            assertEquals("2030-01-01", row.get("validityPeriod").asText());
+        }
+        assertEquals(1, statistics.getPrepareStatementCount(), "SQL statements");
+        assertEquals(0, statistics.getEntityLoadCount(), "entities loaded");
+    }
+
+    @Test
+    void exportTransfers_WhenCsv_ThenHeaderAndEscapedValues() throws IOException {
+        TransferHistory transfer = transferHistoryRepository.save(TransferHistory.builder()
+                .fromCard(cards.get(0))
+                .toCard(cards.get(1))
+                .user(owner)
+                .amount(Money.of("10.5000"))
+                .timestamp(OffsetDateTime.of(2030, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC))
+                .comment("rent, \"May\"\nsecond line")
+                .build());
+        Statistics statistics = statistics();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = exportService.exportTransfers(ExportFormat.CSV, out, 1L);
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertEquals(1, count);
+        assertTrue(csv.startsWith("id,userId,fromCardId,toCardId,amount,timestamp,comment\n"
+                + "%d,%d,%d,%d,".formatted(transfer.getId(), owner.getId(), cards.get(0).getId(), cards.get(1).getId())), csv);
+        assertTrue(csv.endsWith(",\"rent, \"\"May\"\"\nsecond line\"\n"), csv);
+        assertEquals(1, statistics.getPrepareStatementCount(), "SQL statements");
+        assertEquals(0, statistics.getEntityLoadCount(), "entities loaded");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void exportCards_WhenManyRows_ThenStreamedWithoutKeepingRows() throws IOException {
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < BULK_CARDS; i++) {
+            batch.add(new Object[]{1_000_000L + i, "bulk-encrypted-" + i, "bulk-hash-" + i,
+                    Date.valueOf(LocalDate.of(2030, 1, 1)), owner.getId()});
+            if (batch.size() == 5_000) {
+                insertCards(batch);
+            }
+        }
+        insertCards(batch);
+        Statistics statistics = statistics();
+        CountingOutputStream out = new CountingOutputStream();
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        long startedAt = System.nanoTime();
+
+        long count = exportService.exportCards(ExportFormat.CSV, out, 1L);
+
+        long millis = (System.nanoTime() - startedAt) / 1_000_000;
+        System.gc();
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+        log.info("cards={} | bytes={} | exportMs={} | heapDeltaKb={}", count, out.bytes, millis, (usedAfter - usedBefore) / 1024);
+        assertEquals(CARDS + BULK_CARDS, count);
+        assertEquals(0, statistics.getEntityLoadCount(), "entities loaded");
+    }
+
+    private void insertCards(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("insert into cards (id, encrypted_number, search_hash, validity_period, status_card, "
+                + "balance, first8, last4, last4_reversed, user_id) values (?, ?, ?, ?, 'ACTIVE', 0, '55555555', '0000', '0000', ?)", batch);
+        batch.clear();
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    /**
+     * Поток, который только считает байты, как клиент, читающий выгрузку
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
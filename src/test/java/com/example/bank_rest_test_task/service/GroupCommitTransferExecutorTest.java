@@ -0,0 +1,282 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.config.GroupCommitConfig;
+import com.example.bank_rest_test_task.config.BalanceEngineConfig;
+import com.example.bank_rest_test_task.config.HistoryJournalConfig;
+import com.example.bank_rest_test_task.config.RollupConfig;
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.exception.CardBlockedException;
+import com.example.bank_rest_test_task.exception.InsufficientFundsException;
+import com.example.bank_rest_test_task.exception.TransferOutcomeUnknownException;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.SpendingRollupRepository;
+import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
+import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.money.Money;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Групповая фиксация переводов: изоляция ошибок отдельных переводов группы и сравнение пропускной способности
+ * с обычным путем (одна транзакция на перевод).
+ *
+ * H2 в памяти не сбрасывает журнал на диск при фиксации, поэтому выигрыш здесь меньше, чем на PostgreSQL;
+ * пропускная способность выводится в лог, проверяется сохранность денег и истории.
+ */
+@Slf4j
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:group-commit;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "payment.transfer.group-commit.enabled=true",
+        "payment.transfer.group-commit.window=PT0.005S"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BalanceEngineConfig.class, HistoryJournalConfig.class, RollupConfig.class, GroupCommitConfig.class, PaymentService.class, BalanceEngine.class, CardService.class, OutboxService.class,
+        TransferHistoryService.class, TransferHistoryJournal.class, SpendingRollupService.class, GroupCommitTransferExecutor.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class GroupCommitTransferExecutorTest {
+    private static final int CARDS = 32;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 25;
+    private static final Money INITIAL_BALANCE = Money.of(1000);
+
+    @MockitoBean
+    CryptoService cryptoService;
+
+    @MockitoBean
+    UserService userService;
+
+    @Autowired
+    GroupCommitTransferExecutor groupCommitTransferExecutor;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TransferHistoryRepository transferHistoryRepository;
+
+    @Autowired
+    SpendingRollupRepository spendingRollupRepository;
+
+    Long userId;
+    List<Long> cardIds;
+
+    @BeforeEach
+    void setUp() {
+        User user = userRepository.save(User.builder()
+                .username("group-commit-owner")
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build());
+        userId = user.getId();
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = cardRepository.save(Card.builder()
+                    .encryptNumber("encrypted-" + i)
+                    .searchHash("hash-" + i)
+                    .validityPeriod(LocalDate.now().plusYears(5))
+                    .statusCard(i == CARDS - 1 ? StatusCard.BLOCKED : StatusCard.ACTIVE)
+                    .balance(INITIAL_BALANCE)
+                    .first8("555555%02d".formatted(i))
+                    .last4("%04d".formatted(i))
+                    .user(user)
+                    .build());
+            cardIds.add(card.getId());
+        }
+        groupCommitTransferExecutor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        groupCommitTransferExecutor.close();
+        transferHistoryRepository.deleteAll();
+        spendingRollupRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void transferMoney_WhenGroupContainsFailingTransfers_ThenOnlyTheyAreRolledBack() throws Exception {
+        List<PaymentDto> payments = List.of(
+                new PaymentDto(cardIds.get(0), cardIds.get(1), Money.of(100), "ok"),
+                new PaymentDto(cardIds.get(2), cardIds.get(3), Money.of(5000), "insufficient"),
+                new PaymentDto(cardIds.get(1), cardIds.get(2), Money.of(50), "ok"),
+                new PaymentDto(cardIds.get(4), cardIds.get(CARDS - 1), Money.of(10), "blocked"));
+        ExecutorService executor = Executors.newFixedThreadPool(payments.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Card>>> futures = new ArrayList<>();
+        for (PaymentDto payment : payments) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return groupCommitTransferExecutor.transferMoney(payment, userId);
+            }));
+        }
+        start.countDown();
+
+        List<Card> first = futures.get(0).get(30, TimeUnit.SECONDS);
+        ExecutionException insufficient = assertThrows(ExecutionException.class, () -> futures.get(1).get(30, TimeUnit.SECONDS));
+        List<Card> third = futures.get(2).get(30, TimeUnit.SECONDS);
+        ExecutionException blocked = assertThrows(ExecutionException.class, () -> futures.get(3).get(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertInstanceOf(InsufficientFundsException.class, insufficient.getCause());
+        assertInstanceOf(CardBlockedException.class, blocked.getCause());
+        assertEquals(2, first.size());
+        assertEquals(2, third.size());
+        assertEquals(0, Money.of(900).compareTo(balance(0)));
+        assertEquals(0, Money.of(1050).compareTo(balance(1)));
+        assertEquals(0, Money.of(1050).compareTo(balance(2)));
+        assertEquals(0, INITIAL_BALANCE.compareTo(balance(3)));
+        assertEquals(0, INITIAL_BALANCE.compareTo(balance(4)));
+        assertEquals(2, transferHistoryRepository.count());
+    }
+
+    @Test
+    void transferMoney_WhenGroupFailsBeforeCommit_ThenTransfersExecutedOneByOne() {
+        PaymentService payments = mock(PaymentService.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(payments.transferMoneyInGroup(any(), any())).thenThrow(new QueryTimeoutException("statement timeout"));
+        List<Card> cards = List.of(new Card(), new Card());
+        when(payments.transferMoney(any(), any())).thenReturn(cards);
+        GroupCommitTransferExecutor executor = mockedExecutor(payments, transactionManager);
+
+        try {
+            assertSame(cards, executor.transferMoney(new PaymentDto(1L, 2L, Money.of(1), "retried"), userId));
+        } finally {
+            executor.close();
+        }
+        verify(transactionManager).rollback(any());
+        verify(payments).transferMoney(any(), any());
+    }
+
+    @Test
+    void transferMoney_WhenGroupCommitFails_ThenOutcomeUnknownAndNotExecutedAgain() {
+        PaymentService payments = mock(PaymentService.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        // Соединение оборвалось при фиксации: база данных могла зафиксировать группу
+        doThrow(new TransactionSystemException("connection reset on commit")).when(transactionManager).commit(any());
+        when(payments.transferMoneyInGroup(any(), any())).thenReturn(List.of(new Card(), new Card()));
+        GroupCommitTransferExecutor executor = mockedExecutor(payments, transactionManager);
+
+        try {
+            assertThrows(TransferOutcomeUnknownException.class,
+                    () -> executor.transferMoney(new PaymentDto(1L, 2L, Money.of(1), "ambiguous"), userId));
+        } finally {
+            executor.close();
+        }
+        verify(payments, never()).transferMoney(any(), any());
+    }
+
+    @Test
+    void transferMoney_WhenManyThreads_ThenGroupCommitConservesMoneyAndIsComparedWithDirectPath() throws Exception {
+        long direct = runLoad("direct", paymentService::transferMoney);
+        long grouped = runLoad("group-commit", groupCommitTransferExecutor::transferMoney);
+
+        log.info("direct={} tx/s | groupCommit={} tx/s", direct, grouped);
+        Money total = cardRepository.findAllById(cardIds).stream()
+                .map(Card::getBalance).reduce(Money.ZERO, Money::plus);
+        assertEquals(0, INITIAL_BALANCE.times(CARDS).compareTo(total));
+    }
+
+    /**
+     * Переводит деньги между активными картами из нескольких потоков
+     *
+     * @return пропускная способность, переводов в секунду
+     */
+    /**
+     * Исполнитель с заглушками вместо базы данных: проверяет, как обрабатывается ошибка группы
+     */
+    private static GroupCommitTransferExecutor mockedExecutor(PaymentService payments, PlatformTransactionManager transactionManager) {
+        EntityManager entityManager = mock(EntityManager.class);
+        when(entityManager.unwrap(Session.class)).thenReturn(mock(Session.class));
+        GroupCommitTransferExecutor executor = new GroupCommitTransferExecutor(payments, mock(CardService.class),
+                transactionManager, Executors.newSingleThreadExecutor(), true, Duration.ZERO, 64, 16);
+        ReflectionTestUtils.setField(executor, "entityManager", entityManager);
+        executor.start();
+        return executor;
+    }
+
+    private long runLoad(String name, BiFunction<PaymentDto, Long, List<Card>> transfer) throws Exception {
+        long historyBefore = transferHistoryRepository.count();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(CARDS - 1);
+                    int to = (from + 1 + random.nextInt(CARDS - 2)) % (CARDS - 1);
+                    try {
+                        transfer.apply(new PaymentDto(cardIds.get(from), cardIds.get(to),
+                                Money.of(random.nextInt(1, 100)), "load"), userId);
+                        succeeded.incrementAndGet();
+                    } catch (InsufficientFundsException e) {
+                        // допустимый исход под нагрузкой
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        executor.shutdown();
+
+        assertEquals(succeeded.get(), transferHistoryRepository.count() - historyBefore, name);
+        return THREADS * TRANSFERS_PER_THREAD * 1000L / elapsedMillis;
+    }
+
+    private Money balance(int card) {
+        return cardRepository.findById(cardIds.get(card)).orElseThrow().getBalance();
+    }
+}
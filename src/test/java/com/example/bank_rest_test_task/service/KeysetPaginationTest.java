@@ -0,0 +1,331 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.config.HistoryJournalConfig;
+import com.example.bank_rest_test_task.config.UsernameSearchConfig;
+import com.example.bank_rest_test_task.dto.CardBlockRequestFilter;
+import com.example.bank_rest_test_task.dto.CardSearchFilter;
+import com.example.bank_rest_test_task.dto.TransferHistoryDto;
+import com.example.bank_rest_test_task.dto.TransferHistoryFilter;
+import com.example.bank_rest_test_task.entity.BlockRequestStatus;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.CardBlockRequest;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.exception.InvalidCursorException;
+import com.example.bank_rest_test_task.repository.CardBlockRequestRepository;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
+import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.KeysetCursorCodec;
+import com.example.bank_rest_test_task.util.money.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка пагинации в режиме курсора (keyset).
+ *
+ * Проход по всем страницам через курсор должен вернуть те же элементы в том же порядке,
+ * что и постраничная выборка с OFFSET, включая элементы с одинаковым значением ключа сортировки
+ * (порядок между ними определяет id).
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:keyset-pagination;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({HistoryJournalConfig.class, UsernameSearchConfig.class, CardService.class, OutboxService.class, UserService.class, CardBlockRequestService.class,
+        TransferHistoryService.class, TransferHistoryJournal.class, KeysetCursorCodec.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class KeysetPaginationTest {
+    private static final int CARDS = 23;
+    private static final int PAGE_SIZE = 5;
+    private static final Sort BY_VALIDITY = Sort.by("validityPeriod");
+
+    @MockitoBean
+    CryptoService cryptoService;
+
+    @MockitoBean
+    PasswordEncoder passwordEncoder;
+
+    @Autowired
+    CardService cardService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    CardBlockRequestService cardBlockRequestService;
+
+    @Autowired
+    TransferHistoryService transferHistoryService;
+
+    @Autowired
+    KeysetCursorCodec keysetCursorCodec;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    CardBlockRequestRepository cardBlockRequestRepository;
+
+    @Autowired
+    TransferHistoryRepository transferHistoryRepository;
+
+    User owner;
+    User other;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(user("keyset-owner"));
+        other = userRepository.save(user("keyset-other"));
+
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            // Срок действия повторяется, чтобы на границах страниц были одинаковые значения ключа
+            cards.add(card(i % 3 == 0 ? other : owner, i, LocalDate.now().plusYears(1 + i % 4)));
+        }
+        cards = cardRepository.saveAll(cards);
+
+        for (Card card : cards) {
+            cardBlockRequestRepository.save(CardBlockRequest.builder()
+                    .card(card)
+                    .requester(card.getUser())
+                    .reason("lost")
+                    .blockRequestStatus(BlockRequestStatus.PENDING)
+                    .build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferHistoryRepository.deleteAll();
+        cardBlockRequestRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void scrollAllCards_ThenSameOrderAsOffsetPagination() {
+        List<Long> scrolled = scrollAll(Card.class, BY_VALIDITY,
+                position -> cardService.scrollAllCards(position, BY_VALIDITY, PAGE_SIZE), Card::getId);
+        List<Long> paged = cardService.findAllCards(PageRequest.of(0, CARDS, BY_VALIDITY.and(Sort.by("id"))))
+                .map(Card::getId).getContent();
+
+        assertEquals(CARDS, scrolled.size());
+        assertEquals(paged, scrolled);
+    }
+
+    @Test
+    void scrollSearchCard_WhenDescendingSort_ThenFilterAppliedOnEveryPage() {
+        Sort sort = Sort.by(Sort.Direction.DESC, "balance");
+        CardSearchFilter filter = CardSearchFilter.builder().userId(owner.getId()).status(StatusCard.ACTIVE).build();
+
+        List<Long> scrolled = scrollAll(Card.class, sort,
+                position -> cardService.scrollSearchCard(filter, position, sort, PAGE_SIZE), Card::getId);
+        List<Long> paged = cardService.searchCard(filter, PageRequest.of(0, CARDS, sort.and(Sort.by("id"))))
+                .map(Card::getId).getContent();
+
+        assertEquals(CARDS - (CARDS + 2) / 3, scrolled.size());
+        assertEquals(paged, scrolled);
+    }
+
+    @Test
+    void searchCard_WhenBinPrefixAndNumberSuffix_ThenSameCardsAsLike() {
+        List<Card> all = cardService.findAllCards(PageRequest.of(0, CARDS)).getContent();
+
+        for (String suffix : List.of("1", "21", "9999")) {
+            CardSearchFilter filter = CardSearchFilter.builder().first8Number("555555").last4Number(suffix).build();
+            Set<Long> expected = all.stream()
+                    .filter(card -> card.getFirst8().startsWith("555555") && card.getLast4().endsWith(suffix))
+                    .map(Card::getId)
+                    .collect(Collectors.toSet());
+
+            assertEquals(expected, Set.copyOf(cardService.searchCard(filter, PageRequest.of(0, CARDS))
+                    .map(Card::getId).getContent()), suffix);
+        }
+        assertFalse(cardService.searchCard(CardSearchFilter.builder().last4Number("1").build(), PageRequest.of(0, CARDS)).isEmpty());
+        assertTrue(cardService.searchCard(CardSearchFilter.builder().first8Number("400012").build(), PageRequest.of(0, CARDS)).isEmpty());
+    }
+
+    @Test
+    void scrollCardBlockRequest_ThenAllRequestsReturnedOnce() {
+        Sort sort = Sort.by("createAt");
+
+        List<Long> scrolled = scrollAll(CardBlockRequest.class, sort,
+                position -> cardBlockRequestService.scrollCardBlockRequest(CardBlockRequestFilter.builder().build(),
+                        position, sort, PAGE_SIZE), CardBlockRequest::getId);
+
+        assertEquals(CARDS, scrolled.size());
+        assertEquals(CARDS, scrolled.stream().distinct().count());
+    }
+
+    @Test
+    void scrollUsers_ThenOrderedById() {
+        Sort sort = Sort.by("id");
+
+        List<Long> scrolled = scrollAll(User.class, sort,
+                position -> userService.scrollUsers(position, sort, 1, false), User::getId);
+
+        assertEquals(List.of(owner.getId(), other.getId()), scrolled);
+    }
+
+    @Test
+    void scrollTransferHistory_ThenNewestFirstAndFiltersAppliedOnEveryPage() {
+        List<Card> cards = cardRepository.findAll(Sort.by("id"));
+        OffsetDateTime start = OffsetDateTime.of(2030, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        List<TransferHistory> transfers = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card from = cards.get(i);
+            // Время повторяется, чтобы на границах страниц были одинаковые значения ключа
+            transfers.add(TransferHistory.builder()
+                    .fromCard(from)
+                    .toCard(cards.get((i + 1) % CARDS))
+                    .user(from.getUser())
+                    .amount(Money.of(i * 10L))
+                    .timestamp(start.plusMinutes(i / 3))
+                    .comment("transfer " + i)
+                    .build());
+        }
+        transfers = transferHistoryRepository.saveAll(transfers);
+
+        Comparator<TransferHistory> newestFirst = Comparator.comparing(TransferHistory::getTimestamp)
+                .thenComparing(TransferHistory::getId).reversed();
+        List<Long> expected = transfers.stream()
+                .filter(t -> t.getUser().getId().equals(owner.getId()))
+                .sorted(newestFirst).map(TransferHistory::getId).toList();
+        assertEquals(expected, scrollAll(TransferHistory.class, TransferHistoryService.HISTORY_SORT,
+                position -> transferHistoryService.scrollTransferHistory(owner.getId(), null, position, PAGE_SIZE),
+                TransferHistoryDto::id));
+
+        Card card = cards.get(5);
+        TransferHistoryFilter filter = TransferHistoryFilter.builder()
+                .cardId(card.getId())
+                .amountMin(BigDecimal.valueOf(30))
+                .amountMax(BigDecimal.valueOf(50))
+                .from(start)
+                .to(start.plusMinutes(2))
+                .build();
+        List<Long> filtered = transfers.stream()
+                .filter(t -> t.getUser().getId().equals(owner.getId()))
+                .filter(t -> t.getFromCard().getId().equals(card.getId()) || t.getToCard().getId().equals(card.getId()))
+                .filter(t -> t.getAmount().compareTo(Money.of(filter.getAmountMin())) >= 0 && t.getAmount().compareTo(Money.of(filter.getAmountMax())) <= 0)
+                .filter(t -> t.getTimestamp().isBefore(filter.getTo()))
+                .sorted(newestFirst).map(TransferHistory::getId).toList();
+        assertEquals(2, filtered.size());
+        assertEquals(filtered, scrollAll(TransferHistory.class, TransferHistoryService.HISTORY_SORT,
+                position -> transferHistoryService.scrollTransferHistory(owner.getId(), filter, position, 1),
+                TransferHistoryDto::id));
+    }
+
+    @Test
+    void searchAndScroll_WhenAmountBoundsAtValidationLimit_ThenNoOverflow() {
+        // Наибольшие границы, допускаемые @Digits фильтров, не помещаются в Money и ограничиваются его диапазоном
+        CardSearchFilter cardFilter = CardSearchFilter.builder()
+                .userId(owner.getId())
+                .balanceMin(new BigDecimal("-999999999999999999.99"))
+                .balanceMax(new BigDecimal("999999999999999999.99"))
+                .build();
+        TransferHistoryFilter historyFilter = TransferHistoryFilter.builder()
+                .amountMin(new BigDecimal("1000000000000000"))
+                .amountMax(new BigDecimal("999999999999999.9999"))
+                .build();
+
+        assertEquals(cardService.searchCard(CardSearchFilter.builder().userId(owner.getId()).build(),
+                        PageRequest.of(0, CARDS)).getTotalElements(),
+                cardService.searchCard(cardFilter, PageRequest.of(0, CARDS)).getTotalElements());
+        assertTrue(transferHistoryService.scrollTransferHistory(owner.getId(), historyFilter,
+                ScrollPosition.keyset(), PAGE_SIZE).isEmpty());
+    }
+
+    @Test
+    void decode_WhenCursorForOtherSort_ThenThrow() {
+        Window<Card> window = cardService.scrollAllCards(keysetCursorCodec.decode(null, Card.class, BY_VALIDITY),
+                BY_VALIDITY, PAGE_SIZE);
+        String cursor = keysetCursorCodec.nextCursor(window);
+
+        assertThrows(InvalidCursorException.class, () -> keysetCursorCodec.decode(cursor, Card.class, Sort.by("balance")));
+    }
+
+    @Test
+    void decode_WhenCursorMalformed_ThenThrow() {
+        String unknownAttribute = Base64.getUrlEncoder().encodeToString("password=1&id=1".getBytes());
+        String wrongType = Base64.getUrlEncoder().encodeToString("validityPeriod=yesterday&id=1".getBytes());
+
+        assertThrows(InvalidCursorException.class, () -> keysetCursorCodec.decode("%%%", Card.class, BY_VALIDITY));
+        assertThrows(InvalidCursorException.class, () -> keysetCursorCodec.decode(unknownAttribute, Card.class, BY_VALIDITY));
+        assertThrows(InvalidCursorException.class, () -> keysetCursorCodec.decode(wrongType, Card.class, BY_VALIDITY));
+    }
+
+    /**
+     * Проходит по всем страницам, передавая курсор следующей страницы через кодирование и разбор,
+     * как это делает клиент
+     */
+    private <T> List<Long> scrollAll(Class<?> entityClass, Sort sort,
+                                     Function<KeysetScrollPosition, Window<T>> scroll,
+                                     Function<T, Long> id) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            Window<T> window = scroll.apply(keysetCursorCodec.decode(cursor, entityClass, sort));
+            window.forEach(item -> ids.add(id.apply(item)));
+            cursor = keysetCursorCodec.nextCursor(window);
+        } while (cursor != null);
+        return ids;
+    }
+
+    private User user(String username) {
+        return User.builder()
+                .username(username)
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build();
+    }
+
+    private Card card(User user, int i, LocalDate validityPeriod) {
+        return Card.builder()
+                .encryptNumber("keyset-encrypted-" + i)
+                .searchHash("keyset-hash-" + i)
+                .validityPeriod(validityPeriod)
+                .statusCard(StatusCard.ACTIVE)
+                .balance(Money.of(i % 5 * 10))
+                .first8("55555555")
+                .last4("%04d".formatted(i))
+                .user(user)
+                .build();
+    }
+}
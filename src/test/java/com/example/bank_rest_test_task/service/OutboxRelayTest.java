@@ -0,0 +1,267 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.config.OutboxConfig;
+import com.example.bank_rest_test_task.dto.DomainEventDto;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.DomainEventType;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.OutboxEventRepository;
+import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.money.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка outbox: событие фиксируется и откатывается вместе с изменением, доставляется по порядку id
+ * и удаляется; при ошибке получателя пакет остается и доставляется повторно только ему, а два экземпляра
+ * доставки ({@code FOR UPDATE SKIP LOCKED}) не доставляют одно событие дважды.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:outbox;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "payment.outbox.relay.enabled=false",
+        "payment.outbox.relay.batch-size=4",
+        "payment.outbox.relay.max-attempts=3"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({OutboxConfig.class, OutboxService.class, OutboxRelay.class, CardService.class, OutboxRelayTest.Sinks.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxRelayTest {
+    private static final int EVENTS = 200;
+
+    @MockitoBean
+    CryptoService cryptoService;
+
+    @MockitoBean
+    UserService userService;
+
+    @Autowired
+    CardService cardService;
+
+    @Autowired
+    OutboxRelay outboxRelay;
+
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ScheduledExecutorService outboxRelayExecutor;
+
+    @Autowired
+    ObjectProvider<DomainEventSink> sinks;
+
+    @Autowired
+    RecordingSink recordingSink;
+
+    @Autowired
+    FailingSink failingSink;
+
+    Card card;
+
+    @BeforeEach
+    void setUp() {
+        User user = userRepository.save(User.builder()
+                .username("outbox-owner")
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build());
+        card = cardRepository.save(Card.builder()
+                .encryptNumber("encrypted")
+                .searchHash("outbox-hash")
+                .validityPeriod(OffsetDateTime.now().plusYears(5).toLocalDate())
+                .statusCard(StatusCard.ACTIVE)
+                .balance(Money.of(1000))
+                .first8("55555555")
+                .last4("0000")
+                .user(user)
+                .build());
+        recordingSink.events.clear();
+        failingSink.failures.set(0);
+        failingSink.calls.set(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxEventRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void updateCardStatus_WhenRolledBack_ThenNoEvent() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            cardService.updateCardStatus(card.getId(), StatusCard.BLOCKED);
+            status.setRollbackOnly();
+        });
+        assertEquals(0, outboxEventRepository.count());
+
+        transactionTemplate.executeWithoutResult(status -> cardService.updateCardStatus(card.getId(), StatusCard.BLOCKED));
+        transactionTemplate.executeWithoutResult(status -> cardService.updateCardStatus(card.getId(), StatusCard.BLOCKED));
+        assertEquals(1, outboxEventRepository.count());
+    }
+
+    @Test
+    void relay_WhenSinkFailsOnce_ThenBatchKeptAndRedeliveredOnlyToFailedSink() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        StatusCard[] statuses = {StatusCard.PENDING_BLOCKED, StatusCard.BLOCKED, StatusCard.ACTIVE};
+        for (int i = 0; i < 9; i++) {
+            StatusCard status = statuses[i % statuses.length];
+            transactionTemplate.executeWithoutResult(tx -> cardService.updateCardStatus(card.getId(), status));
+        }
+        failingSink.failures.set(1);
+
+        // Второй получатель падает на первом пакете: пакет остается в outbox, первый получатель его уже принял
+        assertEquals(0, outboxRelay.relay());
+        assertEquals(9, outboxEventRepository.count());
+        assertEquals(4, recordingSink.events.size());
+        assertEquals(1, failingSink.calls.get());
+
+        assertEquals(9, outboxRelay.relay());
+
+        List<DomainEventDto> events = new ArrayList<>(recordingSink.events);
+        assertEquals(9, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            DomainEventDto event = events.get(i);
+            assertEquals(DomainEventType.CARD_STATUS_CHANGED, event.type());
+            assertEquals(card.getId(), event.aggregateId());
+            assertEquals(card.getUser().getId(), event.userId());
+            assertTrue(event.payload().contains("\"status\":\"" + statuses[i % statuses.length] + "\""), event.payload());
+            if (i > 0) {
+                assertTrue(events.get(i - 1).id() < event.id());
+            }
+        }
+        assertEquals(4, failingSink.calls.get());
+        assertEquals(0, outboxEventRepository.count());
+        assertEquals(0, outboxRelay.relay());
+    }
+
+    @Test
+    void relay_WhenSinkKeepsFailing_ThenEventsDroppedAfterMaxAttempts() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(tx -> cardService.updateCardStatus(card.getId(), StatusCard.BLOCKED));
+        transactionTemplate.executeWithoutResult(tx -> cardService.updateCardStatus(card.getId(), StatusCard.ACTIVE));
+        failingSink.failures.set(Integer.MAX_VALUE);
+
+        assertEquals(0, outboxRelay.relay());
+        assertEquals(0, outboxRelay.relay());
+        assertEquals(2, outboxEventRepository.count());
+
+        // Третья неудачная попытка (max-attempts) - события записываются в аудит и удаляются
+        assertEquals(2, outboxRelay.relay());
+        assertEquals(0, outboxEventRepository.count());
+        assertEquals(2, recordingSink.events.size());
+        assertEquals(3, failingSink.calls.get());
+    }
+
+    @Test
+    void relay_WhenTwoRelaysConcurrently_ThenEachEventDeliveredOnce() throws Exception {
+        jdbcTemplate.batchUpdate("""
+                insert into outbox_events (id, event_type, aggregate_id, user_id, payload, created_at)
+                values (?, 'TRANSFER_COMPLETED', ?, null, '{}', current_timestamp)""",
+                LongStream.rangeClosed(1, EVENTS)
+                        .mapToObj(id -> new Object[]{id, id}).toList());
+        OutboxRelay otherRelay = new OutboxRelay(false, jdbcTemplate, transactionManager, outboxRelayExecutor,
+                sinks, Duration.ofHours(1), 4, 3, Duration.ofSeconds(30));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Long> first = executor.submit(outboxRelay::relay);
+            Future<Long> second = executor.submit(otherRelay::relay);
+
+            assertEquals(EVENTS, first.get() + second.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(EVENTS, recordingSink.events.size());
+        assertEquals(EVENTS, recordingSink.events.stream().mapToLong(DomainEventDto::id).distinct().count());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @TestConfiguration
+    static class Sinks {
+
+        @Bean
+        @Order(1)
+        RecordingSink recordingSink() {
+            return new RecordingSink();
+        }
+
+        @Bean
+        @Order(2)
+        FailingSink failingSink() {
+            return new FailingSink();
+        }
+    }
+
+    static class RecordingSink implements DomainEventSink {
+        final Queue<DomainEventDto> events = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void accept(List<DomainEventDto> batch) {
+            events.addAll(batch);
+        }
+    }
+
+    static class FailingSink implements DomainEventSink {
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void accept(List<DomainEventDto> batch) {
+            calls.incrementAndGet();
+            if (failures.getAndUpdate(left -> Math.max(left - 1, 0)) > 0) {
+                throw new IllegalStateException("sink unavailable");
+            }
+        }
+    }
+}
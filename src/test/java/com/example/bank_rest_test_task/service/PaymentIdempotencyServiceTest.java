@@ -0,0 +1,178 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.CardDto;
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.entity.PaymentIdempotencyKey;
+import com.example.bank_rest_test_task.exception.IdempotencyKeyConflictException;
+import com.example.bank_rest_test_task.repository.PaymentIdempotencyKeyRepository;
+import com.example.bank_rest_test_task.util.money.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentIdempotencyServiceTest {
+    @Mock
+    PaymentIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    PaymentIdempotencyService paymentIdempotencyService;
+
+    PaymentDto paymentDto = new PaymentDto(1L, 2L, Money.of("100.00"), "Test payment");
+
+    @BeforeEach
+    void setUp() {
+        paymentIdempotencyService = new PaymentIdempotencyService(idempotencyKeyRepository, objectMapper,
+                transactionManager, Duration.ofHours(24), 100);
+    }
+
+    @Test
+    void executeOnce_WhenKeyRepeated_ThenTransferExecutedOnceAndResponseReplayed() {
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.saveAndFlush(any(PaymentIdempotencyKey.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        AtomicInteger transfers = new AtomicInteger();
+        List<CardDto> response = List.of(CardDto.builder().cardId(1L).balance(BigDecimal.valueOf(200)).build());
+
+        List<CardDto> first = paymentIdempotencyService.executeOnce(1L, "key-1", paymentDto, () -> {
+            transfers.incrementAndGet();
+            return response;
+        });
+        List<CardDto> second = paymentIdempotencyService.executeOnce(1L, "key-1",
+                new PaymentDto(1L, 2L, Money.of("100"), "Test payment"), () -> {
+                    transfers.incrementAndGet();
+                    return response;
+                });
+
+        assertEquals(1, transfers.get());
+        assertEquals(first, second);
+        verify(idempotencyKeyRepository).save(argThat(key -> key.getResponseBody() != null));
+    }
+
+    @Test
+    void executeOnce_WhenKeyStoredInDatabase_ThenStoredResponseReturnedWithoutTransfer() throws Exception {
+        List<CardDto> response = List.of(CardDto.builder().cardId(1L).balance(BigDecimal.valueOf(200)).build());
+        PaymentIdempotencyService firstInstance = new PaymentIdempotencyService(idempotencyKeyRepository, objectMapper,
+                transactionManager, Duration.ofHours(24), 100);
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.saveAndFlush(any(PaymentIdempotencyKey.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        firstInstance.executeOnce(1L, "key-1", paymentDto, () -> response);
+
+        ArgumentCaptor<PaymentIdempotencyKey> stored = ArgumentCaptor.forClass(PaymentIdempotencyKey.class);
+        verify(idempotencyKeyRepository).saveAndFlush(stored.capture());
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.of(PaymentIdempotencyKey.builder()
+                .userId(1L)
+                .idempotencyKey("key-1")
+                .requestHash(stored.getValue().getRequestHash())
+                .responseBody(objectMapper.writeValueAsString(response))
+                .expiresAt(OffsetDateTime.now().plusHours(1))
+                .build()));
+
+        List<CardDto> replayed = paymentIdempotencyService.executeOnce(1L, "key-1", paymentDto, () -> fail("Transfer must not be repeated"));
+
+        assertEquals(response, replayed);
+    }
+
+    @Test
+    void executeOnce_WhenKeyReusedWithDifferentBody_ThenConflict() {
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.saveAndFlush(any(PaymentIdempotencyKey.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        paymentIdempotencyService.executeOnce(1L, "key-1", paymentDto, List::of);
+
+        PaymentDto otherPayment = new PaymentDto(1L, 2L, Money.of("50.00"), "Test payment");
+
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> paymentIdempotencyService.executeOnce(1L, "key-1", otherPayment, List::of));
+    }
+
+    @Test
+    void executeOnce_WhenTransferFails_ThenKeyNotRemembered() {
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.saveAndFlush(any(PaymentIdempotencyKey.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertThrows(IllegalStateException.class, () -> paymentIdempotencyService.executeOnce(1L, "key-1", paymentDto, () -> {
+            throw new IllegalStateException("transfer failed");
+        }));
+        List<CardDto> response = paymentIdempotencyService.executeOnce(1L, "key-1", paymentDto, List::of);
+
+        assertTrue(response.isEmpty());
+        verify(transactionManager).rollback(any());
+        verify(idempotencyKeyRepository, times(2)).saveAndFlush(any(PaymentIdempotencyKey.class));
+    }
+
+    @Test
+    void executeOnce_WhenExpiredKeyNotYetPurged_ThenExpiredKeyDeletedBeforeInsertAndTransferExecuted() throws Exception {
+        PaymentIdempotencyKey expired = storedKey(List.of(), OffsetDateTime.now().minusMinutes(1));
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.of(expired));
+        when(idempotencyKeyRepository.saveAndFlush(any(PaymentIdempotencyKey.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        AtomicInteger transfers = new AtomicInteger();
+
+        paymentIdempotencyService.executeOnce(1L, "key-1", paymentDto, () -> {
+            transfers.incrementAndGet();
+            return List.of();
+        });
+
+        assertEquals(1, transfers.get());
+        InOrder inOrder = inOrder(idempotencyKeyRepository);
+        inOrder.verify(idempotencyKeyRepository).deleteExpiredKey(eq(1L), eq("key-1"), any(OffsetDateTime.class));
+        inOrder.verify(idempotencyKeyRepository).saveAndFlush(any(PaymentIdempotencyKey.class));
+    }
+
+    @Test
+    void executeOnce_WhenStoredKeyExpiresBeforeCacheTtl_ThenCachedResponseExpiresWithKey() throws Exception {
+        List<CardDto> response = List.of(CardDto.builder().cardId(1L).balance(BigDecimal.valueOf(200)).build());
+        PaymentIdempotencyKey expiringSoon = storedKey(response, OffsetDateTime.now().plus(Duration.ofMillis(200)));
+        when(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.of(expiringSoon));
+
+        assertEquals(response, paymentIdempotencyService.executeOnce(1L, "key-1", paymentDto,
+                () -> fail("Transfer must not be repeated")));
+
+        Thread.sleep(300);
+        when(idempotencyKeyRepository.saveAndFlush(any(PaymentIdempotencyKey.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        AtomicInteger transfers = new AtomicInteger();
+        paymentIdempotencyService.executeOnce(1L, "key-1", paymentDto, () -> {
+            transfers.incrementAndGet();
+            return List.of();
+        });
+
+        assertEquals(1, transfers.get());
+    }
+
+    private PaymentIdempotencyKey storedKey(List<CardDto> response, OffsetDateTime expiresAt) throws Exception {
+        // hash тела запроса берется из первого выполнения отдельным экземпляром сервиса
+        PaymentIdempotencyKeyRepository repository = mock(PaymentIdempotencyKeyRepository.class);
+        when(repository.saveAndFlush(any(PaymentIdempotencyKey.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        new PaymentIdempotencyService(repository, objectMapper, transactionManager, Duration.ofHours(24), 100)
+                .executeOnce(1L, "key-1", paymentDto, () -> response);
+        ArgumentCaptor<PaymentIdempotencyKey> stored = ArgumentCaptor.forClass(PaymentIdempotencyKey.class);
+        verify(repository).saveAndFlush(stored.capture());
+        return PaymentIdempotencyKey.builder()
+                .userId(1L)
+                .idempotencyKey("key-1")
+                .requestHash(stored.getValue().getRequestHash())
+                .responseBody(objectMapper.writeValueAsString(response))
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
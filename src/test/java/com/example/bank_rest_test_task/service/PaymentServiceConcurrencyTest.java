@@ -0,0 +1,239 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.config.BalanceEngineConfig;
+import com.example.bank_rest_test_task.config.HistoryJournalConfig;
+import com.example.bank_rest_test_task.config.RollupConfig;
+import com.example.bank_rest_test_task.dto.BatchPaymentMode;
+import com.example.bank_rest_test_task.dto.BatchPaymentResultDto;
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.dto.TransferRetryMetricsDto;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.RollupPeriod;
+import com.example.bank_rest_test_task.entity.RollupScope;
+import com.example.bank_rest_test_task.entity.SpendingRollup;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.exception.InsufficientFundsException;
+import com.example.bank_rest_test_task.exception.TransferConflictException;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.SpendingRollupRepository;
+import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
+import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.money.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Нагрузочный тест переводов по "горячим" картам.
+ *
+ * Несколько потоков одновременно переводят деньги между небольшим набором карт во всех направлениях
+ * (в том числе встречные переводы A→B и B→A). После прогона проверяется, что:
+ * - суммарный баланс не изменился (деньги не создаются и не теряются);
+ * - ни один баланс не ушел в минус;
+ * - количество записей истории совпадает с количеством успешных переводов;
+ * - агрегаты расходов за день и за месяц совпадают с историей;
+ * - не было ошибок кроме {@link InsufficientFundsException} (взаимоблокировок, тайм-аутов блокировок);
+ *   в режиме {@link TransferMode#OPTIMISTIC_LOCK} конфликты версий повторяет {@link TransferRetryExecutor},
+ *   а перевод, не уложившийся в попытки, допустим как {@link TransferConflictException}.
+ *
+ * Прогон выполняется для каждого {@link TransferMode}, кроме {@link TransferMode#BALANCE_ENGINE}: движок балансов
+ * открывает журнал при создании и проверяется в {@link BalanceEngineTest}; пропускная способность режимов
+ * и количество повторов выводятся в лог для сравнения.
+ */
+@Slf4j
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:payments;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "payment.transfer.retry.max-attempts=50"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BalanceEngineConfig.class, HistoryJournalConfig.class, RollupConfig.class, PaymentService.class, BalanceEngine.class, CardService.class, OutboxService.class, TransferHistoryService.class, TransferHistoryJournal.class, SpendingRollupService.class, TransferRetryExecutor.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentServiceConcurrencyTest {
+    private static final int CARDS = 4;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 50;
+    private static final Money INITIAL_BALANCE = Money.of(1000);
+
+    @MockitoBean
+    CryptoService cryptoService;
+
+    @MockitoBean
+    UserService userService;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    TransferRetryExecutor transferRetryExecutor;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TransferHistoryRepository transferHistoryRepository;
+
+    @Autowired
+    SpendingRollupRepository spendingRollupRepository;
+
+    Long userId;
+    List<Long> cardIds;
+
+    @BeforeEach
+    void setUp() {
+        User user = userRepository.save(User.builder()
+                .username("hot-cards-owner")
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build());
+        userId = user.getId();
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            Card card = cardRepository.save(Card.builder()
+                    .encryptNumber("encrypted-" + i)
+                    .searchHash("hash-" + i)
+                    .validityPeriod(LocalDate.now().plusYears(5))
+                    .statusCard(StatusCard.ACTIVE)
+                    .balance(INITIAL_BALANCE)
+                    .first8("5555555" + i)
+                    .last4("000" + i)
+                    .user(user)
+                    .build());
+            cardIds.add(card.getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferHistoryRepository.deleteAll();
+        spendingRollupRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = TransferMode.class, names = "BALANCE_ENGINE", mode = EnumSource.Mode.EXCLUDE)
+    void transferMoney_WhenManyThreadsTransferBetweenHotCards_ThenMoneyIsConservedAndNoDeadlocks(TransferMode mode) throws Exception {
+        ReflectionTestUtils.setField(paymentService, "transferMode", mode);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger insufficientFunds = new AtomicInteger();
+        AtomicInteger conflicted = new AtomicInteger();
+        TransferRetryMetricsDto before = transferRetryExecutor.getMetrics();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(CARDS);
+                    int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                    PaymentDto paymentDto = new PaymentDto(cardIds.get(from), cardIds.get(to),
+                            Money.of(random.nextInt(1, 300)), "load");
+                    try {
+                        transferRetryExecutor.execute(() -> paymentService.transferMoney(paymentDto, userId));
+                        succeeded.incrementAndGet();
+                    } catch (InsufficientFundsException e) {
+                        insufficientFunds.incrementAndGet();
+                    } catch (TransferConflictException e) {
+                        conflicted.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        executor.shutdown();
+        TransferRetryMetricsDto after = transferRetryExecutor.getMetrics();
+
+        log.info("mode={} | transfers={} | succeeded={} | insufficientFunds={} | conflicted={} | retries={} | elapsedMs={} | throughput={} tx/s",
+                mode, THREADS * TRANSFERS_PER_THREAD, succeeded.get(), insufficientFunds.get(), conflicted.get(),
+                after.getRetries() - before.getRetries(), elapsedMillis, THREADS * TRANSFERS_PER_THREAD * 1000L / elapsedMillis);
+
+        List<Card> cards = cardRepository.findAllById(cardIds);
+        Money total = cards.stream().map(Card::getBalance).reduce(Money.ZERO, Money::plus);
+
+        assertEquals(0, INITIAL_BALANCE.times(CARDS).compareTo(total));
+        assertTrue(cards.stream().allMatch(card -> card.getBalance().signum() >= 0));
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, succeeded.get() + insufficientFunds.get() + conflicted.get());
+        if (mode != TransferMode.OPTIMISTIC_LOCK) {
+            assertEquals(0, after.getConflicts() - before.getConflicts());
+        }
+        assertEquals(succeeded.get(), transferHistoryRepository.count());
+        assertRollupsMatchHistory();
+    }
+
+    @Test
+    void transferMoneyBatch_WhenBestEffort_ThenHistoryIsBatchInsertedAndMoneyIsConserved() {
+        List<PaymentDto> payments = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            payments.add(new PaymentDto(cardIds.get(i % CARDS), cardIds.get((i + 1) % CARDS), Money.of(400), "sweep"));
+        }
+
+        BatchPaymentResultDto result = paymentService.transferMoneyBatch(payments, BatchPaymentMode.BEST_EFFORT, userId);
+
+        Money total = cardRepository.findAllById(cardIds).stream()
+                .map(Card::getBalance).reduce(Money.ZERO, Money::plus);
+        assertEquals(0, INITIAL_BALANCE.times(CARDS).compareTo(total));
+        assertEquals(payments.size(), result.getSucceeded() + result.getFailed());
+        assertEquals(result.getSucceeded(), transferHistoryRepository.count());
+        assertRollupsMatchHistory();
+    }
+
+    /**
+     * Сумма агрегатов каждого вида (карты и пользователь, дни и месяцы) совпадает с историей переводов
+     */
+    private void assertRollupsMatchHistory() {
+        List<TransferHistory> history = transferHistoryRepository.findAll();
+        Money historyTotal = history.stream().map(TransferHistory::getAmount).reduce(Money.ZERO, Money::plus);
+        List<SpendingRollup> rollups = spendingRollupRepository.findAll();
+
+        for (RollupScope scope : RollupScope.values()) {
+            for (RollupPeriod period : RollupPeriod.values()) {
+                List<SpendingRollup> kind = rollups.stream()
+                        .filter(rollup -> rollup.getId().getScope() == scope && rollup.getId().getPeriod() == period)
+                        .toList();
+                assertEquals(history.size(), kind.stream().mapToLong(SpendingRollup::getTxCount).sum(), scope + " " + period);
+                assertEquals(0, historyTotal.toBigDecimal().compareTo(kind.stream().map(SpendingRollup::getTotalAmount)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add)), scope + " " + period);
+            }
+        }
+    }
+}
@@ -1,19 +1,25 @@
 package com.example.bank_rest_test_task.service;
 
+import com.example.bank_rest_test_task.dto.BatchPaymentItemStatus;
+import com.example.bank_rest_test_task.dto.BatchPaymentMode;
+import com.example.bank_rest_test_task.dto.BatchPaymentResultDto;
 import com.example.bank_rest_test_task.dto.PaymentDto;
 import com.example.bank_rest_test_task.entity.Card;
 import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.TransferHistory;
 import com.example.bank_rest_test_task.entity.User;
 import com.example.bank_rest_test_task.exception.CardBlockedException;
+import com.example.bank_rest_test_task.exception.CardNotFoundException;
 import com.example.bank_rest_test_task.exception.InsufficientFundsException;
+import com.example.bank_rest_test_task.util.money.Money;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -26,19 +32,32 @@ class PaymentServiceTest {
     @Mock
     CardService cardService;
 
-    @InjectMocks
+    @Mock
+    SpendingRollupService spendingRollupService;
+
+    @Mock
+    OutboxService outboxService;
+
+    @Mock
+    BalanceEngine balanceEngine;
+
     PaymentService paymentService;
 
+    @BeforeEach
+    void setUp() {
+        paymentService = new PaymentService(transferHistoryService, cardService, spendingRollupService, outboxService, balanceEngine, TransferMode.PESSIMISTIC_LOCK);
+    }
+
     @Test
     void transferMoney_WhenCardNoBlockNoExpiredAndEnoughMoneyOnCard() {
         Card fromCard = Card.builder()
                 .id(1L)
-                .balance(BigDecimal.valueOf(300))
+                .balance(Money.of(300))
                 .statusCard(StatusCard.ACTIVE)
                 .build();
         Card toCard = Card.builder()
                 .id(2L)
-                .balance(BigDecimal.valueOf(200))
+                .balance(Money.of(200))
                 .statusCard(StatusCard.ACTIVE)
                 .build();
         User user = User.builder()
@@ -49,10 +68,10 @@ class PaymentServiceTest {
         toCard.setUser(user);
         fromCard.setUser(user);
 
-        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), toCard.getId(), BigDecimal.valueOf(200), "Hello");
+        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), toCard.getId(), Money.of(200), "Hello");
 
-        when(cardService.findCardByUserIdAndCardId(fromCard.getId(), user.getId())).thenReturn(fromCard);
-        when(cardService.findCardByUserIdAndCardId(toCard.getId(), user.getId())).thenReturn(toCard);
+        when(cardService.lockUserCards(user.getId(), List.of(fromCard.getId(), toCard.getId())))
+                .thenReturn(Map.of(fromCard.getId(), fromCard, toCard.getId(), toCard));
 
         List<Card> result = paymentService.transferMoney(paymentDto, 1L);
 
@@ -64,26 +83,26 @@ class PaymentServiceTest {
                 .findFirst()
                 .orElseThrow();
 
-        assertEquals(100, updateFromCard.getBalance().intValue());
+        assertEquals(Money.of(100), updateFromCard.getBalance());
 
         Card updateToCard = result.stream()
                 .filter(f -> f.getId().equals(toCard.getId()))
                 .findFirst()
                 .orElseThrow();
 
-        assertEquals(400, updateToCard.getBalance().intValue());
+        assertEquals(Money.of(400), updateToCard.getBalance());
     }
 
     @Test
     void transferMoney_WhenCardNoBlockNoExpiredAndNoEnoughMoneyOnCard_ThenThrowInsufficientFundsException() {
         Card fromCard = Card.builder()
                 .id(1L)
-                .balance(BigDecimal.valueOf(150))
+                .balance(Money.of(150))
                 .statusCard(StatusCard.ACTIVE)
                 .build();
         Card toCard = Card.builder()
                 .id(2L)
-                .balance(BigDecimal.valueOf(200))
+                .balance(Money.of(200))
                 .statusCard(StatusCard.ACTIVE)
                 .build();
         User user = User.builder()
@@ -94,10 +113,10 @@ class PaymentServiceTest {
         toCard.setUser(user);
         fromCard.setUser(user);
 
-        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), toCard.getId(), BigDecimal.valueOf(200), "Hello");
+        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), toCard.getId(), Money.of(200), "Hello");
 
-        when(cardService.findCardByUserIdAndCardId(fromCard.getId(), user.getId())).thenReturn(fromCard);
-        when(cardService.findCardByUserIdAndCardId(toCard.getId(), user.getId())).thenReturn(toCard);
+        when(cardService.lockUserCards(user.getId(), List.of(fromCard.getId(), toCard.getId())))
+                .thenReturn(Map.of(fromCard.getId(), fromCard, toCard.getId(), toCard));
 
         InsufficientFundsException exception = assertThrows(InsufficientFundsException.class,
                 () -> paymentService.transferMoney(paymentDto, user.getId()));
@@ -112,12 +131,12 @@ class PaymentServiceTest {
     void transferMoney_WhenFromCardBlocked_ThenCardBlockedException() {
         Card fromCard = Card.builder()
                 .id(1L)
-                .balance(BigDecimal.valueOf(150))
+                .balance(Money.of(150))
                 .statusCard(StatusCard.BLOCKED)
                 .build();
         Card toCard = Card.builder()
                 .id(2L)
-                .balance(BigDecimal.valueOf(200))
+                .balance(Money.of(200))
                 .statusCard(StatusCard.ACTIVE)
                 .build();
         User user = User.builder()
@@ -128,10 +147,10 @@ class PaymentServiceTest {
         toCard.setUser(user);
         fromCard.setUser(user);
 
-        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), toCard.getId(), BigDecimal.valueOf(200), "Hello");
+        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), toCard.getId(), Money.of(200), "Hello");
 
-        when(cardService.findCardByUserIdAndCardId(fromCard.getId(), user.getId())).thenReturn(fromCard);
-        when(cardService.findCardByUserIdAndCardId(toCard.getId(), user.getId())).thenReturn(toCard);
+        when(cardService.lockUserCards(user.getId(), List.of(fromCard.getId(), toCard.getId())))
+                .thenReturn(Map.of(fromCard.getId(), fromCard, toCard.getId(), toCard));
 
         CardBlockedException exception = assertThrows(CardBlockedException.class,
                 () -> paymentService.transferMoney(paymentDto, user.getId()));
@@ -146,12 +165,12 @@ class PaymentServiceTest {
     void transferMoney_WhenFromCardExpired_ThenCardBlockedException() {
         Card fromCard = Card.builder()
                 .id(1L)
-                .balance(BigDecimal.valueOf(150))
+                .balance(Money.of(150))
                 .statusCard(StatusCard.EXPIRED)
                 .build();
         Card toCard = Card.builder()
                 .id(2L)
-                .balance(BigDecimal.valueOf(200))
+                .balance(Money.of(200))
                 .statusCard(StatusCard.ACTIVE)
                 .build();
         User user = User.builder()
@@ -162,10 +181,10 @@ class PaymentServiceTest {
         toCard.setUser(user);
         fromCard.setUser(user);
 
-        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), toCard.getId(), BigDecimal.valueOf(200), "Hello");
+        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), toCard.getId(), Money.of(200), "Hello");
 
-        when(cardService.findCardByUserIdAndCardId(fromCard.getId(), user.getId())).thenReturn(fromCard);
-        when(cardService.findCardByUserIdAndCardId(toCard.getId(), user.getId())).thenReturn(toCard);
+        when(cardService.lockUserCards(user.getId(), List.of(fromCard.getId(), toCard.getId())))
+                .thenReturn(Map.of(fromCard.getId(), fromCard, toCard.getId(), toCard));
 
         CardBlockedException exception = assertThrows(CardBlockedException.class,
                 () -> paymentService.transferMoney(paymentDto, user.getId()));
@@ -175,11 +194,177 @@ class PaymentServiceTest {
         verify(cardService, never()).saveCard(any());
         verifyNoInteractions(transferHistoryService);
     }
-}
 
+    @Test
+    void transferMoney_WhenToCardNotFoundForUser_ThenThrowCardNotFoundException() {
+        Card fromCard = Card.builder()
+                .id(1L)
+                .balance(Money.of(300))
+                .statusCard(StatusCard.ACTIVE)
+                .build();
+
+        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), 2L, Money.of(200), "Hello");
+
+        when(cardService.lockUserCards(1L, List.of(fromCard.getId(), 2L))).thenReturn(Map.of(fromCard.getId(), fromCard));
 
+        CardNotFoundException exception = assertThrows(CardNotFoundException.class,
+                () -> paymentService.transferMoney(paymentDto, 1L));
 
+        assertEquals("Card by id: 2 not found for user 1", exception.getMessage());
+        assertEquals(Money.of(300), fromCard.getBalance());
+        verify(cardService, never()).saveCard(any());
+        verifyNoInteractions(transferHistoryService);
+    }
+
+    @Test
+    void transferMoney_WhenConditionalUpdateModeAndUpdatesApplied_ThenReturnReloadedCards() {
+        paymentService = new PaymentService(transferHistoryService, cardService, spendingRollupService, outboxService, balanceEngine, TransferMode.CONDITIONAL_UPDATE);
+        User user = User.builder().id(1L).build();
+        Card fromCard = Card.builder().id(2L).balance(Money.of(100)).statusCard(StatusCard.ACTIVE).user(user).build();
+        Card toCard = Card.builder().id(1L).balance(Money.of(400)).statusCard(StatusCard.ACTIVE).user(user).build();
+        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), toCard.getId(), Money.of(200), "Hello");
+
+        when(cardService.tryCreditCard(toCard.getId(), user.getId(), paymentDto.amount())).thenReturn(true);
+        when(cardService.tryDebitCard(fromCard.getId(), user.getId(), paymentDto.amount())).thenReturn(true);
+        when(cardService.findCardsByIds(List.of(fromCard.getId(), toCard.getId()))).thenReturn(List.of(toCard, fromCard));
+
+        List<Card> result = paymentService.transferMoney(paymentDto, user.getId());
+
+        assertEquals(List.of(fromCard, toCard), result);
+        var inOrder = inOrder(cardService);
+        inOrder.verify(cardService).tryCreditCard(toCard.getId(), user.getId(), paymentDto.amount());
+        inOrder.verify(cardService).tryDebitCard(fromCard.getId(), user.getId(), paymentDto.amount());
+        verify(transferHistoryService).saveTransferHistory(argThat(history ->
+                history.getFromCard() == fromCard && history.getToCard() == toCard && history.getUser() == user));
+        verify(cardService, never()).lockUserCards(any(), any());
+        verify(cardService, never()).saveCard(any());
+    }
 
+    @Test
+    void transferMoney_WhenConditionalUpdateModeAndDebitNotApplied_ThenThrowInsufficientFundsException() {
+        paymentService = new PaymentService(transferHistoryService, cardService, spendingRollupService, outboxService, balanceEngine, TransferMode.CONDITIONAL_UPDATE);
+        Card fromCard = Card.builder().id(1L).balance(Money.of(150)).statusCard(StatusCard.ACTIVE).build();
+        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), 2L, Money.of(200), "Hello");
 
+        when(cardService.tryDebitCard(fromCard.getId(), 1L, paymentDto.amount())).thenReturn(false);
+        when(cardService.findCardByUserIdAndCardId(fromCard.getId(), 1L)).thenReturn(fromCard);
 
+        InsufficientFundsException exception = assertThrows(InsufficientFundsException.class,
+                () -> paymentService.transferMoney(paymentDto, 1L));
 
+        assertEquals("There are not enough funds on the card", exception.getMessage());
+        verify(cardService, never()).tryCreditCard(any(), any(), any());
+        verifyNoInteractions(transferHistoryService);
+    }
+
+    @Test
+    void transferMoney_WhenConditionalUpdateModeAndToCardBlocked_ThenThrowCardBlockedException() {
+        paymentService = new PaymentService(transferHistoryService, cardService, spendingRollupService, outboxService, balanceEngine, TransferMode.CONDITIONAL_UPDATE);
+        Card toCard = Card.builder().id(2L).balance(Money.of(150)).statusCard(StatusCard.BLOCKED).build();
+        PaymentDto paymentDto = new PaymentDto(1L, toCard.getId(), Money.of(100), "Hello");
+
+        when(cardService.tryDebitCard(1L, 1L, paymentDto.amount())).thenReturn(true);
+        when(cardService.tryCreditCard(toCard.getId(), 1L, paymentDto.amount())).thenReturn(false);
+        when(cardService.findCardByUserIdAndCardId(toCard.getId(), 1L)).thenReturn(toCard);
+
+        CardBlockedException exception = assertThrows(CardBlockedException.class,
+                () -> paymentService.transferMoney(paymentDto, 1L));
+
+        assertEquals("Card by id: 2 is blocked for operation", exception.getMessage());
+        verifyNoInteractions(transferHistoryService);
+    }
+
+    @Test
+    void transferMoney_WhenBalanceEngineMode_ThenReturnCopiesWithEngineBalances() {
+        paymentService = new PaymentService(transferHistoryService, cardService, spendingRollupService, outboxService, balanceEngine, TransferMode.BALANCE_ENGINE);
+        User user = User.builder().id(1L).build();
+        Card fromCard = Card.builder().id(1L).balance(Money.of(300)).statusCard(StatusCard.ACTIVE).user(user).build();
+        Card toCard = Card.builder().id(2L).balance(Money.of(200)).statusCard(StatusCard.ACTIVE).user(user).build();
+        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), toCard.getId(), Money.of(200), "Hello");
+
+        when(cardService.findUserCards(user.getId(), List.of(fromCard.getId(), toCard.getId())))
+                .thenReturn(Map.of(fromCard.getId(), fromCard, toCard.getId(), toCard));
+        doAnswer(invocation -> {
+            invocation.<TransferHistory>getArgument(0).setId(10L);
+            return null;
+        }).when(transferHistoryService).saveTransferHistory(any());
+        when(balanceEngine.transfer(List.of(new BalanceEngine.Movement(10L, 1L, 2L, paymentDto.amount()))))
+                .thenReturn(Map.of(1L, Money.of("1000.0000"), 2L, Money.of("500.0000")));
+
+        List<Card> result = paymentService.transferMoney(paymentDto, user.getId());
+
+        assertEquals(0, Money.of("1000").compareTo(result.get(0).getBalance()));
+        assertEquals(0, Money.of("500").compareTo(result.get(1).getBalance()));
+        assertNotSame(fromCard, result.get(0));
+        assertEquals(Money.of(300), fromCard.getBalance());
+        verify(cardService, never()).lockUserCards(any(), any());
+        verify(cardService, never()).saveCard(any());
+    }
+
+    @Test
+    void transferMoney_WhenBalanceEngineModeAndCardBlocked_ThenThrowCardBlockedExceptionWithoutEngine() {
+        paymentService = new PaymentService(transferHistoryService, cardService, spendingRollupService, outboxService, balanceEngine, TransferMode.BALANCE_ENGINE);
+        Card fromCard = Card.builder().id(1L).balance(Money.of(300)).statusCard(StatusCard.ACTIVE).build();
+        Card toCard = Card.builder().id(2L).balance(Money.of(200)).statusCard(StatusCard.BLOCKED).build();
+        PaymentDto paymentDto = new PaymentDto(fromCard.getId(), toCard.getId(), Money.of(10), "Hello");
+
+        when(cardService.findUserCards(1L, List.of(fromCard.getId(), toCard.getId())))
+                .thenReturn(Map.of(fromCard.getId(), fromCard, toCard.getId(), toCard));
+
+        CardBlockedException exception = assertThrows(CardBlockedException.class,
+                () -> paymentService.transferMoney(paymentDto, 1L));
+
+        assertEquals("Card by id: 2 is blocked for operation", exception.getMessage());
+        verifyNoInteractions(balanceEngine, transferHistoryService);
+    }
+
+    @Test
+    void transferMoneyBatch_WhenBestEffortAndOneTransferHasNoFunds_ThenApplyOthersWithNetBalances() {
+        User user = User.builder().id(1L).build();
+        Card card1 = Card.builder().id(1L).balance(Money.of(100)).statusCard(StatusCard.ACTIVE).user(user).build();
+        Card card2 = Card.builder().id(2L).balance(Money.of(50)).statusCard(StatusCard.ACTIVE).user(user).build();
+        List<PaymentDto> payments = List.of(
+                new PaymentDto(1L, 2L, Money.of(80), "first"),
+                new PaymentDto(1L, 2L, Money.of(80), "no funds"),
+                new PaymentDto(2L, 1L, Money.of(30), "back"));
+
+        when(cardService.lockUserCards(eq(user.getId()), anyCollection())).thenReturn(Map.of(1L, card1, 2L, card2));
+
+        BatchPaymentResultDto result = paymentService.transferMoneyBatch(payments, BatchPaymentMode.BEST_EFFORT, user.getId());
+
+        assertTrue(result.isCommitted());
+        assertEquals(2, result.getSucceeded());
+        assertEquals(1, result.getFailed());
+        assertEquals(List.of(BatchPaymentItemStatus.SUCCESS, BatchPaymentItemStatus.FAILED, BatchPaymentItemStatus.SUCCESS),
+                result.getItems().stream().map(item -> item.getStatus()).toList());
+        assertEquals("There are not enough funds on the card", result.getItems().get(1).getMessage());
+        assertEquals(Money.of(50), card1.getBalance());
+        assertEquals(Money.of(100), card2.getBalance());
+        verify(cardService, times(1)).lockUserCards(eq(user.getId()), anyCollection());
+        verify(transferHistoryService).saveAllTransferHistory(argThat(histories -> histories.size() == 2));
+        verify(spendingRollupService).recordTransfers(argThat(histories -> histories.size() == 2));
+    }
+
+    @Test
+    void transferMoneyBatch_WhenAllOrNothingAndOneTransferFails_ThenApplyNothing() {
+        User user = User.builder().id(1L).build();
+        Card card1 = Card.builder().id(1L).balance(Money.of(100)).statusCard(StatusCard.ACTIVE).user(user).build();
+        Card card2 = Card.builder().id(2L).balance(Money.of(50)).statusCard(StatusCard.BLOCKED).user(user).build();
+        List<PaymentDto> payments = List.of(
+                new PaymentDto(1L, 3L, Money.of(10), "unknown card"),
+                new PaymentDto(1L, 2L, Money.of(10), "blocked"));
+
+        when(cardService.lockUserCards(eq(user.getId()), anyCollection())).thenReturn(Map.of(1L, card1, 2L, card2));
+
+        BatchPaymentResultDto result = paymentService.transferMoneyBatch(payments, null, user.getId());
+
+        assertFalse(result.isCommitted());
+        assertEquals(BatchPaymentMode.ALL_OR_NOTHING, result.getMode());
+        assertEquals(List.of(BatchPaymentItemStatus.FAILED, BatchPaymentItemStatus.ROLLED_BACK),
+                result.getItems().stream().map(item -> item.getStatus()).toList());
+        assertEquals("Card by id: 3 not found for user 1", result.getItems().get(0).getMessage());
+        assertEquals(Money.of(100), card1.getBalance());
+        assertEquals(Money.of(50), card2.getBalance());
+        verifyNoInteractions(transferHistoryService);
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.config.BalanceEngineConfig;
+import com.example.bank_rest_test_task.config.HistoryJournalConfig;
+import com.example.bank_rest_test_task.config.RollupConfig;
+import com.example.bank_rest_test_task.dto.BatchPaymentMode;
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.dto.RollupBackfillResultDto;
+import com.example.bank_rest_test_task.dto.SpendingAnalyticsFilter;
+import com.example.bank_rest_test_task.dto.SpendingRollupDto;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.RollupPeriod;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.exception.InvalidRollupRangeException;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.SpendingRollupRepository;
+import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
+import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.money.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка агрегатов расходов: изменение в транзакции перевода, чтение аналитики и перестроение из истории.
+ *
+ * Размер диапазона перестроения - один пользователь, поэтому каждый пользователь обрабатывается
+ * отдельной параллельной задачей.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:spending-rollups;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "payment.rollup.zone=UTC",
+        "payment.rollup.backfill.threads=2",
+        "payment.rollup.backfill.chunk-users=1"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BalanceEngineConfig.class, HistoryJournalConfig.class, RollupConfig.class, PaymentService.class, BalanceEngine.class, CardService.class, OutboxService.class, TransferHistoryService.class, TransferHistoryJournal.class, SpendingRollupService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SpendingRollupServiceTest {
+    private static final LocalDate PAST_DAY = LocalDate.now(ZoneOffset.UTC).minusDays(40);
+
+    @MockitoBean
+    CryptoService cryptoService;
+
+    @MockitoBean
+    UserService userService;
+
+    @Autowired
+    SpendingRollupService spendingRollupService;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    SpendingRollupRepository spendingRollupRepository;
+
+    @Autowired
+    TransferHistoryRepository transferHistoryRepository;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    User alice;
+    User bob;
+    Card aliceFirst;
+    Card aliceSecond;
+    Card bobCard;
+
+    @BeforeEach
+    void setUp() {
+        alice = userRepository.save(user("rollup-alice"));
+        bob = userRepository.save(user("rollup-bob"));
+        aliceFirst = cardRepository.save(card(alice, 1));
+        aliceSecond = cardRepository.save(card(alice, 2));
+        bobCard = cardRepository.save(card(bob, 3));
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferHistoryRepository.deleteAll();
+        spendingRollupRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void transferMoney_ThenDailyAndMonthlyRollupsOfCardAndUserUpdated() {
+        paymentService.transferMoney(new PaymentDto(aliceFirst.getId(), aliceSecond.getId(), Money.of("10.00"), null), alice.getId());
+        paymentService.transferMoney(new PaymentDto(aliceFirst.getId(), aliceSecond.getId(), Money.of("30.00"), null), alice.getId());
+        paymentService.transferMoney(new PaymentDto(aliceSecond.getId(), aliceFirst.getId(), Money.of("5.00"), null), alice.getId());
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        SpendingRollupDto userDay = single(spendingRollupService.getUserSpending(alice.getId(), filter(RollupPeriod.DAY, today)));
+        assertEquals(today, userDay.periodStart());
+        assertRollup(userDay, 3, "45.00", "5.00", "30.00");
+
+        SpendingRollupDto cardMonth = single(spendingRollupService.getUserCardSpending(alice.getId(), aliceFirst.getId(),
+                filter(RollupPeriod.MONTH, today)));
+        assertEquals(today.withDayOfMonth(1), cardMonth.periodStart());
+        assertRollup(cardMonth, 2, "40.00", "10.00", "30.00");
+
+        assertTrue(spendingRollupService.getUserCardSpending(bob.getId(), aliceFirst.getId(), filter(RollupPeriod.DAY, today)).isEmpty());
+        assertRollup(single(spendingRollupService.getCardSpending(aliceSecond.getId(), filter(RollupPeriod.DAY, today))),
+                1, "5.00", "5.00", "5.00");
+    }
+
+    @Test
+    void transferMoneyBatch_ThenRollupsContainOnlySucceededTransfers() {
+        paymentService.transferMoneyBatch(List.of(
+                new PaymentDto(aliceFirst.getId(), aliceSecond.getId(), Money.of("60.00"), null),
+                new PaymentDto(aliceFirst.getId(), aliceSecond.getId(), Money.of("500.00"), null),
+                new PaymentDto(aliceFirst.getId(), aliceSecond.getId(), Money.of("20.00"), null)),
+                BatchPaymentMode.BEST_EFFORT, alice.getId());
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        assertRollup(single(spendingRollupService.getUserSpending(alice.getId(), filter(RollupPeriod.DAY, today))),
+                2, "80.00", "20.00", "60.00");
+    }
+
+    @Test
+    void backfill_WhenHistoryWithoutRollups_ThenRollupsBuiltInParallelChunks() {
+        saveHistory(aliceFirst, "10.00", PAST_DAY);
+        saveHistory(aliceFirst, "25.00", PAST_DAY);
+        saveHistory(aliceSecond, "7.00", PAST_DAY.plusDays(1));
+        saveHistory(bobCard, "3.00", PAST_DAY);
+
+        RollupBackfillResultDto result = spendingRollupService.backfill(PAST_DAY, PAST_DAY.plusDays(2), 1L);
+
+        assertEquals(4, result.getTransfers());
+        assertEquals(bob.getId() - alice.getId() + 1, result.getChunks());
+        List<SpendingRollupDto> aliceDays = spendingRollupService.getUserSpending(alice.getId(),
+                SpendingAnalyticsFilter.builder().period(RollupPeriod.DAY).from(PAST_DAY).to(PAST_DAY.plusDays(2)).build());
+        assertEquals(2, aliceDays.size());
+        assertRollup(aliceDays.get(0), 2, "35.00", "10.00", "25.00");
+        assertRollup(aliceDays.get(1), 1, "7.00", "7.00", "7.00");
+        assertRollup(single(spendingRollupService.getCardSpending(bobCard.getId(), filter(RollupPeriod.DAY, PAST_DAY))),
+                1, "3.00", "3.00", "3.00");
+        assertMonthlyMatchesDaily(alice.getId());
+    }
+
+    @Test
+    void backfill_WhenRollupsPartiallyRecordedAndRunTwice_ThenNoDoubleCounting() {
+        TransferHistory recorded = saveHistory(aliceFirst, "40.00", PAST_DAY);
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> spendingRollupService.recordTransfers(List.of(recorded)));
+        saveHistory(aliceFirst, "2.00", PAST_DAY);
+
+        spendingRollupService.backfill(PAST_DAY, PAST_DAY.plusDays(1), 1L);
+        spendingRollupService.backfill(PAST_DAY, PAST_DAY.plusDays(1), 1L);
+
+        assertRollup(single(spendingRollupService.getUserSpending(alice.getId(), filter(RollupPeriod.DAY, PAST_DAY))),
+                2, "42.00", "2.00", "40.00");
+        assertRollup(single(spendingRollupService.getUserCardSpending(alice.getId(), aliceFirst.getId(), filter(RollupPeriod.MONTH, PAST_DAY))),
+                2, "42.00", "2.00", "40.00");
+    }
+
+    @Test
+    void backfill_WhenRangeIncludesCurrentDay_ThenInvalidRollupRangeException() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        assertThrows(InvalidRollupRangeException.class, () -> spendingRollupService.backfill(today, today.plusDays(1), 1L));
+        assertThrows(InvalidRollupRangeException.class, () -> spendingRollupService.backfill(PAST_DAY, PAST_DAY, 1L));
+    }
+
+    private void assertMonthlyMatchesDaily(Long userId) {
+        SpendingAnalyticsFilter days = SpendingAnalyticsFilter.builder()
+                .period(RollupPeriod.DAY).from(PAST_DAY.withDayOfMonth(1)).to(PAST_DAY.withDayOfMonth(1).plusMonths(2)).build();
+        SpendingAnalyticsFilter months = SpendingAnalyticsFilter.builder()
+                .period(RollupPeriod.MONTH).from(days.getFrom()).to(days.getTo()).build();
+        List<SpendingRollupDto> daily = spendingRollupService.getUserSpending(userId, days);
+        List<SpendingRollupDto> monthly = spendingRollupService.getUserSpending(userId, months);
+
+        assertEquals(daily.stream().mapToLong(SpendingRollupDto::count).sum(), monthly.stream().mapToLong(SpendingRollupDto::count).sum());
+        assertEquals(0, daily.stream().map(SpendingRollupDto::total).reduce(BigDecimal.ZERO, BigDecimal::add)
+                .compareTo(monthly.stream().map(SpendingRollupDto::total).reduce(BigDecimal.ZERO, BigDecimal::add)));
+    }
+
+    private static void assertRollup(SpendingRollupDto rollup, long count, String total, String min, String max) {
+        assertEquals(count, rollup.count());
+        assertEquals(0, new BigDecimal(total).compareTo(rollup.total()), "total");
+        assertEquals(0, new BigDecimal(min).compareTo(rollup.min()), "min");
+        assertEquals(0, new BigDecimal(max).compareTo(rollup.max()), "max");
+    }
+
+    private static SpendingRollupDto single(List<SpendingRollupDto> rollups) {
+        assertEquals(1, rollups.size(), rollups.toString());
+        return rollups.get(0);
+    }
+
+    private static SpendingAnalyticsFilter filter(RollupPeriod period, LocalDate day) {
+        return SpendingAnalyticsFilter.builder().period(period).from(period.periodStart(day)).to(day.plusDays(1)).build();
+    }
+
+    private TransferHistory saveHistory(Card from, String amount, LocalDate day) {
+        return transferHistoryRepository.save(TransferHistory.builder()
+                .fromCard(from)
+                .toCard(from)
+                .user(from.getUser())
+                .amount(Money.of(amount))
+                .timestamp(day.atTime(12, 0).atOffset(ZoneOffset.UTC))
+                .comment("backfill")
+                .build());
+    }
+
+    private static Card card(User owner, int i) {
+        return Card.builder()
+                .encryptNumber("rollup-encrypted-" + i)
+                .searchHash("rollup-hash-" + i)
+                .validityPeriod(LocalDate.now().plusYears(5))
+                .statusCard(StatusCard.ACTIVE)
+                .balance(Money.of(100))
+                .first8("55555555")
+                .last4("000" + i)
+                .user(owner)
+                .build();
+    }
+
+    private static User user(String username) {
+        return User.builder()
+                .username(username)
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build();
+    }
+}
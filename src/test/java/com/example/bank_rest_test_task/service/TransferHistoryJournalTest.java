@@ -0,0 +1,324 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.config.BalanceEngineConfig;
+import com.example.bank_rest_test_task.config.HistoryJournalConfig;
+import com.example.bank_rest_test_task.config.RollupConfig;
+import com.example.bank_rest_test_task.dto.BatchPaymentMode;
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.TransferHistory;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.exception.InsufficientFundsException;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.SpendingRollupRepository;
+import com.example.bank_rest_test_task.repository.TransferHistoryRepository;
+import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.money.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка записи истории переводов через журнал ({@link HistoryWriteMode#JOURNAL}).
+ *
+ * Переводы фиксируются без вставки в {@code transfers_history}; после переноса история совпадает с переводами.
+ * Записи откатившейся после записи в журнал транзакции не переносятся, а после перезапуска необработанные
+ * записи переносятся без повторной вставки уже перенесенных строк.
+ */
+@Slf4j
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:history-journal;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "payment.history.write-mode=JOURNAL",
+        "payment.history.journal.segment-size=65536",
+        "payment.history.journal.drain-interval=PT1H",
+        "payment.history.journal.drain-batch-size=16"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BalanceEngineConfig.class, HistoryJournalConfig.class, RollupConfig.class, PaymentService.class, BalanceEngine.class, CardService.class, OutboxService.class,
+        TransferHistoryService.class, TransferHistoryJournal.class, SpendingRollupService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransferHistoryJournalTest {
+    private static final int CARDS = 4;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 50;
+    private static final Money INITIAL_BALANCE = Money.of(1000);
+
+    @TempDir
+    static Path journalDir;
+
+    @TempDir
+    Path recoveryDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("payment.history.journal.dir", journalDir::toString);
+    }
+
+    @MockitoBean
+    CryptoService cryptoService;
+
+    @MockitoBean
+    UserService userService;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    TransferHistoryJournal transferHistoryJournal;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TransferHistoryRepository transferHistoryRepository;
+
+    @Autowired
+    SpendingRollupRepository spendingRollupRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ScheduledExecutorService historyJournalDrainer;
+
+    User user;
+    List<Card> cards;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("journal-owner")
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build());
+        cards = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            cards.add(cardRepository.save(Card.builder()
+                    .encryptNumber("encrypted-" + i)
+                    .searchHash("journal-hash-" + i)
+                    .validityPeriod(OffsetDateTime.now().plusYears(5).toLocalDate())
+                    .statusCard(StatusCard.ACTIVE)
+                    .balance(INITIAL_BALANCE)
+                    .first8("5555555" + i)
+                    .last4("000" + i)
+                    .user(user)
+                    .build()));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferHistoryJournal.drain();
+        transferHistoryRepository.deleteAll();
+        spendingRollupRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void transferMoney_WhenJournal_ThenHistoryInsertedOnlyByDrain() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(CARDS);
+                    int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                    try {
+                        paymentService.transferMoney(new PaymentDto(cards.get(from).getId(), cards.get(to).getId(),
+                                Money.of(random.nextInt(1, 300)), "journal"), user.getId());
+                        succeeded.incrementAndGet();
+                    } catch (InsufficientFundsException e) {
+                        // ожидаемо при случайных суммах
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        executor.shutdown();
+        log.info("mode=JOURNAL | transfers={} | succeeded={} | elapsedMs={} | throughput={} tx/s",
+                THREADS * TRANSFERS_PER_THREAD, succeeded.get(), elapsedMillis, THREADS * TRANSFERS_PER_THREAD * 1000L / elapsedMillis);
+
+        assertEquals(0, transferHistoryRepository.count());
+
+        long drained = transferHistoryJournal.drain();
+
+        assertEquals(succeeded.get(), drained);
+        assertEquals(succeeded.get(), transferHistoryRepository.count());
+        Money spent = transferHistoryRepository.findAll().stream()
+                .map(TransferHistory::getAmount).reduce(Money.ZERO, Money::plus);
+        BigDecimal rolledUp = jdbcTemplate.queryForObject(
+                "select coalesce(sum(total_amount), 0) from spending_rollups where scope = 'USER' and period = 'DAY'", BigDecimal.class);
+        assertEquals(0, spent.toBigDecimal().compareTo(rolledUp));
+    }
+
+    @Test
+    void transferMoneyBatch_WhenJournal_ThenOneRecordWithPreassignedIds() {
+        List<PaymentDto> payments = List.of(
+                new PaymentDto(cards.get(0).getId(), cards.get(1).getId(), Money.of(10), "first"),
+                new PaymentDto(cards.get(1).getId(), cards.get(2).getId(), Money.of(1), null));
+
+        paymentService.transferMoneyBatch(payments, BatchPaymentMode.ALL_OR_NOTHING, user.getId());
+        transferHistoryJournal.drain();
+
+        List<TransferHistory> history = transferHistoryRepository.findAll();
+        assertEquals(2, history.size());
+        assertEquals(2, history.stream().map(TransferHistory::getId).distinct().count());
+        assertTrue(history.stream().anyMatch(entry -> "first".equals(entry.getComment())));
+        assertTrue(history.stream().anyMatch(entry -> entry.getComment() == null));
+    }
+
+    @Test
+    void drain_WhenCommitFailedAfterJournal_ThenEntriesSkipped() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            transferHistoryJournal.append(List.of(history(Money.of(10))));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    throw new IllegalStateException("commit failed");
+                }
+            });
+        }));
+        transactionTemplate.executeWithoutResult(status -> transferHistoryJournal.append(List.of(history(Money.of(1)))));
+
+        transferHistoryJournal.drain();
+
+        List<TransferHistory> history = transferHistoryRepository.findAll();
+        assertEquals(1, history.size());
+        assertEquals(Money.of(1), history.get(0).getAmount());
+    }
+
+    @Test
+    void drain_WhenReopenedAfterCrash_ThenUndrainedReplayedWithoutDuplicates() throws MetaDataAccessException {
+        TransferHistoryJournal crashed = journal(recoveryDir);
+        List<TransferHistory> entries = List.of(history(Money.of(1)), history(Money.of(2)), history(Money.of(10)));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> crashed.append(entries));
+        // Первая запись успела попасть в базу, но отметка обработки в журнале не сохранилась
+        jdbcTemplate.update("insert into transfers_history (id, from_card_id, to_card_id, user_id, amount, \"timestamp\", comment) "
+                        + "values (?, ?, ?, ?, ?, ?, ?)", entries.get(0).getId(), cards.get(0).getId(), cards.get(1).getId(),
+                user.getId(), BigDecimal.ONE, entries.get(0).getTimestamp(), null);
+
+        TransferHistoryJournal recovered = journal(recoveryDir);
+        long replayed = recovered.drain();
+
+        assertEquals(2, replayed);
+        assertEquals(entries.stream().map(TransferHistory::getId).sorted().toList(),
+                transferHistoryRepository.findAll().stream().map(TransferHistory::getId).sorted().toList());
+        assertEquals(0, journal(recoveryDir).drain());
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from transfer_history_journal_commits", Long.class));
+    }
+
+    @Test
+    void drain_WhenRestartedBeforeCommit_ThenUncommittedEntriesDropped() throws Exception {
+        TransferHistoryJournal crashed = journal(recoveryDir);
+        CountDownLatch journaled = new CountDownLatch(1);
+        CountDownLatch recovered = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        // Запись добавлена в журнал, но транзакция не зафиксирована к моменту перезапуска
+        Future<?> transfer = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            crashed.append(List.of(history(Money.of(5))));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    journaled.countDown();
+                    try {
+                        recovered.await(1, TimeUnit.MINUTES);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException("process stopped");
+                }
+            });
+        }));
+        try {
+            assertTrue(journaled.await(1, TimeUnit.MINUTES));
+
+            assertEquals(0, journal(recoveryDir).drain());
+        } finally {
+            recovered.countDown();
+            executor.shutdown();
+        }
+
+        assertThrows(Exception.class, () -> transfer.get(1, TimeUnit.MINUTES));
+        assertEquals(0, transferHistoryRepository.count());
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from transfer_history_journal_commits", Long.class));
+    }
+
+    private TransferHistoryJournal journal(Path dir) throws MetaDataAccessException {
+        return new TransferHistoryJournal(HistoryWriteMode.JOURNAL, jdbcTemplate, dataSource, transactionManager,
+                historyJournalDrainer, dir, 65536, true, Duration.ofHours(1), 16);
+    }
+
+    private TransferHistory history(Money amount) {
+        return TransferHistory.builder()
+                .fromCard(cards.get(0))
+                .toCard(cards.get(1))
+                .user(user)
+                .amount(amount)
+                .timestamp(OffsetDateTime.now(ZoneOffset.UTC))
+                .build();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.util.CryptoService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка обслуживания партиций истории переводов.
+ *
+ * H2 не поддерживает разбиение таблиц, поэтому DDL партиций проверяется как текст, а архивирование -
+ * на обычной таблице с именем отсоединенной партиции.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:history-partitions;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TransferHistoryPartitionService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransferHistoryPartitionServiceTest {
+    private static final String PARTITION = "transfers_history_p2020_01";
+
+    @TempDir
+    static Path archiveDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("payment.history.archive.dir", archiveDir::toString);
+    }
+
+    @MockitoBean
+    CryptoService cryptoService;
+
+    @Autowired
+    TransferHistoryPartitionService partitionService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("drop table if exists " + PARTITION);
+    }
+
+    @Test
+    void createPartitionSql_ThenMonthBoundsInUtc() {
+        assertEquals("create table if not exists transfers_history_p2026_12 partition of transfers_history "
+                        + "for values from ('2026-12-01T00:00Z') to ('2027-01-01T00:00Z')",
+                TransferHistoryPartitionService.createPartitionSql(YearMonth.of(2026, 12)));
+    }
+
+    @Test
+    void partitionMonth_ThenOnlyMonthlyPartitionNamesParsed() {
+        assertEquals(Optional.of(YearMonth.of(2024, 3)), TransferHistoryPartitionService.partitionMonth("transfers_history_p2024_03"));
+        assertEquals("transfers_history_p2024_03", TransferHistoryPartitionService.partitionName(YearMonth.of(2024, 3)));
+        assertTrue(TransferHistoryPartitionService.partitionMonth("transfers_history_default").isEmpty());
+        assertTrue(TransferHistoryPartitionService.partitionMonth("transfers_history_p2024_13").isEmpty());
+        assertTrue(TransferHistoryPartitionService.partitionMonth("transfers_history_p2024_03; drop table users").isEmpty());
+    }
+
+    @Test
+    void archivePartition_ThenCompressedCsvWrittenAndTableDropped() throws IOException {
+        jdbcTemplate.execute("create table " + PARTITION + " (id bigint primary key, from_card_id bigint not null, "
+                + "to_card_id bigint not null, user_id bigint not null, amount numeric(19, 4) not null, "
+                + "\"timestamp\" timestamp with time zone not null, comment varchar(255))");
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= 500; i++) {
+            rows.add(new Object[]{i, 10L, 20L, 7L, new BigDecimal("1.5000"),
+                    OffsetDateTime.of(2020, 1, 1 + i % 28, 12, 0, 0, 0, ZoneOffset.UTC), i == 1 ? "rent, \"May\"" : null});
+        }
+        jdbcTemplate.batchUpdate("insert into " + PARTITION + " values (?, ?, ?, ?, ?, ?, ?)", rows);
+
+        long archived = partitionService.archivePartition(PARTITION);
+
+        assertEquals(500, archived);
+        Path archive = archiveDir.resolve(PARTITION + ".csv.gz");
+        String[] lines;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(archive))) {
+            lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n");
+        }
+        assertEquals(501, lines.length);
+        assertEquals("id,userId,fromCardId,toCardId,amount,timestamp,comment", lines[0]);
+        assertEquals("1,7,10,20,1.5000,2020-01-02T12:00Z,\"rent, \"\"May\"\"\"", lines[1]);
+        assertFalse(Files.exists(archiveDir.resolve(PARTITION + ".csv.gz.tmp")));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.tables where lower(table_name) = ?", Integer.class, PARTITION));
+    }
+
+    @Test
+    void maintainPartitions_WhenNotPostgres_ThenNothingChanged() {
+        partitionService.maintainPartitions();
+
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.tables where lower(table_name) like 'transfers_history_p%'", Integer.class));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.example.bank_rest_test_task.dto.TransferLaneMetricsDto;
+import com.example.bank_rest_test_task.exception.InsufficientFundsException;
+import com.example.bank_rest_test_task.exception.TransferLaneBusyException;
+import com.example.bank_rest_test_task.util.money.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferLaneExecutorTest {
+    TransferLaneExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (executor != null) {
+            executor.close();
+        }
+    }
+
+    @Test
+    void execute_WhenTransfersShareLowerCard_ThenRunOneAtATime() throws Exception {
+        executor = new TransferLaneExecutor(true, 4, 100);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 40; i++) {
+            int number = i;
+            PaymentDto payment = new PaymentDto(5L, 100L + i, Money.of(1), "hot");
+            futures.add(callers.submit(() -> executor.execute(payment, () -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                order.add(number);
+                sleep(1);
+                inFlight.decrementAndGet();
+                return number;
+            })));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i, futures.get(i).get(30, TimeUnit.SECONDS));
+        }
+        callers.shutdown();
+
+        assertEquals(1, maxInFlight.get());
+        assertEquals(40, order.size());
+        TransferLaneMetricsDto lane = executor.getMetrics().get(executor.laneOf(5L));
+        assertEquals(40, lane.getCompleted());
+        assertTrue(lane.getAverageLatencyMillis() >= lane.getAverageWaitMillis());
+    }
+
+    @Test
+    void execute_WhenLaneQueueFull_ThenRejectedWithoutWaiting() throws Exception {
+        executor = new TransferLaneExecutor(true, 1, 1);
+        PaymentDto payment = new PaymentDto(1L, 2L, Money.of(1), "hot");
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+
+        Future<String> first = callers.submit(() -> executor.execute(payment, () -> {
+            running.countDown();
+            await(release);
+            return "first";
+        }));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        Future<String> queued = callers.submit(() -> executor.execute(payment, () -> "queued"));
+        while (executor.getMetrics().get(0).getQueueDepth() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(TransferLaneBusyException.class, () -> executor.execute(payment, () -> "rejected"));
+        TransferLaneMetricsDto lane = executor.getMetrics().get(0);
+        assertEquals(1, lane.getQueueDepth());
+        assertEquals(1, lane.getRejected());
+
+        release.countDown();
+        assertEquals("first", first.get(10, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(10, TimeUnit.SECONDS));
+        callers.shutdown();
+    }
+
+    @Test
+    void execute_WhenTransferFails_ThenCallerGetsSameException() {
+        executor = new TransferLaneExecutor(true, 2, 10);
+        InsufficientFundsException error = new InsufficientFundsException("There are not enough funds on the card");
+
+        InsufficientFundsException thrown = assertThrows(InsufficientFundsException.class,
+                () -> executor.execute(new PaymentDto(3L, 4L, Money.of(1), "fail"), () -> {
+                    throw error;
+                }));
+
+        assertSame(error, thrown);
+    }
+
+    @Test
+    void execute_WhenDisabled_ThenRunsInCallerThread() {
+        executor = new TransferLaneExecutor(false, 4, 10);
+        Thread caller = Thread.currentThread();
+
+        Thread executedOn = executor.execute(new PaymentDto(1L, 2L, Money.of(1), "inline"), Thread::currentThread);
+
+        assertSame(caller, executedOn);
+        assertTrue(executor.getMetrics().isEmpty());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.dto.TransferRetryMetricsDto;
+import com.example.bank_rest_test_task.exception.InsufficientFundsException;
+import com.example.bank_rest_test_task.exception.TransferConflictException;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferRetryExecutorTest {
+    TransferRetryExecutor executor = new TransferRetryExecutor(TransferMode.OPTIMISTIC_LOCK, 3,
+            Duration.ofMillis(1), Duration.ofMillis(2));
+
+    @Test
+    void execute_WhenConflictThenSuccess_ThenRetriedAndResultReturned() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = executor.execute(() -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Card", 1L);
+            }
+            return "done";
+        });
+
+        TransferRetryMetricsDto metrics = executor.getMetrics();
+        assertEquals("done", result);
+        assertEquals(3, calls.get());
+        assertEquals(1, metrics.getTransfers());
+        assertEquals(3, metrics.getAttempts());
+        assertEquals(2, metrics.getConflicts());
+        assertEquals(2, metrics.getRetries());
+        assertEquals(0, metrics.getExhausted());
+        assertEquals(2 / 3.0, metrics.getConflictRate(), 1e-9);
+    }
+
+    @Test
+    void execute_WhenConflictPersists_ThenTransferConflictAfterMaxAttempts() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(TransferConflictException.class, () -> executor.execute(() -> {
+            calls.incrementAndGet();
+            throw calls.get() % 2 == 0 ? new CannotAcquireLockException("lock timeout") : new OptimisticLockException("stale");
+        }));
+
+        TransferRetryMetricsDto metrics = executor.getMetrics();
+        assertEquals(3, calls.get());
+        assertEquals(3, metrics.getConflicts());
+        assertEquals(2, metrics.getRetries());
+        assertEquals(1, metrics.getExhausted());
+    }
+
+    @Test
+    void execute_WhenBusinessError_ThenNotRetried() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(InsufficientFundsException.class, () -> executor.execute(() -> {
+            calls.incrementAndGet();
+            throw new InsufficientFundsException("There are not enough funds on the card");
+        }));
+
+        assertEquals(1, calls.get());
+        assertEquals(0, executor.getMetrics().getConflicts());
+    }
+}
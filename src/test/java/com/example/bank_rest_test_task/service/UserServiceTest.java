@@ -6,6 +6,7 @@ import com.example.bank_rest_test_task.entity.UserRole;
 import com.example.bank_rest_test_task.exception.DuplicateUserException;
 import com.example.bank_rest_test_task.exception.UserNotFoundException;
 import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.repository.search.UsernameSearch;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -29,6 +30,9 @@ class UserServiceTest {
     @Mock
     PasswordEncoder passwordEncoder;
 
+    @Mock
+    UsernameSearch usernameSearch;
+
     @InjectMocks
     UserService userService;
 
@@ -0,0 +1,157 @@
+package com.example.bank_rest_test_task.service;
+
+import com.example.bank_rest_test_task.config.UsernameSearchConfig;
+import com.example.bank_rest_test_task.dto.CardBlockRequestFilter;
+import com.example.bank_rest_test_task.dto.UserRegisterDto;
+import com.example.bank_rest_test_task.entity.BlockRequestStatus;
+import com.example.bank_rest_test_task.entity.Card;
+import com.example.bank_rest_test_task.entity.CardBlockRequest;
+import com.example.bank_rest_test_task.entity.StatusCard;
+import com.example.bank_rest_test_task.entity.User;
+import com.example.bank_rest_test_task.entity.UserRole;
+import com.example.bank_rest_test_task.repository.CardBlockRequestRepository;
+import com.example.bank_rest_test_task.repository.CardRepository;
+import com.example.bank_rest_test_task.repository.UserRepository;
+import com.example.bank_rest_test_task.repository.search.NgramUsernameSearch;
+import com.example.bank_rest_test_task.repository.search.UsernameSearch;
+import com.example.bank_rest_test_task.util.CryptoService;
+import com.example.bank_rest_test_task.util.money.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверка поиска по подстроке имени через индекс триграмм в памяти (база H2 - не PostgreSQL):
+ * спецификации выбирают реализацию прозрачно, результаты совпадают с {@code LIKE}, в том числе для
+ * новых и переименованных пользователей.
+ */
+@DataJpaTest(showSql = false, properties = {
+        "spring.liquibase.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:username-search;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({UsernameSearchConfig.class, UserService.class, CardService.class, OutboxService.class, CardBlockRequestService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UsernameSearchTest {
+    private static final Pageable PAGE = PageRequest.of(0, 10, Sort.by("id"));
+
+    @MockitoBean
+    CryptoService cryptoService;
+
+    @MockitoBean
+    PasswordEncoder passwordEncoder;
+
+    @Autowired
+    UsernameSearch usernameSearch;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    CardBlockRequestService cardBlockRequestService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    CardBlockRequestRepository cardBlockRequestRepository;
+
+    User alice;
+
+    @BeforeEach
+    void setUp() {
+        alice = userRepository.save(user("Alice_Smith"));
+        userRepository.save(user("bob_jones"));
+        userService.loadUsernameSearch();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardBlockRequestRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void usernameSearch_WhenDatabaseIsNotPostgres_ThenInMemoryNgramIndex() {
+        assertInstanceOf(NgramUsernameSearch.class, usernameSearch);
+    }
+
+    @Test
+    void searchUser_ThenMatchesCaseInsensitiveSubstring() {
+        assertEquals(List.of("Alice_Smith"), usernames("CE_sm"));
+        assertEquals(List.of("Alice_Smith", "bob_jones"), usernames("_"));
+        assertTrue(usernames("carol").isEmpty());
+    }
+
+    @Test
+    void searchUser_WhenUserRegisteredAndRenamed_ThenFoundByNewNameOnly() {
+        when(passwordEncoder.encode(anyString())).thenReturn("encoded");
+        userService.registrationUser(new UserRegisterDto("carol_white", "password"), 1L);
+        assertEquals(List.of("carol_white"), usernames("ol_wh"));
+
+        userService.updateUsername("alice_brown", alice.getId(), 1L);
+
+        assertEquals(List.of("alice_brown"), usernames("ce_br"));
+        assertTrue(usernames("ce_sm").isEmpty());
+    }
+
+    @Test
+    void searCardBlockRequest_WhenRequesterUsernameFragment_ThenOnlyRequestsOfMatchingUsers() {
+        Card card = cardRepository.save(Card.builder()
+                .encryptNumber("search-encrypted")
+                .searchHash("search-hash")
+                .validityPeriod(LocalDate.now().plusYears(5))
+                .statusCard(StatusCard.ACTIVE)
+                .balance(Money.of(10))
+                .first8("55555555")
+                .last4("0000")
+                .user(alice)
+                .build());
+        cardBlockRequestRepository.save(CardBlockRequest.builder()
+                .card(card)
+                .requester(alice)
+                .reason("lost")
+                .blockRequestStatus(BlockRequestStatus.PENDING)
+                .build());
+
+        assertEquals(1, cardBlockRequestService.searCardBlockRequest(
+                CardBlockRequestFilter.builder().requesterUsername("smith").build(), PAGE).getTotalElements());
+        assertEquals(0, cardBlockRequestService.searCardBlockRequest(
+                CardBlockRequestFilter.builder().requesterUsername("jones").build(), PAGE).getTotalElements());
+    }
+
+    private List<String> usernames(String fragment) {
+        return userService.searchUser(fragment, null, false, PAGE).map(User::getUsername).getContent();
+    }
+
+    private User user(String username) {
+        return User.builder()
+                .username(username)
+                .password("password")
+                .role(UserRole.ROLE_USER)
+                .build();
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.bank_rest_test_task.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.jasypt.iv.RandomIvGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка шифрования номеров карт (AES-GCM шифратор, чтение значений jasypt и перешифровка)
+ * и вычисления поискового hash.
+ *
+ * Тесты сравнения помечены {@code @Tag("benchmark")}, запускаются только профилем Maven {@code benchmark}
+ * и выводят в лог:
+ * - время расшифровки страницы карт для старого (jasypt, ключ вычисляется на каждый вызов)
+ *   и нового (AES-GCM, ключ вычислен при старте) путей;
+ * - пропускную способность вычисления hash в одном и нескольких потоках.
+ */
+@Slf4j
+class CryptoServiceTest {
+    private static final String CARD_NUMBER = "4111111111111111";
+    private static final String HASH_KEY = "hash-key";
+    private static final int CARDS = 200;
+    private static final int HASHES = 20_000;
+    private static final int THREADS = 4;
+
+    StandardPBEStringEncryptor legacyEncryptor;
+    CardNumberCipher cardNumberCipher;
+    CryptoService cryptoService;
+
+    @BeforeEach
+    void setUp() {
+        legacyEncryptor = new StandardPBEStringEncryptor();
+        legacyEncryptor.setPassword("legacy-password");
+        legacyEncryptor.setAlgorithm("PBEWITHHMACSHA512ANDAES_256");
+        legacyEncryptor.setIvGenerator(new RandomIvGenerator());
+
+        cardNumberCipher = new CardNumberCipher("secret", "salt", 1, List.of());
+        cryptoService = new CryptoService(cardNumberCipher, legacyEncryptor, HASH_KEY);
+    }
+
+    @Test
+    void encrypt_ThenValueHasKeyVersionPrefixAndDecrypts() {
+        String encrypted = cryptoService.encrypt(CARD_NUMBER);
+
+        assertTrue(encrypted.startsWith("v1:"));
+        assertNotEquals(encrypted, cryptoService.encrypt(CARD_NUMBER));
+        assertEquals(CARD_NUMBER, cryptoService.decrypt(encrypted));
+        assertFalse(cryptoService.needsReEncryption(encrypted));
+    }
+
+    @Test
+    void decrypt_WhenValueEncryptedByLegacyCipher_ThenDecryptedAndMarkedForReEncryption() {
+        String legacy = legacyEncryptor.encrypt(CARD_NUMBER);
+
+        assertEquals(CARD_NUMBER, cryptoService.decrypt(legacy));
+        assertTrue(cryptoService.needsReEncryption(legacy));
+
+        String reEncrypted = cryptoService.reEncrypt(legacy);
+
+        assertTrue(reEncrypted.startsWith("v1:"));
+        assertEquals(CARD_NUMBER, cryptoService.decrypt(reEncrypted));
+    }
+
+    @Test
+    void decrypt_WhenValueTampered_ThenThrow() {
+        String encrypted = cryptoService.encrypt(CARD_NUMBER);
+        char last = encrypted.charAt(encrypted.length() - 3);
+        String tampered = encrypted.substring(0, encrypted.length() - 3) + (last == 'A' ? 'B' : 'A')
+                + encrypted.substring(encrypted.length() - 2);
+
+        assertThrows(IllegalStateException.class, () -> cryptoService.decrypt(tampered));
+    }
+
+    @Test
+    void decrypt_WhenValueEncryptedWithUnknownKeyVersion_ThenThrow() {
+        String encrypted = new CardNumberCipher("other-secret", "salt", 2, List.of()).encrypt(CARD_NUMBER);
+
+        assertTrue(cryptoService.needsReEncryption(encrypted));
+        assertThrows(IllegalArgumentException.class, () -> cryptoService.decrypt(encrypted));
+    }
+
+    @Test
+    void reEncrypt_WhenKeyRotated_ThenPreviousVersionDecryptedAndReEncryptedWithCurrent() {
+        String encryptedByV1 = cryptoService.encrypt(CARD_NUMBER);
+        CryptoService rotated = new CryptoService(
+                new CardNumberCipher("rotated-secret", "salt", 2, List.of("1:secret")), legacyEncryptor, HASH_KEY);
+
+        assertEquals(CARD_NUMBER, rotated.decrypt(encryptedByV1));
+        assertTrue(rotated.needsReEncryption(encryptedByV1));
+
+        String reEncrypted = rotated.reEncrypt(encryptedByV1);
+
+        assertTrue(reEncrypted.startsWith("v2:"));
+        assertFalse(rotated.needsReEncryption(reEncrypted));
+        assertEquals(CARD_NUMBER, rotated.decrypt(reEncrypted));
+        assertThrows(IllegalArgumentException.class, () -> cryptoService.decrypt(reEncrypted));
+    }
+
+    @Test
+    void cardNumberCipher_WhenPreviousSecretMalformedOrDuplicated_ThenThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new CardNumberCipher("secret", "salt", 2, List.of("secret")));
+        assertThrows(IllegalArgumentException.class, () -> new CardNumberCipher("secret", "salt", 2, List.of("2:old")));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void decrypt_WhenPageOfCards_ThenCachedKeyCipherIsFasterThanLegacy() {
+        List<String> legacyValues = new ArrayList<>();
+        List<String> currentValues = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            legacyValues.add(legacyEncryptor.encrypt(CARD_NUMBER));
+            currentValues.add(cryptoService.encrypt(CARD_NUMBER));
+        }
+
+        long legacyNanos = measure(legacyValues, cryptoService::decrypt);
+        long currentNanos = measure(currentValues, cryptoService::decrypt);
+
+        log.info("cards={} | legacyMs={} | aesGcmMs={} | speedup={}x", CARDS,
+                TimeUnit.NANOSECONDS.toMillis(legacyNanos), TimeUnit.NANOSECONDS.toMillis(currentNanos),
+                legacyNanos / Math.max(1, currentNanos));
+        assertTrue(currentNanos < legacyNanos);
+    }
+
+    @Test
+    void calculationCardHash_ThenMatchesHmacSha256AndIsStableAcrossCalls() throws Exception {
+        Mac reference = Mac.getInstance("HmacSHA256");
+        reference.init(new SecretKeySpec(HASH_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String expected = Base64.getEncoder().encodeToString(reference.doFinal(CARD_NUMBER.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(expected, cryptoService.calculationCardHash(CARD_NUMBER));
+        assertEquals(expected, cryptoService.calculationCardHash(CARD_NUMBER));
+    }
+
+    @Test
+    void hashAll_ThenReturnsHashesInInputOrder() {
+        List<String> numbers = List.of(CARD_NUMBER, "5555555555554444", CARD_NUMBER);
+
+        List<String> hashes = cryptoService.hashAll(numbers);
+
+        assertEquals(numbers.stream().map(cryptoService::calculationCardHash).toList(), hashes);
+        assertEquals(hashes.get(0), hashes.get(2));
+        assertNotEquals(hashes.get(0), hashes.get(1));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void calculationCardHash_WhenSingleAndMultiThread_ThenSameHashesAndThroughputLogged() throws Exception {
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < HASHES; i++) {
+            numbers.add("4111%012d".formatted(i));
+        }
+        List<String> expected = cryptoService.hashAll(numbers);
+
+        long singleStartedAt = System.nanoTime();
+        List<String> single = cryptoService.hashAll(numbers);
+        long singleNanos = System.nanoTime() - singleStartedAt;
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        long multiStartedAt = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> numbers.stream().map(cryptoService::calculationCardHash).toList()));
+        }
+        for (Future<List<String>> future : futures) {
+            assertEquals(expected, future.get(1, TimeUnit.MINUTES));
+        }
+        long multiNanos = System.nanoTime() - multiStartedAt;
+        executor.shutdown();
+
+        log.info("hashes={} | singleThread={} ops/s | threads={} | multiThread={} ops/s", HASHES,
+                HASHES * 1_000_000_000L / Math.max(1, singleNanos), THREADS,
+                (long) HASHES * THREADS * 1_000_000_000L / Math.max(1, multiNanos));
+        assertEquals(expected, single);
+    }
+
+    private long measure(List<String> values, UnaryOperator<String> decrypt) {
+        for (String value : values) {
+            decrypt.apply(value);
+        }
+        long startedAt = System.nanoTime();
+        for (String value : values) {
+            assertEquals(CARD_NUMBER, decrypt.apply(value));
+        }
+        return System.nanoTime() - startedAt;
+    }
+}
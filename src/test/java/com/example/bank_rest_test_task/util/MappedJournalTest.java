@@ -0,0 +1,117 @@
+package com.example.bank_rest_test_task.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка журнала в отображенных в память сегментах: порядок записей, переход между сегментами,
+ * удаление обработанных сегментов и восстановление после перезапуска и оборванной записи
+ */
+class MappedJournalTest {
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void read_ThenRecordsInAppendOrderUpToLimit() {
+        MappedJournal journal = new MappedJournal(dir, SEGMENT_SIZE, true);
+        MappedJournal.Position first = journal.append(List.of(bytes("a"), bytes("b")));
+        MappedJournal.Position limit = journal.writePosition();
+        journal.append(List.of(bytes("c")));
+
+        List<MappedJournal.Record> records = journal.read(journal.drainedPosition(), limit, 10);
+
+        assertEquals(List.of("a", "b"), records.stream().map(MappedJournalTest::text).toList());
+        assertEquals(first, records.get(0).position());
+        assertEquals(limit, records.get(1).next());
+        assertEquals(1, journal.read(journal.drainedPosition(), journal.writePosition(), 1).size());
+    }
+
+    @Test
+    void append_WhenSegmentFull_ThenNextSegmentAndDrainedSegmentsDeleted() throws IOException {
+        MappedJournal journal = new MappedJournal(dir, SEGMENT_SIZE, true);
+        for (int i = 0; i < 20; i++) {
+            journal.append(List.of(bytes("record-%02d".formatted(i))));
+        }
+        assertTrue(segmentCount() > 1);
+
+        List<MappedJournal.Record> records = journal.read(journal.drainedPosition(), journal.writePosition(), 100);
+        journal.markDrained(records.get(records.size() - 1).next());
+
+        assertEquals(IntStream.range(0, 20).mapToObj("record-%02d"::formatted).toList(),
+                records.stream().map(MappedJournalTest::text).toList());
+        assertEquals(1, segmentCount());
+        assertTrue(journal.read(journal.drainedPosition(), journal.writePosition(), 100).isEmpty());
+    }
+
+    @Test
+    void open_WhenReopened_ThenOnlyUndrainedRecordsRead() {
+        MappedJournal journal = new MappedJournal(dir, SEGMENT_SIZE, true);
+        for (int i = 0; i < 12; i++) {
+            journal.append(List.of(bytes("record-" + i)));
+        }
+        List<MappedJournal.Record> drained = journal.read(journal.drainedPosition(), journal.writePosition(), 5);
+        journal.markDrained(drained.get(drained.size() - 1).next());
+        MappedJournal.Position writePosition = journal.writePosition();
+
+        MappedJournal reopened = new MappedJournal(dir, SEGMENT_SIZE, true);
+
+        assertEquals(writePosition, reopened.writePosition());
+        assertEquals(IntStream.range(5, 12).mapToObj(i -> "record-" + i).toList(),
+                reopened.read(reopened.drainedPosition(), reopened.writePosition(), 100).stream().map(MappedJournalTest::text).toList());
+    }
+
+    @Test
+    void open_WhenLastRecordTorn_ThenRecordDiscardedAndAppendContinues() throws IOException {
+        MappedJournal journal = new MappedJournal(dir, SEGMENT_SIZE, true);
+        journal.append(List.of(bytes("complete")));
+        MappedJournal.Position torn = journal.append(List.of(bytes("torn")));
+        journal.close();
+        try (FileChannel channel = FileChannel.open(dir.resolve("%016d.seg".formatted(torn.segment())), StandardOpenOption.WRITE)) {
+            // Содержимое записано не полностью: контрольная сумма не совпадает
+            channel.write(ByteBuffer.wrap(bytes("XX")), torn.offset() + 8);
+        }
+
+        MappedJournal reopened = new MappedJournal(dir, SEGMENT_SIZE, true);
+        reopened.append(List.of(bytes("after restart")));
+
+        assertEquals(torn, reopened.read(reopened.drainedPosition(), reopened.writePosition(), 100).get(1).position());
+        assertEquals(List.of("complete", "after restart"),
+                reopened.read(reopened.drainedPosition(), reopened.writePosition(), 100).stream().map(MappedJournalTest::text).toList());
+    }
+
+    @Test
+    void append_WhenRecordLargerThanSegment_ThenRejected() {
+        MappedJournal journal = new MappedJournal(dir, SEGMENT_SIZE, false);
+
+        assertThrows(IllegalArgumentException.class, () -> journal.append(List.of(new byte[SEGMENT_SIZE])));
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(MappedJournal.Record record) {
+        return new String(record.payload(), StandardCharsets.UTF_8);
+    }
+}
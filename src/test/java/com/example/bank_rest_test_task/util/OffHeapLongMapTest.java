@@ -0,0 +1,63 @@
+package com.example.bank_rest_test_task.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка отображения вне кучи: чтение, замена и добавление значений, расширение таблицы
+ * и совпадение с {@link HashMap} на случайных ключах
+ */
+class OffHeapLongMapTest {
+
+    @Test
+    void put_ThenGetReturnsLatestValue() {
+        OffHeapLongMap map = new OffHeapLongMap(4);
+
+        map.put(7, 100);
+        map.put(7, -5);
+
+        assertEquals(-5, map.get(7, 0));
+        assertEquals(42, map.get(8, 42));
+        assertTrue(map.containsKey(7));
+        assertFalse(map.containsKey(8));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void putIfAbsent_WhenPresent_ThenValueKept() {
+        OffHeapLongMap map = new OffHeapLongMap(4);
+
+        assertTrue(map.putIfAbsent(1, 10));
+        assertFalse(map.putIfAbsent(1, 20));
+
+        assertEquals(10, map.get(1, 0));
+    }
+
+    @Test
+    void put_WhenKeyIsZero_ThenThrowIllegalArgumentException() {
+        OffHeapLongMap map = new OffHeapLongMap(4);
+
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, 1));
+    }
+
+    @Test
+    void put_WhenManyRandomKeys_ThenGrowsAndMatchesHashMap() {
+        OffHeapLongMap map = new OffHeapLongMap(0);
+        Map<Long, Long> expected = new HashMap<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextLong(1, 50_000);
+            long value = random.nextLong();
+            map.put(key, value);
+            expected.put(key, value);
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key, 0)));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bank_rest_test_task.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка параллельного конвейера: порядок результатов, ограничение буфера и передача ошибок
+ */
+class OrderedParallelPipelineTest {
+    private static final int CHUNK_SIZE = 10;
+    private static final int MAX_IN_FLIGHT = 3;
+
+    ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void finish_ThenResultsInSourceOrder() throws IOException {
+        List<Integer> results = new ArrayList<>();
+        OrderedParallelPipeline<Integer, Integer> pipeline = new OrderedParallelPipeline<>(executor, CHUNK_SIZE, MAX_IN_FLIGHT,
+                i -> {
+                    // Поздние пачки обрабатываются быстрее ранних
+                    sleep((1000 - i) % 7);
+                    return i * 2;
+                }, results::add);
+
+        for (int i = 0; i < 1000; i++) {
+            pipeline.accept(i);
+        }
+        pipeline.finish();
+
+        assertEquals(IntStream.range(0, 1000).map(i -> i * 2).boxed().toList(), results);
+    }
+
+    @Test
+    void accept_ThenAtMostMaxInFlightChunksBuffered() throws IOException {
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger delivered = new AtomicInteger();
+        int[] maxBuffered = {0};
+        OrderedParallelPipeline<Integer, Integer> pipeline = new OrderedParallelPipeline<>(executor, CHUNK_SIZE, MAX_IN_FLIGHT,
+                i -> i, result -> delivered.incrementAndGet());
+
+        for (int i = 0; i < 10_000; i++) {
+            pipeline.accept(i);
+            accepted.incrementAndGet();
+            maxBuffered[0] = Math.max(maxBuffered[0], accepted.get() - delivered.get());
+        }
+        pipeline.finish();
+
+        assertEquals(10_000, delivered.get());
+        assertTrue(maxBuffered[0] <= CHUNK_SIZE * (MAX_IN_FLIGHT + 1), "buffered " + maxBuffered[0]);
+    }
+
+    @Test
+    void finish_WhenMapperFails_ThenExceptionPropagated() {
+        OrderedParallelPipeline<Integer, Integer> pipeline = new OrderedParallelPipeline<>(executor, CHUNK_SIZE, MAX_IN_FLIGHT,
+                i -> {
+                    if (i == 15) {
+                        throw new IllegalStateException("broken row");
+                    }
+                    return i;
+                }, result -> {});
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> {
+            for (int i = 0; i < 100; i++) {
+                pipeline.accept(i);
+            }
+            pipeline.finish();
+        });
+        assertEquals("broken row", exception.getMessage());
+    }
+
+    @Test
+    void accept_WhenSinkFails_ThenIOExceptionPropagated() {
+        OrderedParallelPipeline<Integer, Integer> pipeline = new OrderedParallelPipeline<>(executor, CHUNK_SIZE, MAX_IN_FLIGHT,
+                i -> i, result -> {
+                    throw new IOException("Broken pipe");
+                });
+
+        assertThrows(IOException.class, () -> {
+            for (int i = 0; i < 100; i++) {
+                pipeline.accept(i);
+            }
+            pipeline.finish();
+        });
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.bank_rest_test_task.util.money;
+
+import com.example.bank_rest_test_task.dto.PaymentDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверка {@link Money}: точные преобразования без округления, арифметика с контролем переполнения,
+ * формат JSON как у {@link BigDecimal}, проверки {@code @Positive} и {@code @Digits} суммы {@link PaymentDto}.
+ *
+ * Последний тест ({@code @Tag("benchmark")}, запускается только профилем Maven {@code benchmark}) сравнивает
+ * проверку и изменение балансов на {@link BigDecimal} и на {@link Money} (как в цикле пакетного перевода)
+ * и выводит время в лог.
+ */
+@Slf4j
+class MoneyTest {
+    private static final int BALANCES = 1024;
+    private static final int ROUNDS = 2_000;
+
+    private static ValidatorFactory validatorFactory;
+    private static Validator validator;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeAll
+    static void setUpValidator() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @AfterAll
+    static void closeValidator() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void of_WhenScaleFits_ThenValueIsExact() {
+        Money amount = Money.of("100.5");
+
+        assertEquals(1_005_000, amount.minorUnits());
+        assertEquals(Money.of(new BigDecimal("100.5000")), amount);
+        assertEquals(0, new BigDecimal("100.50").compareTo(amount.toBigDecimal()));
+        assertEquals("100.5000", amount.toString());
+        assertSame(Money.ZERO, Money.of("0.00"));
+    }
+
+    @Test
+    void of_WhenTooManyDecimalPlaces_ThenThrowArithmeticException() {
+        assertThrows(ArithmeticException.class, () -> Money.of("0.00001"));
+    }
+
+    @Test
+    void of_WhenOutOfRange_ThenThrowArithmeticException() {
+        assertThrows(ArithmeticException.class, () -> Money.of("1000000000000000"));
+        assertThrows(ArithmeticException.class, () -> Money.of(Long.MAX_VALUE));
+    }
+
+    @Test
+    void ofClamped_WhenOutOfRange_ThenLargestOrSmallestAmount() {
+        assertEquals(Money.ofMinor(Long.MAX_VALUE), Money.ofClamped(new BigDecimal("1000000000000000")));
+        assertEquals(Money.ofMinor(Long.MAX_VALUE), Money.ofClamped(new BigDecimal("999999999999999999.99")));
+        assertEquals(Money.ofMinor(Long.MIN_VALUE), Money.ofClamped(new BigDecimal("-999999999999999.9999")));
+        assertEquals(Money.ofMinor(Long.MAX_VALUE), Money.ofClamped(new BigDecimal("922337203685477.5807")));
+        assertEquals(Money.of("100.5"), Money.ofClamped(new BigDecimal("100.50")));
+    }
+
+    @Test
+    void arithmetic_ThenMatchesBigDecimal() {
+        Money balance = Money.of("1000.25");
+        Money amount = Money.of("0.2501");
+
+        assertEquals(Money.of("999.9999"), balance.minus(amount));
+        assertEquals(Money.of("1000.5001"), balance.plus(amount));
+        assertEquals(Money.of("3000.75"), balance.times(3));
+        assertTrue(amount.isLessThan(balance));
+        assertFalse(balance.isLessThan(balance));
+        assertEquals(-1, amount.minus(balance).signum());
+        assertTrue(amount.compareTo(balance) < 0);
+    }
+
+    @Test
+    void arithmetic_WhenOverflow_ThenThrowArithmeticException() {
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MIN_VALUE).minus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, () -> max.times(2));
+    }
+
+    @Test
+    void json_ThenWrittenAsNumberAndReadFromNumberOrString() throws Exception {
+        PaymentDto paymentDto = new PaymentDto(1L, 2L, Money.of("100.5"), "Hello");
+
+        String json = objectMapper.writeValueAsString(paymentDto);
+
+        assertTrue(json.contains("\"amount\":100.5000"), json);
+        assertEquals(paymentDto, objectMapper.readValue(json, PaymentDto.class));
+        assertEquals(Money.of("100.5"), objectMapper.readValue("\"100.50\"", Money.class));
+    }
+
+    @Test
+    void json_WhenTooManyDecimalPlaces_ThenThrowInvalidFormatException() {
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("0.00001", Money.class));
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("\"abc\"", Money.class));
+    }
+
+    @Test
+    void validation_WhenNotPositive_ThenViolation() {
+        assertTrue(validator.validate(new PaymentDto(1L, 2L, Money.of("0.0001"), null)).isEmpty());
+        assertTrue(validator.validate(new PaymentDto(1L, 2L, Money.ofMinor(Long.MAX_VALUE), null)).isEmpty());
+
+        Set<ConstraintViolation<PaymentDto>> violations = validator.validate(new PaymentDto(1L, 2L, Money.ZERO, null));
+
+        assertEquals(1, violations.size());
+        assertEquals("amount", violations.iterator().next().getPropertyPath().toString());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void transferLoop_ThenMoneyAndBigDecimalGiveSameBalancesAndTimingIsLogged() {
+        BigDecimal[] decimalBalances = new BigDecimal[BALANCES];
+        Money[] moneyBalances = new Money[BALANCES];
+        for (int i = 0; i < BALANCES; i++) {
+            decimalBalances[i] = BigDecimal.valueOf(1_000_000 + i, 2);
+            moneyBalances[i] = Money.of(decimalBalances[i]);
+        }
+        BigDecimal decimalAmount = new BigDecimal("12.34");
+        Money moneyAmount = Money.of(decimalAmount);
+
+        // Прогрев, чтобы сравнивать скомпилированный код
+        transferDecimals(decimalBalances.clone(), decimalAmount);
+        transferMoney(moneyBalances.clone(), moneyAmount);
+
+        long start = System.nanoTime();
+        long decimalTransfers = transferDecimals(decimalBalances, decimalAmount);
+        long decimalNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        long moneyTransfers = transferMoney(moneyBalances, moneyAmount);
+        long moneyNanos = System.nanoTime() - start;
+
+        log.info("transfers={} | bigDecimalMs={} | moneyMs={}", decimalTransfers,
+                TimeUnit.NANOSECONDS.toMillis(decimalNanos), TimeUnit.NANOSECONDS.toMillis(moneyNanos));
+        assertEquals(decimalTransfers, moneyTransfers);
+        for (int i = 0; i < BALANCES; i++) {
+            assertEquals(Money.of(decimalBalances[i]), moneyBalances[i]);
+        }
+    }
+
+    private static long transferDecimals(BigDecimal[] balances, BigDecimal amount) {
+        long transfers = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int from = 0; from < balances.length; from++) {
+                int to = (from + round + 1) % balances.length;
+                if (balances[from].compareTo(amount) < 0) {
+                    continue;
+                }
+                balances[from] = balances[from].subtract(amount);
+                balances[to] = balances[to].add(amount);
+                transfers++;
+            }
+        }
+        return transfers;
+    }
+
+    private static long transferMoney(Money[] balances, Money amount) {
+        long transfers = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int from = 0; from < balances.length; from++) {
+                int to = (from + round + 1) % balances.length;
+                if (balances[from].isLessThan(amount)) {
+                    continue;
+                }
+                balances[from] = balances[from].minus(amount);
+                balances[to] = balances[to].plus(amount);
+                transfers++;
+            }
+        }
+        return transfers;
+    }
+}